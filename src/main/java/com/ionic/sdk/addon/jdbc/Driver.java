@@ -1,8 +1,9 @@
 package com.ionic.sdk.addon.jdbc;
 
+import com.ionic.sdk.addon.jdbc.impl.IonicConnectionServices;
 import com.ionic.sdk.addon.jdbc.impl.IonicState;
-import com.ionic.sdk.agent.Agent;
 import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.key.KeyServices;
 
 import java.sql.Connection;
 import java.sql.DriverPropertyInfo;
@@ -18,12 +19,14 @@ public class Driver implements java.sql.Driver {
     @Override
     public Connection connect(final String url, final Properties info) throws SQLException {
         try {
-            final Agent agent = IonicState.getAgent(info);
+            final KeyServices keyServices = IonicState.getKeyServices(info);
+            // the services are created before the connection is opened, so that an invalid setting leaks nothing
+            final IonicConnectionServices services = IonicConnectionServices.create(url, info, keyServices);
             final String driverClassName = info.getProperty("driverClassName");
             final Class<?> driverClass = Class.forName(driverClassName);
-            final java.sql.Driver driverWrapped = (java.sql.Driver) driverClass.newInstance();
+            final java.sql.Driver driverWrapped = (java.sql.Driver) driverClass.getDeclaredConstructor().newInstance();
             final Connection connection = driverWrapped.connect(url, info);
-            return new IonicConnection(info, connection, agent);
+            return new IonicConnection(info, connection, keyServices, services);
         } catch (IonicException e) {
             throw new SQLException(e);
         } catch (ReflectiveOperationException e) {
@@ -0,0 +1,379 @@
+package com.ionic.sdk.addon.jdbc;
+
+import com.ionic.sdk.addon.jdbc.impl.IonicConnectionServices;
+import com.ionic.sdk.addon.jdbc.impl.IonicKeyPoolKeyServices;
+import com.ionic.sdk.addon.jdbc.impl.IonicState;
+import com.ionic.sdk.addon.jdbc.impl.IonicTokenVault;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+import com.ionic.sdk.key.KeyServices;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+
+/**
+ * Accept single rows to be written by a parameterized statement (typically an insert) from many threads, and write
+ * them to the database in batches.  Each row is buffered, and the caller receives a future, completed when the batch
+ * containing the row has been executed (and committed, if the connection is not in auto-commit mode).
+ * <p>
+ * A batch is sent when it reaches the batch size, or when its first row has waited for the linger interval.  The keys
+ * of the batch are created in bulk, and the batch is sent to the database as a JDBC batch (rewritten as multi-row
+ * insert statements, if enabled by "ionic.batch.rows").  When the buffer is full, callers wait for space, so that a
+ * slow database slows its writers rather than exhausting memory.
+ * <p>
+ * The batches are written by a dedicated thread, using the connection from which the writer was created.  The
+ * connection should not be used for other work until the writer is closed.  Should the thread fail, the writer stops
+ * accepting rows, and the futures of all rows not yet written are completed exceptionally.
+ * <p>
+ * Settings are taken from the connection properties:
+ * <ul>
+ * <li>"ionic.writer.rows": the maximum number of rows in each batch (default 500)</li>
+ * <li>"ionic.writer.linger": the maximum time (milliseconds) a row waits for its batch to fill (default 10)</li>
+ * <li>"ionic.writer.buffer": the maximum number of rows waiting to be written (default 10000)</li>
+ * </ul>
+ */
+public class IonicBulkWriter implements AutoCloseable {
+
+    /**
+     * The default maximum number of rows in each batch.
+     */
+    private static final long ROWS_DEFAULT = 500L;
+
+    /**
+     * The default maximum time (milliseconds) a row waits for its batch to fill.
+     */
+    private static final long LINGER_DEFAULT = 10L;
+
+    /**
+     * The default maximum number of rows waiting to be written.
+     */
+    private static final long BUFFER_DEFAULT = 10000L;
+
+    /**
+     * The interval (milliseconds) at which an idle writer thread checks for closure of the writer.
+     */
+    private static final long IDLE_POLL = 100L;
+
+    /**
+     * Class scoped logger.
+     */
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    /**
+     * The underlying connection.
+     */
+    private final Connection connection;
+
+    /**
+     * The statement executing the batches.
+     */
+    private final IonicPreparedStatement statement;
+
+    /**
+     * The number of parameters of the statement.
+     */
+    private final int parameterCount;
+
+    /**
+     * The maximum number of rows in each batch.
+     */
+    private final int rowsPerBatch;
+
+    /**
+     * The maximum time (nanoseconds) a row waits for its batch to fill.
+     */
+    private final long lingerNanos;
+
+    /**
+     * The rows waiting to be written.
+     */
+    private final BlockingQueue<Pending> buffer;
+
+    /**
+     * Held (shared) while adding rows to the buffer, and (exclusively) while closing the writer, so that no row is
+     * added after the writer thread has finished.
+     */
+    private final ReadWriteLock closeLock;
+
+    /**
+     * The thread writing the batches.
+     */
+    private final Thread writer;
+
+    /**
+     * True once the writer has been closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Constructor.
+     *
+     * @param info        database connection parameters, and Ionic wrapper configuration
+     * @param wrapped     the underlying connection
+     * @param keyServices Ionic key services, used to protect data on database insert
+     * @param sql         the parameterized statement executed for each row
+     * @throws SQLException on invalid settings, or invalid Ionic configuration
+     */
+    public IonicBulkWriter(final Properties info, final Connection wrapped, final KeyServices keyServices,
+                           final String sql) throws SQLException {
+        this.connection = wrapped;
+        final int batchRows;
+        final long buffered;
+        final IonicTokenVault tokenVault;
+        try {
+            this.rowsPerBatch = Math.max(1, (int) IonicState.getLong(info, "ionic.writer.rows", ROWS_DEFAULT));
+            this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(
+                    Math.max(0L, IonicState.getLong(info, "ionic.writer.linger", LINGER_DEFAULT)));
+            buffered = Math.max(1L, IonicState.getLong(info, "ionic.writer.buffer", BUFFER_DEFAULT));
+            batchRows = (int) IonicState.getLong(info, "ionic.batch.rows", 0L);
+            tokenVault = IonicTokenVault.getInstance(wrapped.getMetaData().getURL(), info);
+        } catch (IonicException e) {
+            throw new SQLException(e);
+        }
+        final PreparedStatement prepared = wrapped.prepareStatement(sql);
+        try {
+            this.statement = new IonicPreparedStatement(prepared, sql, info.getProperty("ionic.config.jdbc.json"),
+                    new IonicKeyPoolKeyServices(keyServices, rowsPerBatch), batchRows, 0,
+                    new IonicConnectionServices(null, tokenVault, null));
+            this.parameterCount = statement.getParameterMetaData().getParameterCount();
+        } catch (SQLException e) {
+            closeOnFailure(prepared, e);
+            throw e;
+        } catch (RuntimeException e) {
+            closeOnFailure(prepared, e);
+            throw e;
+        }
+        this.buffer = new ArrayBlockingQueue<Pending>((int) Math.min(Integer.MAX_VALUE, buffered));
+        this.closeLock = new ReentrantReadWriteLock();
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeBatches();
+            }
+        }, "ionic-jdbc-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queue a row to be written.  If the buffer is full, wait until space is available.
+     *
+     * @param values the parameter values of the row, in statement order
+     * @return a future, completed with the update count of the row once its batch has been written, or completed
+     * exceptionally if the batch fails
+     * @throws SQLException if the writer is closed, if the number of values does not match the statement, or if the
+     *                      calling thread is interrupted while waiting
+     */
+    public CompletableFuture<Integer> write(final Object... values) throws SQLException {
+        if (values.length != parameterCount) {
+            throw new SQLException(new IonicException(SdkError.ISAGENT_INVALIDVALUE,
+                    String.format("expected %d values, found %d", parameterCount, values.length)));
+        }
+        final Pending pending = new Pending(values.clone());
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                throw new SQLException(new IonicException(SdkError.ISAGENT_INVALIDVALUE, "writer is closed"));
+            }
+            buffer.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(e);
+        } finally {
+            closeLock.readLock().unlock();
+        }
+        return pending.future;
+    }
+
+    /**
+     * Stop accepting rows, write the rows already accepted, and release the resources of the writer.  The connection
+     * remains open.
+     *
+     * @throws SQLException on failure to release the statement, or if the calling thread is interrupted
+     */
+    @Override
+    public void close() throws SQLException {
+        closeLock.writeLock().lock();
+        try {
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(e);
+        }
+        statement.close();
+    }
+
+    /**
+     * The loop of the writer thread: gather rows into batches, and write them, until the writer is closed and the
+     * buffer is empty.
+     */
+    private void writeBatches() {
+        final List<Pending> batch = new ArrayList<Pending>(rowsPerBatch);
+        try {
+            while (true) {
+                final Pending first = buffer.poll(IDLE_POLL, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (closed && buffer.isEmpty()) {
+                        break;
+                    }
+                    continue;
+                }
+                batch.add(first);
+                final long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < rowsPerBatch) {
+                    buffer.drainTo(batch, rowsPerBatch - batch.size());
+                    final long remaining = deadline - System.nanoTime();
+                    if ((batch.size() >= rowsPerBatch) || (remaining <= 0L)) {
+                        break;
+                    }
+                    final Pending next = buffer.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                writeBatch(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            abandon(batch, new SQLException(e));
+        } catch (Throwable e) {
+            abandon(batch, e);
+            throw e;
+        }
+    }
+
+    /**
+     * The writer thread is ending abnormally.  Stop accepting rows, and complete the futures of the rows of the
+     * current batch, and of the rows waiting to be written, with the failure.
+     *
+     * @param batch   the rows of the current batch
+     * @param failure the cause of the end of the writer thread
+     */
+    private void abandon(final List<Pending> batch, final Throwable failure) {
+        closed = true;
+        for (final Pending pending : batch) {
+            pending.future.completeExceptionally(failure);
+        }
+        // callers which found the writer open may be waiting for space in the buffer; drain it until they are done
+        while (!closeLock.writeLock().tryLock()) {
+            failPending(failure);
+            Thread.yield();
+        }
+        try {
+            failPending(failure);
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Complete the futures of the rows waiting to be written with a failure.
+     *
+     * @param failure the cause of the failure
+     */
+    private void failPending(final Throwable failure) {
+        for (Pending pending = buffer.poll(); (pending != null); pending = buffer.poll()) {
+            pending.future.completeExceptionally(failure);
+        }
+    }
+
+    /**
+     * Release a statement of the writer, whose construction has failed.
+     *
+     * @param prepared the statement
+     * @param failure  the cause of the failure, to which any failure to release the statement is added
+     */
+    private static void closeOnFailure(final PreparedStatement prepared, final Exception failure) {
+        try {
+            prepared.close();
+        } catch (SQLException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Protect and execute a batch of rows, and complete the futures of the rows.
+     *
+     * @param batch the rows of the batch
+     */
+    private void writeBatch(final List<Pending> batch) {
+        try {
+            for (final Pending pending : batch) {
+                statement.clearParameters();
+                for (int i = 0; (i < parameterCount); ++i) {
+                    statement.setObject(i + 1, pending.values[i]);
+                }
+                statement.addBatch();
+            }
+            final int[] counts = statement.executeBatch();
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+            for (int i = 0; (i < batch.size()); ++i) {
+                batch.get(i).future.complete((i < counts.length) ? counts[i] : 0);
+            }
+        } catch (SQLException e) {
+            rollback();
+            for (final Pending pending : batch) {
+                pending.future.completeExceptionally(e);
+            }
+        } catch (RuntimeException e) {
+            rollback();
+            for (final Pending pending : batch) {
+                pending.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Discard the remains of a failed batch.
+     */
+    private void rollback() {
+        try {
+            statement.clearBatch();
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+            }
+        } catch (SQLException e) {
+            logger.fine(e.getMessage());
+        }
+    }
+
+    /**
+     * A row waiting to be written.
+     */
+    private static final class Pending {
+
+        /**
+         * The parameter values of the row.
+         */
+        private final Object[] values;
+
+        /**
+         * Completed when the row has been written.
+         */
+        private final CompletableFuture<Integer> future;
+
+        private Pending(final Object[] values) {
+            this.values = values;
+            this.future = new CompletableFuture<Integer>();
+        }
+    }
+}
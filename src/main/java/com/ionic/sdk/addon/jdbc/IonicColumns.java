@@ -0,0 +1,500 @@
+package com.ionic.sdk.addon.jdbc;
+
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+
+/**
+ * A block of rows of a query result, held as column vectors, detached from its {@link java.sql.ResultSet}.
+ * Ionic-protected values have been unprotected.  Blocks are produced by {@link IonicResultSet#fetchColumns(int)}.
+ * <p>
+ * Integer, long and double columns are held as primitive arrays; character columns as String arrays; other columns
+ * as Object arrays.  The nulls of each column are held in a bitmap (bit <code>i % 64</code> of word
+ * <code>i / 64</code> is set iff the value of row <code>i</code> is null).  As for JDBC, columns are numbered from 1;
+ * rows are numbered from 0, as are the elements of the vectors.
+ */
+public final class IonicColumns {
+
+    /**
+     * The representation of the values of a column.
+     */
+    public enum Type {
+        /**
+         * Character data, held as String[].
+         */
+        STRING,
+        /**
+         * Integers of up to 32 bits, held as int[].
+         */
+        INT,
+        /**
+         * Integers of up to 64 bits, held as long[].
+         */
+        LONG,
+        /**
+         * Floating point numbers, held as double[].
+         */
+        DOUBLE,
+        /**
+         * Other data, held as Object[].
+         */
+        OBJECT
+    }
+
+    /**
+     * The labels of the columns.
+     */
+    private final String[] labels;
+
+    /**
+     * The representations of the values of the columns.
+     */
+    private final Type[] types;
+
+    /**
+     * The values of the columns.
+     */
+    private final Object[] vectors;
+
+    /**
+     * The null bitmaps of the columns.
+     */
+    private final long[][] nulls;
+
+    /**
+     * The number of rows.
+     */
+    private final int rowCount;
+
+    /**
+     * Constructor.
+     *
+     * @param labels   the labels of the columns
+     * @param types    the representations of the values of the columns
+     * @param vectors  the values of the columns
+     * @param nulls    the null bitmaps of the columns
+     * @param rowCount the number of rows
+     */
+    private IonicColumns(final String[] labels, final Type[] types, final Object[] vectors, final long[][] nulls,
+                         final int rowCount) {
+        this.labels = labels;
+        this.types = types;
+        this.vectors = vectors;
+        this.nulls = nulls;
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * @return the number of rows
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return the number of columns
+     */
+    public int getColumnCount() {
+        return labels.length;
+    }
+
+    /**
+     * @param column the ordinal of the column (the first column is 1)
+     * @return the label of the column
+     */
+    public String getColumnLabel(final int column) {
+        return labels[column - 1];
+    }
+
+    /**
+     * @param column the ordinal of the column (the first column is 1)
+     * @return the representation of the values of the column
+     */
+    public Type getColumnType(final int column) {
+        return types[column - 1];
+    }
+
+    /**
+     * @param columnLabel the label of a column (not case sensitive)
+     * @return the ordinal of the column (the first column is 1)
+     * @throws SQLException if there is no column with the label
+     */
+    public int findColumn(final String columnLabel) throws SQLException {
+        for (int i = 0; (i < labels.length); ++i) {
+            if (labels[i].equalsIgnoreCase(columnLabel)) {
+                return i + 1;
+            }
+        }
+        throw new SQLException(new IonicException(SdkError.ISAGENT_RESOURCE_NOT_FOUND, columnLabel));
+    }
+
+    /**
+     * @param column the ordinal of the column (the first column is 1)
+     * @param row    the ordinal of the row (the first row is 0)
+     * @return true, iff the value is null
+     */
+    public boolean isNull(final int column, final int row) {
+        return isSet(nulls[column - 1], row);
+    }
+
+    /**
+     * @param column the ordinal of the column (the first column is 1)
+     * @return the null bitmap of the column (not a copy)
+     */
+    public long[] getNulls(final int column) {
+        return nulls[column - 1];
+    }
+
+    /**
+     * @param column the ordinal of the column (the first column is 1)
+     * @return the values of a {@link Type#STRING} column (not a copy)
+     * @throws SQLException if the column is of another type
+     */
+    public String[] getStrings(final int column) throws SQLException {
+        return (String[]) getVector(column, Type.STRING);
+    }
+
+    /**
+     * @param column the ordinal of the column (the first column is 1)
+     * @return the values of an {@link Type#INT} column (not a copy; null values are 0)
+     * @throws SQLException if the column is of another type
+     */
+    public int[] getInts(final int column) throws SQLException {
+        return (int[]) getVector(column, Type.INT);
+    }
+
+    /**
+     * @param column the ordinal of the column (the first column is 1)
+     * @return the values of a {@link Type#LONG} column (not a copy; null values are 0)
+     * @throws SQLException if the column is of another type
+     */
+    public long[] getLongs(final int column) throws SQLException {
+        return (long[]) getVector(column, Type.LONG);
+    }
+
+    /**
+     * @param column the ordinal of the column (the first column is 1)
+     * @return the values of a {@link Type#DOUBLE} column (not a copy; null values are 0)
+     * @throws SQLException if the column is of another type
+     */
+    public double[] getDoubles(final int column) throws SQLException {
+        return (double[]) getVector(column, Type.DOUBLE);
+    }
+
+    /**
+     * @param column the ordinal of the column (the first column is 1)
+     * @return the values of an {@link Type#OBJECT} column (not a copy)
+     * @throws SQLException if the column is of another type
+     */
+    public Object[] getObjects(final int column) throws SQLException {
+        return (Object[]) getVector(column, Type.OBJECT);
+    }
+
+    /**
+     * @param column the ordinal of the column (the first column is 1)
+     * @param row    the ordinal of the row (the first row is 0)
+     * @return the value, boxed if the column is of a primitive type (null if the value is null)
+     */
+    public Object getObject(final int column, final int row) {
+        if (isNull(column, row)) {
+            return null;
+        }
+        final Object vector = vectors[column - 1];
+        switch (types[column - 1]) {
+            case INT:
+                return ((int[]) vector)[row];
+            case LONG:
+                return ((long[]) vector)[row];
+            case DOUBLE:
+                return ((double[]) vector)[row];
+            default:
+                return ((Object[]) vector)[row];
+        }
+    }
+
+    /**
+     * Export a column to off-heap buffers, in the layout of an Apache Arrow array: a validity bitmap (bit set iff
+     * the value is not null), followed by the values (little-endian), or for {@link Type#STRING} columns, by int32
+     * offsets (one more than the number of rows) and the UTF-8 bytes of the values.  The length of each buffer is a
+     * multiple of 8 bytes.
+     *
+     * @param column the ordinal of the column (the first column is 1)
+     * @return the direct buffers of the column, in the order described
+     * @throws SQLException if the column is of type {@link Type#OBJECT}, which has no fixed layout
+     */
+    public ByteBuffer[] export(final int column) throws SQLException {
+        final Type type = types[column - 1];
+        final long[] columnNulls = nulls[column - 1];
+        final ByteBuffer validity = allocate((rowCount + 7) / 8);
+        for (int row = 0; (row < rowCount); ++row) {
+            if (!isSet(columnNulls, row)) {
+                final int index = row / 8;
+                validity.put(index, (byte) (validity.get(index) | (1 << (row % 8))));
+            }
+        }
+        if (type == Type.INT) {
+            final ByteBuffer values = allocate(rowCount * 4);
+            values.asIntBuffer().put(getInts(column), 0, rowCount);
+            return new ByteBuffer[]{validity, values};
+        } else if (type == Type.LONG) {
+            final ByteBuffer values = allocate(rowCount * 8);
+            values.asLongBuffer().put(getLongs(column), 0, rowCount);
+            return new ByteBuffer[]{validity, values};
+        } else if (type == Type.DOUBLE) {
+            final ByteBuffer values = allocate(rowCount * 8);
+            values.asDoubleBuffer().put(getDoubles(column), 0, rowCount);
+            return new ByteBuffer[]{validity, values};
+        } else if (type == Type.STRING) {
+            final String[] strings = getStrings(column);
+            final byte[][] bytes = new byte[rowCount][];
+            int length = 0;
+            for (int row = 0; (row < rowCount); ++row) {
+                bytes[row] = (strings[row] == null) ? new byte[0] : strings[row].getBytes(StandardCharsets.UTF_8);
+                length += bytes[row].length;
+            }
+            final ByteBuffer offsets = allocate((rowCount + 1) * 4);
+            final ByteBuffer data = allocate(length);
+            int offset = 0;
+            for (int row = 0; (row < rowCount); ++row) {
+                offsets.putInt(row * 4, offset);
+                data.put(bytes[row]);
+                offset += bytes[row].length;
+            }
+            offsets.putInt(rowCount * 4, offset);
+            data.clear();
+            return new ByteBuffer[]{validity, offsets, data};
+        } else {
+            throw new SQLException(new IonicException(SdkError.ISAGENT_NOTIMPLEMENTED, labels[column - 1]));
+        }
+    }
+
+    /**
+     * @param column the ordinal of the column (the first column is 1)
+     * @param type   the expected representation of the values of the column
+     * @return the values of the column
+     * @throws SQLException if the column is of another type
+     */
+    private Object getVector(final int column, final Type type) throws SQLException {
+        if (types[column - 1] != type) {
+            throw new SQLException(new IonicException(SdkError.ISAGENT_INVALIDVALUE,
+                    String.format("%s is %s, not %s", labels[column - 1], types[column - 1], type)));
+        }
+        return vectors[column - 1];
+    }
+
+    /**
+     * @param bitmap a bitmap
+     * @param index  the index of a bit
+     * @return true, iff the bit is set
+     */
+    private static boolean isSet(final long[] bitmap, final int index) {
+        return (bitmap[index >>> 6] & (1L << index)) != 0L;
+    }
+
+    /**
+     * @param length the minimum length of the buffer
+     * @return a zeroed, little-endian direct buffer, of the length rounded up to a multiple of 8
+     */
+    private static ByteBuffer allocate(final int length) {
+        return ByteBuffer.allocateDirect((length + 7) & ~7).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * @param sqlType a type from {@link java.sql.Types}
+     * @return the representation of values of the type
+     */
+    static Type toType(final int sqlType) {
+        switch (sqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+                return Type.INT;
+            case Types.BIGINT:
+                return Type.LONG;
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return Type.DOUBLE;
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+                return Type.STRING;
+            default:
+                return Type.OBJECT;
+        }
+    }
+
+    /**
+     * Accumulates the rows of a block of columns, read from a {@link ResultSet} with its typed getters.
+     */
+    static final class Builder {
+
+        /**
+         * The labels of the columns.
+         */
+        private final String[] labels;
+
+        /**
+         * The representations of the values of the columns.
+         */
+        private final Type[] types;
+
+        /**
+         * The values of the columns (grown as rows are added).
+         */
+        private final Object[] vectors;
+
+        /**
+         * The null bitmaps of the columns (grown as rows are added).
+         */
+        private final long[][] nulls;
+
+        /**
+         * The number of rows added.
+         */
+        private int rowCount;
+
+        /**
+         * The number of rows which the vectors can hold.
+         */
+        private int capacity;
+
+        /**
+         * Constructor.
+         *
+         * @param labels   the labels of the columns
+         * @param types    the representations of the values of the columns
+         * @param capacity the initial number of rows which the vectors can hold
+         */
+        Builder(final String[] labels, final Type[] types, final int capacity) {
+            this.labels = labels;
+            this.types = types;
+            this.vectors = new Object[types.length];
+            this.nulls = new long[types.length][];
+            this.rowCount = 0;
+            this.capacity = Math.max(1, capacity);
+            for (int i = 0; (i < types.length); ++i) {
+                vectors[i] = allocateVector(types[i], this.capacity);
+                nulls[i] = new long[(this.capacity + 63) >>> 6];
+            }
+        }
+
+        /**
+         * @return the number of rows added
+         */
+        int getRowCount() {
+            return rowCount;
+        }
+
+        /**
+         * Add the current row of a result set.
+         *
+         * @param resultSet the (underlying) result set, positioned on a row
+         * @throws SQLException on database errors
+         */
+        void addRow(final ResultSet resultSet) throws SQLException {
+            if (rowCount == capacity) {
+                grow();
+            }
+            final int row = rowCount++;
+            for (int i = 0; (i < types.length); ++i) {
+                final int column = i + 1;
+                boolean isNull;
+                switch (types[i]) {
+                    case INT:
+                        ((int[]) vectors[i])[row] = resultSet.getInt(column);
+                        isNull = resultSet.wasNull();
+                        break;
+                    case LONG:
+                        ((long[]) vectors[i])[row] = resultSet.getLong(column);
+                        isNull = resultSet.wasNull();
+                        break;
+                    case DOUBLE:
+                        ((double[]) vectors[i])[row] = resultSet.getDouble(column);
+                        isNull = resultSet.wasNull();
+                        break;
+                    case STRING:
+                        ((String[]) vectors[i])[row] = resultSet.getString(column);
+                        isNull = (((String[]) vectors[i])[row] == null);
+                        break;
+                    default:
+                        ((Object[]) vectors[i])[row] = resultSet.getObject(column);
+                        isNull = (((Object[]) vectors[i])[row] == null);
+                        break;
+                }
+                if (isNull) {
+                    nulls[i][row >>> 6] |= (1L << row);
+                }
+            }
+        }
+
+        /**
+         * @return the columns, with vectors trimmed to the number of rows added
+         */
+        IonicColumns build() {
+            for (int i = 0; (i < types.length); ++i) {
+                vectors[i] = resize(vectors[i], rowCount);
+                nulls[i] = Arrays.copyOf(nulls[i], (rowCount + 63) >>> 6);
+            }
+            return new IonicColumns(labels, types, vectors, nulls, rowCount);
+        }
+
+        /**
+         * Double the capacity of the vectors.
+         */
+        private void grow() {
+            capacity = (capacity > (Integer.MAX_VALUE / 2)) ? Integer.MAX_VALUE : (capacity * 2);
+            for (int i = 0; (i < types.length); ++i) {
+                vectors[i] = resize(vectors[i], capacity);
+                nulls[i] = Arrays.copyOf(nulls[i], (capacity + 63) >>> 6);
+            }
+        }
+
+        /**
+         * @param type     the representation of the values of a column
+         * @param capacity the number of rows which the vector can hold
+         * @return an empty vector
+         */
+        private static Object allocateVector(final Type type, final int capacity) {
+            switch (type) {
+                case INT:
+                    return new int[capacity];
+                case LONG:
+                    return new long[capacity];
+                case DOUBLE:
+                    return new double[capacity];
+                case STRING:
+                    return new String[capacity];
+                default:
+                    return new Object[capacity];
+            }
+        }
+
+        /**
+         * @param vector a vector
+         * @param length the length of the copy
+         * @return a copy of the vector, truncated or padded to the length
+         */
+        private static Object resize(final Object vector, final int length) {
+            if (vector instanceof int[]) {
+                return Arrays.copyOf((int[]) vector, length);
+            } else if (vector instanceof long[]) {
+                return Arrays.copyOf((long[]) vector, length);
+            } else if (vector instanceof double[]) {
+                return Arrays.copyOf((double[]) vector, length);
+            } else {
+                return Arrays.copyOf((Object[]) vector, length);
+            }
+        }
+    }
+}
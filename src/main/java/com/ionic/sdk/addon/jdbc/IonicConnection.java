@@ -1,6 +1,12 @@
 package com.ionic.sdk.addon.jdbc;
 
-import com.ionic.sdk.agent.Agent;
+import com.ionic.sdk.addon.jdbc.impl.IonicConnectionServices;
+import com.ionic.sdk.addon.jdbc.impl.IonicKeyIdQuery;
+import com.ionic.sdk.addon.jdbc.impl.IonicKeyPoolKeyServices;
+import com.ionic.sdk.addon.jdbc.impl.IonicPrefetchKeyServices;
+import com.ionic.sdk.addon.jdbc.impl.IonicState;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.key.KeyServices;
 
 import java.sql.Array;
 import java.sql.Blob;
@@ -20,6 +26,7 @@ import java.sql.Struct;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Implementation of JDBC interface {@link java.sql.Connection}.  Populated from IDE "Implement Methods" wizard.
@@ -37,33 +44,208 @@ public class IonicConnection implements java.sql.Connection {
     private final Connection wrapped;
 
     /**
-     * Ionic agent, used to protect data on database insert, and unprotect data on database fetch.
+     * Ionic key services, used to protect data on database insert, and unprotect data on database fetch.
      */
-    private final Agent agent;
+    private final KeyServices keyServices;
+
+    /**
+     * The optional services (read-repair, token vault, value cache) of this connection.
+     */
+    private final IonicConnectionServices services;
+
+    /**
+     * Guards the creation of {@link #pipelineKeyServices}.
+     */
+    private final ReentrantLock lock;
+
+    /**
+     * The pools of keys created ahead of use, shared by the pipelined statements of this connection (null until the
+     * first pipelined statement is prepared).
+     */
+    private IonicKeyPoolKeyServices pipelineKeyServices;
+
+    /**
+     * Constructor.
+     *
+     * @param info        database connection parameters, and Ionic wrapper configuration
+     * @param wrapped     {@link Connection} supplied by the underlying {@link Driver}
+     * @param keyServices Ionic key services, used to protect data on database insert, and to unprotect data on
+     *                    database fetch
+     */
+    public IonicConnection(final Properties info, final Connection wrapped, final KeyServices keyServices) {
+        this(info, wrapped, keyServices, IonicConnectionServices.NONE);
+    }
 
     /**
      * Constructor.
      *
-     * @param info    database connection parameters, and Ionic wrapper configuration
-     * @param wrapped {@link Connection} supplied by the underlying {@link Driver}
-     * @param agent   Ionic agent, used to protect data on database insert, and to unprotect data on database fetch
+     * @param info        database connection parameters, and Ionic wrapper configuration
+     * @param wrapped     {@link Connection} supplied by the underlying {@link Driver}
+     * @param keyServices Ionic key services, used to protect data on database insert, and to unprotect data on
+     *                    database fetch
+     * @param services    the optional services (read-repair, token vault, value cache) of the connection
      */
-    public IonicConnection(final Properties info, final Connection wrapped, final Agent agent) {
+    public IonicConnection(final Properties info, final Connection wrapped, final KeyServices keyServices,
+                           final IonicConnectionServices services) {
         this.info = info;
         this.wrapped = wrapped;
-        this.agent = agent;
+        this.keyServices = keyServices;
+        this.services = services;
+        this.lock = new ReentrantLock();
+    }
+
+    /**
+     * @return the {@link Connection} supplied by the underlying {@link Driver}
+     */
+    public Connection getWrapped() {
+        return wrapped;
+    }
+
+    /**
+     * @return Ionic key services, used to protect data on database insert, and to unprotect data on database fetch
+     */
+    public KeyServices getKeyServices() {
+        return keyServices;
     }
 
     @Override
     public Statement createStatement() throws SQLException {
-        return new IonicStatement(wrapped.createStatement(), agent);
+        return new IonicStatement(wrapped.createStatement(), keyServices, services);
     }
 
     @Override
     public PreparedStatement prepareStatement(String sql) throws SQLException {
         final PreparedStatement preparedStatement = wrapped.prepareStatement(sql);
+        return createPreparedStatement(preparedStatement, sql);
+    }
+
+    /**
+     * Wrap a statement supplied by the underlying connection, applying the Ionic settings of the connection.
+     * <ul>
+     * <li>"ionic.batch.rows": the number of batch rows sent in each multi-row insert statement (default 0,
+     * disabled)</li>
+     * <li>"ionic.pipeline.depth": the number of keys created ahead of use, while statements execute (default 0,
+     * disabled); the keys are shared by the statements of the connection</li>
+     * </ul>
+     *
+     * @param preparedStatement {@link PreparedStatement} supplied by the underlying {@link Connection}
+     * @param sql               SQL statement, used to look up Ionic treatment of {@link PreparedStatement} data
+     * @return the Ionic wrapper of the statement
+     * @throws SQLException on invalid settings, or Ionic misconfiguration
+     */
+    private PreparedStatement createPreparedStatement(
+            final PreparedStatement preparedStatement, final String sql) throws SQLException {
         final String ionicConfigJson = info.getProperty("ionic.config.jdbc.json");
-        return new IonicPreparedStatement(preparedStatement, sql, ionicConfigJson, agent);
+        final int batchRows;
+        final int pipelineDepth;
+        try {
+            batchRows = (int) IonicState.getLong(info, "ionic.batch.rows", 0L);
+            pipelineDepth = (int) IonicState.getLong(info, "ionic.pipeline.depth", 0L);
+        } catch (IonicException e) {
+            throw new SQLException(e);
+        }
+        return new IonicPreparedStatement(preparedStatement, sql, ionicConfigJson, keyServices, batchRows,
+                (pipelineDepth > 0) ? getPipelineKeyServices(pipelineDepth) : null, services);
+    }
+
+    /**
+     * @param pipelineDepth the number of keys created ahead of use, for each set of key attributes
+     * @return the pools of keys shared by the pipelined statements of this connection, created on first use
+     */
+    private IonicKeyPoolKeyServices getPipelineKeyServices(final int pipelineDepth) {
+        lock.lock();
+        try {
+            if (pipelineKeyServices == null) {
+                pipelineKeyServices = new IonicKeyPoolKeyServices(
+                        keyServices, pipelineDepth, IonicState.getPipelineExecutor());
+            }
+            return pipelineKeyServices;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Create a bulk loader for a database table.  The underlying driver must be the PostgreSQL driver.
+     *
+     * @param table   the name of the database table to be loaded
+     * @param columns the names of the table columns for which values are supplied in each input row
+     * @return the bulk loader
+     * @throws SQLException on invalid settings, or invalid Ionic configuration
+     */
+    public IonicCopyLoader createCopyLoader(final String table, final String... columns) throws SQLException {
+        return new IonicCopyLoader(info, wrapped, keyServices, services, table, columns);
+    }
+
+    /**
+     * Create a writer accepting single rows from many threads, and writing them to the database in batches.  The
+     * connection should not be used for other work until the writer is closed.
+     *
+     * @param sql the parameterized statement executed for each row
+     * @return the writer
+     * @throws SQLException on invalid settings, or invalid Ionic configuration
+     */
+    public IonicBulkWriter createBulkWriter(final String sql) throws SQLException {
+        return new IonicBulkWriter(info, wrapped, keyServices, sql);
+    }
+
+    /**
+     * Execute a large query of a database table, fetching the keys of its result before its rows are read (see
+     * {@link IonicKeyIdQuery}).  An auxiliary query first projects the distinct key ids of the protected columns of
+     * the result; the keys are fetched in a few large key server requests, and the rows are then unprotected with no
+     * further key server requests.  The statement of the query is closed with the returned result set.
+     * <p>
+     * Both queries fetch their rows in blocks of "ionic.prefetch.fetchsize" rows.  As some drivers (such as
+     * PostgreSQL) stream a result only within a transaction, a connection in autocommit mode leaves it while the
+     * result is open; autocommit is restored (committing the transaction) when the result set is closed.
+     *
+     * @param sql   an SQL SELECT statement, projecting by name the protected columns of the table
+     * @param table the name of the database table queried, whose protected columns are configured in the "Tables"
+     *              section of the Ionic JDBC config json (used to look up the configuration, not as SQL)
+     * @return the result of the query
+     * @throws SQLException on database errors, on invalid settings, or if no columns of the table are configured for
+     *                      Ionic protection
+     */
+    public IonicResultSet executePrefetchedQuery(final String sql, final String table) throws SQLException {
+        final IonicPrefetchKeyServices keyServicesPrefetch =
+                IonicKeyIdQuery.prefetch(info, wrapped, keyServices, sql, table);
+        final int fetchSize = IonicKeyIdQuery.getFetchSize(info);
+        final boolean autoCommit = wrapped.getAutoCommit();
+        if (autoCommit) {
+            wrapped.setAutoCommit(false);
+        }
+        Statement statement = null;
+        try {
+            statement = wrapped.createStatement();
+            statement.setFetchSize(fetchSize);
+            statement.closeOnCompletion();
+            return new IonicResultSet(statement.executeQuery(sql), keyServicesPrefetch, services) {
+                private boolean restored;
+
+                @Override
+                public void close() throws SQLException {
+                    try {
+                        super.close();
+                    } finally {
+                        if (autoCommit && !restored) {
+                            restored = true;
+                            wrapped.setAutoCommit(true);
+                        }
+                    }
+                }
+            };
+        } catch (SQLException e) {
+            try {
+                if (statement != null) {
+                    statement.close();
+                }
+            } finally {
+                if (autoCommit) {
+                    wrapped.setAutoCommit(true);
+                }
+            }
+            throw e;
+        }
     }
 
     @Override
@@ -153,15 +335,15 @@ public class IonicConnection implements java.sql.Connection {
 
     @Override
     public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException {
-        return new IonicStatement(wrapped.createStatement(resultSetType, resultSetConcurrency), agent);
+        return new IonicStatement(
+                wrapped.createStatement(resultSetType, resultSetConcurrency), keyServices, services);
     }
 
     @Override
     public PreparedStatement prepareStatement(String sql, int resultSetType,
                                               int resultSetConcurrency) throws SQLException {
         final PreparedStatement preparedStatement = wrapped.prepareStatement(sql, resultSetType, resultSetConcurrency);
-        final String ionicConfigJson = info.getProperty("ionic.config.jdbc.json");
-        return new IonicPreparedStatement(preparedStatement, sql, ionicConfigJson, agent);
+        return createPreparedStatement(preparedStatement, sql);
     }
 
     @Override
@@ -212,7 +394,7 @@ public class IonicConnection implements java.sql.Connection {
     @Override
     public Statement createStatement(int resultSetType,
                                      int resultSetConcurrency, int resultSetHoldability) throws SQLException {
-        return new IonicStatement(wrapped.createStatement(), agent);
+        return new IonicStatement(wrapped.createStatement(), keyServices, services);
     }
 
     @Override
@@ -220,8 +402,7 @@ public class IonicConnection implements java.sql.Connection {
                                               int resultSetConcurrency, int resultSetHoldability) throws SQLException {
         final PreparedStatement preparedStatement = wrapped.prepareStatement(
                 sql, resultSetType, resultSetConcurrency, resultSetHoldability);
-        final String ionicConfigJson = info.getProperty("ionic.config.jdbc.json");
-        return new IonicPreparedStatement(preparedStatement, sql, ionicConfigJson, agent);
+        return createPreparedStatement(preparedStatement, sql);
     }
 
     @Override
@@ -233,22 +414,19 @@ public class IonicConnection implements java.sql.Connection {
     @Override
     public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
         final PreparedStatement preparedStatement = wrapped.prepareStatement(sql, autoGeneratedKeys);
-        final String ionicConfigJson = info.getProperty("ionic.config.jdbc.json");
-        return new IonicPreparedStatement(preparedStatement, sql, ionicConfigJson, agent);
+        return createPreparedStatement(preparedStatement, sql);
     }
 
     @Override
     public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
         final PreparedStatement preparedStatement = wrapped.prepareStatement(sql, columnIndexes);
-        final String ionicConfigJson = info.getProperty("ionic.config.jdbc.json");
-        return new IonicPreparedStatement(preparedStatement, sql, ionicConfigJson, agent);
+        return createPreparedStatement(preparedStatement, sql);
     }
 
     @Override
     public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
         final PreparedStatement preparedStatement = wrapped.prepareStatement(sql, columnNames);
-        final String ionicConfigJson = info.getProperty("ionic.config.jdbc.json");
-        return new IonicPreparedStatement(preparedStatement, sql, ionicConfigJson, agent);
+        return createPreparedStatement(preparedStatement, sql);
     }
 
     @Override
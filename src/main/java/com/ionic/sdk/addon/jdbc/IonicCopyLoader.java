@@ -0,0 +1,236 @@
+package com.ionic.sdk.addon.jdbc;
+
+import com.ionic.sdk.addon.jdbc.impl.IonicCachingKeyServices;
+import com.ionic.sdk.addon.jdbc.impl.IonicColumnConfig;
+import com.ionic.sdk.addon.jdbc.impl.IonicConfigReader;
+import com.ionic.sdk.addon.jdbc.impl.IonicConnectionServices;
+import com.ionic.sdk.addon.jdbc.impl.IonicCopyEncoder;
+import com.ionic.sdk.addon.jdbc.impl.IonicKeyPoolKeyServices;
+import com.ionic.sdk.addon.jdbc.impl.IonicState;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.key.KeyServices;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Logger;
+
+/**
+ * Bulk load rows into a PostgreSQL table using "COPY ... FROM STDIN", Ionic-protecting the values of the columns
+ * configured in the "Tables" section of the Ionic JDBC config json.
+ * <p>
+ * Input rows are grouped into chunks, which are protected and rendered as COPY input by a pool of threads, using keys
+ * created in bulk.  The rendered chunks are streamed to the database in input order.  The number of chunks in flight
+ * is bounded, so memory use does not depend on the size of the input.
+ * <p>
+ * Settings are taken from the connection properties:
+ * <ul>
+ * <li>"ionic.copy.threads": the number of threads protecting data (default: the number of processors)</li>
+ * <li>"ionic.copy.rows": the number of rows in each chunk (default 1000)</li>
+ * <li>"ionic.copy.keys": the number of keys requested in each key server request (default 1000)</li>
+ * </ul>
+ */
+public class IonicCopyLoader {
+
+    /**
+     * The default number of rows in each chunk.
+     */
+    private static final long ROWS_DEFAULT = 1000L;
+
+    /**
+     * The default number of keys requested in each key server request.
+     */
+    private static final long KEYS_DEFAULT = 1000L;
+
+    /**
+     * The underlying (PostgreSQL) connection.
+     */
+    private final Connection wrapped;
+
+    /**
+     * The COPY statement used to load the data.
+     */
+    private final String sql;
+
+    /**
+     * Renders chunks of rows as COPY input.
+     */
+    private final IonicCopyEncoder encoder;
+
+    /**
+     * The number of threads protecting data.
+     */
+    private final int threads;
+
+    /**
+     * The number of rows in each chunk.
+     */
+    private final int rowsPerChunk;
+
+    /**
+     * Constructor.
+     *
+     * @param info        database connection parameters, and Ionic wrapper configuration
+     * @param wrapped     {@link Connection} supplied by the underlying (PostgreSQL) driver
+     * @param keyServices Ionic key services, used to protect data
+     * @param table       the name of the database table to be loaded
+     * @param columns     the names of the table columns for which values are supplied in each input row
+     * @throws SQLException on invalid settings, or invalid Ionic configuration
+     */
+    public IonicCopyLoader(final Properties info, final Connection wrapped, final KeyServices keyServices,
+                           final String table, final String... columns) throws SQLException {
+        this(info, wrapped, keyServices, IonicConnectionServices.NONE, table, columns);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param info        database connection parameters, and Ionic wrapper configuration
+     * @param wrapped     {@link Connection} supplied by the underlying (PostgreSQL) driver
+     * @param keyServices Ionic key services, used to protect data
+     * @param services    the optional services of the connection; its token vault holds the values of tokenized and
+     *                    deduplicated columns (if none, they are stored as Ionic-protected values)
+     * @param table       the name of the database table to be loaded
+     * @param columns     the names of the table columns for which values are supplied in each input row
+     * @throws SQLException on invalid settings, or invalid Ionic configuration
+     */
+    public IonicCopyLoader(final Properties info, final Connection wrapped, final KeyServices keyServices,
+                           final IonicConnectionServices services, final String table,
+                           final String... columns) throws SQLException {
+        this.wrapped = wrapped;
+        final Map<String, IonicColumnConfig> tableConfigs = IonicConfigReader.createTableConfigs(
+                info.getProperty("ionic.config.jdbc.json"), table);
+        final IonicColumnConfig[] columnConfigs = new IonicColumnConfig[columns.length];
+        final StringBuilder columnList = new StringBuilder();
+        for (int i = 0; (i < columns.length); ++i) {
+            columnConfigs[i] = tableConfigs.get(columns[i].toLowerCase(Locale.ROOT));
+            columnList.append((i == 0) ? "" : ", ").append(columns[i]);
+        }
+        this.sql = String.format("COPY %s (%s) FROM STDIN WITH (FORMAT csv)", table, columnList);
+        try {
+            this.threads = (int) IonicState.getLong(
+                    info, "ionic.copy.threads", Runtime.getRuntime().availableProcessors());
+            this.rowsPerChunk = (int) IonicState.getLong(info, "ionic.copy.rows", ROWS_DEFAULT);
+            final int keysPerRequest = (int) IonicState.getLong(info, "ionic.copy.keys", KEYS_DEFAULT);
+            // keys created by a bulk load are not cached, as they would displace the working set of the cache
+            final KeyServices keyServicesLoad = (keyServices instanceof IonicCachingKeyServices)
+                    ? ((IonicCachingKeyServices) keyServices).getWrapped() : keyServices;
+            this.encoder = new IonicCopyEncoder(new IonicKeyPoolKeyServices(keyServicesLoad, keysPerRequest),
+                    columnConfigs, services.getTokenVault());
+        } catch (IonicException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    /**
+     * @return the COPY statement used to load the data
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * Load rows into the database table.  The load is performed in a single COPY operation; on failure, no rows are
+     * loaded.
+     *
+     * @param rows the rows to be loaded; each row has one value for each column specified on construction
+     * @return the number of rows loaded
+     * @throws SQLException on database errors, or Ionic cryptography errors
+     */
+    public long load(final Iterator<Object[]> rows) throws SQLException {
+        final CopyIn copyIn = wrapped.unwrap(PGConnection.class).getCopyAPI().copyIn(sql);
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "ionic-jdbc-copy");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        final Deque<Future<byte[]>> chunks = new ArrayDeque<Future<byte[]>>();
+        final int chunksMax = 2 * Math.max(1, threads);
+        boolean isComplete = false;
+        try {
+            List<Object[]> chunk = new ArrayList<Object[]>();
+            while (rows.hasNext()) {
+                chunk.add(rows.next());
+                if ((chunk.size() >= rowsPerChunk) || (!rows.hasNext())) {
+                    chunks.add(executor.submit(new EncodeTask(chunk)));
+                    chunk = new ArrayList<Object[]>();
+                }
+                while (chunks.size() >= chunksMax) {
+                    write(copyIn, chunks.remove());
+                }
+            }
+            while (!chunks.isEmpty()) {
+                write(copyIn, chunks.remove());
+            }
+            final long count = copyIn.endCopy();
+            isComplete = true;
+            return count;
+        } finally {
+            executor.shutdownNow();
+            if ((!isComplete) && (copyIn.isActive())) {
+                try {
+                    copyIn.cancelCopy();
+                } catch (SQLException e) {
+                    Logger.getLogger(getClass().getName()).warning(e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Wait for a chunk of COPY input to be rendered, then send it to the database.
+     *
+     * @param copyIn the COPY operation
+     * @param chunk  the pending rendered chunk
+     * @throws SQLException on database errors, or on failure to render the chunk
+     */
+    private static void write(final CopyIn copyIn, final Future<byte[]> chunk) throws SQLException {
+        try {
+            final byte[] bytes = chunk.get();
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+        } catch (ExecutionException e) {
+            throw new SQLException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(e);
+        }
+    }
+
+    /**
+     * Protect and render a chunk of rows.
+     */
+    private final class EncodeTask implements Callable<byte[]> {
+
+        /**
+         * The rows to be rendered.
+         */
+        private final List<Object[]> rows;
+
+        private EncodeTask(final List<Object[]> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public byte[] call() throws IonicException {
+            return encoder.encode(rows);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.ionic.sdk.addon.jdbc;
+
+import com.ionic.sdk.addon.jdbc.impl.IonicDictionaries;
+import com.ionic.sdk.error.IonicException;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Train a compression dictionary for the short values of an Ionic-protected column (such as names and addresses),
+ * which generic compression cannot shrink on their own.  The column is sampled through an {@link IonicResultSet}, so
+ * that the dictionary is built from the unprotected values; the substrings which recur most across the samples are
+ * kept, up to the requested dictionary size.
+ * <p>
+ * The dictionary is a preset dictionary for deflate.  It is declared (base64 encoded, see
+ * {@link #toConfigValue(byte[])}) in the "Dictionaries" section of the Ionic JDBC config json under a new id, and
+ * named by id in the "dictionary" setting of the column; see {@link IonicDictionaries}.
+ * <p>
+ * The dictionary is made of the most common substrings of the unprotected values of the column, and is not itself
+ * protected: it discloses those substrings to anyone who can read the config json.  Dictionaries are therefore only
+ * accepted from a config json which opts in with "AllowPlaintextDictionaries": true; train dictionaries only for
+ * columns whose common substrings (such as street types and city names) are not themselves sensitive.
+ */
+public final class IonicDictionaryTrainer {
+
+    /**
+     * Class scoped logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(IonicDictionaryTrainer.class.getName());
+
+    /**
+     * The default maximum size of a trained dictionary (bytes).
+     */
+    public static final int DICTIONARY_SIZE_DEFAULT = 4096;
+
+    /**
+     * The lengths of the substrings considered for inclusion in a dictionary.
+     */
+    private static final int[] SUBSTRING_LENGTHS = {4, 6, 8, 12, 16, 24};
+
+    /**
+     * The minimum length of a deflate match; shorter substrings are not worth a dictionary reference.
+     */
+    private static final int MATCH_MIN = 3;
+
+    /**
+     * Constructor.
+     */
+    private IonicDictionaryTrainer() {
+    }
+
+    /**
+     * Train a dictionary from the values of a column of a query.
+     *
+     * @param resultSet  the result of a query of the column (an {@link IonicResultSet}, for a protected column)
+     * @param column     the index of the column in the result
+     * @param maxSamples the maximum number of rows to sample
+     * @param maxSize    the maximum size of the dictionary (bytes)
+     * @return the content of the dictionary
+     * @throws SQLException on failure to read the result
+     */
+    public static byte[] train(final ResultSet resultSet, final int column,
+                               final int maxSamples, final int maxSize) throws SQLException {
+        final List<String> samples = new ArrayList<String>();
+        while ((samples.size() < maxSamples) && resultSet.next()) {
+            final String value = resultSet.getString(column);
+            if (value != null) {
+                samples.add(value);
+            }
+        }
+        return train(samples, maxSize);
+    }
+
+    /**
+     * Train a dictionary from sample values.
+     *
+     * @param samples the sample values
+     * @param maxSize the maximum size of the dictionary (bytes)
+     * @return the content of the dictionary
+     */
+    public static byte[] train(final Iterable<String> samples, final int maxSize) {
+        // count the samples in which each substring occurs
+        final Map<String, int[]> counts = new HashMap<String, int[]>();
+        int sampleCount = 0;
+        for (final String sample : samples) {
+            ++sampleCount;
+            final Map<String, Boolean> seen = new HashMap<String, Boolean>();
+            for (final int length : SUBSTRING_LENGTHS) {
+                for (int i = 0; (i + length <= sample.length()); ++i) {
+                    final String substring = sample.substring(i, i + length);
+                    if (seen.put(substring, Boolean.TRUE) == null) {
+                        final int[] count = counts.get(substring);
+                        if (count == null) {
+                            counts.put(substring, new int[]{1});
+                        } else {
+                            ++count[0];
+                        }
+                    }
+                }
+            }
+        }
+        // a substring is worth the bytes it saves in every sample but the first
+        final List<Map.Entry<String, Integer>> candidates = new ArrayList<Map.Entry<String, Integer>>();
+        for (final Map.Entry<String, int[]> entry : counts.entrySet()) {
+            final int count = entry.getValue()[0];
+            if (count > 1) {
+                final int score = (count - 1) * (entry.getKey().length() - MATCH_MIN);
+                candidates.add(new AbstractMap.SimpleEntry<String, Integer>(entry.getKey(), score));
+            }
+        }
+        Collections.sort(candidates, new Comparator<Map.Entry<String, Integer>>() {
+            @Override
+            public int compare(final Map.Entry<String, Integer> e1, final Map.Entry<String, Integer> e2) {
+                final int compare = e2.getValue().compareTo(e1.getValue());
+                return (compare == 0) ? e1.getKey().compareTo(e2.getKey()) : compare;
+            }
+        });
+        // choose the best substrings, skipping those already covered by a chosen substring
+        final List<String> chosen = new ArrayList<String>();
+        final StringBuilder covered = new StringBuilder();
+        int size = 0;
+        for (final Map.Entry<String, Integer> candidate : candidates) {
+            final String substring = candidate.getKey();
+            final int length = substring.getBytes(StandardCharsets.UTF_8).length;
+            if (size + length > maxSize) {
+                continue;
+            }
+            if (covered.indexOf(substring) < 0) {
+                chosen.add(substring);
+                covered.append(substring).append('\0');
+                size += length;
+            }
+        }
+        // deflate references nearby content more cheaply, so the best substrings go at the end of the dictionary
+        final StringBuilder dictionary = new StringBuilder();
+        for (int i = chosen.size() - 1; (i >= 0); --i) {
+            dictionary.append(chosen.get(i));
+        }
+        LOGGER.fine(String.format("SAMPLES=%d, CANDIDATES=%d, CHOSEN=%d, SIZE=%d",
+                sampleCount, candidates.size(), chosen.size(), size));
+        return dictionary.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param dictionary the content of a dictionary
+     * @return the value declaring the dictionary in the "Dictionaries" section of the Ionic JDBC config json (which
+     * must also set "AllowPlaintextDictionaries": true)
+     */
+    public static String toConfigValue(final byte[] dictionary) {
+        return Base64.getEncoder().encodeToString(dictionary);
+    }
+
+    /**
+     * Register a trained dictionary for use in this process (for example, while evaluating it before declaring it in
+     * the Ionic JDBC config json).
+     *
+     * @param id         the id of the dictionary (positive, not already in use)
+     * @param dictionary the content of the dictionary
+     * @throws SQLException if the id is not positive, or if a different dictionary is registered with the id
+     */
+    public static void register(final int id, final byte[] dictionary) throws SQLException {
+        try {
+            IonicDictionaries.register(id, dictionary);
+        } catch (IonicException e) {
+            throw new SQLException(e);
+        }
+    }
+}
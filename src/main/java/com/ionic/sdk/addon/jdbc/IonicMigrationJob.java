@@ -0,0 +1,107 @@
+package com.ionic.sdk.addon.jdbc;
+
+import com.ionic.sdk.addon.jdbc.impl.IonicColumnConfig;
+import com.ionic.sdk.addon.jdbc.impl.IonicPartitionedJob;
+import com.ionic.sdk.addon.jdbc.impl.IonicTokenVault;
+import com.ionic.sdk.addon.jdbc.impl.IonicValueCodec;
+import com.ionic.sdk.agent.cipher.chunk.ChunkCipherV2;
+import com.ionic.sdk.agent.cipher.chunk.data.ChunkCrypto;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.key.KeyServices;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Protect the existing plaintext values of a database table, in place.  The columns to be protected (and the key
+ * attributes to associate with their values) are taken from the "Tables" section of the Ionic JDBC config json.
+ * Values which are already Ionic-protected are left unchanged, so the job may safely be run again.
+ * <p>
+ * The values of a column with "token" or "dedup" storage are stored as tokens (or references), with their protected
+ * values held in the token vault of the database (see {@link IonicTokenVault}).  The tokens already stored in such a
+ * column are resolved through the vault, and left unchanged; a value which merely looks like a token is protected.
+ * The vault entries of a page are written on the dedicated connection of the vault, so the entries of a page whose
+ * rows are then rolled back are left unreferenced in the vault.
+ * <p>
+ * The table is processed in parallel partitions, with progress recorded so that an interrupted job may be resumed;
+ * see {@link IonicPartitionedJob} for the settings of the job.
+ */
+public class IonicMigrationJob extends IonicPartitionedJob {
+
+    /**
+     * The vault of the columns with "token" or "dedup" storage (null if the table has no such columns).
+     */
+    private final IonicTokenVault tokenVault;
+
+    /**
+     * Constructor.
+     *
+     * @param url   the JDBC url of the database
+     * @param info  database connection parameters, and Ionic wrapper configuration
+     * @param table the name of the database table
+     * @throws SQLException on invalid settings, or if no columns of the table are configured for Ionic protection
+     */
+    public IonicMigrationJob(final String url, final Properties info, final String table) throws SQLException {
+        super(url, info, table, "migrate:" + table);
+        boolean isVault = false;
+        for (int i = 0; (i < getColumns().length); ++i) {
+            isVault |= isVaultColumn(i);
+        }
+        try {
+            this.tokenVault = isVault ? IonicTokenVault.getInstance(url, info) : null;
+        } catch (IonicException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    @Override
+    protected void processPage(final List<Row> rows, final KeyServices keyServices) throws IonicException {
+        final Set<String> tokens = new HashSet<String>();
+        for (final Row row : rows) {
+            for (int i = 0; (i < row.getCount()); ++i) {
+                if (isVaultColumn(i) && IonicTokenVault.isToken(row.getValue(i))) {
+                    tokens.add(row.getValue(i));
+                }
+            }
+        }
+        final Map<String, String> cipherTexts = (tokenVault == null) ? null : tokenVault.lookupDetached(tokens);
+        final ChunkCipherV2 chunkCipher = new ChunkCipherV2(keyServices);
+        final List<String[]> entries = new ArrayList<String[]>();
+        for (final Row row : rows) {
+            for (int i = 0; (i < row.getCount()); ++i) {
+                final String value = row.getValue(i);
+                if ((value == null) || ChunkCrypto.getChunkInfo(value).isEncrypted()
+                        || (isVaultColumn(i) && cipherTexts.containsKey(value))) {
+                    continue;
+                }
+                final IonicColumnConfig columnConfig = getColumnConfig(i);
+                if (columnConfig.getStorage() == IonicColumnConfig.Storage.DEDUP) {
+                    row.setValue(i, tokenVault.getReference(value, columnConfig, keyServices));
+                } else if (columnConfig.getStorage() == IonicColumnConfig.Storage.TOKEN) {
+                    final String token = IonicTokenVault.createToken();
+                    entries.add(new String[]{token, IonicValueCodec.protect(chunkCipher, value, columnConfig)});
+                    row.setValue(i, token);
+                } else {
+                    row.setValue(i, IonicValueCodec.protect(chunkCipher, value, columnConfig));
+                }
+            }
+        }
+        if (!entries.isEmpty()) {
+            tokenVault.insertDetached(entries);
+        }
+    }
+
+    /**
+     * @param index the ordinal (zero-based) of a protected column
+     * @return true, iff the values of the column are held in the token vault
+     */
+    private boolean isVaultColumn(final int index) {
+        return (getColumnConfig(index).getStorage() == IonicColumnConfig.Storage.TOKEN)
+                || (getColumnConfig(index).getStorage() == IonicColumnConfig.Storage.DEDUP);
+    }
+}
@@ -1,9 +1,18 @@
 package com.ionic.sdk.addon.jdbc;
 
+import com.ionic.sdk.addon.jdbc.impl.IonicAsync;
+import com.ionic.sdk.addon.jdbc.impl.IonicBatch;
 import com.ionic.sdk.addon.jdbc.impl.IonicColumnConfig;
 import com.ionic.sdk.addon.jdbc.impl.IonicConfigReader;
+import com.ionic.sdk.addon.jdbc.impl.IonicConnectionServices;
+import com.ionic.sdk.addon.jdbc.impl.IonicInsertRewriter;
+import com.ionic.sdk.addon.jdbc.impl.IonicKeyPoolKeyServices;
 import com.ionic.sdk.addon.jdbc.impl.IonicParameters;
-import com.ionic.sdk.agent.Agent;
+import com.ionic.sdk.addon.jdbc.impl.IonicState;
+import com.ionic.sdk.addon.jdbc.impl.IonicValueCodec;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+import com.ionic.sdk.key.KeyServices;
 
 import java.io.InputStream;
 import java.io.Reader;
@@ -26,8 +35,12 @@ import java.sql.SQLWarning;
 import java.sql.SQLXML;
 import java.sql.Time;
 import java.sql.Timestamp;
+import java.sql.Types;
 import java.util.Calendar;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Ionic wrapper for {@link PreparedStatement} object of underlying driver.  On database writes, this class is
@@ -45,125 +58,341 @@ public class IonicPreparedStatement implements java.sql.PreparedStatement {
      */
     private final IonicParameters parameters;
 
+    /**
+     * The rows added to the batch of this statement, held for multi-row insert (null if the SQL cannot be rewritten).
+     */
+    private final IonicBatch batch;
+
+    /**
+     * The optional services (read-repair, token vault, value cache) of the connection of this statement.
+     */
+    private final IonicConnectionServices services;
+
     /**
      * Constructor.
      *
-     * @param wrapped    {@link PreparedStatement} supplied by the underlying {@link Connection}
-     * @param sql        SQL statement, used to look up Ionic treatment of {@link PreparedStatement} data
-     * @param configJson Ionic JDBC configuration
-     * @param agent      Ionic agent, used to protect data on database insert, and to unprotect data on database fetch
+     * @param wrapped     {@link PreparedStatement} supplied by the underlying {@link Connection}
+     * @param sql         SQL statement, used to look up Ionic treatment of {@link PreparedStatement} data
+     * @param configJson  Ionic JDBC configuration
+     * @param keyServices Ionic key services, used to protect data on database insert, and to unprotect data on
+     *                    database fetch
      * @throws SQLException on Ionic misconfiguration
      */
     public IonicPreparedStatement(PreparedStatement wrapped, String sql,
-                                  String configJson, Agent agent) throws SQLException {
+                                  String configJson, KeyServices keyServices) throws SQLException {
+        this(wrapped, sql, configJson, keyServices, 0);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param wrapped     {@link PreparedStatement} supplied by the underlying {@link Connection}
+     * @param sql         SQL statement, used to look up Ionic treatment of {@link PreparedStatement} data
+     * @param configJson  Ionic JDBC configuration
+     * @param keyServices Ionic key services, used to protect data on database insert, and to unprotect data on
+     *                    database fetch
+     * @param batchRows   the number of batch rows to be sent in each multi-row insert statement (values less than 2
+     *                    disable rewriting of batches)
+     * @throws SQLException on Ionic misconfiguration
+     */
+    public IonicPreparedStatement(PreparedStatement wrapped, String sql, String configJson,
+                                  KeyServices keyServices, int batchRows) throws SQLException {
+        this(wrapped, sql, configJson, keyServices, batchRows, 0, IonicConnectionServices.NONE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param wrapped       {@link PreparedStatement} supplied by the underlying {@link Connection}
+     * @param sql           SQL statement, used to look up Ionic treatment of {@link PreparedStatement} data
+     * @param configJson    Ionic JDBC configuration
+     * @param keyServices   Ionic key services, used to protect data on database insert, and to unprotect data on
+     *                      database fetch
+     * @param batchRows     the number of batch rows to be sent in each multi-row insert statement (values less than
+     *                      2 disable rewriting of batches)
+     * @param pipelineDepth the number of keys prepared ahead of use, for each set of key attributes (zero disables
+     *                      pipelining; values are then protected on statement execution)
+     * @param services      the optional services (read-repair, token vault, value cache) of the connection
+     * @throws SQLException on Ionic misconfiguration
+     */
+    public IonicPreparedStatement(PreparedStatement wrapped, String sql, String configJson, KeyServices keyServices,
+                                  int batchRows, int pipelineDepth,
+                                  IonicConnectionServices services) throws SQLException {
+        this(wrapped, sql, configJson, keyServices, batchRows, (pipelineDepth > 0)
+                ? new IonicKeyPoolKeyServices(keyServices, pipelineDepth, IonicState.getPipelineExecutor())
+                : null, services);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param wrapped             {@link PreparedStatement} supplied by the underlying {@link Connection}
+     * @param sql                 SQL statement, used to look up Ionic treatment of {@link PreparedStatement} data
+     * @param configJson          Ionic JDBC configuration
+     * @param keyServices         Ionic key services, used to protect data on database insert, and to unprotect data
+     *                            on database fetch
+     * @param batchRows           the number of batch rows to be sent in each multi-row insert statement (values less
+     *                            than 2 disable rewriting of batches)
+     * @param pipelineKeyServices the pools of keys prepared ahead of use (wrapping keyServices), which may be shared
+     *                            with other statements of the connection (null disables pipelining; values are then
+     *                            protected on statement execution)
+     * @param services            the optional services (read-repair, token vault, value cache) of the connection
+     * @throws SQLException on Ionic misconfiguration
+     */
+    public IonicPreparedStatement(PreparedStatement wrapped, String sql, String configJson, KeyServices keyServices,
+                                  int batchRows, IonicKeyPoolKeyServices pipelineKeyServices,
+                                  IonicConnectionServices services) throws SQLException {
         this.wrapped = wrapped;
+        this.services = services;
         final int parameterCount = wrapped.getParameterMetaData().getParameterCount();
         final Map<Integer, IonicColumnConfig> ionicColumnConfigs = IonicConfigReader.createConfigs(configJson, sql);
-        parameters = new IonicParameters(parameterCount, ionicColumnConfigs, agent);
+        if ((pipelineKeyServices != null) && (!ionicColumnConfigs.isEmpty())) {
+            // keys for the next rows are created while the current row executes; values are protected as supplied
+            parameters = new IonicParameters(parameterCount, ionicColumnConfigs, pipelineKeyServices,
+                    IonicState.getPipelineExecutor(), services);
+        } else {
+            parameters = new IonicParameters(parameterCount, ionicColumnConfigs, keyServices, null, services);
+        }
+        final IonicInsertRewriter rewriter = (batchRows < 2) ? null : IonicInsertRewriter.create(sql, parameterCount);
+        batch = (rewriter == null) ? null : new IonicBatch(rewriter, batchRows);
     }
 
     @Override
     public ResultSet executeQuery() throws SQLException {
-        return wrapped.executeQuery();
-    }
-
-    @Override
-    public int executeUpdate() throws SQLException {
-        // parameters are cached as they are supplied to {@link PreparedStatement}; encrypt before db transaction
-        parameters.encrypt();
+        // a query protects no parameter values (no keys are created, nor vault rows written); values held for
+        // unprotected parameters are bound as supplied
         for (int dbIndex = 1; (dbIndex <= parameters.getCount()); ++dbIndex) {
             final Object parameter = parameters.getParameter(dbIndex);
-            if (parameter != null) {
+            if (parameter == null) {
+                continue;
+            } else if (parameters.isProtected(dbIndex)) {
+                throw new SQLException(new IonicException(SdkError.ISAGENT_INVALIDVALUE,
+                        "parameter " + dbIndex + ": protected values are not bound to queries"));
+            } else {
                 wrapped.setObject(dbIndex, parameter);
             }
         }
+        return new IonicResultSet(wrapped.executeQuery(), parameters.getKeyServices(), services);
+    }
+
+    @Override
+    public int executeUpdate() throws SQLException {
+        // parameters are cached as they are supplied to {@link PreparedStatement}; encrypt before db transaction
+        bindIonicParameters(parameters.toEncrypted());
+        parameters.flushTokens(wrapped.getConnection());
         // pass-through
         return wrapped.executeUpdate();
     }
 
+    /**
+     * Execute the query of this statement on a thread of the driver's default executor (see {@link IonicAsync}).  The
+     * statement (and its parameters) should not be used again until the returned future completes.
+     *
+     * @return a future, completed with the result of the query, or completed exceptionally with a
+     * {@link SQLException}
+     */
+    public CompletableFuture<ResultSet> executeQueryAsync() {
+        return executeQueryAsync(IonicAsync.getDefaultExecutor());
+    }
+
+    /**
+     * Execute the query of this statement asynchronously, as {@link #executeQuery()} does.  The statement (and its
+     * parameters) should not be used again until the returned future completes.
+     *
+     * @param executor the executor of the query
+     * @return a future, completed with the result of the query, or completed exceptionally with a
+     * {@link SQLException}
+     */
+    public CompletableFuture<ResultSet> executeQueryAsync(final Executor executor) {
+        return IonicAsync.supply(new Callable<ResultSet>() {
+            @Override
+            public ResultSet call() throws SQLException {
+                return executeQuery();
+            }
+        }, executor);
+    }
+
+    /**
+     * Publish the result of the query of this statement to a reactive subscriber, using the driver's default
+     * executor (see {@link IonicAsync}).  The query is executed on the first request of the subscriber.
+     *
+     * @return a publisher of the rows of the query result, which accepts a single subscriber
+     */
+    public IonicRowPublisher publishQuery() {
+        return publishQuery(IonicAsync.getDefaultExecutor());
+    }
+
+    /**
+     * Publish the result of the query of this statement to a reactive subscriber.  The query is executed on the first
+     * request of the subscriber.  The statement (and its parameters) should not be used again until the subscription
+     * ends.
+     *
+     * @param executor reads and delivers rows
+     * @return a publisher of the rows of the query result, which accepts a single subscriber
+     */
+    public IonicRowPublisher publishQuery(final Executor executor) {
+        return new IonicRowPublisher(new Callable<IonicResultSet>() {
+            @Override
+            public IonicResultSet call() throws SQLException {
+                return (IonicResultSet) executeQuery();
+            }
+        }, executor);
+    }
+
+    /**
+     * Execute the update of this statement on a thread of the driver's default executor (see {@link IonicAsync}).
+     * The statement (and its parameters) should not be used again until the returned future completes.
+     *
+     * @return a future, completed with the row count of the update, or completed exceptionally with a
+     * {@link SQLException}
+     */
+    public CompletableFuture<Integer> executeUpdateAsync() {
+        return executeUpdateAsync(IonicAsync.getDefaultExecutor());
+    }
+
+    /**
+     * Execute the update of this statement asynchronously.  The statement (and its parameters) should not be used
+     * again until the returned future completes.
+     *
+     * @param executor the executor of the update
+     * @return a future, completed with the row count of the update, or completed exceptionally with a
+     * {@link SQLException}
+     */
+    public CompletableFuture<Integer> executeUpdateAsync(final Executor executor) {
+        return IonicAsync.supply(new Callable<Integer>() {
+            @Override
+            public Integer call() throws SQLException {
+                return executeUpdate();
+            }
+        }, executor);
+    }
+
     @Override
     public void setNull(int parameterIndex, int sqlType) throws SQLException {
+        setWrappedParameter(parameterIndex, null);
         wrapped.setNull(parameterIndex, sqlType);
+        capture(parameterIndex, null, sqlType, null);
     }
 
     @Override
     public void setBoolean(int parameterIndex, boolean x) throws SQLException {
+        setWrappedParameter(parameterIndex, x);
         wrapped.setBoolean(parameterIndex, x);
+        capture(parameterIndex, x);
     }
 
     @Override
     public void setByte(int parameterIndex, byte x) throws SQLException {
-        wrapped.setByte(parameterIndex, x);
+        if (!setIonicParameter(parameterIndex, x)) {
+            wrapped.setByte(parameterIndex, x);
+            capture(parameterIndex, x);
+        }
     }
 
     @Override
     public void setShort(int parameterIndex, short x) throws SQLException {
-        wrapped.setShort(parameterIndex, x);
+        if (!setIonicParameter(parameterIndex, x)) {
+            wrapped.setShort(parameterIndex, x);
+            capture(parameterIndex, x);
+        }
     }
 
     @Override
     public void setInt(int parameterIndex, int x) throws SQLException {
-        wrapped.setInt(parameterIndex, x);
+        if (!setIonicParameter(parameterIndex, x)) {
+            wrapped.setInt(parameterIndex, x);
+            capture(parameterIndex, x);
+        }
     }
 
     @Override
     public void setLong(int parameterIndex, long x) throws SQLException {
-        wrapped.setLong(parameterIndex, x);
+        if (!setIonicParameter(parameterIndex, x)) {
+            wrapped.setLong(parameterIndex, x);
+            capture(parameterIndex, x);
+        }
     }
 
     @Override
     public void setFloat(int parameterIndex, float x) throws SQLException {
-        wrapped.setFloat(parameterIndex, x);
+        if (!setIonicParameter(parameterIndex, x)) {
+            wrapped.setFloat(parameterIndex, x);
+            capture(parameterIndex, x);
+        }
     }
 
     @Override
     public void setDouble(int parameterIndex, double x) throws SQLException {
-        wrapped.setDouble(parameterIndex, x);
+        if (!setIonicParameter(parameterIndex, x)) {
+            wrapped.setDouble(parameterIndex, x);
+            capture(parameterIndex, x);
+        }
     }
 
     @Override
     public void setBigDecimal(int parameterIndex, BigDecimal x) throws SQLException {
-        wrapped.setBigDecimal(parameterIndex, x);
+        if (!setIonicParameter(parameterIndex, x)) {
+            wrapped.setBigDecimal(parameterIndex, x);
+            capture(parameterIndex, x, Types.DECIMAL);
+        }
     }
 
     @Override
     public void setString(int parameterIndex, String x) throws SQLException {
-        wrapped.setString(parameterIndex, x);
+        if (!setIonicParameter(parameterIndex, x)) {
+            wrapped.setString(parameterIndex, x);
+            capture(parameterIndex, x, Types.VARCHAR);
+        }
     }
 
     @Override
     public void setBytes(int parameterIndex, byte[] x) throws SQLException {
-        wrapped.setBytes(parameterIndex, x);
+        if (!setIonicParameter(parameterIndex, x)) {
+            wrapped.setBytes(parameterIndex, x);
+            capture(parameterIndex, x, Types.VARBINARY);
+        }
     }
 
     @Override
     public void setDate(int parameterIndex, Date x) throws SQLException {
-        wrapped.setDate(parameterIndex, x);
+        if (!setIonicParameter(parameterIndex, x)) {
+            wrapped.setDate(parameterIndex, x);
+            capture(parameterIndex, x, Types.DATE);
+        }
     }
 
     @Override
     public void setTime(int parameterIndex, Time x) throws SQLException {
-        wrapped.setTime(parameterIndex, x);
+        if (!setIonicParameter(parameterIndex, x)) {
+            wrapped.setTime(parameterIndex, x);
+            capture(parameterIndex, x, Types.TIME);
+        }
     }
 
     @Override
     public void setTimestamp(int parameterIndex, Timestamp x) throws SQLException {
-        wrapped.setTimestamp(parameterIndex, x);
+        if (!setIonicParameter(parameterIndex, x)) {
+            wrapped.setTimestamp(parameterIndex, x);
+            capture(parameterIndex, x, Types.TIMESTAMP);
+        }
     }
 
     @Override
     public void setAsciiStream(int parameterIndex, InputStream x, int length) throws SQLException {
+        disableBatchCapture(parameterIndex, x);
         wrapped.setAsciiStream(parameterIndex, x, length);
     }
 
     @SuppressWarnings("deprecation")
     @Override
     public void setUnicodeStream(int parameterIndex, InputStream x, int length) throws SQLException {
+        disableBatchCapture(parameterIndex, x);
         wrapped.setUnicodeStream(parameterIndex, x, length);
     }
 
     @Override
     public void setBinaryStream(int parameterIndex, InputStream x, int length) throws SQLException {
+        disableBatchCapture(parameterIndex, x);
         wrapped.setBinaryStream(parameterIndex, x, length);
     }
 
@@ -171,69 +400,86 @@ public class IonicPreparedStatement implements java.sql.PreparedStatement {
     public void clearParameters() throws SQLException {
         wrapped.clearParameters();
         parameters.clearParameters();
+        if (batch != null) {
+            batch.clearParameters();
+        }
     }
 
     @Override
     public void setObject(int parameterIndex, Object x, int targetSqlType) throws SQLException {
-        if (isIonicSupportedTypeValue(x)) {
+        if (isIonicSupportedTypeValue(parameterIndex, x)) {
             // Ionic parameters are cached as they are supplied to {@link PreparedStatement}
             parameters.setParameter(parameterIndex, x);
+            captureHeld(parameterIndex);
         } else {
+            setWrappedParameter(parameterIndex, x);
             wrapped.setObject(parameterIndex, x, targetSqlType);
+            capture(parameterIndex, x, targetSqlType, null);
         }
     }
 
     @Override
     public void setObject(int parameterIndex, Object x) throws SQLException {
-        if (isIonicSupportedTypeValue(x)) {
+        if (isIonicSupportedTypeValue(parameterIndex, x)) {
             // Ionic parameters are cached as they are supplied to {@link PreparedStatement}
             parameters.setParameter(parameterIndex, x);
+            captureHeld(parameterIndex);
         } else {
+            setWrappedParameter(parameterIndex, x);
             wrapped.setObject(parameterIndex, x);
+            capture(parameterIndex, x);
         }
     }
 
     @Override
     public boolean execute() throws SQLException {
         // Ionic parameters are cached as they are supplied to {@link PreparedStatement}; encrypt before db transaction
-        parameters.encrypt();
-        for (int dbIndex = 1; (dbIndex <= parameters.getCount()); ++dbIndex) {
-            final Object parameter = parameters.getParameter(dbIndex);
-            if (parameter != null) {
-                wrapped.setObject(dbIndex, parameter);
-            }
-        }
+        bindIonicParameters(parameters.toEncrypted());
+        parameters.flushTokens(wrapped.getConnection());
         // pass-through
         return wrapped.execute();
     }
 
     @Override
     public void addBatch() throws SQLException {
-        wrapped.addBatch();
+        // each row of the batch is encrypted as it is added; no parameter of the row is carried over to the next row
+        final Object[] encrypted = parameters.toEncrypted();
+        if (isBatchCapture()) {
+            batch.add(encrypted);
+        } else {
+            bindIonicParameters(encrypted);
+            wrapped.addBatch();
+        }
+        clearParameters();
     }
 
     @Override
     public void setCharacterStream(int parameterIndex, Reader reader, int length) throws SQLException {
+        disableBatchCapture(parameterIndex, reader);
         wrapped.setCharacterStream(parameterIndex, reader, length);
     }
 
     @Override
     public void setRef(int parameterIndex, Ref x) throws SQLException {
+        disableBatchCapture(parameterIndex, x);
         wrapped.setRef(parameterIndex, x);
     }
 
     @Override
     public void setBlob(int parameterIndex, Blob x) throws SQLException {
+        disableBatchCapture(parameterIndex, x);
         wrapped.setBlob(parameterIndex, x);
     }
 
     @Override
     public void setClob(int parameterIndex, Clob x) throws SQLException {
+        disableBatchCapture(parameterIndex, x);
         wrapped.setClob(parameterIndex, x);
     }
 
     @Override
     public void setArray(int parameterIndex, Array x) throws SQLException {
+        disableBatchCapture(parameterIndex, x);
         wrapped.setArray(parameterIndex, x);
     }
 
@@ -244,27 +490,42 @@ public class IonicPreparedStatement implements java.sql.PreparedStatement {
 
     @Override
     public void setDate(int parameterIndex, Date x, Calendar cal) throws SQLException {
-        wrapped.setDate(parameterIndex, x, cal);
+        // a protected value is held as the instant (or date) it denotes; the calendar applies to unprotected values
+        if (!setIonicParameter(parameterIndex, x)) {
+            disableBatchCapture(parameterIndex, x);
+            wrapped.setDate(parameterIndex, x, cal);
+        }
     }
 
     @Override
     public void setTime(int parameterIndex, Time x, Calendar cal) throws SQLException {
-        wrapped.setTime(parameterIndex, x, cal);
+        // a protected value is held as the instant (or date) it denotes; the calendar applies to unprotected values
+        if (!setIonicParameter(parameterIndex, x)) {
+            disableBatchCapture(parameterIndex, x);
+            wrapped.setTime(parameterIndex, x, cal);
+        }
     }
 
     @Override
     public void setTimestamp(int parameterIndex, Timestamp x, Calendar cal) throws SQLException {
-        wrapped.setTimestamp(parameterIndex, x, cal);
+        // a protected value is held as the instant (or date) it denotes; the calendar applies to unprotected values
+        if (!setIonicParameter(parameterIndex, x)) {
+            disableBatchCapture(parameterIndex, x);
+            wrapped.setTimestamp(parameterIndex, x, cal);
+        }
     }
 
     @Override
     public void setNull(int parameterIndex, int sqlType, String typeName) throws SQLException {
+        disableBatchCapture(parameterIndex, null);
         wrapped.setNull(parameterIndex, sqlType, typeName);
     }
 
     @Override
     public void setURL(int parameterIndex, URL x) throws SQLException {
+        setWrappedParameter(parameterIndex, x);
         wrapped.setURL(parameterIndex, x);
+        capture(parameterIndex, x, Types.DATALINK);
     }
 
     @Override
@@ -274,107 +535,130 @@ public class IonicPreparedStatement implements java.sql.PreparedStatement {
 
     @Override
     public void setRowId(int parameterIndex, RowId x) throws SQLException {
+        disableBatchCapture(parameterIndex, x);
         wrapped.setRowId(parameterIndex, x);
     }
 
     @Override
     public void setNString(int parameterIndex, String value) throws SQLException {
-        wrapped.setNString(parameterIndex, value);
+        if (!setIonicParameter(parameterIndex, value)) {
+            wrapped.setNString(parameterIndex, value);
+            capture(parameterIndex, value, Types.NVARCHAR);
+        }
     }
 
     @Override
     public void setNCharacterStream(int parameterIndex, Reader value, long length) throws SQLException {
+        disableBatchCapture(parameterIndex, value);
         wrapped.setNCharacterStream(parameterIndex, value, length);
     }
 
     @Override
     public void setNClob(int parameterIndex, NClob value) throws SQLException {
+        disableBatchCapture(parameterIndex, value);
         wrapped.setNClob(parameterIndex, value);
     }
 
     @Override
     public void setClob(int parameterIndex, Reader reader, long length) throws SQLException {
+        disableBatchCapture(parameterIndex, reader);
         wrapped.setClob(parameterIndex, reader, length);
     }
 
     @Override
     public void setBlob(int parameterIndex, InputStream inputStream, long length) throws SQLException {
+        disableBatchCapture(parameterIndex, inputStream);
         wrapped.setBlob(parameterIndex, inputStream, length);
     }
 
     @Override
     public void setNClob(int parameterIndex, Reader reader, long length) throws SQLException {
+        disableBatchCapture(parameterIndex, reader);
         wrapped.setNClob(parameterIndex, reader, length);
     }
 
     @Override
     public void setSQLXML(int parameterIndex, SQLXML xmlObject) throws SQLException {
+        disableBatchCapture(parameterIndex, xmlObject);
         wrapped.setSQLXML(parameterIndex, xmlObject);
     }
 
     @Override
     public void setObject(int parameterIndex, Object x, int targetSqlType, int scaleOrLength) throws SQLException {
-        if (isIonicSupportedTypeValue(x)) {
+        if (isIonicSupportedTypeValue(parameterIndex, x)) {
             // Ionic parameters are cached as they are supplied to {@link PreparedStatement}
             parameters.setParameter(parameterIndex, x);
+            captureHeld(parameterIndex);
         } else {
+            setWrappedParameter(parameterIndex, x);
             wrapped.setObject(parameterIndex, x, targetSqlType, scaleOrLength);
+            capture(parameterIndex, x, targetSqlType, scaleOrLength);
         }
     }
 
     @Override
     public void setAsciiStream(int parameterIndex, InputStream x, long length) throws SQLException {
+        disableBatchCapture(parameterIndex, x);
         wrapped.setAsciiStream(parameterIndex, x, length);
     }
 
     @Override
     public void setBinaryStream(int parameterIndex, InputStream x, long length) throws SQLException {
+        disableBatchCapture(parameterIndex, x);
         wrapped.setBinaryStream(parameterIndex, x, length);
     }
 
     @Override
     public void setCharacterStream(int parameterIndex, Reader reader, long length) throws SQLException {
+        disableBatchCapture(parameterIndex, reader);
         wrapped.setCharacterStream(parameterIndex, reader, length);
     }
 
     @Override
     public void setAsciiStream(int parameterIndex, InputStream x) throws SQLException {
+        disableBatchCapture(parameterIndex, x);
         wrapped.setAsciiStream(parameterIndex, x);
     }
 
     @Override
     public void setBinaryStream(int parameterIndex, InputStream x) throws SQLException {
+        disableBatchCapture(parameterIndex, x);
         wrapped.setBinaryStream(parameterIndex, x);
     }
 
     @Override
     public void setCharacterStream(int parameterIndex, Reader reader) throws SQLException {
+        disableBatchCapture(parameterIndex, reader);
         wrapped.setCharacterStream(parameterIndex, reader);
     }
 
     @Override
     public void setNCharacterStream(int parameterIndex, Reader value) throws SQLException {
+        disableBatchCapture(parameterIndex, value);
         wrapped.setNCharacterStream(parameterIndex, value);
     }
 
     @Override
     public void setClob(int parameterIndex, Reader reader) throws SQLException {
+        disableBatchCapture(parameterIndex, reader);
         wrapped.setClob(parameterIndex, reader);
     }
 
     @Override
     public void setBlob(int parameterIndex, InputStream inputStream) throws SQLException {
+        disableBatchCapture(parameterIndex, inputStream);
         wrapped.setBlob(parameterIndex, inputStream);
     }
 
     @Override
     public void setNClob(int parameterIndex, Reader reader) throws SQLException {
+        disableBatchCapture(parameterIndex, reader);
         wrapped.setNClob(parameterIndex, reader);
     }
 
     @Override
     public ResultSet executeQuery(String sql) throws SQLException {
-        return new IonicResultSet(wrapped.getResultSet(), parameters.getAgent());
+        return new IonicResultSet(wrapped.getResultSet(), parameters.getKeyServices(), services);
     }
 
     @Override
@@ -384,6 +668,9 @@ public class IonicPreparedStatement implements java.sql.PreparedStatement {
 
     @Override
     public void close() throws SQLException {
+        if (batch != null) {
+            batch.close();
+        }
         wrapped.close();
     }
 
@@ -449,7 +736,7 @@ public class IonicPreparedStatement implements java.sql.PreparedStatement {
 
     @Override
     public ResultSet getResultSet() throws SQLException {
-        return new IonicResultSet(wrapped.getResultSet(), parameters.getAgent());
+        return new IonicResultSet(wrapped.getResultSet(), parameters.getKeyServices(), services);
     }
 
     @Override
@@ -499,12 +786,19 @@ public class IonicPreparedStatement implements java.sql.PreparedStatement {
 
     @Override
     public void clearBatch() throws SQLException {
+        // the vault entries of the tokens of the discarded rows are not written
+        parameters.clearTokens();
         wrapped.clearBatch();
+        if (batch != null) {
+            batch.clear();
+        }
     }
 
     @Override
     public int[] executeBatch() throws SQLException {
-        return wrapped.executeBatch();
+        // the vault entries of the tokens of all rows of the batch are written in a single batch
+        parameters.flushTokens(wrapped.getConnection());
+        return isBatchCapture() ? batch.execute(wrapped.getConnection()) : wrapped.executeBatch();
     }
 
     @Override
@@ -592,7 +886,147 @@ public class IonicPreparedStatement implements java.sql.PreparedStatement {
         return wrapped.isWrapperFor(iface);
     }
 
-    private boolean isIonicSupportedTypeValue(final Object value) {
-        return (value instanceof String);
+    /**
+     * @param parameterIndex the ordinal of the parameter
+     * @param value          the parameter value
+     * @return true, iff the value is to be held by the Ionic protection logic
+     */
+    private boolean isIonicSupportedTypeValue(final int parameterIndex, final Object value) {
+        return (value instanceof String)
+                || (parameters.isProtected(parameterIndex) && IonicValueCodec.isSupported(value));
+    }
+
+    /**
+     * Hand a value supplied by a typed setter to the Ionic protection logic, if the parameter is protected.
+     *
+     * @param parameterIndex the ordinal of the parameter
+     * @param x              the parameter value
+     * @return true, iff the value is held by the Ionic protection logic (otherwise, it is to be set on the wrapped
+     * statement)
+     * @throws SQLException if the parameter is protected, and the value cannot be protected
+     */
+    private boolean setIonicParameter(final int parameterIndex, final Object x) throws SQLException {
+        if ((x == null) || !parameters.isProtected(parameterIndex)) {
+            // a null value is set on the wrapped statement, replacing any value held for the parameter
+            setWrappedParameter(parameterIndex, x);
+            return false;
+        }
+        if (!IonicValueCodec.isSupported(x)) {
+            setWrappedParameter(parameterIndex, x);
+        }
+        parameters.setParameter(parameterIndex, x);
+        captureHeld(parameterIndex);
+        return true;
+    }
+
+    /**
+     * Note that a parameter is to be set on the wrapped statement.  Any value held for the parameter by the Ionic
+     * protection logic is discarded, so that it is not bound over the value set (for example, a value of a previous
+     * row over a SQL NULL).
+     *
+     * @param parameterIndex the ordinal of the parameter
+     * @param x              the parameter value (may be null)
+     * @throws SQLException if the parameter is protected, and the value cannot be protected (it would otherwise be
+     *                      sent to the database in the clear)
+     */
+    private void setWrappedParameter(final int parameterIndex, final Object x) throws SQLException {
+        if ((x != null) && parameters.isProtected(parameterIndex)) {
+            throw new SQLException(new IonicException(SdkError.ISAGENT_INVALIDVALUE,
+                    "parameter " + parameterIndex + ": " + x.getClass().getName()));
+        }
+        if ((parameterIndex >= 1) && (parameterIndex <= parameters.getCount())) {
+            parameters.setParameter(parameterIndex, null);
+        }
+    }
+
+    /**
+     * Set the protected Ionic parameters of the current row on the wrapped statement.
+     *
+     * @param encrypted the parameters held by the Ionic protection logic (already protected)
+     * @throws SQLException on database errors
+     */
+    private void bindIonicParameters(final Object[] encrypted) throws SQLException {
+        for (int dbIndex = 1; (dbIndex <= encrypted.length); ++dbIndex) {
+            final Object parameter = encrypted[dbIndex - 1];
+            if (parameter != null) {
+                wrapped.setObject(dbIndex, parameter);
+            }
+        }
+    }
+
+    /**
+     * @return true, iff batch rows are held by this object for multi-row insert
+     */
+    private boolean isBatchCapture() {
+        return (batch != null) && (batch.isEnabled());
+    }
+
+    /**
+     * Capture a parameter of the current row for multi-row insert.
+     *
+     * @param parameterIndex the ordinal of the parameter
+     * @param x              the parameter value (may be null)
+     */
+    private void capture(final int parameterIndex, final Object x) {
+        if (isBatchCapture()) {
+            batch.set(parameterIndex, x);
+        }
+    }
+
+    /**
+     * Capture a parameter of the current row for multi-row insert, supplied by a typed setter.
+     *
+     * @param parameterIndex the ordinal of the parameter
+     * @param x              the parameter value (may be null)
+     * @param sqlType        the SQL type of the setter, with which a null value is sent to the database
+     */
+    private void capture(final int parameterIndex, final Object x, final int sqlType) {
+        if (isBatchCapture()) {
+            if (x == null) {
+                batch.set(parameterIndex, null, sqlType, null);
+            } else {
+                batch.set(parameterIndex, x);
+            }
+        }
+    }
+
+    /**
+     * Note that a parameter of the current row is held by the Ionic protection logic, so that it is bound to the
+     * multi-row insert in its protected form.
+     *
+     * @param parameterIndex the ordinal of the parameter
+     */
+    private void captureHeld(final int parameterIndex) {
+        if (isBatchCapture()) {
+            batch.unset(parameterIndex);
+        }
+    }
+
+    /**
+     * Capture a typed parameter of the current row for multi-row insert.
+     *
+     * @param parameterIndex the ordinal of the parameter
+     * @param x              the parameter value
+     * @param sqlType        the SQL type to be sent to the database
+     * @param scale          the scale (or length) of the value; null if not specified
+     */
+    private void capture(final int parameterIndex, final Object x, final int sqlType, final Integer scale) {
+        if (isBatchCapture()) {
+            batch.set(parameterIndex, x, sqlType, scale);
+        }
+    }
+
+    /**
+     * A parameter has been supplied in a form that cannot be captured; the batch is executed one row at a time.
+     *
+     * @param parameterIndex the ordinal of the parameter
+     * @param x              the parameter value (may be null)
+     * @throws SQLException on failure to pass held rows to the wrapped statement, or if the parameter is protected
+     */
+    private void disableBatchCapture(final int parameterIndex, final Object x) throws SQLException {
+        setWrappedParameter(parameterIndex, x);
+        if (isBatchCapture()) {
+            batch.disable(wrapped);
+        }
     }
 }
@@ -1,10 +1,20 @@
 package com.ionic.sdk.addon.jdbc;
 
-import com.ionic.sdk.agent.Agent;
+import com.ionic.sdk.addon.jdbc.impl.IonicConnectionServices;
+import com.ionic.sdk.addon.jdbc.impl.IonicDictionaries;
+import com.ionic.sdk.addon.jdbc.impl.IonicPrefetchKeyServices;
+import com.ionic.sdk.addon.jdbc.impl.IonicReadRepair;
+import com.ionic.sdk.addon.jdbc.impl.IonicRowCache;
+import com.ionic.sdk.addon.jdbc.impl.IonicTokenVault;
+import com.ionic.sdk.addon.jdbc.impl.IonicValueCache;
+import com.ionic.sdk.addon.jdbc.impl.IonicTypeDecoders;
+import com.ionic.sdk.addon.jdbc.impl.IonicValueCodec;
 import com.ionic.sdk.agent.cipher.chunk.ChunkCipherV2;
 import com.ionic.sdk.agent.cipher.chunk.data.ChunkCrypto;
+import com.ionic.sdk.agent.cipher.chunk.data.ChunkCryptoChunkInfo;
 import com.ionic.sdk.error.IonicException;
 import com.ionic.sdk.error.SdkError;
+import com.ionic.sdk.key.KeyServices;
 
 import java.io.InputStream;
 import java.io.Reader;
@@ -13,6 +23,7 @@ import java.net.URL;
 import java.sql.Array;
 import java.sql.Blob;
 import java.sql.Clob;
+import java.sql.Connection;
 import java.sql.Date;
 import java.sql.NClob;
 import java.sql.Ref;
@@ -25,34 +36,164 @@ import java.sql.SQLXML;
 import java.sql.Statement;
 import java.sql.Time;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Implementation of JDBC interface {@link java.sql.ResultSet}.  Populated from IDE "Implement Methods" wizard.
  */
 public class IonicResultSet implements java.sql.ResultSet {
 
+    /**
+     * The maximum number of keys requested in a single key server request by the bulk read APIs.
+     */
+    private static final int KEYS_PER_REQUEST = 1000;
+
     /**
      * The wrapped object (supplied by the underlying {@link java.sql.Connection}).
      */
     private final ResultSet wrapped;
 
     /**
-     * Ionic agent, used to protect data on database insert, and unprotect data on database fetch.
+     * Ionic key services, used to protect data on database insert, and unprotect data on database fetch.
+     */
+    private final KeyServices keyServices;
+
+    /**
+     * Re-protects stale values read from this result set (null if read-repair is not enabled).
+     */
+    private final IonicReadRepair readRepair;
+
+    /**
+     * The targets of repairs of values of each column of this result set (null if a column cannot be repaired).
+     */
+    private final Map<Integer, IonicReadRepair.Target> repairTargets;
+
+    /**
+     * The vault of the tokenized values of this result set (null if tokens are not resolved).
+     */
+    private final IonicTokenVault tokenVault;
+
+    /**
+     * The (lower case) names of the columns whose values are resolved through {@link #tokenVault}.
+     */
+    private final Set<String> vaultColumnNames;
+
+    /**
+     * The cache of values unprotected by the Ionic identity of this result set (null if values are not cached).
      */
-    private final Agent agent;
+    private final IonicValueCache valueCache;
+
+    /**
+     * The compression dictionaries of the Ionic configuration of the connection (null for the process-wide
+     * dictionaries only).
+     */
+    private final IonicDictionaries dictionaries;
+
+    /**
+     * Returned by {@link #getProtectedValue(int)} for values which are not protected.
+     */
+    private static final Object UNPROTECTED = new Object();
+
+    /**
+     * Flags the character columns of this result set, which may hold protected values (loaded on first use by the
+     * typed getters).
+     */
+    private boolean[] characterColumns;
+
+    /**
+     * Flags the columns of this result set whose values are resolved through {@link #tokenVault} (loaded on first
+     * use).
+     */
+    private boolean[] vaultColumns;
+
+    /**
+     * The type last requested from {@link #getObject(int, Class)} for each column (loaded with
+     * {@link #characterColumns}).
+     */
+    private Class<?>[] decoderTypes;
+
+    /**
+     * The decoder of the type last requested from {@link #getObject(int, Class)} for each column.
+     */
+    private IonicTypeDecoders.Decoder<?>[] decoders;
+
+    /**
+     * The labels of the columns of this result set (loaded on first use by the bulk read APIs).
+     */
+    private String[] columnLabels;
+
+    /**
+     * The targets of repairs of values of each column, used by the bulk read APIs (resolved on first use, so that
+     * rows may be unprotected on other threads without access to the wrapped result set).
+     */
+    private IonicReadRepair.Target[] columnRepairTargets;
+
+    /**
+     * The heap budget (bytes) of the cache of the unprotected values of this result set, if it is scrollable (a
+     * negative budget disables the cache).
+     */
+    private long rowCacheBudget = IonicRowCache.HEAP_DEFAULT;
+
+    /**
+     * The cache of the unprotected values of this result set (created on first use, and only if this result set is
+     * scrollable and read-only).
+     */
+    private IonicRowCache rowCache;
+
+    /**
+     * Flags the check of the eligibility of this result set for {@link #rowCache}.
+     */
+    private boolean rowCacheChecked;
+
+    /**
+     * The row numbers of the rows read by {@link #readRows(int)} and not yet unprotected, keyed by (the identity of)
+     * the values of the row, so that {@link #decryptRows(List)} may fill {@link #rowCache} on any thread.
+     */
+    private final Map<Object[], Integer> rowNumbers;
 
     /**
      * Constructor.
      *
-     * @param wrapped {@link ResultSet} supplied by the underlying {@link java.sql.Connection}
-     * @param agent   Ionic agent, used to protect data on database insert, and to unprotect data on database fetch
+     * @param wrapped     {@link ResultSet} supplied by the underlying {@link java.sql.Connection}
+     * @param keyServices Ionic key services, used to protect data on database insert, and to unprotect data on
+     *                    database fetch
      */
-    public IonicResultSet(final ResultSet wrapped, Agent agent) {
+    public IonicResultSet(final ResultSet wrapped, KeyServices keyServices) {
+        this(wrapped, keyServices, IonicConnectionServices.NONE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param wrapped     {@link ResultSet} supplied by the underlying {@link java.sql.Connection}
+     * @param keyServices Ionic key services, used to protect data on database insert, and to unprotect data on
+     *                    database fetch
+     * @param services    the optional services (read-repair, token vault, value cache, dictionaries) of the
+     *                    connection
+     */
+    public IonicResultSet(final ResultSet wrapped, final KeyServices keyServices,
+                          final IonicConnectionServices services) {
         this.wrapped = wrapped;
-        this.agent = agent;
+        this.keyServices = keyServices;
+        this.readRepair = services.getReadRepair();
+        this.repairTargets = new HashMap<Integer, IonicReadRepair.Target>();
+        this.tokenVault = services.getTokenVault();
+        this.vaultColumnNames = services.getVaultColumns();
+        this.valueCache = services.getValueCache();
+        this.dictionaries = services.getDictionaries();
+        this.rowNumbers = Collections.synchronizedMap(new IdentityHashMap<Object[], Integer>());
     }
 
     @Override
@@ -60,9 +201,540 @@ public class IonicResultSet implements java.sql.ResultSet {
         return wrapped.next();
     }
 
+    /**
+     * Read up to the specified number of rows from this result set, unprotecting their protected values.  The keys
+     * of the values are fetched in bulk, rather than one key server request per value.  On return, the cursor of
+     * this result set is positioned on the last row read.
+     *
+     * @param maxRows the maximum number of rows to read
+     * @return the rows read (fewer than requested only if the end of the result set was reached)
+     * @throws SQLException on database errors
+     */
+    public List<IonicRow> fetchRows(final int maxRows) throws SQLException {
+        final String[] labels = getColumnLabels();
+        final List<Object[]> rows = readRows(maxRows);
+        decryptRows(rows);
+        final List<IonicRow> ionicRows = new ArrayList<IonicRow>(rows.size());
+        for (final Object[] values : rows) {
+            ionicRows.add(new IonicRow(labels, values));
+        }
+        return ionicRows;
+    }
+
+    /**
+     * Provide a {@link Stream} view of the remaining rows of this result set.  Protected values are unprotected by
+     * the stream, and may be unprotected in parallel when the stream is parallel (see {@link IonicRowSpliterator}).
+     * <p>
+     * This result set is closed when the stream has read its last row, or when the stream is closed; streams whose
+     * terminal operation may not read all rows (for example, "findFirst()") should be closed by the caller, typically
+     * with try-with-resources.  This result set should not otherwise be used while the stream is in use.
+     *
+     * @return a stream of the remaining rows of this result set
+     * @throws SQLException on database errors
+     */
+    public Stream<IonicRow> stream() throws SQLException {
+        final int fetchSize = wrapped.getFetchSize();
+        final IonicRowSpliterator spliterator = new IonicRowSpliterator(this, getColumnLabels(),
+                (fetchSize > 0) ? fetchSize : IonicRowSpliterator.CHUNK_DEFAULT);
+        return StreamSupport.stream(spliterator, false).onClose(new Runnable() {
+            @Override
+            public void run() {
+                spliterator.close();
+            }
+        });
+    }
+
+    /**
+     * @return the labels of the columns of this result set
+     * @throws SQLException on database errors
+     */
+    private String[] getColumnLabels() throws SQLException {
+        if (columnLabels == null) {
+            final ResultSetMetaData metaData = wrapped.getMetaData();
+            final String[] labels = new String[metaData.getColumnCount()];
+            for (int i = 0; (i < labels.length); ++i) {
+                labels[i] = metaData.getColumnLabel(i + 1);
+            }
+            columnLabels = labels;
+        }
+        return columnLabels;
+    }
+
+    /**
+     * Read up to the specified number of rows from the wrapped result set, without unprotecting their values.  The
+     * repair targets of the columns are resolved, values held in the row cache (of a scrollable result set) are
+     * replaced by their unprotected values, and tokens are replaced by the protected values held in their vault (with
+     * a single vault query), so that the rows may then be unprotected on any thread.
+     *
+     * @param maxRows the maximum number of rows to read
+     * @return the values of the rows read (fewer than requested only if the end of the result set was reached)
+     * @throws SQLException on database errors
+     */
+    List<Object[]> readRows(final int maxRows) throws SQLException {
+        final String[] labels = getColumnLabels();
+        resolveRepairTargets();
+        final IonicRowCache rowCacheRows = getRowCache();
+        final List<Object[]> rows = new ArrayList<Object[]>();
+        final List<int[]> references = new ArrayList<int[]>();
+        while ((rows.size() < maxRows) && wrapped.next()) {
+            final Object[] values = new Object[labels.length];
+            for (int i = 0; (i < values.length); ++i) {
+                values[i] = wrapped.getObject(i + 1);
+            }
+            if (rowCacheRows != null) {
+                // revisited values are served from the row cache, before their tokens are resolved
+                final int row = wrapped.getRow();
+                for (int i = 0; (i < values.length); ++i) {
+                    final Object valueCached = isProtected(values[i], i + 1) ? getRowValue(row, i + 1) : null;
+                    if (valueCached != null) {
+                        values[i] = valueCached;
+                    } else if (isVaultColumn(i + 1) && IonicTokenVault.isReference(values[i])) {
+                        references.add(new int[]{rows.size(), i, row});
+                    }
+                }
+                rowNumbers.put(values, row);
+            }
+            rows.add(values);
+        }
+        resolveTokens(rows, null);
+        for (final int[] reference : references) {
+            final Object value = rows.get(reference[0])[reference[1]];
+            if (!IonicTokenVault.isToken(value)) {
+                putRowValue(reference[2], reference[1] + 1, value);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Unprotect the protected values of a block of rows (obtained from {@link #readRows(int)}), in place, and add
+     * them to the row cache (of a scrollable result set).  The keys of the values are fetched in bulk.  Values which
+     * cannot be unprotected are left unchanged (as for the single value APIs).  This method
+     * does not use the wrapped result set, and may be called concurrently.
+     *
+     * @param rows the values of the rows
+     */
+    void decryptRows(final List<Object[]> rows) {
+        applyValueCache(rows);
+        final ChunkCipherV2 chunkCipher = createBulkCipher(rows);
+        for (final Object[] values : rows) {
+            final Integer row = (rowCache == null) ? null : rowNumbers.remove(values);
+            for (int i = 0; (chunkCipher != null) && (i < values.length); ++i) {
+                final ChunkCryptoChunkInfo chunkInfo = getChunkInfo(values[i]);
+                if (chunkInfo != null) {
+                    try {
+                        final String value = (String) values[i];
+                        final byte[] plainText = chunkCipher.decryptToBytes(value);
+                        values[i] = IonicValueCodec.decode(plainText, dictionaries);
+                        cacheValue(value, plainText, chunkInfo.getKeyId());
+                        if ((readRepair != null) && readRepair.isStale(chunkInfo.getKeyId())) {
+                            final IonicReadRepair.Target target = columnRepairTargets[i];
+                            repair(value, plainText, target,
+                                    (target == null) ? null : values[target.getKeyIndex() - 1]);
+                        }
+                        if (row != null) {
+                            rowCache.put(row, i + 1, plainText);
+                        }
+                    } catch (IonicException e) {
+                        Logger.getLogger(getClass().getName()).finest(e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Read up to the specified number of rows from this result set into column vectors, unprotecting their protected
+     * values.  Values are read with the typed getters of the wrapped result set (no boxing for integer and floating
+     * point columns), and the protected values of character columns are unprotected a vector at a time, with their
+     * keys fetched in bulk.  On return, the cursor of this result set is positioned on the last row read.
+     *
+     * @param maxRows the maximum number of rows to read
+     * @return the rows read (fewer than requested only if the end of the result set was reached)
+     * @throws SQLException on database errors
+     */
+    public IonicColumns fetchColumns(final int maxRows) throws SQLException {
+        final String[] labels = getColumnLabels();
+        resolveRepairTargets();
+        final ResultSetMetaData metaData = wrapped.getMetaData();
+        final IonicColumns.Type[] types = new IonicColumns.Type[labels.length];
+        for (int i = 0; (i < types.length); ++i) {
+            types[i] = IonicColumns.toType(metaData.getColumnType(i + 1));
+        }
+        final int fetchSize = wrapped.getFetchSize();
+        final IonicColumns.Builder builder = new IonicColumns.Builder(labels, types,
+                Math.min(maxRows, (fetchSize > 0) ? fetchSize : KEYS_PER_REQUEST));
+        final IonicRowCache rowCacheColumns = getRowCache();
+        final List<Integer> rows = new ArrayList<Integer>();
+        while ((builder.getRowCount() < maxRows) && wrapped.next()) {
+            builder.addRow(wrapped);
+            if (rowCacheColumns != null) {
+                rows.add(wrapped.getRow());
+            }
+        }
+        final IonicColumns columns = builder.build();
+        final List<Object[]> vectors = new ArrayList<Object[]>();
+        final List<Integer> vectorColumns = new ArrayList<Integer>();
+        for (int i = 0; (i < types.length); ++i) {
+            if (types[i] == IonicColumns.Type.STRING) {
+                final String[] values = columns.getStrings(i + 1);
+                // revisited values are served from the row cache, before their tokens are resolved
+                for (int row = 0; (row < rows.size()); ++row) {
+                    final Object valueCached = isProtected(values[row], i + 1)
+                            ? getRowValue(rows.get(row), i + 1) : null;
+                    if (valueCached != null) {
+                        values[row] = IonicValueCodec.toString(valueCached);
+                    }
+                }
+                vectors.add(values);
+                vectorColumns.add(i + 1);
+            }
+        }
+        resolveTokens(vectors, vectorColumns);
+        applyValueCache(vectors);
+        final ChunkCipherV2 chunkCipher = createBulkCipher(vectors);
+        if (chunkCipher != null) {
+            for (int i = 0; (i < types.length); ++i) {
+                if (types[i] == IonicColumns.Type.STRING) {
+                    decryptColumn(chunkCipher, columns, i + 1, (rowCacheColumns == null) ? null : rows);
+                }
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Unprotect the protected values of a character column, in place.
+     *
+     * @param chunkCipher the cipher, with the keys of the values fetched in bulk
+     * @param columns     the column vectors
+     * @param column      the ordinal of the column (the first column is 1)
+     * @param rows        the row number of each value, used to fill the row cache (null if the cache does not apply)
+     * @throws SQLException on failure to access the vector of the column
+     */
+    private void decryptColumn(final ChunkCipherV2 chunkCipher, final IonicColumns columns, final int column,
+                               final List<Integer> rows) throws SQLException {
+        final String[] values = columns.getStrings(column);
+        final IonicReadRepair.Target target = (readRepair == null) ? null : columnRepairTargets[column - 1];
+        for (int row = 0; (row < values.length); ++row) {
+            final ChunkCryptoChunkInfo chunkInfo = getChunkInfo(values[row]);
+            if (chunkInfo != null) {
+                try {
+                    final String value = values[row];
+                    final byte[] plainText = chunkCipher.decryptToBytes(value);
+                    values[row] = IonicValueCodec.toString(IonicValueCodec.decode(plainText, dictionaries));
+                    cacheValue(value, plainText, chunkInfo.getKeyId());
+                    if ((readRepair != null) && readRepair.isStale(chunkInfo.getKeyId())) {
+                        repair(value, plainText, target,
+                                (target == null) ? null : columns.getObject(target.getKeyIndex(), row));
+                    }
+                    if (rows != null) {
+                        rowCache.put(rows.get(row), column, plainText);
+                    }
+                } catch (IonicException e) {
+                    Logger.getLogger(getClass().getName()).finest(e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolve the targets of repairs of the values of each column, for use by the bulk read APIs.
+     *
+     * @throws SQLException on database errors
+     */
+    private void resolveRepairTargets() throws SQLException {
+        if ((readRepair != null) && (columnRepairTargets == null)) {
+            final ResultSetMetaData metaData = wrapped.getMetaData();
+            final IonicReadRepair.Target[] targets = new IonicReadRepair.Target[metaData.getColumnCount()];
+            for (int i = 0; (i < targets.length); ++i) {
+                targets[i] = readRepair.getTarget(metaData, i + 1);
+            }
+            columnRepairTargets = targets;
+        }
+    }
+
+    /**
+     * Replace the tokens of a block of values by the protected values held in their vault, and the references of
+     * deduplicated values by the unprotected values, in place.  The tokens and references are looked up in bulk.
+     * Tokens which cannot be resolved are left unchanged.  In arrays of strings, references are replaced by the
+     * string form of their values.  Only the values of the columns held in the vault are resolved.
+     *
+     * @param arrays  the values, in arrays
+     * @param columns the ordinal of the column of each array (null if each array is a row, holding the values of the
+     *                columns in order)
+     * @throws SQLException on failure to read the metadata of this result set
+     */
+    private void resolveTokens(final List<Object[]> arrays, final List<Integer> columns) throws SQLException {
+        if (tokenVault == null) {
+            return;
+        }
+        final Set<String> tokens = new HashSet<String>();
+        final Set<String> references = new HashSet<String>();
+        for (int a = 0; (a < arrays.size()); ++a) {
+            final Object[] values = arrays.get(a);
+            for (int i = 0; (i < values.length); ++i) {
+                if (!isVaultColumn((columns == null) ? (i + 1) : columns.get(a))) {
+                    continue;
+                } else if (IonicTokenVault.isReference(values[i])) {
+                    references.add((String) values[i]);
+                } else if (IonicTokenVault.isToken(values[i])) {
+                    tokens.add((String) values[i]);
+                }
+            }
+        }
+        if (tokens.isEmpty() && references.isEmpty()) {
+            return;
+        }
+        try {
+            final Connection connection = getVaultConnection();
+            final Map<String, String> cipherTexts = tokens.isEmpty()
+                    ? Collections.<String, String>emptyMap() : tokenVault.lookup(connection, tokens);
+            final Map<String, Object> valuesDedup = references.isEmpty()
+                    ? Collections.<String, Object>emptyMap()
+                    : tokenVault.lookupValues(connection, references, keyServices, dictionaries);
+            for (int a = 0; (a < arrays.size()); ++a) {
+                final Object[] values = arrays.get(a);
+                final boolean strings = (values instanceof String[]);
+                for (int i = 0; (i < values.length); ++i) {
+                    if (!isVaultColumn((columns == null) ? (i + 1) : columns.get(a))
+                            || !IonicTokenVault.isToken(values[i])) {
+                        continue;
+                    }
+                    final Object resolved = IonicTokenVault.isReference(values[i])
+                            ? valuesDedup.get(values[i]) : cipherTexts.get(values[i]);
+                    if (resolved != null) {
+                        values[i] = strings ? IonicValueCodec.toString(resolved) : resolved;
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            Logger.getLogger(getClass().getName()).finest(e.getMessage());
+        }
+    }
+
+    /**
+     * Replace a token by the protected value held in its vault.
+     *
+     * @param value a value read from the database
+     * @return the protected value of the token, or the value as read, if it is not a token which can be resolved
+     */
+    private String resolveToken(final String value) {
+        if ((tokenVault == null) || !IonicTokenVault.isToken(value)) {
+            return value;
+        }
+        try {
+            final String cipherText = tokenVault.lookup(
+                    getVaultConnection(), Collections.singleton(value)).get(value);
+            return (cipherText == null) ? value : cipherText;
+        } catch (SQLException e) {
+            Logger.getLogger(getClass().getName()).finest(e.getMessage());
+            return value;
+        }
+    }
+
+    /**
+     * @return the (underlying) connection of this result set, used to query the token vault
+     * @throws SQLException if the result set was not produced by a statement
+     */
+    private Connection getVaultConnection() throws SQLException {
+        final Statement statement = wrapped.getStatement();
+        if (statement == null) {
+            throw new SQLException(new IonicException(SdkError.ISAGENT_RESOURCE_NOT_FOUND, "statement"));
+        }
+        return statement.getConnection();
+    }
+
+    /**
+     * Replace the protected values of a block of values which are held in the value cache by their unprotected
+     * values, in place, so that their keys are not fetched.  In arrays of strings, values are replaced by their string
+     * form.
+     *
+     * @param arrays the values, in arrays
+     */
+    private void applyValueCache(final List<Object[]> arrays) {
+        if (valueCache == null) {
+            return;
+        }
+        for (final Object[] values : arrays) {
+            final boolean strings = (values instanceof String[]);
+            for (int i = 0; (i < values.length); ++i) {
+                final byte[] plainText = (getChunkInfo(values[i]) == null) ? null : valueCache.get((String) values[i]);
+                if (plainText != null) {
+                    try {
+                        final Object value = IonicValueCodec.decode(plainText, dictionaries);
+                        values[i] = strings ? IonicValueCodec.toString(value) : value;
+                    } catch (IonicException e) {
+                        Logger.getLogger(getClass().getName()).finest(e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Add an unprotected value to the value cache.  Values protected by stale keys are not cached, so that each read
+     * of such a value is a chance to repair it.
+     *
+     * @param cipherText the protected value
+     * @param plainText  the unprotected bytes of the value
+     * @param keyId      the id of the key protecting the value
+     */
+    private void cacheValue(final String cipherText, final byte[] plainText, final String keyId) {
+        if ((valueCache != null) && ((readRepair == null) || !readRepair.isStale(keyId))) {
+            valueCache.put(cipherText, plainText);
+        }
+    }
+
+    /**
+     * Fetch (in bulk) the keys of the protected values of a block of values.
+     *
+     * @param arrays the values, in arrays
+     * @return a cipher using the fetched keys, or null if there are no protected values
+     */
+    private ChunkCipherV2 createBulkCipher(final List<Object[]> arrays) {
+        final Set<String> keyIds = new HashSet<String>();
+        for (final Object[] values : arrays) {
+            for (final Object value : values) {
+                final ChunkCryptoChunkInfo chunkInfo = getChunkInfo(value);
+                if (chunkInfo != null) {
+                    keyIds.add(chunkInfo.getKeyId());
+                }
+            }
+        }
+        if (keyIds.isEmpty()) {
+            return null;
+        }
+        final IonicPrefetchKeyServices keyServicesPrefetch =
+                new IonicPrefetchKeyServices(keyServices, KEYS_PER_REQUEST);
+        try {
+            keyServicesPrefetch.prefetch(keyIds);
+        } catch (IonicException e) {
+            // keys not fetched in bulk are requested one value at a time
+            Logger.getLogger(getClass().getName()).finest(e.getMessage());
+        }
+        return new ChunkCipherV2(keyServicesPrefetch);
+    }
+
+    /**
+     * @param value a value read from the database
+     * @return the Ionic chunk information of the value, if it is an Ionic-protected string; otherwise null
+     */
+    private static ChunkCryptoChunkInfo getChunkInfo(final Object value) {
+        if (value instanceof String) {
+            final ChunkCryptoChunkInfo chunkInfo = ChunkCrypto.getChunkInfo((String) value);
+            return chunkInfo.isEncrypted() ? chunkInfo : null;
+        }
+        return null;
+    }
+
+    /**
+     * Set the heap budget of the cache of the unprotected values of this result set.  The cache applies only to
+     * result sets of type {@link ResultSet#TYPE_SCROLL_INSENSITIVE} and concurrency
+     * {@link ResultSet#CONCUR_READ_ONLY}, whose rows do not change as the cursor moves; values beyond the budget are
+     * spilled to an encrypted temporary file (see {@link IonicRowCache}).  Must be called before the first value is
+     * read.
+     *
+     * @param heapBytes the maximum number of bytes held on the heap (zero to spill all values; negative to disable
+     *                  the cache)
+     */
+    public void setRowCacheBudget(final long heapBytes) {
+        this.rowCacheBudget = heapBytes;
+    }
+
+    /**
+     * @return the cache of the unprotected values of this result set, or null if the cache does not apply
+     * @throws SQLException on database errors
+     */
+    private IonicRowCache getRowCache() throws SQLException {
+        if (!rowCacheChecked) {
+            rowCacheChecked = true;
+            if ((rowCacheBudget >= 0) && (wrapped.getType() == ResultSet.TYPE_SCROLL_INSENSITIVE)
+                    && (wrapped.getConcurrency() == ResultSet.CONCUR_READ_ONLY)) {
+                rowCache = new IonicRowCache(rowCacheBudget);
+            }
+        }
+        return rowCache;
+    }
+
+    /**
+     * @param value  a value read from the database
+     * @param column the ordinal of the column of the value
+     * @return true, iff the value is protected, or is a token (or reference) of a column held in the vault
+     * @throws SQLException on failure to read the metadata of this result set
+     */
+    private boolean isProtected(final Object value, final int column) throws SQLException {
+        return (getChunkInfo(value) != null) || (IonicTokenVault.isToken(value) && isVaultColumn(column));
+    }
+
+    /**
+     * @param column the ordinal of a column of this result set
+     * @return true, iff the values of the column are resolved through the token vault (its configuration has
+     * "token" or "dedup" storage)
+     * @throws SQLException on failure to read the metadata of this result set
+     */
+    private boolean isVaultColumn(final int column) throws SQLException {
+        if (tokenVault == null) {
+            return false;
+        }
+        if (vaultColumns == null) {
+            final ResultSetMetaData metaData = wrapped.getMetaData();
+            final boolean[] columns = new boolean[metaData.getColumnCount()];
+            for (int i = 0; (i < columns.length); ++i) {
+                columns[i] = vaultColumnNames.contains(metaData.getColumnName(i + 1).toLowerCase(Locale.ROOT));
+            }
+            vaultColumns = columns;
+        }
+        return vaultColumns[column - 1];
+    }
+
+    /**
+     * Look up a value in the row cache (which must apply to this result set).
+     *
+     * @param row    the row number of the value
+     * @param column the ordinal of the column of the value
+     * @return the unprotected value, or null if the value is not cached (or cannot be read from the cache)
+     */
+    private Object getRowValue(final int row, final int column) {
+        try {
+            final byte[] plainText = rowCache.get(row, column);
+            return (plainText == null) ? null : IonicValueCodec.decode(plainText, dictionaries);
+        } catch (IonicException e) {
+            Logger.getLogger(getClass().getName()).finest(e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Add an unprotected value (such as the value of a reference) to the row cache, if the cache applies to this
+     * result set.
+     *
+     * @param row    the row number of the value
+     * @param column the ordinal of the column of the value
+     * @param value  the unprotected value
+     */
+    private void putRowValue(final int row, final int column, final Object value) {
+        if (rowCache != null) {
+            try {
+                rowCache.put(row, column, IonicValueCodec.encode(value));
+            } catch (IonicException e) {
+                Logger.getLogger(getClass().getName()).finest(e.getMessage());
+            }
+        }
+    }
+
     @Override
     public void close() throws SQLException {
-        wrapped.close();
+        rowNumbers.clear();
+        try {
+            if (rowCache != null) {
+                rowCache.close();
+            }
+        } catch (IonicException e) {
+            Logger.getLogger(getClass().getName()).warning(e.getMessage());
+        } finally {
+            wrapped.close();
+        }
     }
 
     @Override
@@ -72,7 +744,7 @@ public class IonicResultSet implements java.sql.ResultSet {
 
     @Override
     public String getString(int columnIndex) throws SQLException {
-        return getIonicValue(wrapped.getString(columnIndex));
+        return IonicValueCodec.toString(getIonicValue(wrapped.getString(columnIndex), columnIndex, null));
     }
 
     @Override
@@ -82,32 +754,41 @@ public class IonicResultSet implements java.sql.ResultSet {
 
     @Override
     public byte getByte(int columnIndex) throws SQLException {
-        return wrapped.getByte(columnIndex);
+        final Object value = getProtectedValue(columnIndex);
+        return (value == UNPROTECTED) ? wrapped.getByte(columnIndex)
+                : (byte) toLong(value, Byte.MIN_VALUE, Byte.MAX_VALUE);
     }
 
     @Override
     public short getShort(int columnIndex) throws SQLException {
-        return wrapped.getShort(columnIndex);
+        final Object value = getProtectedValue(columnIndex);
+        return (value == UNPROTECTED) ? wrapped.getShort(columnIndex)
+                : (short) toLong(value, Short.MIN_VALUE, Short.MAX_VALUE);
     }
 
     @Override
     public int getInt(int columnIndex) throws SQLException {
-        return wrapped.getInt(columnIndex);
+        final Object value = getProtectedValue(columnIndex);
+        return (value == UNPROTECTED) ? wrapped.getInt(columnIndex)
+                : (int) toLong(value, Integer.MIN_VALUE, Integer.MAX_VALUE);
     }
 
     @Override
     public long getLong(int columnIndex) throws SQLException {
-        return wrapped.getLong(columnIndex);
+        final Object value = getProtectedValue(columnIndex);
+        return (value == UNPROTECTED) ? wrapped.getLong(columnIndex) : toLong(value, Long.MIN_VALUE, Long.MAX_VALUE);
     }
 
     @Override
     public float getFloat(int columnIndex) throws SQLException {
-        return wrapped.getFloat(columnIndex);
+        final Object value = getProtectedValue(columnIndex);
+        return (value == UNPROTECTED) ? wrapped.getFloat(columnIndex) : (float) toDouble(value);
     }
 
     @Override
     public double getDouble(int columnIndex) throws SQLException {
-        return wrapped.getDouble(columnIndex);
+        final Object value = getProtectedValue(columnIndex);
+        return (value == UNPROTECTED) ? wrapped.getDouble(columnIndex) : toDouble(value);
     }
 
     @SuppressWarnings("deprecation")
@@ -118,12 +799,14 @@ public class IonicResultSet implements java.sql.ResultSet {
 
     @Override
     public byte[] getBytes(int columnIndex) throws SQLException {
-        return wrapped.getBytes(columnIndex);
+        final Object value = getProtectedValue(columnIndex);
+        return (value == UNPROTECTED) ? wrapped.getBytes(columnIndex) : IonicValueCodec.toBytes(value);
     }
 
     @Override
     public Date getDate(int columnIndex) throws SQLException {
-        return wrapped.getDate(columnIndex);
+        final Object value = getProtectedValue(columnIndex);
+        return (value == UNPROTECTED) ? wrapped.getDate(columnIndex) : toDate(value);
     }
 
     @Override
@@ -133,7 +816,8 @@ public class IonicResultSet implements java.sql.ResultSet {
 
     @Override
     public Timestamp getTimestamp(int columnIndex) throws SQLException {
-        return wrapped.getTimestamp(columnIndex);
+        final Object value = getProtectedValue(columnIndex);
+        return (value == UNPROTECTED) ? wrapped.getTimestamp(columnIndex) : toTimestamp(value);
     }
 
     @Override
@@ -154,7 +838,7 @@ public class IonicResultSet implements java.sql.ResultSet {
 
     @Override
     public String getString(String columnLabel) throws SQLException {
-        return getIonicValue(wrapped.getString(columnLabel));
+        return IonicValueCodec.toString(getIonicValue(wrapped.getString(columnLabel), 0, columnLabel));
     }
 
     @Override
@@ -164,32 +848,32 @@ public class IonicResultSet implements java.sql.ResultSet {
 
     @Override
     public byte getByte(String columnLabel) throws SQLException {
-        return wrapped.getByte(columnLabel);
+        return getByte(wrapped.findColumn(columnLabel));
     }
 
     @Override
     public short getShort(String columnLabel) throws SQLException {
-        return wrapped.getShort(columnLabel);
+        return getShort(wrapped.findColumn(columnLabel));
     }
 
     @Override
     public int getInt(String columnLabel) throws SQLException {
-        return wrapped.getInt(columnLabel);
+        return getInt(wrapped.findColumn(columnLabel));
     }
 
     @Override
     public long getLong(String columnLabel) throws SQLException {
-        return wrapped.getLong(columnLabel);
+        return getLong(wrapped.findColumn(columnLabel));
     }
 
     @Override
     public float getFloat(String columnLabel) throws SQLException {
-        return wrapped.getFloat(columnLabel);
+        return getFloat(wrapped.findColumn(columnLabel));
     }
 
     @Override
     public double getDouble(String columnLabel) throws SQLException {
-        return wrapped.getDouble(columnLabel);
+        return getDouble(wrapped.findColumn(columnLabel));
     }
 
     @SuppressWarnings("deprecation")
@@ -200,12 +884,12 @@ public class IonicResultSet implements java.sql.ResultSet {
 
     @Override
     public byte[] getBytes(String columnLabel) throws SQLException {
-        return wrapped.getBytes(columnLabel);
+        return getBytes(wrapped.findColumn(columnLabel));
     }
 
     @Override
     public Date getDate(String columnLabel) throws SQLException {
-        return wrapped.getDate(columnLabel);
+        return getDate(wrapped.findColumn(columnLabel));
     }
 
     @Override
@@ -215,7 +899,7 @@ public class IonicResultSet implements java.sql.ResultSet {
 
     @Override
     public Timestamp getTimestamp(String columnLabel) throws SQLException {
-        return wrapped.getTimestamp(columnLabel);
+        return getTimestamp(wrapped.findColumn(columnLabel));
     }
 
     @Override
@@ -257,13 +941,13 @@ public class IonicResultSet implements java.sql.ResultSet {
     @Override
     public Object getObject(int columnIndex) throws SQLException {
         final Object value = wrapped.getObject(columnIndex);
-        return (value instanceof String) ? getIonicValue((String) value) : value;
+        return (value instanceof String) ? getIonicValue((String) value, columnIndex, null) : value;
     }
 
     @Override
     public Object getObject(String columnLabel) throws SQLException {
         final Object value = wrapped.getObject(wrapped.findColumn(columnLabel));
-        return (value instanceof String) ? getIonicValue((String) value) : value;
+        return (value instanceof String) ? getIonicValue((String) value, 0, columnLabel) : value;
     }
 
     @Override
@@ -283,12 +967,13 @@ public class IonicResultSet implements java.sql.ResultSet {
 
     @Override
     public BigDecimal getBigDecimal(int columnIndex) throws SQLException {
-        return wrapped.getBigDecimal(columnIndex);
+        final Object value = getProtectedValue(columnIndex);
+        return (value == UNPROTECTED) ? wrapped.getBigDecimal(columnIndex) : toBigDecimal(value);
     }
 
     @Override
     public BigDecimal getBigDecimal(String columnLabel) throws SQLException {
-        return wrapped.getBigDecimal(columnLabel);
+        return getBigDecimal(wrapped.findColumn(columnLabel));
     }
 
     @Override
@@ -1013,31 +1698,51 @@ public class IonicResultSet implements java.sql.ResultSet {
     }
 
     /**
-     * Not implemented in this prototype.  Please use the API {@link #getObject(int)} and transform the result.
+     * Protected values are unprotected and converted to the requested type by a decoder from
+     * {@link IonicTypeDecoders}, looked up once per column and type.  Values of columns which cannot hold protected
+     * values are read by the wrapped result set.
      *
      * @param columnIndex the first column is 1, the second is 2, ...
      * @param type        class representing the Java data type to convert the designated column to
      * @param <T>         the type of the class modeled by this class object
      * @return an instance of {@code type} holding the column value
-     * @throws SQLException unconditionally (not implemented in this prototype)
+     * @throws SQLException on database errors, or if the value cannot be converted to the type
      */
     @Override
+    @SuppressWarnings("unchecked")
     public <T> T getObject(int columnIndex, Class<T> type) throws SQLException {
-        throw new SQLException(new IonicException(SdkError.ISAGENT_NOTIMPLEMENTED));
+        final Object value = getProtectedValue(columnIndex);
+        if (value == UNPROTECTED) {
+            return wrapped.getObject(columnIndex, type);
+        } else if (value == null) {
+            return null;
+        }
+        final int index = columnIndex - 1;
+        if (decoderTypes[index] != type) {
+            decoders[index] = IonicTypeDecoders.getDecoder(type);
+            decoderTypes[index] = type;
+        }
+        try {
+            return ((IonicTypeDecoders.Decoder<T>) decoders[index]).decode(value);
+        } catch (IonicException e) {
+            throw new SQLException(e);
+        }
     }
 
     /**
-     * Not implemented in this prototype.  Please use the API {@link #getObject(String)} and transform the result.
+     * Protected values are unprotected and converted to the requested type by a decoder from
+     * {@link IonicTypeDecoders}, looked up once per column and type.  Values of columns which cannot hold protected
+     * values are read by the wrapped result set.
      *
      * @param columnLabel the label for the column specified with the SQL AS clause, or the name of the column
      * @param type        class representing the Java data type to convert the designated column to
      * @param <T>         the type of the class modeled by this class object
      * @return an instance of {@code type} holding the column value
-     * @throws SQLException unconditionally (not implemented in this prototype)
+     * @throws SQLException on database errors, or if the value cannot be converted to the type
      */
     @Override
     public <T> T getObject(String columnLabel, Class<T> type) throws SQLException {
-        throw new SQLException(new IonicException(SdkError.ISAGENT_NOTIMPLEMENTED));
+        return getObject(wrapped.findColumn(columnLabel), type);
     }
 
     @Override
@@ -1050,16 +1755,199 @@ public class IonicResultSet implements java.sql.ResultSet {
         return wrapped.isWrapperFor(iface);
     }
 
-    private String getIonicValue(final String value) {
-        String valueOut = value;
-        if (ChunkCrypto.getChunkInfo(value).isEncrypted()) {
+    /**
+     * Unprotect a value read from the database.
+     *
+     * @param value       the value, as read from the database
+     * @param columnIndex the ordinal of the column of the value (zero if the column is identified by label)
+     * @param columnLabel the label of the column of the value (null if the column is identified by ordinal)
+     * @return the unprotected value (a String, unless the value was protected from another type; see
+     * {@link IonicValueCodec}), or the value as read, if it is not protected
+     * @throws SQLException on database errors
+     */
+    private Object getIonicValue(final String value, final int columnIndex,
+                                 final String columnLabel) throws SQLException {
+        if ((getChunkInfo(value) == null) && !IonicTokenVault.isToken(value)) {
+            return value;
+        }
+        final int column = (columnIndex > 0) ? columnIndex : wrapped.findColumn(columnLabel);
+        if (!isProtected(value, column)) {
+            return value;
+        }
+        // a revisited value is served from the row cache, before its token is resolved
+        final IonicRowCache rowCacheValue = getRowCache();
+        final int row = (rowCacheValue == null) ? 0 : wrapped.getRow();
+        final Object valueRow = (rowCacheValue == null) ? null : getRowValue(row, column);
+        if (valueRow != null) {
+            return valueRow;
+        }
+        if (IonicTokenVault.isReference(value)) {
+            final Object valueDedup = tokenVault.lookupValues(
+                    getVaultConnection(), Collections.singleton(value), keyServices, dictionaries).get(value);
+            if (valueDedup == null) {
+                return value;
+            }
+            putRowValue(row, column, valueDedup);
+            return valueDedup;
+        }
+        Object valueOut = value;
+        final String cipherText = resolveToken(value);
+        final ChunkCryptoChunkInfo chunkInfo = ChunkCrypto.getChunkInfo(cipherText);
+        if (chunkInfo.isEncrypted()) {
             try {
-                final ChunkCipherV2 chunkCipher = new ChunkCipherV2(agent);
-                valueOut = chunkCipher.decrypt(value);
+                final byte[] plainTextCached = (valueCache == null) ? null : valueCache.get(cipherText);
+                if (plainTextCached != null) {
+                    if (rowCacheValue != null) {
+                        rowCacheValue.put(row, column, plainTextCached);
+                    }
+                    return IonicValueCodec.decode(plainTextCached, dictionaries);
+                }
+                final ChunkCipherV2 chunkCipher = new ChunkCipherV2(keyServices);
+                final byte[] plainText = chunkCipher.decryptToBytes(cipherText);
+                valueOut = IonicValueCodec.decode(plainText, dictionaries);
+                cacheValue(cipherText, plainText, chunkInfo.getKeyId());
+                // the values of tokens are held in the vault, not in the row
+                if ((readRepair != null) && (cipherText == value) && readRepair.isStale(chunkInfo.getKeyId())) {
+                    repair(value, plainText, column);
+                }
+                if (rowCacheValue != null) {
+                    rowCacheValue.put(row, column, plainText);
+                }
             } catch (IonicException e) {
                 Logger.getLogger(getClass().getName()).finest(e.getMessage());
             }
         }
         return valueOut;
     }
+
+    /**
+     * Read and unprotect the value of a column of the current row, for the typed getters (and the typed
+     * {@link #getObject(int, Class)}).  Only character columns
+     * hold protected values; values of other columns are read by the typed getters of the wrapped result set.
+     *
+     * @param columnIndex the ordinal of the column
+     * @return the unprotected value (null if the value is null), or {@link #UNPROTECTED} if the value is not protected
+     * @throws SQLException on database errors
+     */
+    private Object getProtectedValue(final int columnIndex) throws SQLException {
+        if (characterColumns == null) {
+            final ResultSetMetaData metaData = wrapped.getMetaData();
+            final boolean[] columns = new boolean[metaData.getColumnCount()];
+            for (int i = 0; (i < columns.length); ++i) {
+                columns[i] = (IonicColumns.toType(metaData.getColumnType(i + 1)) == IonicColumns.Type.STRING);
+            }
+            decoderTypes = new Class<?>[columns.length];
+            decoders = new IonicTypeDecoders.Decoder<?>[columns.length];
+            characterColumns = columns;
+        }
+        if (!characterColumns[columnIndex - 1]) {
+            return UNPROTECTED;
+        }
+        final String value = wrapped.getString(columnIndex);
+        if (value == null) {
+            return null;
+        }
+        return isProtected(value, columnIndex) ? getIonicValue(value, columnIndex, null) : UNPROTECTED;
+    }
+
+    /**
+     * @param value an unprotected value
+     * @param min   the minimum value of the requested integral type
+     * @param max   the maximum value of the requested integral type
+     * @return the value as a long
+     * @throws SQLException if the value is not numeric, or is outside the range of the requested type
+     */
+    private static long toLong(final Object value, final long min, final long max) throws SQLException {
+        try {
+            return IonicValueCodec.toLong(value, min, max);
+        } catch (IonicException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    /**
+     * @param value an unprotected value
+     * @return the value as a double
+     * @throws SQLException if the value is not numeric
+     */
+    private static double toDouble(final Object value) throws SQLException {
+        try {
+            return IonicValueCodec.toDouble(value);
+        } catch (IonicException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    /**
+     * @param value an unprotected value
+     * @return the value as a BigDecimal
+     * @throws SQLException if the value is not numeric
+     */
+    private static BigDecimal toBigDecimal(final Object value) throws SQLException {
+        try {
+            return IonicValueCodec.toBigDecimal(value);
+        } catch (IonicException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    /**
+     * @param value an unprotected value
+     * @return the value as a Date
+     * @throws SQLException if the value is not a date
+     */
+    private static Date toDate(final Object value) throws SQLException {
+        try {
+            return IonicValueCodec.toDate(value);
+        } catch (IonicException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    /**
+     * @param value an unprotected value
+     * @return the value as a Timestamp
+     * @throws SQLException if the value is not a timestamp
+     */
+    private static Timestamp toTimestamp(final Object value) throws SQLException {
+        try {
+            return IonicValueCodec.toTimestamp(value);
+        } catch (IonicException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    /**
+     * Queue the re-protection of a stale value with a new key.
+     *
+     * @param cipherText  the value, as read from the database
+     * @param plainText   the plaintext of the value
+     * @param columnIndex the ordinal of the column of the value
+     * @throws SQLException on database errors
+     */
+    private void repair(final String cipherText, final byte[] plainText, final int columnIndex) throws SQLException {
+        if (!repairTargets.containsKey(columnIndex)) {
+            repairTargets.put(columnIndex, readRepair.getTarget(wrapped.getMetaData(), columnIndex));
+        }
+        final IonicReadRepair.Target target = repairTargets.get(columnIndex);
+        final Object key = (target == null) ? null : wrapped.getObject(target.getKeyIndex());
+        if (key != null) {
+            readRepair.submit(target, key, cipherText, plainText);
+        }
+    }
+
+    /**
+     * Queue the re-protection of a stale value read in bulk with a new key.
+     *
+     * @param cipherText the value, as read from the database
+     * @param plainText  the plaintext of the value
+     * @param target     the target of repairs of the column of the value (null if the column cannot be repaired)
+     * @param key        the value of the key column of the row of the value (null if unknown)
+     */
+    private void repair(final String cipherText, final byte[] plainText, final IonicReadRepair.Target target,
+                        final Object key) {
+        if ((target != null) && (key != null)) {
+            readRepair.submit(target, key, cipherText, plainText);
+        }
+    }
 }
@@ -0,0 +1,124 @@
+package com.ionic.sdk.addon.jdbc;
+
+import com.ionic.sdk.addon.jdbc.impl.IonicKeyScheduler;
+import com.ionic.sdk.addon.jdbc.impl.IonicPartitionedJob;
+import com.ionic.sdk.addon.jdbc.impl.IonicPrefetchKeyServices;
+import com.ionic.sdk.addon.jdbc.impl.IonicRotationPolicy;
+import com.ionic.sdk.agent.cipher.chunk.ChunkCipherV2;
+import com.ionic.sdk.agent.cipher.chunk.data.ChunkCrypto;
+import com.ionic.sdk.agent.cipher.chunk.data.ChunkCryptoChunkInfo;
+import com.ionic.sdk.agent.cipher.chunk.data.ChunkCryptoEncryptAttributes;
+import com.ionic.sdk.agent.key.KeyAttributesMap;
+import com.ionic.sdk.agent.request.getkey.GetKeysResponse;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.key.KeyServices;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Re-protect the Ionic-protected values of a database table with new keys, in place (for example, to retire a
+ * keyspace, or to apply changed key attributes).  The columns to be processed (and the key attributes of the new
+ * keys) are taken from the "Tables" section of the Ionic JDBC config json; the values to be re-protected are chosen
+ * by an {@link IonicRotationPolicy}.
+ * <p>
+ * The keys of each page of rows are fetched in bulk, and the new keys are created in bulk.  The table is processed in
+ * parallel partitions, with progress recorded so that an interrupted job may be resumed; see
+ * {@link IonicPartitionedJob} for the settings of the job.  Additional settings are taken from the connection
+ * properties:
+ * <ul>
+ * <li>"ionic.rotation.rate": (optional) the maximum number of rows read per second, across all partitions, and
+ * shared with the other rotation jobs and the read-repair of the database (see
+ * {@link IonicRotationPolicy#getScheduler(String, Properties)})</li>
+ * </ul>
+ */
+public class IonicRotationJob extends IonicPartitionedJob {
+
+    /**
+     * The name of the counter of values which could not be re-protected, as their keys were not available.
+     */
+    public static final String METRIC_SKIPPED = "job.skipped";
+
+    /**
+     * The choice of values to be re-protected.
+     */
+    private final IonicRotationPolicy policy;
+
+    /**
+     * Limits the rate at which rows are read (null for no limit).
+     */
+    private final IonicKeyScheduler scheduler;
+
+    /**
+     * The flow of the job in the scheduler.
+     */
+    private final IonicKeyScheduler.Flow flow;
+
+    /**
+     * Constructor.
+     *
+     * @param url   the JDBC url of the database
+     * @param info  database connection parameters, and Ionic wrapper configuration
+     * @param table the name of the database table
+     * @throws SQLException on invalid settings, or if no columns of the table are configured for Ionic protection
+     */
+    public IonicRotationJob(final String url, final Properties info, final String table) throws SQLException {
+        super(url, info, table, "rotate:" + table);
+        this.policy = new IonicRotationPolicy(info);
+        try {
+            this.scheduler = IonicRotationPolicy.getScheduler(url, info);
+        } catch (IonicException e) {
+            throw new SQLException(e);
+        }
+        this.flow = (scheduler == null) ? null : scheduler.getFlow(getName(), 1.0);
+    }
+
+    @Override
+    protected void beforePage() throws IonicException {
+        // each admission by the scheduler allows one row to be read
+        for (int i = 0; (scheduler != null) && (i < getRowsPerPage()); ++i) {
+            scheduler.acquire(flow);
+            scheduler.release();
+        }
+    }
+
+    @Override
+    protected void processPage(final List<Row> rows, final KeyServices keyServices) throws IonicException {
+        final IonicPrefetchKeyServices keyServicesPrefetch =
+                new IonicPrefetchKeyServices(keyServices, getKeysPerRequest());
+        final Set<String> keyIds = new TreeSet<String>();
+        for (final Row row : rows) {
+            for (int i = 0; (i < row.getCount()); ++i) {
+                final String value = row.getValue(i);
+                final ChunkCryptoChunkInfo chunkInfo = (value == null) ? null : ChunkCrypto.getChunkInfo(value);
+                if ((chunkInfo != null) && chunkInfo.isEncrypted()) {
+                    keyIds.add(chunkInfo.getKeyId());
+                }
+            }
+        }
+        keyServicesPrefetch.prefetch(keyIds);
+        final ChunkCipherV2 chunkCipherOld = new ChunkCipherV2(keyServicesPrefetch);
+        final ChunkCipherV2 chunkCipherNew = new ChunkCipherV2(keyServices);
+        for (final Row row : rows) {
+            for (int i = 0; (i < row.getCount()); ++i) {
+                final String value = row.getValue(i);
+                final ChunkCryptoChunkInfo chunkInfo = (value == null) ? null : ChunkCrypto.getChunkInfo(value);
+                if ((chunkInfo == null) || (!chunkInfo.isEncrypted())) {
+                    continue;
+                }
+                final String keyId = chunkInfo.getKeyId();
+                final GetKeysResponse.Key key = keyServicesPrefetch.getPrefetched(keyId);
+                final KeyAttributesMap cattrs = getColumnConfig(i).getCattrs();
+                if (key == null) {
+                    getMetrics().increment(METRIC_SKIPPED);
+                } else if (policy.isStale(keyId, key, cattrs)) {
+                    final byte[] plainText = chunkCipherOld.decryptToBytes(value);
+                    row.setValue(i, chunkCipherNew.encrypt(plainText, new ChunkCryptoEncryptAttributes(cattrs)));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.ionic.sdk.addon.jdbc;
+
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+
+import java.sql.SQLException;
+
+/**
+ * A row of a query result, detached from its {@link java.sql.ResultSet}.  Ionic-protected values have been
+ * unprotected.  Rows are produced by the bulk and streaming read APIs of {@link IonicResultSet}, and may be passed
+ * between threads.
+ */
+public final class IonicRow {
+
+    /**
+     * The labels of the columns of the query result (shared by the rows of the result).
+     */
+    private final String[] labels;
+
+    /**
+     * The values of the columns of the row.
+     */
+    private final Object[] values;
+
+    /**
+     * Constructor.
+     *
+     * @param labels the labels of the columns of the query result
+     * @param values the values of the columns of the row
+     */
+    public IonicRow(final String[] labels, final Object[] values) {
+        this.labels = labels;
+        this.values = values;
+    }
+
+    /**
+     * @return the number of columns of the row
+     */
+    public int getColumnCount() {
+        return values.length;
+    }
+
+    /**
+     * @param columnIndex the ordinal of the column (the first column is 1)
+     * @return the label of the column
+     */
+    public String getColumnLabel(final int columnIndex) {
+        return labels[columnIndex - 1];
+    }
+
+    /**
+     * @param columnIndex the ordinal of the column (the first column is 1)
+     * @return the value of the column
+     */
+    public Object getObject(final int columnIndex) {
+        return values[columnIndex - 1];
+    }
+
+    /**
+     * @param columnLabel the label of the column
+     * @return the value of the column
+     * @throws SQLException if the row has no column with the label
+     */
+    public Object getObject(final String columnLabel) throws SQLException {
+        return getObject(findColumn(columnLabel));
+    }
+
+    /**
+     * @param columnIndex the ordinal of the column (the first column is 1)
+     * @return the value of the column, as a String
+     */
+    public String getString(final int columnIndex) {
+        final Object value = getObject(columnIndex);
+        return (value == null) ? null : value.toString();
+    }
+
+    /**
+     * @param columnLabel the label of the column
+     * @return the value of the column, as a String
+     * @throws SQLException if the row has no column with the label
+     */
+    public String getString(final String columnLabel) throws SQLException {
+        return getString(findColumn(columnLabel));
+    }
+
+    /**
+     * @param columnLabel the label of a column (not case sensitive)
+     * @return the ordinal of the column (the first column is 1)
+     * @throws SQLException if the row has no column with the label
+     */
+    public int findColumn(final String columnLabel) throws SQLException {
+        for (int i = 0; (i < labels.length); ++i) {
+            if (labels[i].equalsIgnoreCase(columnLabel)) {
+                return i + 1;
+            }
+        }
+        throw new SQLException(new IonicException(SdkError.ISAGENT_RESOURCE_NOT_FOUND, columnLabel));
+    }
+}
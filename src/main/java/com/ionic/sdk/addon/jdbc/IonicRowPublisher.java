@@ -0,0 +1,226 @@
+package com.ionic.sdk.addon.jdbc;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Publish the rows of a query result to a single {@link Flow.Subscriber}, honoring its demand.
+ * <p>
+ * The query is executed when the subscriber first requests rows.  Rows are read (and their protected values
+ * unprotected, with the keys of each window of rows fetched in bulk) only as they are requested; no thread is held
+ * while the subscriber has no outstanding demand.  The result set is closed on completion, on error, and on
+ * cancellation.  For memory use to be bounded, the statement should have a fetch size (and, for PostgreSQL, the
+ * connection should not be in auto-commit mode), so that the database driver also reads the result incrementally.
+ */
+public class IonicRowPublisher implements Flow.Publisher<IonicRow> {
+
+    /**
+     * The default maximum number of rows read at once, if the result set has no fetch size.
+     */
+    private static final int WINDOW_DEFAULT = 256;
+
+    /**
+     * Executes the query.
+     */
+    private final Callable<IonicResultSet> query;
+
+    /**
+     * Reads and delivers rows.
+     */
+    private final Executor executor;
+
+    /**
+     * True once a subscriber has subscribed (the query result may be published only once).
+     */
+    private final AtomicBoolean subscribed;
+
+    /**
+     * Constructor.
+     *
+     * @param query    executes the query
+     * @param executor reads and delivers rows
+     */
+    public IonicRowPublisher(final Callable<IonicResultSet> query, final Executor executor) {
+        this.query = query;
+        this.executor = executor;
+        this.subscribed = new AtomicBoolean();
+    }
+
+    @Override
+    public void subscribe(final Flow.Subscriber<? super IonicRow> subscriber) {
+        if (subscribed.compareAndSet(false, true)) {
+            final RowSubscription subscription = new RowSubscription(subscriber);
+            subscriber.onSubscribe(subscription);
+        } else {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(final long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("query result already published"));
+        }
+    }
+
+    /**
+     * The subscription of the subscriber, delivering rows in response to demand.
+     */
+    private final class RowSubscription implements Flow.Subscription, Runnable {
+
+        /**
+         * The subscriber.
+         */
+        private final Flow.Subscriber<? super IonicRow> subscriber;
+
+        /**
+         * The number of rows requested, and not yet delivered.
+         */
+        private final AtomicLong demand;
+
+        /**
+         * The number of signals (requests and cancellation) not yet handled by the delivery task; the task is
+         * scheduled only on transition from zero, so that deliveries are serialized.
+         */
+        private final AtomicInteger pending;
+
+        /**
+         * True once the subscriber has cancelled.
+         */
+        private volatile boolean cancelled;
+
+        /**
+         * An invalid use of the subscription, to be reported to the subscriber (null if none).
+         */
+        private volatile Throwable error;
+
+        /**
+         * True once the subscription has completed (normally or with an error); accessed by the delivery task.
+         */
+        private boolean done;
+
+        /**
+         * The query result (null before the first request); accessed by the delivery task.
+         */
+        private IonicResultSet resultSet;
+
+        /**
+         * Constructor.
+         *
+         * @param subscriber the subscriber
+         */
+        private RowSubscription(final Flow.Subscriber<? super IonicRow> subscriber) {
+            this.subscriber = subscriber;
+            this.demand = new AtomicLong();
+            this.pending = new AtomicInteger();
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n <= 0L) {
+                error = new IllegalArgumentException("non-positive request: " + n);
+                signal();
+                return;
+            }
+            long current;
+            long updated;
+            do {
+                current = demand.get();
+                updated = (current + n < 0L) ? Long.MAX_VALUE : current + n;
+            } while (!demand.compareAndSet(current, updated));
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            signal();
+        }
+
+        /**
+         * Schedule the delivery task, unless it is already scheduled.
+         */
+        private void signal() {
+            if (pending.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    subscriber.onError(e);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                deliver();
+                missed = pending.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Deliver rows while there is demand, closing the query result once the subscription ends.
+         */
+        private void deliver() {
+            if (done) {
+                return;
+            } else if (error != null) {
+                finish();
+                subscriber.onError(error);
+                return;
+            }
+            try {
+                while ((!cancelled) && (demand.get() > 0L)) {
+                    if (resultSet == null) {
+                        resultSet = query.call();
+                    }
+                    final int fetchSize = resultSet.getFetchSize();
+                    final int window = (int) Math.min(demand.get(), (fetchSize > 0) ? fetchSize : WINDOW_DEFAULT);
+                    final List<IonicRow> rows = resultSet.fetchRows(window);
+                    // rows read after a cancellation (signalled from within onNext) are not delivered
+                    for (int i = 0; (i < rows.size()) && (!cancelled); ++i) {
+                        subscriber.onNext(rows.get(i));
+                        demand.decrementAndGet();
+                    }
+                    if ((!cancelled) && (rows.size() < window)) {
+                        finish();
+                        subscriber.onComplete();
+                        return;
+                    }
+                }
+                if (cancelled) {
+                    finish();
+                }
+            } catch (Exception e) {
+                finish();
+                subscriber.onError((e instanceof SQLException) ? e : new SQLException(e));
+            }
+        }
+
+        /**
+         * End the subscription, releasing the query result.
+         */
+        private void finish() {
+            done = true;
+            if (resultSet != null) {
+                try {
+                    resultSet.close();
+                } catch (SQLException e) {
+                    Logger.getLogger(getClass().getName()).fine(e.getMessage());
+                }
+                resultSet = null;
+            }
+        }
+    }
+}
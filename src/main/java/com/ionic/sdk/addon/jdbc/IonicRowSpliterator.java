@@ -0,0 +1,235 @@
+package com.ionic.sdk.addon.jdbc;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * A {@link Spliterator} over the remaining rows of an {@link IonicResultSet}, backing {@link IonicResultSet#stream()}.
+ * <p>
+ * Rows are read from the cursor in chunks, sized from the fetch size of the result set.  Each split hands out a chunk
+ * of rows, read but not yet unprotected; the protected values of the chunk (with their keys fetched in bulk) are
+ * unprotected by the thread which traverses it, so that the fork-join tasks of a parallel stream unprotect chunks
+ * concurrently.  Only the reading of chunks from the cursor is serial.
+ * <p>
+ * The result set is closed once its last row has been read, or when {@link #close()} is called.
+ */
+final class IonicRowSpliterator implements Spliterator<IonicRow> {
+
+    /**
+     * The default number of rows in each chunk, if the result set has no fetch size.
+     */
+    static final int CHUNK_DEFAULT = 256;
+
+    /**
+     * Chunks with fewer rows than this are not split further.
+     */
+    private static final int SPLIT_MIN = 16;
+
+    /**
+     * The result set.
+     */
+    private final IonicResultSet resultSet;
+
+    /**
+     * The labels of the columns of the result set.
+     */
+    private final String[] labels;
+
+    /**
+     * The number of rows in each chunk read from the cursor.
+     */
+    private final int chunkSize;
+
+    /**
+     * The chunk being traversed by this spliterator (null if none).
+     */
+    private Chunk current;
+
+    /**
+     * True once the last row has been read from the cursor, or the result set has been closed.
+     */
+    private boolean exhausted;
+
+    /**
+     * Constructor.
+     *
+     * @param resultSet the result set
+     * @param labels    the labels of the columns of the result set
+     * @param chunkSize the number of rows in each chunk read from the cursor
+     */
+    IonicRowSpliterator(final IonicResultSet resultSet, final String[] labels, final int chunkSize) {
+        this.resultSet = resultSet;
+        this.labels = labels;
+        this.chunkSize = chunkSize;
+        this.current = null;
+        this.exhausted = false;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super IonicRow> action) {
+        while ((current == null) || (current.estimateSize() == 0L)) {
+            current = readChunk();
+            if (current == null) {
+                return false;
+            }
+        }
+        return current.tryAdvance(action);
+    }
+
+    @Override
+    public void forEachRemaining(final Consumer<? super IonicRow> action) {
+        while (tryAdvance(action)) {
+            if (current != null) {
+                current.forEachRemaining(action);
+            }
+        }
+    }
+
+    @Override
+    public Spliterator<IonicRow> trySplit() {
+        // the chunk in traversal (if any) precedes the rows remaining in the cursor
+        if ((current != null) && (current.estimateSize() > 0L)) {
+            final Chunk chunk = current;
+            current = null;
+            return chunk;
+        }
+        current = null;
+        return readChunk();
+    }
+
+    @Override
+    public long estimateSize() {
+        return exhausted ? ((current == null) ? 0L : current.estimateSize()) : Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+
+    /**
+     * Close the result set (if it is not already closed), abandoning any rows not yet read.
+     */
+    void close() {
+        exhausted = true;
+        try {
+            resultSet.close();
+        } catch (SQLException e) {
+            Logger.getLogger(getClass().getName()).fine(e.getMessage());
+        }
+    }
+
+    /**
+     * Read the next chunk of rows from the cursor.
+     *
+     * @return the chunk, or null if no rows remain
+     */
+    private Chunk readChunk() {
+        if (exhausted) {
+            return null;
+        }
+        final List<Object[]> rows;
+        try {
+            rows = resultSet.readRows(chunkSize);
+        } catch (SQLException e) {
+            close();
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+        if (rows.size() < chunkSize) {
+            close();
+        }
+        return rows.isEmpty() ? null : new Chunk(rows, 0, rows.size());
+    }
+
+    /**
+     * A chunk of rows read from the cursor, unprotected on first traversal.
+     */
+    private final class Chunk implements Spliterator<IonicRow> {
+
+        /**
+         * The values of the rows of the chunk.
+         */
+        private final List<Object[]> rows;
+
+        /**
+         * The index of the next row to be traversed.
+         */
+        private int from;
+
+        /**
+         * The index following the last row of this spliterator.
+         */
+        private final int to;
+
+        /**
+         * True once the rows of this spliterator have been unprotected.
+         */
+        private boolean decrypted;
+
+        /**
+         * Constructor.
+         *
+         * @param rows the values of the rows of the chunk
+         * @param from the index of the first row of this spliterator
+         * @param to   the index following the last row of this spliterator
+         */
+        private Chunk(final List<Object[]> rows, final int from, final int to) {
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+            this.decrypted = false;
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super IonicRow> action) {
+            if (from >= to) {
+                return false;
+            }
+            decrypt();
+            action.accept(new IonicRow(labels, rows.get(from++)));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(final Consumer<? super IonicRow> action) {
+            decrypt();
+            while (from < to) {
+                action.accept(new IonicRow(labels, rows.get(from++)));
+            }
+        }
+
+        @Override
+        public Spliterator<IonicRow> trySplit() {
+            if (decrypted || ((to - from) < (SPLIT_MIN * 2))) {
+                return null;
+            }
+            final int middle = (from + to) >>> 1;
+            final Chunk prefix = new Chunk(rows, from, middle);
+            from = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | SIZED | SUBSIZED;
+        }
+
+        /**
+         * Unprotect the rows of this spliterator, on first traversal.
+         */
+        private void decrypt() {
+            if (!decrypted) {
+                resultSet.decryptRows(rows.subList(from, to));
+                decrypted = true;
+            }
+        }
+    }
+}
@@ -1,12 +1,17 @@
 package com.ionic.sdk.addon.jdbc;
 
-import com.ionic.sdk.agent.Agent;
+import com.ionic.sdk.addon.jdbc.impl.IonicAsync;
+import com.ionic.sdk.addon.jdbc.impl.IonicConnectionServices;
+import com.ionic.sdk.key.KeyServices;
 
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLWarning;
 import java.sql.Statement;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Implementation of JDBC interface {@link java.sql.Statement}.  Populated from IDE "Implement Methods" wizard.
@@ -19,24 +24,44 @@ public class IonicStatement implements java.sql.Statement {
     private final Statement wrapped;
 
     /**
-     * Ionic agent, used to protect data on database insert, and unprotect data on database fetch.
+     * Ionic key services, used to protect data on database insert, and unprotect data on database fetch.
      */
-    private final Agent agent;
+    private final KeyServices keyServices;
+
+    /**
+     * The optional services (read-repair, token vault, value cache) of the connection of this statement.
+     */
+    private final IonicConnectionServices services;
+
+    /**
+     * Constructor.
+     *
+     * @param wrapped     {@link Statement} supplied by the underlying {@link Connection}
+     * @param keyServices Ionic key services, used to protect data on database insert, and to unprotect data on
+     *                    database fetch
+     */
+    public IonicStatement(final Statement wrapped, KeyServices keyServices) {
+        this(wrapped, keyServices, IonicConnectionServices.NONE);
+    }
 
     /**
      * Constructor.
      *
-     * @param wrapped {@link Statement} supplied by the underlying {@link Connection}
-     * @param agent   Ionic agent, used to protect data on database insert, and to unprotect data on database fetch
+     * @param wrapped     {@link Statement} supplied by the underlying {@link Connection}
+     * @param keyServices Ionic key services, used to protect data on database insert, and to unprotect data on
+     *                    database fetch
+     * @param services    the optional services (read-repair, token vault, value cache) of the connection
      */
-    public IonicStatement(final Statement wrapped, Agent agent) {
+    public IonicStatement(final Statement wrapped, final KeyServices keyServices,
+                          final IonicConnectionServices services) {
         this.wrapped = wrapped;
-        this.agent = agent;
+        this.keyServices = keyServices;
+        this.services = services;
     }
 
     @Override
     public ResultSet executeQuery(String sql) throws SQLException {
-        return wrapped.executeQuery(sql);
+        return new IonicResultSet(wrapped.executeQuery(sql), keyServices, services);
     }
 
     @Override
@@ -44,6 +69,93 @@ public class IonicStatement implements java.sql.Statement {
         return wrapped.executeUpdate(sql);
     }
 
+    /**
+     * Execute a query on a thread of the driver's default executor (see {@link IonicAsync}).  The statement should
+     * not be used again until the returned future completes.
+     *
+     * @param sql an SQL statement to be sent to the database, typically a static SQL SELECT statement
+     * @return a future, completed with the result of the query, or completed exceptionally with a
+     * {@link SQLException}
+     */
+    public CompletableFuture<ResultSet> executeQueryAsync(final String sql) {
+        return executeQueryAsync(sql, IonicAsync.getDefaultExecutor());
+    }
+
+    /**
+     * Execute a query asynchronously, as {@link #executeQuery(String)} does.  The statement should not be used again
+     * until the returned future completes.
+     *
+     * @param sql      an SQL statement to be sent to the database, typically a static SQL SELECT statement
+     * @param executor the executor of the query
+     * @return a future, completed with the result of the query, or completed exceptionally with a
+     * {@link SQLException}
+     */
+    public CompletableFuture<ResultSet> executeQueryAsync(final String sql, final Executor executor) {
+        return IonicAsync.supply(new Callable<ResultSet>() {
+            @Override
+            public ResultSet call() throws SQLException {
+                return executeQuery(sql);
+            }
+        }, executor);
+    }
+
+    /**
+     * Publish the result of a query to a reactive subscriber, using the driver's default executor (see
+     * {@link IonicAsync}).  The query is executed on the first request of the subscriber.
+     *
+     * @param sql an SQL statement to be sent to the database, typically a static SQL SELECT statement
+     * @return a publisher of the rows of the query result, which accepts a single subscriber
+     */
+    public IonicRowPublisher publishQuery(final String sql) {
+        return publishQuery(sql, IonicAsync.getDefaultExecutor());
+    }
+
+    /**
+     * Publish the result of a query to a reactive subscriber.  The query is executed on the first request of the
+     * subscriber.  The statement should not be used again until the subscription ends.
+     *
+     * @param sql      an SQL statement to be sent to the database, typically a static SQL SELECT statement
+     * @param executor reads and delivers rows
+     * @return a publisher of the rows of the query result, which accepts a single subscriber
+     */
+    public IonicRowPublisher publishQuery(final String sql, final Executor executor) {
+        return new IonicRowPublisher(new Callable<IonicResultSet>() {
+            @Override
+            public IonicResultSet call() throws SQLException {
+                return (IonicResultSet) executeQuery(sql);
+            }
+        }, executor);
+    }
+
+    /**
+     * Execute an update on a thread of the driver's default executor (see {@link IonicAsync}).  The statement should
+     * not be used again until the returned future completes.
+     *
+     * @param sql an SQL Data Manipulation Language (DML) statement
+     * @return a future, completed with the row count of the update, or completed exceptionally with a
+     * {@link SQLException}
+     */
+    public CompletableFuture<Integer> executeUpdateAsync(final String sql) {
+        return executeUpdateAsync(sql, IonicAsync.getDefaultExecutor());
+    }
+
+    /**
+     * Execute an update asynchronously.  The statement should not be used again until the returned future completes.
+     *
+     * @param sql      an SQL Data Manipulation Language (DML) statement
+     * @param executor the executor of the update
+     * @return a future, completed with the row count of the update, or completed exceptionally with a
+     * {@link SQLException}
+     */
+    public CompletableFuture<Integer> executeUpdateAsync(final String sql, final Executor executor) {
+        return IonicAsync.supply(new Callable<Integer>() {
+            @Override
+            public Integer call() throws SQLException {
+                return executeUpdate(sql);
+            }
+        }, executor);
+    }
+
     @Override
     public void close() throws SQLException {
         wrapped.close();
@@ -111,7 +223,7 @@ public class IonicStatement implements java.sql.Statement {
 
     @Override
     public ResultSet getResultSet() throws SQLException {
-        return new IonicResultSet(wrapped.getResultSet(), agent);
+        return new IonicResultSet(wrapped.getResultSet(), keyServices, services);
     }
 
     @Override
@@ -0,0 +1,90 @@
+package com.ionic.sdk.addon.jdbc.impl;
+
+import com.ionic.sdk.agent.Agent;
+import com.ionic.sdk.agent.request.createkey.CreateKeysRequest;
+import com.ionic.sdk.agent.request.createkey.CreateKeysResponse;
+import com.ionic.sdk.agent.request.getkey.GetKeysRequest;
+import com.ionic.sdk.agent.request.getkey.GetKeysResponse;
+import com.ionic.sdk.error.IonicException;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Make the key server requests of a connection through a pool of {@link Agent} clones.
+ * <p>
+ * An {@link Agent} is not safe for concurrent use, but a connection of this driver makes key server requests from
+ * several threads at once: hedged duplicates of slow requests ({@link IonicHedgingKeyServices}), the encoders of
+ * {@link com.ionic.sdk.addon.jdbc.IonicCopyLoader}, pipelined statement parameters, asynchronous statements, and the
+ * parallel unprotection of result set rows.  Each request therefore borrows an {@link Agent} of its own for the
+ * duration of the request, cloned from the connection's {@link Agent} when no idle clone is available.  The pool
+ * grows to the peak number of concurrent requests of the connection; the connection's {@link Agent} itself makes no
+ * requests, and only answers for the active profile.
+ */
+public class IonicAgentPoolKeyServices extends IonicKeyServices {
+
+    /**
+     * The template of the clones of the pool.
+     */
+    private final Agent agent;
+
+    /**
+     * The clones not currently in use.
+     */
+    private final Queue<Agent> idle;
+
+    /**
+     * Serializes the cloning of the template, so that the template is never read by two threads at once.
+     */
+    private final ReentrantLock cloneLock;
+
+    /**
+     * Constructor.
+     *
+     * @param agent the template of the {@link Agent}s used to make key server requests
+     */
+    public IonicAgentPoolKeyServices(final Agent agent) {
+        super(agent);
+        this.agent = agent;
+        this.idle = new ConcurrentLinkedQueue<Agent>();
+        this.cloneLock = new ReentrantLock();
+    }
+
+    @Override
+    public CreateKeysResponse createKeys(final CreateKeysRequest request) throws IonicException {
+        final Agent agentRequest = borrow();
+        try {
+            return agentRequest.createKeys(request);
+        } finally {
+            idle.offer(agentRequest);
+        }
+    }
+
+    @Override
+    public GetKeysResponse getKeys(final GetKeysRequest request) throws IonicException {
+        final Agent agentRequest = borrow();
+        try {
+            return agentRequest.getKeys(request);
+        } finally {
+            idle.offer(agentRequest);
+        }
+    }
+
+    /**
+     * @return an {@link Agent} for the exclusive use of the caller, until it is returned to {@link #idle}
+     * @throws IonicException on failure to clone the template {@link Agent}
+     */
+    private Agent borrow() throws IonicException {
+        final Agent agentIdle = idle.poll();
+        if (agentIdle != null) {
+            return agentIdle;
+        }
+        cloneLock.lock();
+        try {
+            return Agent.clone(agent);
+        } finally {
+            cloneLock.unlock();
+        }
+    }
+}
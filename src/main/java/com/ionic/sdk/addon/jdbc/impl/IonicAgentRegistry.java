@@ -0,0 +1,197 @@
+package com.ionic.sdk.addon.jdbc.impl;
+
+import com.ionic.sdk.agent.Agent;
+import com.ionic.sdk.core.res.Resource;
+import com.ionic.sdk.device.profile.persistor.DeviceProfilePersistorPlainText;
+import com.ionic.sdk.device.profile.persistor.ProfilePersistor;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Per-process registry of initialized template {@link Agent} objects, keyed by the location of the Ionic Secure
+ * Enrollment Profile (SEP) and the (optional) device identity to be made active within that profile.
+ * <p>
+ * Lookups of an already initialized template do not lock.  The first request for a given key initializes the
+ * template; concurrent requests for the same key wait on that single initialization.  A failed initialization is
+ * not cached, so a later request will try again.
+ */
+public final class IonicAgentRegistry {
+
+    /**
+     * The per-process singleton of this object.
+     */
+    private static final IonicAgentRegistry INSTANCE = new IonicAgentRegistry();
+
+    /**
+     * The initialized (or initializing) template {@link Agent} objects, keyed by SEP location and identity.
+     */
+    private final ConcurrentMap<String, FutureTask<Agent>> agents;
+
+    /**
+     * The resolved form of each SEP location seen by the registry, so that the filesystem and classpath are consulted
+     * once per location, rather than on each lookup.
+     */
+    private final ConcurrentMap<String, String> locations;
+
+    /**
+     * Constructor.
+     */
+    private IonicAgentRegistry() {
+        this.agents = new ConcurrentHashMap<String, FutureTask<Agent>>();
+        this.locations = new ConcurrentHashMap<String, String>();
+    }
+
+    /**
+     * @return the per-process singleton of this object
+     */
+    public static IonicAgentRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get the template {@link Agent} associated with the specified SEP, initializing it on first use.
+     *
+     * @param location path of {@link ProfilePersistor} information (classpath resource or filesystem file)
+     * @param deviceId the device identity to be made active in the profile; null for the profile default
+     * @return the initialized template {@link Agent}; callers should use a clone of this object
+     * @throws IonicException on failure to initialize {@link Agent}
+     */
+    public Agent getAgent(final String location, final String deviceId) throws IonicException {
+        if (location == null) {
+            throw new IonicException(SdkError.ISAGENT_MISSINGVALUE, "ionic.sep");
+        }
+        final String key = toKey(location, deviceId);
+        FutureTask<Agent> task = agents.get(key);
+        if (task == null) {
+            final FutureTask<Agent> taskCreate = new FutureTask<Agent>(new Callable<Agent>() {
+                @Override
+                public Agent call() throws IonicException {
+                    return getIonicAgent(location, deviceId);
+                }
+            });
+            task = agents.putIfAbsent(key, taskCreate);
+            if (task == null) {
+                task = taskCreate;
+                taskCreate.run();
+            }
+        }
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            // do not cache failures; next request for this key should retry
+            agents.remove(key, task);
+            final Throwable cause = e.getCause();
+            throw (cause instanceof IonicException)
+                    ? (IonicException) cause : new IonicException(SdkError.ISAGENT_ERROR, cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IonicException(SdkError.ISAGENT_ERROR, e);
+        }
+    }
+
+    /**
+     * Remove the template {@link Agent} associated with the specified SEP from the registry.  Connections already
+     * holding a clone of the template are unaffected.
+     *
+     * @param location path of {@link ProfilePersistor} information (classpath resource or filesystem file)
+     * @param deviceId the device identity to be made active in the profile; null for the profile default
+     * @return true, iff a template was registered for the specified SEP
+     */
+    public boolean evict(final String location, final String deviceId) {
+        final boolean evicted = (agents.remove(toKey(location, deviceId)) != null);
+        locations.remove(location);
+        return evicted;
+    }
+
+    /**
+     * Remove all template {@link Agent} objects from the registry.
+     */
+    public void clear() {
+        agents.clear();
+        locations.clear();
+    }
+
+    /**
+     * @return the number of templates currently held by the registry
+     */
+    public int size() {
+        return agents.size();
+    }
+
+    /**
+     * Derive the registry key for a SEP.  Equivalent references to the same filesystem file share a key.
+     *
+     * @param location path of {@link ProfilePersistor} information (classpath resource or filesystem file)
+     * @param deviceId the device identity to be made active in the profile; null for the profile default
+     * @return the registry key
+     */
+    private String toKey(final String location, final String deviceId) {
+        String locationKey = locations.get(location);
+        if (locationKey == null) {
+            locationKey = resolveLocation(location);
+            // a location not (yet) found is not remembered, so that a profile created later is found
+            if (locationKey != null) {
+                locations.put(location, locationKey);
+            }
+        }
+        return ((locationKey == null) ? location : locationKey) + "#" + ((deviceId == null) ? "" : deviceId);
+    }
+
+    /**
+     * Resolve a SEP location to its canonical form.
+     *
+     * @param location path of {@link ProfilePersistor} information (classpath resource or filesystem file)
+     * @return the url of the classpath resource, or the canonical path of the filesystem file; null if not found
+     */
+    private static String resolveLocation(final String location) {
+        final URL url = Resource.resolve(location);
+        final File file = new File(location);
+        if (url != null) {
+            return url.toExternalForm();
+        } else if (file.exists()) {
+            try {
+                return file.getCanonicalPath();
+            } catch (IOException e) {
+                return file.getAbsolutePath();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Template {@link Agent} is initialized from {@link ProfilePersistor}.
+     *
+     * @param location path of {@link ProfilePersistor} information
+     * @param deviceId the device identity to be made active in the profile; null for the profile default
+     * @return initialized {@link Agent}
+     * @throws IonicException on failure to initialize {@link Agent}
+     */
+    private static Agent getIonicAgent(final String location, final String deviceId) throws IonicException {
+        // interpret setting as a classpath resource
+        final URL url = Resource.resolve(location);
+        // interpret setting as a filesystem file
+        final File file = new File(location);
+        // load the profile from the indicated location
+        final Agent agent;
+        if (url != null) {
+            agent = new Agent(new DeviceProfilePersistorPlainText(url));
+        } else if (file.exists()) {
+            agent = new Agent(new DeviceProfilePersistorPlainText(file.getPath()));
+        } else {
+            throw new IonicException(SdkError.ISAGENT_RESOURCE_NOT_FOUND, location);
+        }
+        if ((deviceId != null) && (!agent.setActiveProfile(deviceId))) {
+            throw new IonicException(SdkError.ISAGENT_RESOURCE_NOT_FOUND, deviceId);
+        }
+        return agent;
+    }
+}
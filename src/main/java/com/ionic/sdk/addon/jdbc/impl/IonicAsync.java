@@ -0,0 +1,98 @@
+package com.ionic.sdk.addon.jdbc.impl;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.logging.Logger;
+
+/**
+ * Support for the asynchronous statement execution methods of the driver.
+ * <p>
+ * By default, asynchronous work runs on virtual threads, when the Java runtime provides them (Java 21 and later), so
+ * that many concurrent statements do not need many platform threads.  On earlier runtimes, a pool of daemon platform
+ * threads is used.  Callers may supply their own {@link Executor} instead.
+ */
+public final class IonicAsync {
+
+    /**
+     * The default executor of asynchronous work.
+     */
+    private static final ExecutorService EXECUTOR = createExecutor();
+
+    /**
+     * Constructor.
+     */
+    private IonicAsync() {
+    }
+
+    /**
+     * @return the default executor of asynchronous work
+     */
+    public static Executor getDefaultExecutor() {
+        return EXECUTOR;
+    }
+
+    /**
+     * @return true, iff the default executor runs work on virtual threads
+     */
+    public static boolean isVirtual() {
+        return !(EXECUTOR instanceof ThreadPoolExecutor);
+    }
+
+    /**
+     * Run blocking work asynchronously.
+     *
+     * @param callable the work
+     * @param executor the executor of the work
+     * @param <T>      the type of the result of the work
+     * @return a future, completed with the result of the work, or completed exceptionally with the exception thrown
+     * by the work (not wrapped)
+     */
+    public static <T> CompletableFuture<T> supply(final Callable<T> callable, final Executor executor) {
+        final CompletableFuture<T> future = new CompletableFuture<T>();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        future.complete(callable.call());
+                    } catch (Exception e) {
+                        future.completeExceptionally(e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Create the default executor.  Virtual threads are looked up reflectively, as the driver is compiled for Java 9,
+     * and runs on runtimes which predate them.
+     *
+     * @return the default executor of asynchronous work
+     */
+    private static ExecutorService createExecutor() {
+        try {
+            final Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            Logger.getLogger(IonicAsync.class.getName()).fine("virtual threads not available");
+        }
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "ionic-jdbc-async");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+}
@@ -0,0 +1,259 @@
+package com.ionic.sdk.addon.jdbc.impl;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The batch of rows added to a {@link PreparedStatement}, held by the Ionic driver so that the batch may be sent to
+ * the database as multi-row insert statements (see {@link IonicInsertRewriter}).
+ * <p>
+ * Parameter values are captured as they are supplied to the statement.  If a parameter is supplied in a form that
+ * cannot be captured (for example, a stream), the rows held so far are passed to the batch of the underlying
+ * statement, and the remainder of the batch is executed by the underlying driver, one row at a time.
+ */
+public class IonicBatch {
+
+    /**
+     * The rewriter of the statement SQL.
+     */
+    private final IonicInsertRewriter rewriter;
+
+    /**
+     * The number of rows in each rewritten statement.
+     */
+    private final int rowsPerStatement;
+
+    /**
+     * The parameter values of the current row.
+     */
+    private final Value[] values;
+
+    /**
+     * The rows added to the batch.
+     */
+    private final List<Value[]> rows;
+
+    /**
+     * The rewritten statement for a full set of rows, reused across batches.
+     */
+    private PreparedStatement statementFull;
+
+    /**
+     * True while parameter values are being captured.
+     */
+    private boolean enabled;
+
+    /**
+     * Constructor.
+     *
+     * @param rewriter         the rewriter of the statement SQL
+     * @param rowsPerStatement the number of rows in each rewritten statement
+     */
+    public IonicBatch(final IonicInsertRewriter rewriter, final int rowsPerStatement) {
+        this.rewriter = rewriter;
+        this.rowsPerStatement = rewriter.getMaxRows(rowsPerStatement);
+        this.values = new Value[rewriter.getParameterCount()];
+        this.rows = new ArrayList<Value[]>();
+        this.enabled = true;
+    }
+
+    /**
+     * @return true, iff batch rows are being held by this object
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Capture a parameter of the current row.
+     *
+     * @param dbIndex the ordinal of the parameter
+     * @param value   the parameter value
+     */
+    public void set(final int dbIndex, final Object value) {
+        values[dbIndex - 1] = new Value(value, null, null);
+    }
+
+    /**
+     * Capture a parameter of the current row.
+     *
+     * @param dbIndex the ordinal of the parameter
+     * @param value   the parameter value
+     * @param sqlType the SQL type (from {@link java.sql.Types}) to be sent to the database
+     * @param scale   the scale (or length) of the value; null if not specified
+     */
+    public void set(final int dbIndex, final Object value, final int sqlType, final Integer scale) {
+        values[dbIndex - 1] = new Value(value, sqlType, scale);
+    }
+
+    /**
+     * Note that a parameter of the current row is held by the Ionic protection logic (as distinct from a null value,
+     * which is captured by {@link #set(int, Object)}).
+     *
+     * @param dbIndex the ordinal of the parameter
+     */
+    public void unset(final int dbIndex) {
+        values[dbIndex - 1] = null;
+    }
+
+    /**
+     * Clear the parameters of the current row.
+     */
+    public void clearParameters() {
+        Arrays.fill(values, null);
+    }
+
+    /**
+     * Add the current row to the batch.
+     *
+     * @param encrypted the parameters held by the Ionic protection logic (already protected), which take precedence
+     *                  over the captured parameters
+     */
+    public void add(final Object[] encrypted) {
+        final Value[] row = values.clone();
+        for (int i = 0; (i < row.length); ++i) {
+            row[i] = (encrypted[i] == null) ? row[i] : new Value(encrypted[i], null, null);
+        }
+        rows.add(row);
+    }
+
+    /**
+     * Stop capturing parameter values.  The rows held so far are added to the batch of the underlying statement,
+     * and the parameters of the current row are restored to the underlying statement.
+     *
+     * @param wrapped the underlying statement
+     * @throws SQLException on failure to pass the rows to the underlying statement
+     */
+    public void disable(final PreparedStatement wrapped) throws SQLException {
+        if (enabled) {
+            enabled = false;
+            for (final Value[] row : rows) {
+                bind(wrapped, row, 0);
+                wrapped.addBatch();
+            }
+            rows.clear();
+            bind(wrapped, values, 0);
+        }
+    }
+
+    /**
+     * Discard the rows held in the batch.
+     */
+    public void clear() {
+        rows.clear();
+    }
+
+    /**
+     * Send the rows held in the batch to the database, using multi-row insert statements.
+     *
+     * @param connection the underlying connection
+     * @return the update counts of the rows
+     * @throws BatchUpdateException on database errors, with the update counts of the rows sent before the failure
+     */
+    public int[] execute(final Connection connection) throws BatchUpdateException {
+        final int[] counts = new int[rows.size()];
+        int offset = 0;
+        try {
+            while (offset < rows.size()) {
+                final int count = Math.min(rowsPerStatement, rows.size() - offset);
+                final boolean isFull = (count == rowsPerStatement);
+                if (isFull && (statementFull == null)) {
+                    statementFull = connection.prepareStatement(rewriter.getSql(count));
+                }
+                final PreparedStatement statement = isFull
+                        ? statementFull : connection.prepareStatement(rewriter.getSql(count));
+                try {
+                    for (int row = 0; (row < count); ++row) {
+                        bind(statement, rows.get(offset + row), row * values.length);
+                    }
+                    final int updated = statement.executeUpdate();
+                    Arrays.fill(counts, offset, offset + count, (updated == count) ? 1 : Statement.SUCCESS_NO_INFO);
+                } finally {
+                    if (!isFull) {
+                        statement.close();
+                    }
+                }
+                offset += count;
+            }
+        } catch (SQLException e) {
+            throw new BatchUpdateException(e.getMessage(), e.getSQLState(), e.getErrorCode(),
+                    Arrays.copyOf(counts, offset), e);
+        } finally {
+            rows.clear();
+        }
+        return counts;
+    }
+
+    /**
+     * Release the resources held by this object.
+     *
+     * @throws SQLException on database errors
+     */
+    public void close() throws SQLException {
+        rows.clear();
+        if (statementFull != null) {
+            statementFull.close();
+            statementFull = null;
+        }
+    }
+
+    /**
+     * Bind the parameters of a row to a statement.
+     *
+     * @param statement the statement
+     * @param row       the parameters of the row
+     * @param offset    the number of statement parameters preceding those of the row
+     * @throws SQLException on database errors
+     */
+    private static void bind(final PreparedStatement statement, final Value[] row,
+                             final int offset) throws SQLException {
+        for (int i = 0; (i < row.length); ++i) {
+            final int dbIndex = offset + i + 1;
+            final Value value = row[i];
+            if (value == null) {
+                continue;
+            } else if (value.sqlType == null) {
+                statement.setObject(dbIndex, value.value);
+            } else if (value.value == null) {
+                statement.setNull(dbIndex, value.sqlType);
+            } else if (value.scale == null) {
+                statement.setObject(dbIndex, value.value, value.sqlType);
+            } else {
+                statement.setObject(dbIndex, value.value, value.sqlType, value.scale);
+            }
+        }
+    }
+
+    /**
+     * A captured parameter value.
+     */
+    private static final class Value {
+
+        /**
+         * The parameter value.
+         */
+        private final Object value;
+
+        /**
+         * The SQL type to be sent to the database (null if not specified).
+         */
+        private final Integer sqlType;
+
+        /**
+         * The scale (or length) of the value (null if not specified).
+         */
+        private final Integer scale;
+
+        private Value(final Object value, final Integer sqlType, final Integer scale) {
+            this.value = value;
+            this.sqlType = sqlType;
+            this.scale = scale;
+        }
+    }
+}
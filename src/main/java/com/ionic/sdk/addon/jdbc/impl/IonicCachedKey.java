@@ -0,0 +1,107 @@
+package com.ionic.sdk.addon.jdbc.impl;
+
+import com.ionic.sdk.agent.key.AgentKey;
+import com.ionic.sdk.agent.key.KeyAttributesMap;
+import com.ionic.sdk.agent.request.getkey.GetKeysResponse;
+
+/**
+ * Container for an Ionic key held in a driver-side key cache.
+ */
+public class IonicCachedKey {
+
+    /**
+     * The Ionic key id.
+     */
+    private final String id;
+
+    /**
+     * The Ionic key bytes.
+     */
+    private final byte[] key;
+
+    /**
+     * The (immutable) attributes associated with the key.
+     */
+    private final KeyAttributesMap attributes;
+
+    /**
+     * The mutable attributes associated with the key.
+     */
+    private final KeyAttributesMap mutableAttributes;
+
+    /**
+     * The time (milliseconds since the epoch) after which this cache entry should no longer be used.
+     */
+    private final long expiry;
+
+    /**
+     * Constructor.
+     *
+     * @param id                the Ionic key id
+     * @param key               the Ionic key bytes
+     * @param attributes        the (immutable) attributes associated with the key
+     * @param mutableAttributes the mutable attributes associated with the key
+     * @param expiry            the time (milliseconds since the epoch) after which the entry should not be used
+     */
+    public IonicCachedKey(final String id, final byte[] key, final KeyAttributesMap attributes,
+                          final KeyAttributesMap mutableAttributes, final long expiry) {
+        this.id = id;
+        this.key = key;
+        this.attributes = (attributes == null) ? new KeyAttributesMap() : attributes;
+        this.mutableAttributes = (mutableAttributes == null) ? new KeyAttributesMap() : mutableAttributes;
+        this.expiry = expiry;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param agentKey the key returned by the Ionic key server
+     * @param expiry   the time (milliseconds since the epoch) after which the entry should not be used
+     */
+    public IonicCachedKey(final AgentKey agentKey, final long expiry) {
+        this(agentKey.getId(), agentKey.getKey(),
+                agentKey.getAttributesMap(), agentKey.getMutableAttributesMap(), expiry);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public byte[] getKey() {
+        return key;
+    }
+
+    public KeyAttributesMap getAttributes() {
+        return attributes;
+    }
+
+    public KeyAttributesMap getMutableAttributes() {
+        return mutableAttributes;
+    }
+
+    public long getExpiry() {
+        return expiry;
+    }
+
+    /**
+     * @param now the current time (milliseconds since the epoch)
+     * @return true, iff this cache entry should no longer be used
+     */
+    public boolean isExpired(final long now) {
+        return (now > expiry);
+    }
+
+    /**
+     * @param deviceId the Ionic identity on behalf of which the key is being returned
+     * @return the key, in the form returned by a key server request
+     */
+    public GetKeysResponse.Key toGetKeysResponseKey(final String deviceId) {
+        final GetKeysResponse.Key responseKey = new GetKeysResponse.Key();
+        responseKey.setId(id);
+        responseKey.setKey(key);
+        responseKey.setAttributesMap(attributes);
+        responseKey.setMutableAttributesMap(mutableAttributes);
+        responseKey.setDeviceId(deviceId);
+        return responseKey;
+    }
+}
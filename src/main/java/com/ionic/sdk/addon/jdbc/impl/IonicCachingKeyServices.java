@@ -0,0 +1,121 @@
+package com.ionic.sdk.addon.jdbc.impl;
+
+import com.ionic.sdk.agent.request.createkey.CreateKeysRequest;
+import com.ionic.sdk.agent.request.createkey.CreateKeysResponse;
+import com.ionic.sdk.agent.request.getkey.GetKeysRequest;
+import com.ionic.sdk.agent.request.getkey.GetKeysResponse;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.key.KeyServices;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Satisfy key requests from an {@link IonicKeyCache} where possible.  Keys not found in the cache are requested
+ * from the wrapped {@link KeyServices}, and added to the cache on receipt.  Keys created by the driver are also
+ * cached, as they are likely to be requested soon after (on read of the data they protect).
+ * <p>
+ * If a key server request fails, keys whose cache entries have expired, but are still retained by the cache, are used
+ * to satisfy the request.  This allows reads of protected data to continue through a key server outage.
+ */
+public class IonicCachingKeyServices extends IonicKeyServices {
+
+    /**
+     * The name of the counter of key fetch requests satisfied by stale cache entries.
+     */
+    public static final String METRIC_STALE = "keycache.stale";
+
+    /**
+     * The cache of keys available to the Ionic identity of the wrapped {@link KeyServices}.
+     */
+    private final IonicKeyCache keyCache;
+
+    /**
+     * The metrics of the key server.
+     */
+    private final IonicMetrics metrics;
+
+    /**
+     * Constructor.
+     *
+     * @param wrapped  the {@link KeyServices} to which requests are passed
+     * @param keyCache the cache of keys available to the Ionic identity of the wrapped {@link KeyServices}
+     * @param metrics  the metrics of the key server
+     */
+    public IonicCachingKeyServices(final KeyServices wrapped, final IonicKeyCache keyCache,
+                                   final IonicMetrics metrics) {
+        super(wrapped);
+        this.keyCache = keyCache;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public CreateKeysResponse createKeys(final CreateKeysRequest request) throws IonicException {
+        final CreateKeysResponse response = super.createKeys(request);
+        final long expiry = System.currentTimeMillis() + keyCache.getTtl();
+        for (final CreateKeysResponse.Key key : response.getKeys()) {
+            keyCache.put(new IonicCachedKey(key, expiry));
+        }
+        return response;
+    }
+
+    @Override
+    public GetKeysResponse getKeys(final GetKeysRequest request) throws IonicException {
+        final String deviceId = getIdentity();
+        final List<GetKeysResponse.Key> keysCached = new ArrayList<GetKeysResponse.Key>();
+        final GetKeysRequest requestMiss = createRequest(request);
+        for (final String keyId : request.getKeyIds()) {
+            final IonicCachedKey cachedKey = keyCache.get(keyId);
+            if (cachedKey == null) {
+                requestMiss.add(keyId);
+            } else {
+                keysCached.add(cachedKey.toGetKeysResponseKey(deviceId));
+            }
+        }
+        final GetKeysResponse response;
+        if (requestMiss.getKeyIds().isEmpty()) {
+            response = new GetKeysResponse();
+        } else {
+            try {
+                response = super.getKeys(keysCached.isEmpty() ? request : requestMiss);
+            } catch (IonicException e) {
+                return getStaleKeys(requestMiss, keysCached, e);
+            }
+        }
+        final long expiry = System.currentTimeMillis() + keyCache.getTtl();
+        for (final GetKeysResponse.Key key : response.getKeys()) {
+            keyCache.put(new IonicCachedKey(key, expiry));
+        }
+        for (final GetKeysResponse.Key key : keysCached) {
+            response.add(key);
+        }
+        return response;
+    }
+
+    /**
+     * Satisfy the remainder of a failed key fetch request from the stale entries of the key cache.
+     *
+     * @param requestMiss the keys not found in the cache
+     * @param keysCached  the keys found in the cache
+     * @param e           the failure of the key server request
+     * @return the response, if all requested keys are available in the cache
+     * @throws IonicException the failure of the key server request, if any requested key is not available
+     */
+    private GetKeysResponse getStaleKeys(final GetKeysRequest requestMiss, final List<GetKeysResponse.Key> keysCached,
+                                         final IonicException e) throws IonicException {
+        final String deviceId = getIdentity();
+        final GetKeysResponse response = new GetKeysResponse();
+        for (final String keyId : requestMiss.getKeyIds()) {
+            final IonicCachedKey cachedKey = keyCache.getStale(keyId);
+            if (cachedKey == null) {
+                throw e;
+            }
+            response.add(cachedKey.toGetKeysResponseKey(deviceId));
+        }
+        for (final GetKeysResponse.Key key : keysCached) {
+            response.add(key);
+        }
+        metrics.increment(METRIC_STALE);
+        return response;
+    }
+}
@@ -0,0 +1,210 @@
+package com.ionic.sdk.addon.jdbc.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+
+/**
+ * Track the health of an Ionic key server, shared by the connections of this driver.  After a run of failed (or
+ * excessively slow) requests, the circuit is opened, and requests are refused without being sent to the key server.
+ * Once the open interval has elapsed, a single probe request is allowed; its success closes the circuit.
+ * <p>
+ * This prevents a degraded key server from tying up the threads (and pooled connections) of the application in
+ * requests that are unlikely to succeed.
+ */
+public class IonicCircuitBreaker {
+
+    /**
+     * The breakers in use in this process, keyed by key server.
+     */
+    private static final ConcurrentMap<String, IonicCircuitBreaker> BREAKERS =
+            new ConcurrentHashMap<String, IonicCircuitBreaker>();
+
+    /**
+     * The name of the gauge of the state of the circuit.
+     */
+    public static final String METRIC_STATE = "breaker.state";
+
+    /**
+     * The name of the counter of transitions to the open state.
+     */
+    public static final String METRIC_OPENED = "breaker.opened";
+
+    /**
+     * The name of the counter of requests refused while the circuit is open.
+     */
+    public static final String METRIC_REJECTED = "breaker.rejected";
+
+    /**
+     * The name of the counter of failed requests.
+     */
+    public static final String METRIC_FAILURES = "keyserver.failures";
+
+    /**
+     * The state of a circuit.
+     */
+    public enum State {
+        /**
+         * Requests are sent to the key server.
+         */
+        CLOSED,
+        /**
+         * Requests are refused.
+         */
+        OPEN,
+        /**
+         * A single probe request is sent to the key server to test its health.
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * The metrics of the key server.
+     */
+    private final IonicMetrics metrics;
+
+    /**
+     * The number of consecutive failures which cause the circuit to open.
+     */
+    private volatile int threshold;
+
+    /**
+     * The interval (nanoseconds) for which the circuit stays open before a probe request is allowed.
+     */
+    private volatile long openNanos;
+
+    /**
+     * The latency (nanoseconds) beyond which a successful request is counted as a failure (zero for no limit).
+     */
+    private volatile long slowNanos;
+
+    /**
+     * The current state of the circuit.  Guarded by "this".
+     */
+    private State state;
+
+    /**
+     * The number of consecutive failures observed.  Guarded by "this".
+     */
+    private int failures;
+
+    /**
+     * The time (nanoseconds) at which the circuit was last opened.  Guarded by "this".
+     */
+    private long openedAt;
+
+    /**
+     * Constructor.
+     *
+     * @param metrics   the metrics of the key server
+     * @param threshold the number of consecutive failures which cause the circuit to open
+     * @param openNanos the interval (nanoseconds) for which the circuit stays open before a probe is allowed
+     * @param slowNanos the latency (nanoseconds) beyond which a request is counted as a failure (zero for no limit)
+     */
+    public IonicCircuitBreaker(final IonicMetrics metrics, final int threshold,
+                               final long openNanos, final long slowNanos) {
+        this.metrics = metrics;
+        this.state = State.CLOSED;
+        configure(threshold, openNanos, slowNanos);
+    }
+
+    /**
+     * Get the process-wide circuit breaker for a key server, creating it with the specified settings if needed (see
+     * {@link IonicState}); use {@link #configure(int, long, long)} to change its settings.
+     *
+     * @param server    the key server url
+     * @param threshold the number of consecutive failures which cause the circuit to open
+     * @param openNanos the interval (nanoseconds) for which the circuit stays open before a probe is allowed
+     * @param slowNanos the latency (nanoseconds) beyond which a request is counted as a failure (zero for no limit)
+     * @return the circuit breaker
+     */
+    public static IonicCircuitBreaker getInstance(final String server, final int threshold,
+                                                  final long openNanos, final long slowNanos) {
+        final IonicCircuitBreaker breaker = new IonicCircuitBreaker(
+                IonicMetrics.getInstance(server), threshold, openNanos, slowNanos);
+        final IonicCircuitBreaker breakerPrior = BREAKERS.putIfAbsent(server, breaker);
+        return (breakerPrior == null) ? breaker : breakerPrior;
+    }
+
+    /**
+     * Update the settings of the breaker.
+     *
+     * @param thresholdIn the number of consecutive failures which cause the circuit to open
+     * @param openNanosIn the interval (nanoseconds) for which the circuit stays open before a probe is allowed
+     * @param slowNanosIn the latency (nanoseconds) beyond which a request is counted as a failure (zero for no limit)
+     */
+    public final synchronized void configure(final int thresholdIn, final long openNanosIn, final long slowNanosIn) {
+        this.threshold = Math.max(1, thresholdIn);
+        this.openNanos = Math.max(0L, openNanosIn);
+        this.slowNanos = Math.max(0L, slowNanosIn);
+    }
+
+    public IonicMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the current state of the circuit
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Check whether a request may be sent to the key server.  Each permitted request must be followed by a call to
+     * {@link #onSuccess(long)} or {@link #onFailure()}.
+     *
+     * @return true, iff the request may be sent
+     */
+    public synchronized boolean allowRequest() {
+        if ((state == State.OPEN) && ((System.nanoTime() - openedAt) >= openNanos)) {
+            setState(State.HALF_OPEN);
+            return true;
+        } else if (state == State.CLOSED) {
+            return true;
+        }
+        metrics.increment(METRIC_REJECTED);
+        return false;
+    }
+
+    /**
+     * Record the completion of a key server request.
+     *
+     * @param nanos the latency of the request (nanoseconds)
+     */
+    public synchronized void onSuccess(final long nanos) {
+        if ((slowNanos > 0L) && (nanos > slowNanos)) {
+            onFailure();
+        } else {
+            failures = 0;
+            if (state != State.CLOSED) {
+                Logger.getLogger(getClass().getName()).info("CLOSE " + metrics.getScope());
+                setState(State.CLOSED);
+            }
+        }
+    }
+
+    /**
+     * Record the failure of a key server request.
+     */
+    public synchronized void onFailure() {
+        metrics.increment(METRIC_FAILURES);
+        ++failures;
+        if ((state == State.HALF_OPEN) || ((state == State.CLOSED) && (failures >= threshold))) {
+            Logger.getLogger(getClass().getName()).warning("OPEN " + metrics.getScope());
+            metrics.increment(METRIC_OPENED);
+            openedAt = System.nanoTime();
+            setState(State.OPEN);
+        }
+    }
+
+    /**
+     * Update the state of the circuit.  Caller must hold the lock.
+     *
+     * @param stateIn the new state of the circuit
+     */
+    private void setState(final State stateIn) {
+        state = stateIn;
+        metrics.set(METRIC_STATE, stateIn.ordinal());
+    }
+}
@@ -0,0 +1,87 @@
+package com.ionic.sdk.addon.jdbc.impl;
+
+import com.ionic.sdk.agent.request.createkey.CreateKeysRequest;
+import com.ionic.sdk.agent.request.createkey.CreateKeysResponse;
+import com.ionic.sdk.agent.request.getkey.GetKeysRequest;
+import com.ionic.sdk.agent.request.getkey.GetKeysResponse;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+import com.ionic.sdk.key.KeyServices;
+
+/**
+ * Pass key requests to the wrapped {@link KeyServices} only while the {@link IonicCircuitBreaker} of the key server
+ * permits.  While the circuit is open, requests fail immediately.  (Key fetch requests failed in this way may still be
+ * satisfied from the stale entries of an {@link IonicKeyCache}; see {@link IonicCachingKeyServices}.)
+ */
+public class IonicCircuitBreakerKeyServices extends IonicKeyServices {
+
+    /**
+     * The health tracker of the key server.
+     */
+    private final IonicCircuitBreaker breaker;
+
+    /**
+     * Constructor.
+     *
+     * @param wrapped the {@link KeyServices} to which requests are passed
+     * @param breaker the health tracker of the key server
+     */
+    public IonicCircuitBreakerKeyServices(final KeyServices wrapped, final IonicCircuitBreaker breaker) {
+        super(wrapped);
+        this.breaker = breaker;
+    }
+
+    @Override
+    public CreateKeysResponse createKeys(final CreateKeysRequest request) throws IonicException {
+        if (!breaker.allowRequest()) {
+            throw new IonicException(SdkError.ISAGENT_REQUESTFAILED, "key server unavailable (circuit open)");
+        }
+        final long start = System.nanoTime();
+        try {
+            final CreateKeysResponse response = super.createKeys(request);
+            breaker.onSuccess(System.nanoTime() - start);
+            return response;
+        } catch (IonicException e) {
+            onException(e, start);
+            throw e;
+        } catch (RuntimeException e) {
+            breaker.onFailure();
+            throw e;
+        }
+    }
+
+    @Override
+    public GetKeysResponse getKeys(final GetKeysRequest request) throws IonicException {
+        if (!breaker.allowRequest()) {
+            throw new IonicException(SdkError.ISAGENT_REQUESTFAILED, "key server unavailable (circuit open)");
+        }
+        final long start = System.nanoTime();
+        try {
+            final GetKeysResponse response = super.getKeys(request);
+            breaker.onSuccess(System.nanoTime() - start);
+            return response;
+        } catch (IonicException e) {
+            onException(e, start);
+            throw e;
+        } catch (RuntimeException e) {
+            breaker.onFailure();
+            throw e;
+        }
+    }
+
+    /**
+     * Record the outcome of a failed request.  A refusal by key server policy indicates a healthy key server.
+     *
+     * @param e     the failure of the request
+     * @param start the time (nanoseconds) at which the request was made
+     */
+    private void onException(final IonicException e, final long start) {
+        final int returnCode = e.getReturnCode();
+        if ((returnCode == SdkError.ISAGENT_KEY_DENIED.value())
+                || (returnCode == SdkError.ISAGENT_RESOURCE_NOT_FOUND.value())) {
+            breaker.onSuccess(System.nanoTime() - start);
+        } else {
+            breaker.onFailure();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.ionic.sdk.addon.jdbc.impl;
+
+import com.ionic.sdk.agent.request.getkey.GetKeysRequest;
+import com.ionic.sdk.agent.request.getkey.GetKeysResponse;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+import com.ionic.sdk.key.KeyServices;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Coalesce concurrent requests for the same Ionic key.  While a key fetch is outstanding, other requests for the
+ * same key (from any connection of this driver, using the same Ionic identity) wait for the result of that fetch,
+ * rather than issuing their own request to the key server.
+ */
+public class IonicCoalescingKeyServices extends IonicKeyServices {
+
+    /**
+     * The key fetches currently outstanding in this process, keyed by Ionic identity and key id.
+     */
+    private static final ConcurrentMap<String, Flight> FLIGHTS = new ConcurrentHashMap<String, Flight>();
+
+    /**
+     * Constructor.
+     *
+     * @param wrapped the {@link KeyServices} to which requests are passed
+     */
+    public IonicCoalescingKeyServices(final KeyServices wrapped) {
+        super(wrapped);
+    }
+
+    @Override
+    public GetKeysResponse getKeys(final GetKeysRequest request) throws IonicException {
+        final String identity = getIdentity();
+        // claim the keys not already in flight; remember the flights of other requests to be joined
+        final Map<String, Flight> flightsLead = new LinkedHashMap<String, Flight>();
+        final Map<String, Flight> flightsJoin = new LinkedHashMap<String, Flight>();
+        for (final String keyId : request.getKeyIds()) {
+            final Flight flight = new Flight(identity + "/" + keyId);
+            final Flight flightPrior = FLIGHTS.putIfAbsent(flight.getName(), flight);
+            if (flightPrior == null) {
+                flightsLead.put(keyId, flight);
+            } else {
+                flightsJoin.put(keyId, flightPrior);
+            }
+        }
+        return (flightsJoin.isEmpty())
+                ? getKeysLead(request, flightsLead) : getKeysJoin(request, flightsLead, flightsJoin);
+    }
+
+    /**
+     * Fetch the keys claimed by this request, and publish them to any requests that joined the flights.
+     *
+     * @param request     the request to be made to the key server
+     * @param flightsLead the flights claimed by this request
+     * @return the server response
+     * @throws IonicException on failure of the server request
+     */
+    private GetKeysResponse getKeysLead(final GetKeysRequest request,
+                                        final Map<String, Flight> flightsLead) throws IonicException {
+        try {
+            final GetKeysResponse response = super.getKeys(request);
+            for (final Map.Entry<String, Flight> entry : flightsLead.entrySet()) {
+                entry.getValue().complete(response.getKey(entry.getKey()));
+            }
+            return response;
+        } catch (IonicException e) {
+            for (final Flight flight : flightsLead.values()) {
+                flight.fail(e);
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            for (final Flight flight : flightsLead.values()) {
+                flight.fail(new IonicException(SdkError.ISAGENT_ERROR, e));
+            }
+            throw e;
+        } finally {
+            for (final Flight flight : flightsLead.values()) {
+                FLIGHTS.remove(flight.getName(), flight);
+            }
+        }
+    }
+
+    /**
+     * Fetch the keys claimed by this request, then wait for the keys being fetched by other requests.
+     *
+     * @param request     the request of the caller
+     * @param flightsLead the flights claimed by this request
+     * @param flightsJoin the flights of other requests, to be joined by this request
+     * @return a response aggregating the keys available to this request
+     * @throws IonicException on failure of the server request
+     */
+    private GetKeysResponse getKeysJoin(final GetKeysRequest request, final Map<String, Flight> flightsLead,
+                                        final Map<String, Flight> flightsJoin) throws IonicException {
+        final List<GetKeysResponse.Key> keys = new ArrayList<GetKeysResponse.Key>();
+        if (!flightsLead.isEmpty()) {
+            final GetKeysRequest requestLead = createRequest(request);
+            for (final String keyId : flightsLead.keySet()) {
+                requestLead.add(keyId);
+            }
+            keys.addAll(getKeysLead(requestLead, flightsLead).getKeys());
+        }
+        for (final Flight flight : flightsJoin.values()) {
+            final GetKeysResponse.Key key = flight.await();
+            if (key != null) {
+                keys.add(key);
+            }
+        }
+        final GetKeysResponse response = new GetKeysResponse();
+        for (final GetKeysResponse.Key key : keys) {
+            response.add(key);
+        }
+        return response;
+    }
+
+    /**
+     * An outstanding fetch of a single key, shared by all requests for the key.
+     */
+    private static final class Flight {
+
+        /**
+         * The identifier of the flight (Ionic identity and key id).
+         */
+        private final String name;
+
+        /**
+         * Released when the result of the fetch is available.
+         */
+        private final CountDownLatch latch;
+
+        /**
+         * The fetched key (null if the key was not released by the key server).
+         */
+        private volatile GetKeysResponse.Key key;
+
+        /**
+         * The failure of the fetch.
+         */
+        private volatile IonicException exception;
+
+        /**
+         * Constructor.
+         *
+         * @param name the identifier of the flight (Ionic identity and key id)
+         */
+        private Flight(final String name) {
+            this.name = name;
+            this.latch = new CountDownLatch(1);
+        }
+
+        private String getName() {
+            return name;
+        }
+
+        private void complete(final GetKeysResponse.Key keyResult) {
+            this.key = keyResult;
+            latch.countDown();
+        }
+
+        private void fail(final IonicException e) {
+            this.exception = e;
+            latch.countDown();
+        }
+
+        private GetKeysResponse.Key await() throws IonicException {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IonicException(SdkError.ISAGENT_ERROR, e);
+            }
+            if (exception != null) {
+                throw exception;
+            }
+            return key;
+        }
+    }
+}
@@ -8,13 +8,134 @@ import com.ionic.sdk.agent.key.KeyAttributesMap;
  */
 public class IonicColumnConfig {
 
+    /**
+     * The form in which protected values of a column are stored in the column.
+     */
+    public enum Storage {
+
+        /**
+         * The Ionic-protected value is stored in the column.
+         */
+        CIPHERTEXT,
+
+        /**
+         * A random token is stored in the column; the Ionic-protected value is held in a vault table (see
+         * {@link IonicTokenVault}).
+         */
+        TOKEN,
+
+        /**
+         * A reference shared by the rows holding the same value is stored in the column; each distinct value is
+         * Ionic-protected once, and held in a vault table (see {@link IonicTokenVault}).
+         */
+        DEDUP
+    }
+
     private final KeyAttributesMap cattrs;
 
+    /**
+     * The minimum size (bytes) of values of the column to be compressed before protection (negative if values of
+     * the column are not compressed).
+     */
+    private final int compressThreshold;
+
+    /**
+     * The id of the dictionary used to compress values of the column (see {@link IonicDictionaries}; 0 if none).
+     */
+    private final int dictionaryId;
+
+    /**
+     * The content of the dictionary used to compress values of the column (null if none, or to use the process-wide
+     * dictionary with the id).
+     */
+    private final byte[] dictionary;
+
+    /**
+     * The form in which protected values of the column are stored in the column.
+     */
+    private final Storage storage;
+
     public IonicColumnConfig(final KeyAttributesMap cattrs) {
+        this(cattrs, -1, 0);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param cattrs            the Ionic attributes of the keys protecting values of the column
+     * @param compressThreshold the minimum size (bytes) of values to be compressed before protection (negative to
+     *                          disable compression)
+     * @param dictionaryId      the id of the dictionary used to compress values (0 if none)
+     */
+    public IonicColumnConfig(final KeyAttributesMap cattrs, final int compressThreshold, final int dictionaryId) {
+        this(cattrs, compressThreshold, dictionaryId, Storage.CIPHERTEXT);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param cattrs            the Ionic attributes of the keys protecting values of the column
+     * @param compressThreshold the minimum size (bytes) of values to be compressed before protection (negative to
+     *                          disable compression)
+     * @param dictionaryId      the id of the dictionary used to compress values (0 if none)
+     * @param storage           the form in which protected values are stored in the column
+     */
+    public IonicColumnConfig(final KeyAttributesMap cattrs, final int compressThreshold, final int dictionaryId,
+                             final Storage storage) {
+        this(cattrs, compressThreshold, dictionaryId, null, storage);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param cattrs            the Ionic attributes of the keys protecting values of the column
+     * @param compressThreshold the minimum size (bytes) of values to be compressed before protection (negative to
+     *                          disable compression)
+     * @param dictionaryId      the id of the dictionary used to compress values (0 if none)
+     * @param dictionary        the content of the dictionary, as declared by the configuration of the column (null to
+     *                          use the process-wide dictionary with the id)
+     * @param storage           the form in which protected values are stored in the column
+     */
+    public IonicColumnConfig(final KeyAttributesMap cattrs, final int compressThreshold, final int dictionaryId,
+                             final byte[] dictionary, final Storage storage) {
         this.cattrs = cattrs;
+        this.compressThreshold = compressThreshold;
+        this.dictionaryId = dictionaryId;
+        this.dictionary = dictionary;
+        this.storage = storage;
     }
 
     public KeyAttributesMap getCattrs() {
         return cattrs;
     }
+
+    /**
+     * @return the minimum size (bytes) of values of the column to be compressed before protection (negative if values
+     * of the column are not compressed)
+     */
+    public int getCompressThreshold() {
+        return compressThreshold;
+    }
+
+    /**
+     * @return the id of the dictionary used to compress values of the column (0 if none)
+     */
+    public int getDictionaryId() {
+        return dictionaryId;
+    }
+
+    /**
+     * @return the content of the dictionary used to compress values of the column (null if none, or to use the
+     * process-wide dictionary with the id; not a copy)
+     */
+    public byte[] getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * @return the form in which protected values of the column are stored in the column
+     */
+    public Storage getStorage() {
+        return storage;
+    }
 }
@@ -3,26 +3,50 @@ package com.ionic.sdk.addon.jdbc.impl;
 import com.ionic.sdk.addon.jdbc.IonicPreparedStatement;
 import com.ionic.sdk.agent.key.KeyAttributesMap;
 import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
 import com.ionic.sdk.json.JsonSource;
 import com.ionic.sdk.json.JsonU;
 
 import javax.json.JsonArray;
+import javax.json.JsonNumber;
 import javax.json.JsonObject;
 import javax.json.JsonValue;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * When an {@link IonicPreparedStatement} is created, this reader extracts the associated Ionic query configuration
- * from the Ionic JDBC config json.
+ * from the Ionic JDBC config json.  Each distinct config json is parsed once, with its compression dictionaries; the
+ * parsed configurations are kept for the life of the process.
  */
 public class IonicConfigReader {
 
+    /**
+     * The parsed configurations, keyed by config json.
+     */
+    private static final ConcurrentMap<String, Config> CONFIGS = new ConcurrentHashMap<String, Config>();
+
+    /**
+     * Recognizes a single row insert statement with a column list, whose values are simple (no quoted text,
+     * comments, or nested parentheses).
+     */
+    private static final Pattern PATTERN_INSERT_COLUMNS = Pattern.compile(
+            "^\\s*INSERT\\s+INTO\\s+[^(]+\\(([^()']*)\\)\\s*VALUES\\s*\\(([^()'\";-]*)\\)\\s*;?\\s*$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
     public static Map<Integer, IonicColumnConfig> createConfigs(
             final String jsonString, final String sql) throws SQLException {
         try {
@@ -36,7 +60,8 @@ public class IonicConfigReader {
             final String jsonString, final String sql) throws IonicException {
         final Map<Integer, IonicColumnConfig> columnConfigs = new TreeMap<Integer, IonicColumnConfig>();
 
-        final JsonObject jsonObject = JsonU.getJsonObject(jsonString);
+        final Config config = getConfig(jsonString);
+        final JsonObject jsonObject = config.jsonObject;
         final JsonObject jsonPreparedStatement = JsonSource.getJsonObject(
                 jsonObject, PreparedStatement.class.getSimpleName());
         if (jsonPreparedStatement != null) {
@@ -47,9 +72,7 @@ public class IonicConfigReader {
                 while (iterator.hasNext()) {
                     final Map.Entry<String, JsonValue> ionicColumn = iterator.next();
                     final JsonObject value = (JsonObject) ionicColumn.getValue();
-                    final JsonObject jsonCattrs = JsonSource.getJsonObject(value, "cattrs");
-                    final KeyAttributesMap cattrs = toKeyAttributes(jsonCattrs);
-                    final IonicColumnConfig columnConfig = new IonicColumnConfig(cattrs);
+                    final IonicColumnConfig columnConfig = toColumnConfig(value, config.dictionaries);
                     columnConfigs.put(Integer.valueOf(ionicColumn.getKey()), columnConfig);
                 }
             }
@@ -57,6 +80,232 @@ public class IonicConfigReader {
         return columnConfigs;
     }
 
+    /**
+     * Extract the Ionic protection configuration of a database table, used by bulk load operations.  The
+     * configuration is found in the "Tables" section of the Ionic JDBC config json.
+     *
+     * @param jsonString the Ionic JDBC config json
+     * @param table      the name of the database table
+     * @return the configuration of the protected columns of the table, keyed by (lower case) column name
+     * @throws SQLException on failure to parse the configuration
+     */
+    public static Map<String, IonicColumnConfig> createTableConfigs(
+            final String jsonString, final String table) throws SQLException {
+        try {
+            return createTableConfigsInternal(jsonString, table);
+        } catch (IonicException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    public static Map<String, IonicColumnConfig> createTableConfigsInternal(
+            final String jsonString, final String table) throws IonicException {
+        final Map<String, IonicColumnConfig> columnConfigs = new TreeMap<String, IonicColumnConfig>();
+
+        final Config config = getConfig(jsonString);
+        final JsonObject jsonObject = config.jsonObject;
+        final JsonObject jsonTables = JsonSource.getJsonObject(jsonObject, "Tables");
+        if (jsonTables != null) {
+            for (final Map.Entry<String, JsonValue> jsonTable : jsonTables.entrySet()) {
+                if (jsonTable.getKey().equalsIgnoreCase(table)) {
+                    final JsonObject jsonIonicColumns = JsonSource.getJsonObject(
+                            (JsonObject) jsonTable.getValue(), "IonicColumns");
+                    for (final Map.Entry<String, JsonValue> ionicColumn : jsonIonicColumns.entrySet()) {
+                        final JsonObject value = (JsonObject) ionicColumn.getValue();
+                        columnConfigs.put(ionicColumn.getKey().toLowerCase(Locale.ROOT),
+                                toColumnConfig(value, config.dictionaries));
+                    }
+                }
+            }
+        }
+        return columnConfigs;
+    }
+
+    /**
+     * Get the names of the columns whose values are held in the token vault (see {@link IonicTokenVault}): the
+     * columns with "token" or "dedup" storage in the "Tables" section of the Ionic JDBC config json, and in the
+     * "PreparedStatement" section, the columns named by the column list of each "INSERT INTO table (columns) VALUES
+     * (...)" statement whose parameter has such storage.  Only the values of these columns are resolved through the
+     * vault on read; a column written by other statements is declared in the "Tables" section.
+     *
+     * @param jsonString the Ionic JDBC config json (null if none)
+     * @return the (lower case) names of the columns held in the vault
+     * @throws IonicException on failure to parse the configuration
+     */
+    public static Set<String> getVaultColumns(final String jsonString) throws IonicException {
+        final Set<String> vaultColumns = new TreeSet<String>();
+        if (jsonString == null) {
+            return vaultColumns;
+        }
+        final Config config = getConfig(jsonString);
+        final JsonObject jsonTables = JsonSource.getJsonObject(config.jsonObject, "Tables");
+        if (jsonTables != null) {
+            for (final Map.Entry<String, JsonValue> jsonTable : jsonTables.entrySet()) {
+                final JsonObject jsonIonicColumns = JsonSource.getJsonObject(
+                        (JsonObject) jsonTable.getValue(), "IonicColumns");
+                for (final Map.Entry<String, JsonValue> ionicColumn : jsonIonicColumns.entrySet()) {
+                    if (isVaultStorage(toColumnConfig((JsonObject) ionicColumn.getValue(), config.dictionaries))) {
+                        vaultColumns.add(ionicColumn.getKey().toLowerCase(Locale.ROOT));
+                    }
+                }
+            }
+        }
+        final JsonObject jsonPreparedStatement = JsonSource.getJsonObject(
+                config.jsonObject, PreparedStatement.class.getSimpleName());
+        if (jsonPreparedStatement != null) {
+            for (final Map.Entry<String, JsonValue> jsonSql : jsonPreparedStatement.entrySet()) {
+                final List<String> parameterColumns = getParameterColumns(jsonSql.getKey());
+                final JsonObject jsonIonicColumns = JsonSource.getJsonObject(
+                        (JsonObject) jsonSql.getValue(), "IonicColumns");
+                for (final Map.Entry<String, JsonValue> ionicColumn : jsonIonicColumns.entrySet()) {
+                    final int parameter = Integer.parseInt(ionicColumn.getKey());
+                    if ((parameter >= 1) && (parameter <= parameterColumns.size())
+                            && (parameterColumns.get(parameter - 1) != null)
+                            && isVaultStorage(toColumnConfig((JsonObject) ionicColumn.getValue(),
+                            config.dictionaries))) {
+                        vaultColumns.add(parameterColumns.get(parameter - 1));
+                    }
+                }
+            }
+        }
+        return vaultColumns;
+    }
+
+    /**
+     * @param columnConfig the configuration of a protected column
+     * @return true, iff the values of the column are held in the token vault
+     */
+    private static boolean isVaultStorage(final IonicColumnConfig columnConfig) {
+        return (columnConfig.getStorage() == IonicColumnConfig.Storage.TOKEN)
+                || (columnConfig.getStorage() == IonicColumnConfig.Storage.DEDUP);
+    }
+
+    /**
+     * @param sql the SQL of a {@link java.sql.PreparedStatement}
+     * @return the (lower case) name of the column written by each parameter of the statement, if it is an
+     * "INSERT INTO table (columns) VALUES (...)" statement (null for a parameter not written as a column value; an
+     * empty list for other statements)
+     */
+    private static List<String> getParameterColumns(final String sql) {
+        final List<String> parameterColumns = new ArrayList<String>();
+        final Matcher matcher = PATTERN_INSERT_COLUMNS.matcher(sql);
+        if (!matcher.matches()) {
+            return parameterColumns;
+        }
+        final String[] columns = matcher.group(1).split(",");
+        final String[] values = matcher.group(2).split(",");
+        if (columns.length != values.length) {
+            return parameterColumns;
+        }
+        for (int i = 0; (i < columns.length); ++i) {
+            final String value = values[i].trim();
+            if ("?".equals(value)) {
+                parameterColumns.add(columns[i].trim().replaceAll("[\"`]", "").toLowerCase(Locale.ROOT));
+            } else {
+                for (int j = 0; (j < value.length()); ++j) {
+                    if (value.charAt(j) == '?') {
+                        parameterColumns.add(null);
+                    }
+                }
+            }
+        }
+        return parameterColumns;
+    }
+
+    /**
+     * Get the compression dictionaries found in the "Dictionaries" section of the Ionic JDBC config json, which maps
+     * each dictionary id to the base64 content of the dictionary (see {@link IonicDictionaries}).  A trained
+     * dictionary holds the most common substrings of the unprotected values of a column, and is not itself protected,
+     * so the section is only accepted when the config also sets "AllowPlaintextDictionaries": true.
+     *
+     * @param jsonString the Ionic JDBC config json (null if none)
+     * @return the dictionaries of the configuration
+     * @throws IonicException on failure to parse the configuration
+     */
+    public static IonicDictionaries getDictionaries(final String jsonString) throws IonicException {
+        return (jsonString == null) ? new IonicDictionaries(new TreeMap<Integer, byte[]>())
+                : getConfig(jsonString).dictionaries;
+    }
+
+    /**
+     * @param jsonString the Ionic JDBC config json
+     * @return the parsed configuration, from the cache of parsed configurations if available
+     * @throws IonicException on failure to parse the configuration, or if it declares dictionaries without allowing
+     *                        them
+     */
+    private static Config getConfig(final String jsonString) throws IonicException {
+        Config config = (jsonString == null) ? null : CONFIGS.get(jsonString);
+        if (config == null) {
+            final JsonObject jsonObject = JsonU.getJsonObject(jsonString);
+            final Map<Integer, byte[]> dictionaries = new TreeMap<Integer, byte[]>();
+            final JsonObject jsonDictionaries = JsonSource.getJsonObject(jsonObject, "Dictionaries");
+            if (jsonDictionaries != null) {
+                final JsonValue allow = jsonObject.get("AllowPlaintextDictionaries");
+                if ((allow == null) || (allow.getValueType() != JsonValue.ValueType.TRUE)) {
+                    throw new IonicException(SdkError.ISAGENT_INVALIDVALUE,
+                            "Dictionaries (requires \"AllowPlaintextDictionaries\": true)");
+                }
+                for (final Map.Entry<String, JsonValue> jsonDictionary : jsonDictionaries.entrySet()) {
+                    try {
+                        dictionaries.put(Integer.parseInt(jsonDictionary.getKey()),
+                                Base64.getDecoder().decode(JsonSource.toString(jsonDictionary.getValue())));
+                    } catch (IllegalArgumentException e) {
+                        throw new IonicException(SdkError.ISAGENT_INVALIDVALUE, e);
+                    }
+                }
+            }
+            config = new Config(jsonObject, new IonicDictionaries(dictionaries));
+            if (jsonString != null) {
+                final Config configRace = CONFIGS.putIfAbsent(jsonString, config);
+                config = (configRace == null) ? config : configRace;
+            }
+        }
+        return config;
+    }
+
+    /**
+     * Extract the configuration of a protected column.  The optional "compress" setting enables compression of
+     * values before protection: true for values of at least {@link IonicValueCodec#COMPRESS_THRESHOLD_DEFAULT}
+     * bytes, or a number for values of at least that many bytes.  The optional "dictionary" setting names the id of
+     * a compression dictionary; values of any size are then compressed with the dictionary, unless "compress" sets a
+     * threshold.  The optional "storage" setting names the form in which protected values are stored in the column
+     * (see {@link IonicColumnConfig.Storage}): "ciphertext" (the default), "token", or "dedup".
+     *
+     * @param jsonObject   the json of the column
+     * @param dictionaries the compression dictionaries of the configuration
+     * @return the configuration of the column
+     * @throws IonicException if the dictionary of the column is not declared, or the storage is not known
+     */
+    private static IonicColumnConfig toColumnConfig(final JsonObject jsonObject,
+                                                    final IonicDictionaries dictionaries) throws IonicException {
+        final KeyAttributesMap cattrs = toKeyAttributes(JsonSource.getJsonObject(jsonObject, "cattrs"));
+        final JsonValue dictionary = jsonObject.get("dictionary");
+        int dictionaryId = 0;
+        byte[] dictionaryContent = null;
+        if ((dictionary != null) && (dictionary.getValueType() == JsonValue.ValueType.NUMBER)) {
+            dictionaryId = ((JsonNumber) dictionary).intValue();
+            dictionaryContent = dictionaries.getDictionary(dictionaryId);
+        }
+        final JsonValue compress = jsonObject.get("compress");
+        int compressThreshold = (dictionaryId > 0) ? 0 : -1;
+        if ((compress != null) && (compress.getValueType() == JsonValue.ValueType.TRUE)) {
+            compressThreshold = IonicValueCodec.COMPRESS_THRESHOLD_DEFAULT;
+        } else if ((compress != null) && (compress.getValueType() == JsonValue.ValueType.NUMBER)) {
+            compressThreshold = Math.max(0, ((JsonNumber) compress).intValue());
+        }
+        final JsonValue storage = jsonObject.get("storage");
+        IonicColumnConfig.Storage columnStorage = IonicColumnConfig.Storage.CIPHERTEXT;
+        if (storage != null) {
+            try {
+                columnStorage = IonicColumnConfig.Storage.valueOf(
+                        JsonSource.toString(storage).toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IonicException(SdkError.ISAGENT_INVALIDVALUE, e);
+            }
+        }
+        return new IonicColumnConfig(cattrs, compressThreshold, dictionaryId, dictionaryContent, columnStorage);
+    }
+
     private static KeyAttributesMap toKeyAttributes(final JsonObject jsonObject) {
         final KeyAttributesMap keyAttributesMap = new KeyAttributesMap();
         for (Map.Entry<String, JsonValue> ionicColumn : jsonObject.entrySet()) {
@@ -73,4 +322,25 @@ public class IonicConfigReader {
         }
         return values;
     }
+
+    /**
+     * A parsed Ionic JDBC config json.
+     */
+    private static final class Config {
+
+        /**
+         * The json of the configuration.
+         */
+        private final JsonObject jsonObject;
+
+        /**
+         * The compression dictionaries of the configuration.
+         */
+        private final IonicDictionaries dictionaries;
+
+        private Config(final JsonObject jsonObject, final IonicDictionaries dictionaries) {
+            this.jsonObject = jsonObject;
+            this.dictionaries = dictionaries;
+        }
+    }
 }
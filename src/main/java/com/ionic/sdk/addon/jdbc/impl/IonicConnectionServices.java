@@ -0,0 +1,150 @@
+package com.ionic.sdk.addon.jdbc.impl;
+
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.key.KeyServices;
+
+import java.util.Collections;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * The optional services of a connection of this driver, shared by its statements and result sets: read-repair of
+ * stale values, the vault of tokenized values, the cache of unprotected values, and the compression dictionaries of
+ * the Ionic configuration of the connection.  Each service is null when it is not enabled.  The services are
+ * process-wide; this object only bundles those in use by a connection, so that they are passed as one from the
+ * connection to its statements, and from the statements to their result sets.
+ */
+public final class IonicConnectionServices {
+
+    /**
+     * No optional services.
+     */
+    public static final IonicConnectionServices NONE = new IonicConnectionServices(null, null, null);
+
+    /**
+     * Re-protects stale values read through the connection (null if read-repair is not enabled).
+     */
+    private final IonicReadRepair readRepair;
+
+    /**
+     * The vault of tokenized values written and read through the connection (null to store tokenized values as
+     * Ionic-protected values).
+     */
+    private final IonicTokenVault tokenVault;
+
+    /**
+     * The (lower case) names of the columns whose values are resolved through {@link #tokenVault} on read.
+     */
+    private final Set<String> vaultColumns;
+
+    /**
+     * The cache of values unprotected by the Ionic identity of the connection (null if values are not cached).
+     */
+    private final IonicValueCache valueCache;
+
+    /**
+     * The compression dictionaries of the Ionic configuration of the connection (null for the process-wide
+     * dictionaries only).
+     */
+    private final IonicDictionaries dictionaries;
+
+    /**
+     * Constructor.
+     *
+     * @param readRepair re-protects stale values read through the connection (null to disable)
+     * @param tokenVault the vault of tokenized values (null to store tokenized values as Ionic-protected values)
+     * @param valueCache the cache of values unprotected by the Ionic identity of the connection (null to disable)
+     */
+    public IonicConnectionServices(final IonicReadRepair readRepair, final IonicTokenVault tokenVault,
+                                   final IonicValueCache valueCache) {
+        this(readRepair, tokenVault, valueCache, null);
+    }
+
+    /**
+     * Constructor.  No column is resolved through the vault on read.
+     *
+     * @param readRepair   re-protects stale values read through the connection (null to disable)
+     * @param tokenVault   the vault of tokenized values (null to store tokenized values as Ionic-protected values)
+     * @param valueCache   the cache of values unprotected by the Ionic identity of the connection (null to disable)
+     * @param dictionaries the compression dictionaries of the Ionic configuration of the connection (null for the
+     *                     process-wide dictionaries only)
+     */
+    public IonicConnectionServices(final IonicReadRepair readRepair, final IonicTokenVault tokenVault,
+                                   final IonicValueCache valueCache, final IonicDictionaries dictionaries) {
+        this(readRepair, tokenVault, Collections.<String>emptySet(), valueCache, dictionaries);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param readRepair   re-protects stale values read through the connection (null to disable)
+     * @param tokenVault   the vault of tokenized values (null to store tokenized values as Ionic-protected values)
+     * @param vaultColumns the (lower case) names of the columns whose values are resolved through the vault on read
+     *                     (the columns with "token" or "dedup" storage)
+     * @param valueCache   the cache of values unprotected by the Ionic identity of the connection (null to disable)
+     * @param dictionaries the compression dictionaries of the Ionic configuration of the connection (null for the
+     *                     process-wide dictionaries only)
+     */
+    public IonicConnectionServices(final IonicReadRepair readRepair, final IonicTokenVault tokenVault,
+                                   final Set<String> vaultColumns, final IonicValueCache valueCache,
+                                   final IonicDictionaries dictionaries) {
+        this.readRepair = readRepair;
+        this.tokenVault = tokenVault;
+        this.vaultColumns = vaultColumns;
+        this.valueCache = valueCache;
+        this.dictionaries = dictionaries;
+    }
+
+    /**
+     * Get the services specified by the connection properties.
+     *
+     * @param url         the JDBC url of the database
+     * @param info        database connection parameters, and Ionic wrapper configuration
+     * @param keyServices the Ionic key services of the connection
+     * @return the services of the connection
+     * @throws IonicException on invalid settings
+     */
+    public static IonicConnectionServices create(final String url, final Properties info,
+                                                 final KeyServices keyServices) throws IonicException {
+        final String configJson = info.getProperty("ionic.config.jdbc.json");
+        return new IonicConnectionServices(IonicReadRepair.getInstance(url, info, keyServices),
+                IonicTokenVault.getInstance(url, info), IonicConfigReader.getVaultColumns(configJson),
+                IonicValueCache.getInstance(info, keyServices), IonicConfigReader.getDictionaries(configJson));
+    }
+
+    /**
+     * @return re-protects stale values read through the connection (null if read-repair is not enabled)
+     */
+    public IonicReadRepair getReadRepair() {
+        return readRepair;
+    }
+
+    /**
+     * @return the vault of tokenized values (null to store tokenized values as Ionic-protected values)
+     */
+    public IonicTokenVault getTokenVault() {
+        return tokenVault;
+    }
+
+    /**
+     * @return the (lower case) names of the columns whose values are resolved through the vault on read
+     */
+    public Set<String> getVaultColumns() {
+        return vaultColumns;
+    }
+
+    /**
+     * @return the cache of values unprotected by the Ionic identity of the connection (null if values are not cached)
+     */
+    public IonicValueCache getValueCache() {
+        return valueCache;
+    }
+
+    /**
+     * @return the compression dictionaries of the Ionic configuration of the connection (null for the process-wide
+     * dictionaries only)
+     */
+    public IonicDictionaries getDictionaries() {
+        return dictionaries;
+    }
+}
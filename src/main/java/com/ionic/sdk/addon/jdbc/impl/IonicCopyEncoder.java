@@ -0,0 +1,166 @@
+package com.ionic.sdk.addon.jdbc.impl;
+
+import com.ionic.sdk.agent.cipher.chunk.ChunkCipherV2;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+import com.ionic.sdk.key.KeyServices;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Render rows of data as PostgreSQL COPY input (CSV format), Ionic-protecting the values of configured columns.
+ * Instances may be used concurrently; each call to {@link #encode(List)} uses its own cipher.
+ * <p>
+ * Values of protected columns are stored as the columns are configured, as by
+ * {@link com.ionic.sdk.addon.jdbc.IonicPreparedStatement}: as Ionic-protected values, or (given a token vault) as
+ * tokens or references.  The vault entries of the tokens of a chunk are written before the chunk is rendered, on the
+ * dedicated connection of the vault (a COPY operation in progress leaves no room for other statements on its own
+ * connection); the entries of a failed load are left unreferenced in the vault.
+ */
+public class IonicCopyEncoder {
+
+    /**
+     * The character set of the COPY input.
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Hex digits, used to render binary values.
+     */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Ionic key services, used to protect data.
+     */
+    private final KeyServices keyServices;
+
+    /**
+     * The Ionic configuration of each column of the input rows (null entries for unprotected columns).
+     */
+    private final IonicColumnConfig[] columnConfigs;
+
+    /**
+     * The vault of the tokenized and deduplicated columns (null to store their values as Ionic-protected values).
+     */
+    private final IonicTokenVault tokenVault;
+
+    /**
+     * Constructor.
+     *
+     * @param keyServices   Ionic key services, used to protect data
+     * @param columnConfigs the Ionic configuration of each column of the input rows (null for unprotected columns)
+     */
+    public IonicCopyEncoder(final KeyServices keyServices, final IonicColumnConfig[] columnConfigs) {
+        this(keyServices, columnConfigs, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param keyServices   Ionic key services, used to protect data
+     * @param columnConfigs the Ionic configuration of each column of the input rows (null for unprotected columns)
+     * @param tokenVault    the vault of the tokenized and deduplicated columns (null to store their values as
+     *                      Ionic-protected values)
+     */
+    public IonicCopyEncoder(final KeyServices keyServices, final IonicColumnConfig[] columnConfigs,
+                            final IonicTokenVault tokenVault) {
+        this.keyServices = keyServices;
+        this.columnConfigs = columnConfigs.clone();
+        this.tokenVault = tokenVault;
+    }
+
+    /**
+     * Render rows of data as COPY input.
+     *
+     * @param rows the rows to be rendered; each row must have one value for each configured column
+     * @return the UTF-8 encoded COPY input for the rows
+     * @throws IonicException on Ionic cryptography errors, on failure to write vault entries, on a row of the wrong
+     *                        width, or on a value of a protected column which cannot be protected
+     */
+    public byte[] encode(final List<Object[]> rows) throws IonicException {
+        ChunkCipherV2 chunkCipher = null;
+        final List<String[]> entries = new ArrayList<String[]>();
+        final StringBuilder buffer = new StringBuilder();
+        for (final Object[] row : rows) {
+            if (row.length != columnConfigs.length) {
+                throw new IonicException(SdkError.ISAGENT_INVALIDVALUE, "row width " + row.length);
+            }
+            for (int index = 0; (index < row.length); ++index) {
+                buffer.append((index == 0) ? "" : ",");
+                final Object value = row[index];
+                final IonicColumnConfig columnConfig = columnConfigs[index];
+                if ((columnConfig != null) && IonicValueCodec.isSupported(value)) {
+                    chunkCipher = (chunkCipher == null) ? new ChunkCipherV2(keyServices) : chunkCipher;
+                    appendCsv(buffer, protect(chunkCipher, value, columnConfig, entries));
+                } else if ((columnConfig != null) && (value != null)) {
+                    // the value would otherwise be written in the clear
+                    throw new IonicException(SdkError.ISAGENT_INVALIDVALUE,
+                            "column " + (index + 1) + ": " + value.getClass().getName());
+                } else if (value instanceof byte[]) {
+                    appendCsv(buffer, toHex((byte[]) value));
+                } else if (value != null) {
+                    appendCsv(buffer, value.toString());
+                }
+            }
+            buffer.append('\n');
+        }
+        if (!entries.isEmpty()) {
+            tokenVault.insertDetached(entries);
+        }
+        return buffer.toString().getBytes(UTF_8);
+    }
+
+    /**
+     * @param chunkCipher  the cipher used to protect the value
+     * @param value        a value of a protected column
+     * @param columnConfig the Ionic config of the column
+     * @param entries      the vault entries of the chunk, to which the entry of a new token is added
+     * @return the protected value, or its token (for a tokenized column), or its reference (for a deduplicated column)
+     * @throws IonicException on Ionic cryptography errors, or on failure to write a reference
+     */
+    private String protect(final ChunkCipherV2 chunkCipher, final Object value, final IonicColumnConfig columnConfig,
+                           final List<String[]> entries) throws IonicException {
+        if ((tokenVault != null) && (columnConfig.getStorage() == IonicColumnConfig.Storage.DEDUP)) {
+            return tokenVault.getReference(value, columnConfig, keyServices);
+        }
+        final String cipherText = IonicValueCodec.protect(chunkCipher, value, columnConfig);
+        if ((tokenVault == null) || (columnConfig.getStorage() != IonicColumnConfig.Storage.TOKEN)) {
+            return cipherText;
+        }
+        final String token = IonicTokenVault.createToken();
+        entries.add(new String[]{token, cipherText});
+        return token;
+    }
+
+    /**
+     * Append a quoted CSV field.  (An unquoted empty field denotes SQL NULL, so all non-null values are quoted.)
+     *
+     * @param buffer the COPY input being rendered
+     * @param text   the field value
+     */
+    private static void appendCsv(final StringBuilder buffer, final String text) {
+        buffer.append('"');
+        for (int i = 0; (i < text.length()); ++i) {
+            final char c = text.charAt(i);
+            if (c == '"') {
+                buffer.append('"');
+            }
+            buffer.append(c);
+        }
+        buffer.append('"');
+    }
+
+    /**
+     * @param bytes a binary value
+     * @return the value in the PostgreSQL "bytea" hex input format
+     */
+    private static String toHex(final byte[] bytes) {
+        final StringBuilder buffer = new StringBuilder("\\x");
+        for (final byte b : bytes) {
+            buffer.append(HEX[(b >> 4) & 0x0f]).append(HEX[b & 0x0f]);
+        }
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,93 @@
+package com.ionic.sdk.addon.jdbc.impl;
+
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The compression dictionaries used to compress short protected values before protection (see
+ * {@link IonicValueCodec}).  Dictionaries are keyed by a numeric id, which is recorded with each value compressed
+ * with the dictionary.  A dictionary, once used, must never change; a retrained dictionary is added with a new id,
+ * and the old dictionary kept for as long as values compressed with it remain.
+ * <p>
+ * Dictionaries declared in the "Dictionaries" section of an Ionic JDBC config json are held by an instance of this
+ * class, scoped to that configuration (see {@link IonicConfigReader#getDictionaries(String)}).  Dictionaries may also
+ * be registered for the whole process (see {@link #register(int, byte[])}); these are used for ids not declared by a
+ * configuration.
+ */
+public final class IonicDictionaries {
+
+    /**
+     * The dictionaries registered for the whole process, by id.
+     */
+    private static final ConcurrentMap<Integer, byte[]> DICTIONARIES = new ConcurrentHashMap<Integer, byte[]>();
+
+    /**
+     * The dictionaries of a configuration, by id.
+     */
+    private final Map<Integer, byte[]> dictionaries;
+
+    /**
+     * Constructor.
+     *
+     * @param dictionaries the dictionaries of a configuration, by id
+     * @throws IonicException if an id is not positive
+     */
+    public IonicDictionaries(final Map<Integer, byte[]> dictionaries) throws IonicException {
+        final Map<Integer, byte[]> dictionariesCopy = new HashMap<Integer, byte[]>();
+        for (final Map.Entry<Integer, byte[]> entry : dictionaries.entrySet()) {
+            if (entry.getKey() <= 0) {
+                throw new IonicException(SdkError.ISAGENT_INVALIDVALUE, "dictionary " + entry.getKey());
+            }
+            dictionariesCopy.put(entry.getKey(), entry.getValue().clone());
+        }
+        this.dictionaries = Collections.unmodifiableMap(dictionariesCopy);
+    }
+
+    /**
+     * @param id the id of a dictionary
+     * @return the content of the dictionary of this configuration with the id, or else of the process-wide
+     * dictionary with the id (not a copy)
+     * @throws IonicException if no dictionary is known with the id
+     */
+    public byte[] getDictionary(final int id) throws IonicException {
+        final byte[] dictionary = dictionaries.get(id);
+        return (dictionary == null) ? get(id) : dictionary;
+    }
+
+    /**
+     * Register a dictionary for the whole process.  Registering the same dictionary again has no effect.
+     *
+     * @param id         the id of the dictionary (positive)
+     * @param dictionary the content of the dictionary
+     * @throws IonicException if the id is not positive, or if a different dictionary is registered with the id
+     */
+    public static void register(final int id, final byte[] dictionary) throws IonicException {
+        if (id <= 0) {
+            throw new IonicException(SdkError.ISAGENT_INVALIDVALUE, "dictionary " + id);
+        }
+        final byte[] registered = DICTIONARIES.putIfAbsent(id, dictionary.clone());
+        if ((registered != null) && (!Arrays.equals(registered, dictionary))) {
+            throw new IonicException(SdkError.ISAGENT_INVALIDVALUE, "dictionary " + id + " changed");
+        }
+    }
+
+    /**
+     * @param id the id of a dictionary
+     * @return the content of the process-wide dictionary (not a copy)
+     * @throws IonicException if no dictionary is registered with the id
+     */
+    public static byte[] get(final int id) throws IonicException {
+        final byte[] dictionary = DICTIONARIES.get(id);
+        if (dictionary == null) {
+            throw new IonicException(SdkError.ISAGENT_RESOURCE_NOT_FOUND, "dictionary " + id);
+        }
+        return dictionary;
+    }
+}
@@ -0,0 +1,151 @@
+package com.ionic.sdk.addon.jdbc.impl;
+
+import com.ionic.sdk.agent.request.getkey.GetKeysRequest;
+import com.ionic.sdk.agent.request.getkey.GetKeysResponse;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+import com.ionic.sdk.key.KeyServices;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Issue a duplicate (hedged) key fetch request when the original request has not completed within the usual
+ * response time of the key server, and use whichever response arrives first.  This bounds the effect of occasional
+ * slow key server responses on the latency of JDBC calls.
+ * <p>
+ * The hedge delay is the configured percentile of recent key fetch latencies (of failed requests as well as of
+ * successful ones), but no less than a configured minimum.  Key creation requests are not hedged, as a duplicate
+ * request would create (and discard) additional keys.  The losing request is cancelled without interruption, and left
+ * to complete, so that the Agent serving it is not returned to its pool in an interrupted state.
+ */
+public class IonicHedgingKeyServices extends IonicKeyServices {
+
+    /**
+     * The name of the latency metric of key fetch requests.
+     */
+    public static final String METRIC_LATENCY = "keyserver.getkeys";
+
+    /**
+     * The name of the counter of hedged requests issued.
+     */
+    public static final String METRIC_HEDGED = "hedge.issued";
+
+    /**
+     * The name of the counter of hedged requests which completed before the original request.
+     */
+    public static final String METRIC_HEDGE_WON = "hedge.won";
+
+    /**
+     * The minimum number of latency samples used to derive the hedge delay.
+     */
+    private static final int SAMPLES_MIN = 16;
+
+    /**
+     * The threads used to issue key fetch requests.
+     */
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "ionic-jdbc-hedge");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * The metrics of the key server.
+     */
+    private final IonicMetrics metrics;
+
+    /**
+     * The percentile of recent key fetch latencies after which a hedged request is issued (for example, 0.95).
+     */
+    private final double quantile;
+
+    /**
+     * The minimum delay (nanoseconds) after which a hedged request is issued.
+     */
+    private final long delayMinNanos;
+
+    /**
+     * Constructor.
+     *
+     * @param wrapped       the {@link KeyServices} to which requests are passed
+     * @param metrics       the metrics of the key server
+     * @param quantile      the percentile of recent latencies after which a hedged request is issued
+     * @param delayMinNanos the minimum delay (nanoseconds) after which a hedged request is issued
+     */
+    public IonicHedgingKeyServices(final KeyServices wrapped, final IonicMetrics metrics,
+                                   final double quantile, final long delayMinNanos) {
+        super(wrapped);
+        this.metrics = metrics;
+        this.quantile = quantile;
+        this.delayMinNanos = delayMinNanos;
+    }
+
+    /**
+     * @return the interval (nanoseconds) after which a hedged request should be issued
+     */
+    public long getDelayNanos() {
+        final long latency = (metrics.get(METRIC_LATENCY) < SAMPLES_MIN)
+                ? -1L : metrics.getPercentile(METRIC_LATENCY, quantile);
+        return Math.max(delayMinNanos, latency);
+    }
+
+    @Override
+    public GetKeysResponse getKeys(final GetKeysRequest request) throws IonicException {
+        final Callable<GetKeysResponse> callable = new Callable<GetKeysResponse>() {
+            @Override
+            public GetKeysResponse call() throws IonicException {
+                return IonicHedgingKeyServices.super.getKeys(request);
+            }
+        };
+        final CompletionService<GetKeysResponse> completionService =
+                new ExecutorCompletionService<GetKeysResponse>(EXECUTOR);
+        final List<Future<GetKeysResponse>> futures = new ArrayList<Future<GetKeysResponse>>();
+        final long start = System.nanoTime();
+        futures.add(completionService.submit(callable));
+        try {
+            Future<GetKeysResponse> future = completionService.poll(getDelayNanos(), TimeUnit.NANOSECONDS);
+            if (future == null) {
+                metrics.increment(METRIC_HEDGED);
+                futures.add(completionService.submit(callable));
+            }
+            IonicException failure = null;
+            for (int pending = futures.size(); (pending > 0); --pending) {
+                future = (future == null) ? completionService.take() : future;
+                try {
+                    final GetKeysResponse response = future.get();
+                    metrics.record(METRIC_LATENCY, System.nanoTime() - start);
+                    if (future != futures.get(0)) {
+                        metrics.increment(METRIC_HEDGE_WON);
+                    }
+                    return response;
+                } catch (ExecutionException e) {
+                    metrics.record(METRIC_LATENCY, System.nanoTime() - start);
+                    failure = (e.getCause() instanceof IonicException) ? (IonicException) e.getCause()
+                            : new IonicException(SdkError.ISAGENT_ERROR, e.getCause());
+                }
+                future = null;
+            }
+            throw failure;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IonicException(SdkError.ISAGENT_ERROR, e);
+        } finally {
+            for (final Future<GetKeysResponse> future : futures) {
+                future.cancel(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.ionic.sdk.addon.jdbc.impl;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rewrite a single row "INSERT INTO ... VALUES (...)" statement into a statement inserting many rows at once.  A batch
+ * of rows may then be sent to the database in a few round trips, rather than one round trip per row.
+ * <p>
+ * Only simple statements are rewritten: the VALUES clause must be the end of the statement (no "RETURNING" or
+ * "ON CONFLICT"), and must not contain quoted text or comments, which might hide parameter markers.
+ */
+public final class IonicInsertRewriter {
+
+    /**
+     * Recognizes the parts of a single row insert statement.
+     */
+    private static final Pattern PATTERN_INSERT = Pattern.compile(
+            "^\\s*(INSERT\\s+INTO\\s+.+?)\\s+VALUES\\s*(\\(.*\\))\\s*;?\\s*$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    /**
+     * Characters which disqualify the VALUES clause of a statement from rewriting.
+     */
+    private static final Pattern PATTERN_UNSAFE = Pattern.compile("['\"$;]|--|/\\*");
+
+    /**
+     * The maximum number of bind parameters in a single statement (PostgreSQL protocol limit).
+     */
+    private static final int PARAMETERS_MAX = 32767;
+
+    /**
+     * The statement text preceding the VALUES clause.
+     */
+    private final String prefix;
+
+    /**
+     * The parenthesized value list of a single row.
+     */
+    private final String tuple;
+
+    /**
+     * The number of parameters in each row.
+     */
+    private final int parameterCount;
+
+    /**
+     * Constructor.
+     *
+     * @param prefix         the statement text preceding the VALUES clause
+     * @param tuple          the parenthesized value list of a single row
+     * @param parameterCount the number of parameters in each row
+     */
+    private IonicInsertRewriter(final String prefix, final String tuple, final int parameterCount) {
+        this.prefix = prefix;
+        this.tuple = tuple;
+        this.parameterCount = parameterCount;
+    }
+
+    /**
+     * Examine a statement for rewriting.
+     *
+     * @param sql            the SQL of a {@link java.sql.PreparedStatement}
+     * @param parameterCount the number of parameters of the statement
+     * @return a rewriter for the statement, or null if the statement cannot be rewritten
+     */
+    public static IonicInsertRewriter create(final String sql, final int parameterCount) {
+        final Matcher matcher = PATTERN_INSERT.matcher(sql);
+        if ((parameterCount <= 0) || (!matcher.matches())) {
+            return null;
+        }
+        final String tuple = matcher.group(2);
+        if (PATTERN_UNSAFE.matcher(tuple).find() || (!isSingleTuple(tuple))) {
+            return null;
+        }
+        int count = 0;
+        for (int i = 0; (i < tuple.length()); ++i) {
+            count += (tuple.charAt(i) == '?') ? 1 : 0;
+        }
+        return (count == parameterCount) ? new IonicInsertRewriter(matcher.group(1), tuple, parameterCount) : null;
+    }
+
+    /**
+     * @param tuple the VALUES clause of a statement
+     * @return true, iff the clause is a single parenthesized list (the parenthesis opened first is closed last)
+     */
+    private static boolean isSingleTuple(final String tuple) {
+        int depth = 0;
+        for (int i = 0; (i < tuple.length()); ++i) {
+            final char c = tuple.charAt(i);
+            depth += (c == '(') ? 1 : ((c == ')') ? -1 : 0);
+            if ((depth == 0) && (i < tuple.length() - 1)) {
+                return false;
+            }
+        }
+        return (depth == 0);
+    }
+
+    /**
+     * @return the number of parameters in each row
+     */
+    public int getParameterCount() {
+        return parameterCount;
+    }
+
+    /**
+     * @param rowsRequested the desired number of rows per statement
+     * @return the number of rows per statement, limited by the maximum number of parameters in a statement
+     */
+    public int getMaxRows(final int rowsRequested) {
+        return Math.max(1, Math.min(rowsRequested, PARAMETERS_MAX / parameterCount));
+    }
+
+    /**
+     * @param rows the number of rows to be inserted by the statement
+     * @return the SQL of a statement inserting the specified number of rows
+     */
+    public String getSql(final int rows) {
+        final StringBuilder buffer = new StringBuilder(prefix.length() + (rows * (tuple.length() + 2)) + 8);
+        buffer.append(prefix).append(" VALUES ");
+        for (int row = 0; (row < rows); ++row) {
+            buffer.append((row == 0) ? "" : ", ").append(tuple);
+        }
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,212 @@
+package com.ionic.sdk.addon.jdbc.impl;
+
+import com.ionic.sdk.error.IonicException;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * Cache of Ionic keys for a single Ionic identity, shared by the connections of this driver.  Keys are held in
+ * memory, and (optionally) persisted to an {@link IonicKeyCacheFile}, so that a restarted process need not fetch
+ * its working set of keys from the key server again.
+ */
+public class IonicKeyCache {
+
+    /**
+     * The caches in use in this process, keyed by Ionic identity, (optional) file location, ttl and stale interval.
+     */
+    private static final ConcurrentMap<String, IonicKeyCache> CACHES = new ConcurrentHashMap<String, IonicKeyCache>();
+
+    /**
+     * Guards the creation of caches (which may open a file), without pinning the carrier of a virtual thread.
+     */
+    private static final Lock CACHES_LOCK = new ReentrantLock();
+
+    /**
+     * The number of obsolete records tolerated in the persistent storage before it is compacted.
+     */
+    private static final int COMPACT_SLACK = 1024;
+
+    /**
+     * The cached keys, keyed by key id.
+     */
+    private final ConcurrentMap<String, IonicCachedKey> keys;
+
+    /**
+     * The persistent storage for the cache (null for an in-memory cache).
+     */
+    private final IonicKeyCacheFile cacheFile;
+
+    /**
+     * The interval (milliseconds) for which a cached key may be used.
+     */
+    private final long ttl;
+
+    /**
+     * The interval (milliseconds) after expiry for which a cached key is retained, for use when the key server is
+     * unavailable.
+     */
+    private final long stale;
+
+    /**
+     * Constructor.
+     *
+     * @param cacheFile the persistent storage for the cache (null for an in-memory cache)
+     * @param ttl       the interval (milliseconds) for which a cached key may be used
+     */
+    public IonicKeyCache(final IonicKeyCacheFile cacheFile, final long ttl) {
+        this(cacheFile, ttl, 0L);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param cacheFile the persistent storage for the cache (null for an in-memory cache)
+     * @param ttl       the interval (milliseconds) for which a cached key may be used
+     * @param stale     the interval (milliseconds) after expiry for which a cached key is retained, for use when the
+     *                  key server is unavailable
+     */
+    public IonicKeyCache(final IonicKeyCacheFile cacheFile, final long ttl, final long stale) {
+        this.keys = new ConcurrentHashMap<String, IonicCachedKey>();
+        this.cacheFile = cacheFile;
+        this.ttl = ttl;
+        this.stale = Math.max(0L, stale);
+        if (cacheFile != null) {
+            keys.putAll(cacheFile.load(System.currentTimeMillis() - this.stale));
+        }
+    }
+
+    /**
+     * Get the process-wide key cache for an Ionic identity.  Connections sharing the identity share a cache only
+     * if they also specify the same location and intervals.  A file may back only one cache at a time, so requests
+     * for the same file with different intervals are rejected.
+     *
+     * @param identity    the Ionic device id for which keys are cached
+     * @param location    the filesystem location of the persistent cache; null for an in-memory cache
+     * @param wrappingKey the key protecting the persistent cache (ignored for an in-memory cache)
+     * @param ttl         the interval (milliseconds) for which a cached key may be used
+     * @param stale       the interval (milliseconds) after expiry for which a cached key is retained, for use when
+     *                    the key server is unavailable
+     * @return the key cache
+     * @throws IonicException on failure to open the persistent cache, or if the persistent cache is in use with
+     *                        different intervals
+     */
+    public static IonicKeyCache getInstance(final String identity, final String location, final byte[] wrappingKey,
+                                            final long ttl, final long stale) throws IonicException {
+        final String name = identity + "#" + ((location == null) ? "" : new File(location).getAbsolutePath())
+                + "#" + ttl + "#" + stale;
+        IonicKeyCache keyCache = CACHES.get(name);
+        if (keyCache == null) {
+            CACHES_LOCK.lock();
+            try {
+                keyCache = CACHES.get(name);
+                if (keyCache == null) {
+                    final IonicKeyCacheFile cacheFile = (location == null)
+                            ? null : new IonicKeyCacheFile(new File(location), wrappingKey);
+                    keyCache = new IonicKeyCache(cacheFile, ttl, stale);
+                    CACHES.put(name, keyCache);
+                }
+            } finally {
+                CACHES_LOCK.unlock();
+            }
+        }
+        return keyCache;
+    }
+
+    /**
+     * @return the interval (milliseconds) for which a cached key may be used
+     */
+    public long getTtl() {
+        return ttl;
+    }
+
+    /**
+     * @return the number of keys currently held in memory
+     */
+    public int size() {
+        return keys.size();
+    }
+
+    /**
+     * Get a key from the cache.
+     *
+     * @param keyId the Ionic key id
+     * @return the cached key, or null if the key is not cached, or its cache entry has expired
+     */
+    public IonicCachedKey get(final String keyId) {
+        final IonicCachedKey cachedKey = getStale(keyId);
+        return ((cachedKey == null) || (cachedKey.isExpired(System.currentTimeMillis()))) ? null : cachedKey;
+    }
+
+    /**
+     * Get a key from the cache, including a key whose cache entry has expired, but is still retained for use when the
+     * key server is unavailable.
+     *
+     * @param keyId the Ionic key id
+     * @return the cached key, or null if the key is not cached
+     */
+    public IonicCachedKey getStale(final String keyId) {
+        final IonicCachedKey cachedKey = keys.get(keyId);
+        if ((cachedKey != null) && (cachedKey.isExpired(System.currentTimeMillis() - stale))) {
+            keys.remove(keyId, cachedKey);
+            return null;
+        }
+        return cachedKey;
+    }
+
+    /**
+     * Add a key to the cache.
+     *
+     * @param cachedKey the key to be cached
+     */
+    public void put(final IonicCachedKey cachedKey) {
+        keys.put(cachedKey.getId(), cachedKey);
+        if (cacheFile != null) {
+            try {
+                cacheFile.append(cachedKey);
+                if (cacheFile.getRecordCount() > (2 * keys.size()) + COMPACT_SLACK) {
+                    compact();
+                }
+            } catch (IonicException e) {
+                Logger.getLogger(getClass().getName()).warning(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Remove a key from the cache.  The removal is persisted on the next compaction of the cache.
+     *
+     * @param keyId the Ionic key id
+     */
+    public void remove(final String keyId) {
+        keys.remove(keyId);
+    }
+
+    /**
+     * Discard expired keys (beyond the stale retention interval) from the cache, and discard obsolete records from
+     * the persistent storage of the cache.
+     *
+     * @throws IonicException on failure to rewrite the persistent storage
+     */
+    public void compact() throws IonicException {
+        final long now = System.currentTimeMillis() - stale;
+        final Iterator<Map.Entry<String, IonicCachedKey>> iterator = keys.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getValue().isExpired(now)) {
+                iterator.remove();
+            }
+        }
+        if (cacheFile != null) {
+            final List<IonicCachedKey> cachedKeys = new ArrayList<IonicCachedKey>(keys.values());
+            cacheFile.rewrite(cachedKeys);
+        }
+    }
+}
@@ -0,0 +1,500 @@
+package com.ionic.sdk.addon.jdbc.impl;
+
+import com.ionic.sdk.agent.key.KeyAttributesMap;
+import com.ionic.sdk.device.profile.DeviceProfile;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Persistent storage for Ionic keys, allowing a process to reuse keys fetched by a previous process.
+ * <p>
+ * The file is memory-mapped, and records are only ever appended.  While open, the file is held under an exclusive
+ * {@link FileLock}, so that it is written by a single cache at a time (in this process, or in any other).  Each
+ * record is encrypted (AES-GCM) using a local wrapping key derived from the Ionic Secure Enrollment Profile.
+ * Records that cannot be decrypted (for example, records written on behalf of a different identity, or a record torn
+ * by a process crash) end the readable content of the file.  Obsolete records are discarded by
+ * {@link #rewrite(Collection)}.
+ * <p>
+ * File layout: header (magic, version), followed by records (length, iv, ciphertext).  A record length of zero
+ * marks the end of the content.
+ */
+public class IonicKeyCacheFile {
+
+    /**
+     * Marker bytes at the start of the file.
+     */
+    private static final byte[] MAGIC = "IJKC".getBytes(Charset.forName("UTF-8"));
+
+    /**
+     * The version of the file layout.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The size of the file header.
+     */
+    private static final int HEADER_SIZE = MAGIC.length + 4;
+
+    /**
+     * The size of the AES-GCM initialization vector.
+     */
+    private static final int IV_SIZE = 12;
+
+    /**
+     * The size of the AES-GCM authentication tag (bits).
+     */
+    private static final int TAG_BITS = 128;
+
+    /**
+     * The initial size of the file mapping.
+     */
+    private static final int CAPACITY_INITIAL = 64 * 1024;
+
+    /**
+     * The filesystem location of the cache.
+     */
+    private final File file;
+
+    /**
+     * The key used to protect the cache records.
+     */
+    private final SecretKeySpec wrappingKey;
+
+    /**
+     * Source of initialization vectors.
+     */
+    private final SecureRandom random;
+
+    /**
+     * Guards the state of the file.  A {@link ReentrantLock} (rather than a monitor) is used, so that a virtual thread
+     * blocked on file I/O does not pin its carrier thread.
+     */
+    private final ReentrantLock lock;
+
+    /**
+     * The open file.
+     */
+    private RandomAccessFile randomAccessFile;
+
+    /**
+     * The exclusive lock on the open file.
+     */
+    private FileLock fileLock;
+
+    /**
+     * The mapping of the open file.
+     */
+    private MappedByteBuffer buffer;
+
+    /**
+     * The offset in the file at which the next record will be written.
+     */
+    private int position;
+
+    /**
+     * The number of records in the file.
+     */
+    private int recordCount;
+
+    /**
+     * Constructor.
+     *
+     * @param file        the filesystem location of the cache
+     * @param wrappingKey the AES key (16 or 32 bytes) used to protect the cache records
+     * @throws IonicException on failure to open the file, or if the file is in use by another cache
+     */
+    public IonicKeyCacheFile(final File file, final byte[] wrappingKey) throws IonicException {
+        this.file = file;
+        this.wrappingKey = new SecretKeySpec(wrappingKey, "AES");
+        this.random = new SecureRandom();
+        this.lock = new ReentrantLock();
+        open();
+    }
+
+    /**
+     * Derive the local wrapping key for a key cache file from the secret material of an Ionic device profile.  The
+     * derived key is specific to the device identity.
+     *
+     * @param deviceProfile the Ionic identity for which keys will be cached
+     * @return the AES key used to protect the cache records
+     * @throws IonicException if the profile does not contain the needed secret material
+     */
+    public static byte[] deriveWrappingKey(final DeviceProfile deviceProfile) throws IonicException {
+        final byte[] profileKey = (deviceProfile == null) ? null : deviceProfile.getAesCdIdcProfileKey();
+        if ((profileKey == null) || (profileKey.length == 0)) {
+            throw new IonicException(SdkError.ISAGENT_MISSINGVALUE, "aesCdIdcKey");
+        }
+        try {
+            final Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(profileKey, "HmacSHA256"));
+            return mac.doFinal(("ionic.jdbc.keycache/" + deviceProfile.getDeviceId()).getBytes(
+                    Charset.forName("UTF-8")));
+        } catch (GeneralSecurityException e) {
+            throw new IonicException(SdkError.ISAGENT_ERROR, e);
+        }
+    }
+
+    /**
+     * @return the number of records in the file (including records which are expired or superseded)
+     */
+    public int getRecordCount() {
+        lock.lock();
+        try {
+            return recordCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Read the records of the file.  Where a key id appears more than once, the latest record is returned.
+     *
+     * @param now the current time (milliseconds since the epoch); expired records are skipped
+     * @return the unexpired records of the file, keyed by key id (none, if the file is not open)
+     */
+    public Map<String, IonicCachedKey> load(final long now) {
+        lock.lock();
+        try {
+            final Map<String, IonicCachedKey> keys = new LinkedHashMap<String, IonicCachedKey>();
+            if (buffer == null) {
+                return keys;
+            }
+            int offset = HEADER_SIZE;
+            int count = 0;
+            while (offset + 4 <= buffer.capacity()) {
+                final int length = buffer.getInt(offset);
+                if ((length <= IV_SIZE) || (offset + 4 + length > buffer.capacity())) {
+                    break;
+                }
+                final byte[] record = new byte[length];
+                buffer.position(offset + 4);
+                buffer.get(record);
+                final IonicCachedKey cachedKey = fromRecord(record);
+                if (cachedKey == null) {
+                    break;
+                }
+                if (!cachedKey.isExpired(now)) {
+                    keys.put(cachedKey.getId(), cachedKey);
+                }
+                offset += (4 + length);
+                ++count;
+            }
+            position = offset;
+            recordCount = count;
+            return keys;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Add a record to the end of the file.
+     *
+     * @param cachedKey the key to be persisted
+     * @throws IonicException on failure to write the record
+     */
+    public void append(final IonicCachedKey cachedKey) throws IonicException {
+        lock.lock();
+        try {
+            checkOpen();
+            final byte[] record = toRecord(cachedKey);
+            ensureCapacity(position + 4 + record.length + 4);
+            buffer.position(position + 4);
+            buffer.put(record);
+            // length is written last, so that a torn write is not mistaken for a record
+            buffer.putInt(position, record.length);
+            position += (4 + record.length);
+            ++recordCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replace the content of the file with the specified records, discarding all others.  The file is released while
+     * the replacement is moved into place, and then opened again; if it cannot be opened again (for example, if it was
+     * locked by another process in the meantime), later use of this object fails.
+     *
+     * @param cachedKeys the keys to be retained
+     * @throws IonicException on failure to write the replacement file, or to open it again
+     */
+    public void rewrite(final Collection<IonicCachedKey> cachedKeys) throws IonicException {
+        lock.lock();
+        try {
+            checkOpen();
+            final File fileCompact = new File(file.getPath() + ".compact");
+            final List<byte[]> records = new ArrayList<byte[]>();
+            for (final IonicCachedKey cachedKey : cachedKeys) {
+                records.add(toRecord(cachedKey));
+            }
+            IonicException failure = null;
+            try {
+                try (RandomAccessFile raf = new RandomAccessFile(fileCompact, "rw")) {
+                    raf.setLength(0L);
+                    raf.write(MAGIC);
+                    raf.writeInt(VERSION);
+                    for (final byte[] record : records) {
+                        raf.writeInt(record.length);
+                        raf.write(record);
+                    }
+                    raf.writeInt(0);
+                    raf.getFD().sync();
+                }
+                close();
+                Files.move(fileCompact.toPath(), file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                failure = new IonicException(SdkError.ISAGENT_ERROR, e);
+            } catch (IonicException e) {
+                failure = e;
+            }
+            if (randomAccessFile == null) {
+                try {
+                    open();
+                    load(0L);
+                } catch (IonicException e) {
+                    // the failure to write the replacement (if any) is the one reported
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Release the file.
+     *
+     * @throws IonicException on failure to close the file
+     */
+    public void close() throws IonicException {
+        lock.lock();
+        try {
+            if (randomAccessFile != null) {
+                try {
+                    buffer.force();
+                    fileLock.release();
+                    randomAccessFile.close();
+                } catch (IOException e) {
+                    throw new IonicException(SdkError.ISAGENT_ERROR, e);
+                } finally {
+                    randomAccessFile = null;
+                    fileLock = null;
+                    buffer = null;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Open (creating if needed), lock and map the file.
+     *
+     * @throws IonicException on failure to open the file, if the file is in use by another cache, or if the file is
+     *                        not a key cache file
+     */
+    private void open() throws IonicException {
+        try {
+            randomAccessFile = new RandomAccessFile(file, "rw");
+            fileLock = tryLock(randomAccessFile.getChannel());
+            if (fileLock == null) {
+                randomAccessFile.close();
+                randomAccessFile = null;
+                throw new IonicException(SdkError.ISAGENT_INVALIDVALUE, "key cache file in use: " + file.getPath());
+            }
+            final boolean isNew = (randomAccessFile.length() < HEADER_SIZE);
+            final long length = Math.max(randomAccessFile.length(), CAPACITY_INITIAL);
+            buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0L, length);
+            final byte[] magic = new byte[MAGIC.length];
+            buffer.position(0);
+            buffer.get(magic);
+            if (isNew) {
+                buffer.position(0);
+                buffer.put(MAGIC);
+                buffer.putInt(VERSION);
+            } else if ((!Arrays.equals(MAGIC, magic)) || (buffer.getInt(MAGIC.length) != VERSION)) {
+                randomAccessFile.close();
+                randomAccessFile = null;
+                fileLock = null;
+                throw new IonicException(SdkError.ISAGENT_INVALIDVALUE, file.getPath());
+            }
+            position = HEADER_SIZE;
+            recordCount = 0;
+        } catch (IOException e) {
+            throw new IonicException(SdkError.ISAGENT_ERROR, e);
+        }
+    }
+
+    /**
+     * Check that the file is open; it is released on {@link #close()}, or on failure to open it again after a
+     * {@link #rewrite(Collection)}.
+     *
+     * @throws IonicException if the file is not open
+     */
+    private void checkOpen() throws IonicException {
+        if (buffer == null) {
+            throw new IonicException(SdkError.ISAGENT_INVALIDVALUE, "key cache file not open: " + file.getPath());
+        }
+    }
+
+    /**
+     * Acquire an exclusive lock on a file, without waiting.
+     *
+     * @param channel the channel of the open file
+     * @return the lock, or null if the file is locked by another process, or by another channel of this process
+     * @throws IOException on failure to lock the file
+     */
+    private static FileLock tryLock(final FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Grow the file mapping, if needed, to accommodate the specified file size.
+     *
+     * @param size the needed file size
+     * @throws IonicException on failure to map the file
+     */
+    private void ensureCapacity(final int size) throws IonicException {
+        if (size > buffer.capacity()) {
+            long capacity = buffer.capacity();
+            while (capacity < size) {
+                capacity *= 2;
+            }
+            try {
+                buffer.force();
+                buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0L, capacity);
+            } catch (IOException e) {
+                throw new IonicException(SdkError.ISAGENT_ERROR, e);
+            }
+        }
+    }
+
+    /**
+     * Serialize and encrypt a cache record.
+     *
+     * @param cachedKey the key to be persisted
+     * @return the protected record
+     * @throws IonicException on cryptography failure
+     */
+    private byte[] toRecord(final IonicCachedKey cachedKey) throws IonicException {
+        try {
+            final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            final DataOutputStream dos = new DataOutputStream(bos);
+            dos.writeUTF(cachedKey.getId());
+            dos.writeLong(cachedKey.getExpiry());
+            dos.writeInt(cachedKey.getKey().length);
+            dos.write(cachedKey.getKey());
+            writeAttributes(dos, cachedKey.getAttributes());
+            writeAttributes(dos, cachedKey.getMutableAttributes());
+            dos.flush();
+            final byte[] iv = new byte[IV_SIZE];
+            random.nextBytes(iv);
+            final Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, wrappingKey, new GCMParameterSpec(TAG_BITS, iv));
+            cipher.updateAAD(MAGIC);
+            final byte[] ciphertext = cipher.doFinal(bos.toByteArray());
+            final byte[] record = new byte[IV_SIZE + ciphertext.length];
+            System.arraycopy(iv, 0, record, 0, IV_SIZE);
+            System.arraycopy(ciphertext, 0, record, IV_SIZE, ciphertext.length);
+            return record;
+        } catch (IOException e) {
+            throw new IonicException(SdkError.ISAGENT_ERROR, e);
+        } catch (GeneralSecurityException e) {
+            throw new IonicException(SdkError.ISAGENT_ERROR, e);
+        }
+    }
+
+    /**
+     * Decrypt and deserialize a cache record.
+     *
+     * @param record the protected record
+     * @return the persisted key, or null if the record cannot be read
+     */
+    private IonicCachedKey fromRecord(final byte[] record) {
+        try {
+            final Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, wrappingKey, new GCMParameterSpec(TAG_BITS, record, 0, IV_SIZE));
+            cipher.updateAAD(MAGIC);
+            final byte[] plaintext = cipher.doFinal(record, IV_SIZE, record.length - IV_SIZE);
+            final DataInputStream dis = new DataInputStream(new ByteArrayInputStream(plaintext));
+            final String id = dis.readUTF();
+            final long expiry = dis.readLong();
+            final byte[] key = new byte[dis.readInt()];
+            dis.readFully(key);
+            final KeyAttributesMap attributes = readAttributes(dis);
+            final KeyAttributesMap mutableAttributes = readAttributes(dis);
+            return new IonicCachedKey(id, key, attributes, mutableAttributes, expiry);
+        } catch (IOException e) {
+            return null;
+        } catch (GeneralSecurityException e) {
+            return null;
+        }
+    }
+
+    private static void writeAttributes(final DataOutputStream dos,
+                                        final KeyAttributesMap attributes) throws IOException {
+        dos.writeInt(attributes.size());
+        for (final Map.Entry<String, List<String>> entry : attributes.entrySet()) {
+            dos.writeUTF(entry.getKey());
+            dos.writeInt(entry.getValue().size());
+            for (final String value : entry.getValue()) {
+                dos.writeUTF(value);
+            }
+        }
+    }
+
+    private static KeyAttributesMap readAttributes(final DataInputStream dis) throws IOException {
+        final KeyAttributesMap attributes = new KeyAttributesMap();
+        final int count = dis.readInt();
+        for (int i = 0; (i < count); ++i) {
+            final String name = dis.readUTF();
+            final int countValues = dis.readInt();
+            final List<String> values = new ArrayList<String>();
+            for (int j = 0; (j < countValues); ++j) {
+                values.add(dis.readUTF());
+            }
+            attributes.put(name, values);
+        }
+        return attributes;
+    }
+}
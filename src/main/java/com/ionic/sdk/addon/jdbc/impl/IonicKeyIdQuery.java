@@ -0,0 +1,195 @@
+package com.ionic.sdk.addon.jdbc.impl;
+
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+import com.ionic.sdk.key.KeyServices;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Fetch, ahead of a large query, the keys protecting the values of its result.  The Ionic key id of a protected value
+ * is held at a fixed position in its ChunkCipherV2 header ("~!2!" followed by the key id), so the database can
+ * extract it without decryption.  An auxiliary query projects the distinct key ids of the protected columns of the
+ * result; the keys are then fetched with a few large key server requests, before the rows of the query are read.
+ * <p>
+ * The protected columns are those configured in the "Tables" section of the Ionic JDBC config json for the table
+ * queried; the query should project them by name.  Settings are taken from the connection properties:
+ * <ul>
+ * <li>"ionic.prefetch.keyid": the SQL expression extracting the key id from a protected value, with "%s" standing
+ * for the column (default "SUBSTRING(%s, 5, 11)")</li>
+ * <li>"ionic.prefetch.keys": the number of keys requested in each key server request (default 1000)</li>
+ * <li>"ionic.prefetch.max": the maximum number of keys fetched ahead of the query (default 100000); the keys of
+ * further values are fetched as the rows are read</li>
+ * <li>"ionic.prefetch.fetchsize": the number of rows fetched from the database in each round trip, by the auxiliary
+ * query and by the query (default 1000)</li>
+ * </ul>
+ * Some drivers (such as PostgreSQL) stream the rows of a result only within a transaction; on a connection in
+ * autocommit mode, autocommit is suspended while the auxiliary query runs, so that neither result is held in memory
+ * at once.
+ */
+public final class IonicKeyIdQuery {
+
+    /**
+     * The default SQL expression extracting the key id from a protected value.
+     */
+    public static final String KEYID_DEFAULT = "SUBSTRING(%s, 5, 11)";
+
+    /**
+     * The header common to the protected values of a ChunkCipherV2 cipher.
+     */
+    private static final String HEADER = "~!2!";
+
+    /**
+     * The default number of keys requested in each key server request.
+     */
+    private static final long KEYS_DEFAULT = 1000L;
+
+    /**
+     * The default maximum number of keys fetched ahead of a query.
+     */
+    private static final long MAX_DEFAULT = 100000L;
+
+    /**
+     * The default number of rows fetched from the database in each round trip.
+     */
+    private static final long FETCH_DEFAULT = 1000L;
+
+    /**
+     * Constructor.
+     */
+    private IonicKeyIdQuery() {
+    }
+
+    /**
+     * Compose the auxiliary query projecting the distinct key ids of the protected columns of the result of a query.
+     *
+     * @param sql     the query
+     * @param columns the names of the protected columns projected by the query
+     * @param keyId   the SQL expression extracting the key id from a protected value ("%s" stands for the column)
+     * @return the auxiliary query
+     */
+    public static String toSql(final String sql, final Collection<String> columns, final String keyId) {
+        final StringBuilder buffer = new StringBuilder();
+        for (final String column : columns) {
+            buffer.append((buffer.length() == 0) ? "" : " UNION ");
+            buffer.append("SELECT ").append(String.format(keyId, column)).append(" AS key_id FROM (")
+                    .append(sql).append(") ionic_query WHERE ").append(column)
+                    .append(" LIKE '").append(HEADER).append("%'");
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * @param info database connection parameters, and Ionic wrapper configuration
+     * @return the number of rows to be fetched from the database in each round trip, by the auxiliary query and by
+     * the query
+     * @throws SQLException on invalid settings
+     */
+    public static int getFetchSize(final Properties info) throws SQLException {
+        try {
+            final long fetchSize = IonicState.getLong(info, "ionic.prefetch.fetchsize", FETCH_DEFAULT);
+            if ((fetchSize < 0L) || (fetchSize > Integer.MAX_VALUE)) {
+                throw new IonicException(SdkError.ISAGENT_INVALIDVALUE, "ionic.prefetch.fetchsize");
+            }
+            return (int) fetchSize;
+        } catch (IonicException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    /**
+     * Fetch the keys of the protected values of the result of a query.  A failure of the auxiliary query or of the
+     * key server requests is logged, and the keys are then fetched as the rows are read.  The auxiliary query runs
+     * within a savepoint of the transaction of the connection, which is rolled back on failure.
+     *
+     * @param info        database connection parameters, and Ionic wrapper configuration
+     * @param connection  the underlying connection
+     * @param keyServices Ionic key services of the connection
+     * @param sql         the query
+     * @param table       the name of the database table queried
+     * @return key services holding the fetched keys, to be used to unprotect the result of the query
+     * @throws SQLException on invalid settings, or if no columns of the table are configured for Ionic protection
+     */
+    public static IonicPrefetchKeyServices prefetch(final Properties info, final Connection connection,
+                                                    final KeyServices keyServices, final String sql,
+                                                    final String table) throws SQLException {
+        final Map<String, IonicColumnConfig> columnConfigs = IonicConfigReader.createTableConfigs(
+                info.getProperty("ionic.config.jdbc.json"), table);
+        final List<String> columns = new ArrayList<String>();
+        for (final Map.Entry<String, IonicColumnConfig> entry : columnConfigs.entrySet()) {
+            if (entry.getValue().getStorage() == IonicColumnConfig.Storage.CIPHERTEXT) {
+                columns.add(entry.getKey());
+            }
+        }
+        final int quantity;
+        final long max;
+        try {
+            if (columns.isEmpty()) {
+                throw new IonicException(SdkError.ISAGENT_MISSINGVALUE, table);
+            }
+            quantity = (int) IonicState.getLong(info, "ionic.prefetch.keys", KEYS_DEFAULT);
+            max = IonicState.getLong(info, "ionic.prefetch.max", MAX_DEFAULT);
+        } catch (IonicException e) {
+            throw new SQLException(e);
+        }
+        final int fetchSize = getFetchSize(info);
+        final IonicPrefetchKeyServices keyServicesPrefetch = new IonicPrefetchKeyServices(keyServices, quantity);
+        final String keyId = info.getProperty("ionic.prefetch.keyid", KEYID_DEFAULT);
+        final Set<String> keyIds = new LinkedHashSet<String>();
+        final Logger logger = Logger.getLogger(IonicKeyIdQuery.class.getName());
+        try {
+            final boolean autoCommit = connection.getAutoCommit();
+            if (autoCommit) {
+                connection.setAutoCommit(false);
+            }
+            // the failure of the auxiliary query is rolled back to a savepoint, so that it does not abort the
+            // transaction of the caller (some databases fail all further statements of an aborted transaction)
+            final Savepoint savepoint = connection.setSavepoint();
+            try (Statement statement = connection.createStatement()) {
+                statement.setFetchSize(fetchSize);
+                try (ResultSet resultSet = statement.executeQuery(toSql(sql, columns, keyId))) {
+                    while ((keyIds.size() < max) && resultSet.next()) {
+                        final String value = resultSet.getString(1);
+                        if (value != null) {
+                            keyIds.add(value);
+                        }
+                    }
+                }
+                connection.releaseSavepoint(savepoint);
+            } catch (SQLException e) {
+                try {
+                    connection.rollback(savepoint);
+                } catch (SQLException eRollback) {
+                    e.addSuppressed(eRollback);
+                }
+                throw e;
+            } finally {
+                if (autoCommit) {
+                    connection.setAutoCommit(true);
+                }
+            }
+        } catch (SQLException e) {
+            logger.warning("key id query failed; keys are fetched as rows are read: " + e.getMessage());
+            return keyServicesPrefetch;
+        }
+        try {
+            keyServicesPrefetch.prefetch(keyIds);
+        } catch (IonicException e) {
+            logger.warning("key prefetch failed; keys are fetched as rows are read: " + e.getMessage());
+        }
+        logger.fine(String.format("TABLE=%s, COLUMNS=%d, KEYS=%d", table, columns.size(), keyIds.size()));
+        return keyServicesPrefetch;
+    }
+}
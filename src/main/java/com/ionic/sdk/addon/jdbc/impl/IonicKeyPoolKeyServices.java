@@ -0,0 +1,208 @@
+package com.ionic.sdk.addon.jdbc.impl;
+
+import com.ionic.sdk.agent.key.KeyAttributesMap;
+import com.ionic.sdk.agent.request.createkey.CreateKeysRequest;
+import com.ionic.sdk.agent.request.createkey.CreateKeysResponse;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+import com.ionic.sdk.key.KeyServices;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * Satisfy requests for single new keys from pools of keys created in bulk.  Each Ionic-protected value needs its own
+ * key; when many values are protected at once (for example, during a bulk load), a single key server request for many
+ * keys with the same attributes replaces many single key requests.
+ * <p>
+ * If an {@link Executor} is supplied, a pool is refilled in the background once half of its keys have been used, so
+ * that requests are not delayed by key server round trips while keys remain.
+ * <p>
+ * Keys remaining in the pools when this object is discarded are not used.
+ */
+public class IonicKeyPoolKeyServices extends IonicKeyServices {
+
+    /**
+     * The number of keys requested from the key server when a pool is empty.
+     */
+    private final int quantity;
+
+    /**
+     * The pools of created keys, keyed by the attributes of the keys.
+     */
+    private final ConcurrentMap<String, Pool> pools;
+
+    /**
+     * Refills pools in the background (null to refill pools only when empty).
+     */
+    private final Executor executor;
+
+    /**
+     * Constructor.
+     *
+     * @param wrapped  the {@link KeyServices} to which requests are passed
+     * @param quantity the number of keys requested from the key server when a pool is empty
+     */
+    public IonicKeyPoolKeyServices(final KeyServices wrapped, final int quantity) {
+        this(wrapped, quantity, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param wrapped  the {@link KeyServices} to which requests are passed
+     * @param quantity the number of keys requested from the key server when a pool is empty
+     * @param executor refills pools in the background (null to refill pools only when empty)
+     */
+    public IonicKeyPoolKeyServices(final KeyServices wrapped, final int quantity, final Executor executor) {
+        super(wrapped);
+        this.quantity = Math.max(1, quantity);
+        this.pools = new ConcurrentHashMap<String, Pool>();
+        this.executor = executor;
+    }
+
+    @Override
+    public CreateKeysResponse createKeys(final CreateKeysRequest request) throws IonicException {
+        final List<CreateKeysRequest.Key> keys = request.getKeys();
+        if ((keys.size() != 1) || (keys.get(0).getQuantity() != 1)) {
+            return super.createKeys(request);
+        }
+        final CreateKeysRequest.Key requestKey = keys.get(0);
+        final String name = toPoolName(requestKey);
+        Pool pool = pools.get(name);
+        if (pool == null) {
+            final Pool poolNew = new Pool();
+            pool = pools.putIfAbsent(name, poolNew);
+            pool = (pool == null) ? poolNew : pool;
+        }
+        final CreateKeysResponse response = new CreateKeysResponse();
+        // a lock (rather than a monitor) is held across the key server request, so that a waiting virtual thread
+        // does not pin its carrier thread
+        pool.lock.lock();
+        try {
+            try {
+                while (pool.keys.isEmpty() && pool.refilling) {
+                    pool.refilled.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IonicException(SdkError.ISAGENT_ERROR, e);
+            }
+            if (pool.keys.isEmpty()) {
+                pool.keys.addAll(super.createKeys(toBulkRequest(requestKey)).getKeys());
+            }
+            if (pool.keys.isEmpty()) {
+                return super.createKeys(request);
+            }
+            response.add(pool.keys.remove());
+            if ((executor != null) && (!pool.refilling) && (pool.keys.size() <= quantity / 2)) {
+                refill(pool, requestKey);
+            }
+        } finally {
+            pool.lock.unlock();
+        }
+        return response;
+    }
+
+    /**
+     * Start a background refill of a pool.  The caller must hold the lock of the pool.
+     *
+     * @param pool       the pool
+     * @param requestKey a request for a key of the pool
+     */
+    private void refill(final Pool pool, final CreateKeysRequest.Key requestKey) {
+        pool.refilling = true;
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    List<CreateKeysResponse.Key> keysNew = null;
+                    try {
+                        keysNew = IonicKeyPoolKeyServices.super.createKeys(toBulkRequest(requestKey)).getKeys();
+                    } catch (IonicException e) {
+                        // the next request to find the pool empty will request keys itself
+                        Logger.getLogger(getClass().getName()).fine(e.getMessage());
+                    } finally {
+                        pool.lock.lock();
+                        try {
+                            if (keysNew != null) {
+                                pool.keys.addAll(keysNew);
+                            }
+                            pool.refilling = false;
+                            pool.refilled.signalAll();
+                        } finally {
+                            pool.lock.unlock();
+                        }
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pool.refilling = false;
+        }
+    }
+
+    /**
+     * @param requestKey a request for a single new key
+     * @return a request for a pool of keys like the requested key
+     */
+    private CreateKeysRequest toBulkRequest(final CreateKeysRequest.Key requestKey) {
+        final CreateKeysRequest requestBulk = new CreateKeysRequest();
+        requestBulk.add(new CreateKeysRequest.Key(requestKey.getRefId(), quantity,
+                requestKey.getAttributesMap(), requestKey.getMutableAttributesMap()));
+        return requestBulk;
+    }
+
+    /**
+     * @param requestKey a request for a new key
+     * @return the name of the pool from which the request may be satisfied
+     */
+    private static String toPoolName(final CreateKeysRequest.Key requestKey) {
+        return requestKey.getRefId() + "/" + toSorted(requestKey.getAttributesMap())
+                + "/" + toSorted(requestKey.getMutableAttributesMap());
+    }
+
+    /**
+     * @param attributes key attributes
+     * @return the attributes, in a canonical order
+     */
+    private static TreeMap<String, List<String>> toSorted(final KeyAttributesMap attributes) {
+        return (attributes == null) ? new TreeMap<String, List<String>>()
+                : new TreeMap<String, List<String>>(attributes);
+    }
+
+    /**
+     * A pool of created keys with the same attributes.
+     */
+    private static final class Pool {
+
+        /**
+         * The keys of the pool.
+         */
+        private final Queue<CreateKeysResponse.Key> keys = new ArrayDeque<CreateKeysResponse.Key>();
+
+        /**
+         * Guards the state of the pool.
+         */
+        private final Lock lock = new ReentrantLock();
+
+        /**
+         * Signalled when a background refill of the pool completes.
+         */
+        private final Condition refilled = lock.newCondition();
+
+        /**
+         * True while a background refill of the pool is in progress.
+         */
+        private boolean refilling;
+    }
+}
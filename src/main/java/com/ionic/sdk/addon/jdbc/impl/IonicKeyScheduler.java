@@ -0,0 +1,395 @@
+package com.ionic.sdk.addon.jdbc.impl;
+
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Admission control for requests to an Ionic key server.  Requests are admitted subject to a global rate limit
+ * (token bucket) and a limit on the number of concurrent requests.  Waiting requests are admitted in weighted fair
+ * queuing order across {@link Flow}s, so that a busy flow (for example, a bulk job) cannot starve other flows
+ * (for example, interactive connections) of key server capacity.
+ */
+public class IonicKeyScheduler {
+
+    /**
+     * The schedulers in use in this process, keyed by key server.
+     */
+    private static final ConcurrentMap<String, IonicKeyScheduler> SCHEDULERS =
+            new ConcurrentHashMap<String, IonicKeyScheduler>();
+
+    /**
+     * Conversion factor for the token bucket refill rate.
+     */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * The source of the time (nanoseconds) used to refill the token bucket.
+     */
+    private final LongSupplier clock;
+
+    /**
+     * Guards the state of the scheduler.
+     */
+    private final ReentrantLock lock;
+
+    /**
+     * Signalled when the state of the scheduler changes.
+     */
+    private final Condition changed;
+
+    /**
+     * The requests waiting for admission, in order of virtual finish time.
+     */
+    private final PriorityQueue<Ticket> queue;
+
+    /**
+     * The named flows of this scheduler.
+     */
+    private final ConcurrentMap<String, Flow> flows;
+
+    /**
+     * The maximum number of requests per second (zero for no limit).
+     */
+    private double rate;
+
+    /**
+     * The maximum number of requests that may be admitted at once after an idle period.
+     */
+    private double burst;
+
+    /**
+     * The maximum number of concurrent requests (zero for no limit).
+     */
+    private int concurrency;
+
+    /**
+     * The number of tokens currently available in the token bucket.
+     */
+    private double tokens;
+
+    /**
+     * The time (nanoseconds) of the last token bucket refill.
+     */
+    private long refillTime;
+
+    /**
+     * The number of admitted requests not yet released.
+     */
+    private int inFlight;
+
+    /**
+     * The virtual time of the fair queue (the virtual start time of the last admitted request).
+     */
+    private double virtualTime;
+
+    /**
+     * Sequence number of requests, used to order requests with equal virtual finish times.
+     */
+    private long sequence;
+
+    /**
+     * Constructor.
+     *
+     * @param rate        the maximum number of requests per second (zero for no limit)
+     * @param burst       the maximum number of requests that may be admitted at once after an idle period
+     * @param concurrency the maximum number of concurrent requests (zero for no limit)
+     */
+    public IonicKeyScheduler(final double rate, final double burst, final int concurrency) {
+        this(rate, burst, concurrency, new LongSupplier() {
+            @Override
+            public long getAsLong() {
+                return System.nanoTime();
+            }
+        });
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param rate        the maximum number of requests per second (zero for no limit)
+     * @param burst       the maximum number of requests that may be admitted at once after an idle period
+     * @param concurrency the maximum number of concurrent requests (zero for no limit)
+     * @param clock       the source of the time (nanoseconds) used to refill the token bucket
+     */
+    public IonicKeyScheduler(final double rate, final double burst, final int concurrency,
+                             final LongSupplier clock) {
+        this.clock = clock;
+        this.lock = new ReentrantLock();
+        this.changed = lock.newCondition();
+        this.queue = new PriorityQueue<Ticket>();
+        this.flows = new ConcurrentHashMap<String, Flow>();
+        this.refillTime = clock.getAsLong();
+        configure(rate, burst, concurrency);
+        this.tokens = this.burst;
+    }
+
+    /**
+     * Get the process-wide scheduler for a key server, creating it with the specified limits if needed (see
+     * {@link IonicState}); use {@link #configure(double, double, int)} to change its limits.
+     *
+     * @param server      the key server url
+     * @param rate        the maximum number of requests per second (zero for no limit)
+     * @param burst       the maximum number of requests that may be admitted at once after an idle period
+     * @param concurrency the maximum number of concurrent requests (zero for no limit)
+     * @return the scheduler
+     */
+    public static IonicKeyScheduler getInstance(final String server, final double rate,
+                                                final double burst, final int concurrency) {
+        IonicKeyScheduler scheduler = SCHEDULERS.get(server);
+        if (scheduler == null) {
+            final IonicKeyScheduler schedulerNew = new IonicKeyScheduler(rate, burst, concurrency);
+            final IonicKeyScheduler schedulerRace = SCHEDULERS.putIfAbsent(server, schedulerNew);
+            scheduler = (schedulerRace == null) ? schedulerNew : schedulerRace;
+        }
+        return scheduler;
+    }
+
+    /**
+     * Update the limits of the scheduler.
+     *
+     * @param rateIn        the maximum number of requests per second (zero for no limit)
+     * @param burstIn       the maximum number of requests that may be admitted at once after an idle period
+     * @param concurrencyIn the maximum number of concurrent requests (zero for no limit)
+     */
+    public final void configure(final double rateIn, final double burstIn, final int concurrencyIn) {
+        lock.lock();
+        try {
+            this.rate = Math.max(0.0, rateIn);
+            this.burst = Math.max(1.0, burstIn);
+            this.concurrency = Math.max(0, concurrencyIn);
+            this.tokens = Math.min(tokens, burst);
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the maximum number of requests per second (zero for no limit)
+     */
+    public double getRate() {
+        lock.lock();
+        try {
+            return rate;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the maximum number of concurrent requests (zero for no limit)
+     */
+    public int getConcurrency() {
+        lock.lock();
+        try {
+            return concurrency;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of requests waiting for admission
+     */
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the flow with the specified name, creating it if needed.  All users of the name share the flow's fair
+     * share of key server capacity.
+     *
+     * @param name   the name of the flow
+     * @param weight the share of key server capacity of the flow, relative to other flows
+     * @return the flow
+     */
+    public Flow getFlow(final String name, final double weight) {
+        final Flow flow = new Flow(name, weight);
+        final Flow flowPrior = flows.putIfAbsent(name, flow);
+        return (flowPrior == null) ? flow : flowPrior;
+    }
+
+    /**
+     * Wait for admission of a key server request.  Each successful call must be paired with a call to
+     * {@link #release()}.
+     *
+     * @param flow the flow on behalf of which the request is made
+     * @throws IonicException if the calling thread is interrupted while waiting
+     */
+    public void acquire(final Flow flow) throws IonicException {
+        lock.lock();
+        try {
+            final double start = Math.max(virtualTime, flow.finish);
+            flow.finish = start + (1.0 / flow.weight);
+            final Ticket ticket = new Ticket(start, flow.finish, ++sequence);
+            queue.add(ticket);
+            dispatch();
+            try {
+                while (!ticket.admitted) {
+                    final long waitNanos = getWaitNanos();
+                    if (waitNanos > 0L) {
+                        changed.awaitNanos(waitNanos);
+                    } else {
+                        changed.await();
+                    }
+                    dispatch();
+                }
+            } catch (InterruptedException e) {
+                if (ticket.admitted) {
+                    // the request was admitted as it was interrupted; its slot and token are returned
+                    --inFlight;
+                    tokens = (rate == 0.0) ? tokens : Math.min(burst, tokens + 1.0);
+                    dispatch();
+                } else {
+                    queue.remove(ticket);
+                }
+                Thread.currentThread().interrupt();
+                throw new IonicException(SdkError.ISAGENT_ERROR, e);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Signal completion of a key server request admitted by {@link #acquire(Flow)}.
+     */
+    public void release() {
+        lock.lock();
+        try {
+            --inFlight;
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Admit as many waiting requests as the limits allow, in fair queuing order.  Caller must hold the lock.
+     */
+    private void dispatch() {
+        refill();
+        boolean isAdmitted = false;
+        while ((!queue.isEmpty()) && ((concurrency == 0) || (inFlight < concurrency))
+                && ((rate == 0.0) || (tokens >= 1.0))) {
+            final Ticket ticket = queue.poll();
+            virtualTime = Math.max(virtualTime, ticket.start);
+            ticket.admitted = true;
+            ++inFlight;
+            tokens = (rate == 0.0) ? tokens : (tokens - 1.0);
+            isAdmitted = true;
+        }
+        if (isAdmitted) {
+            changed.signalAll();
+        }
+    }
+
+    /**
+     * Add tokens to the token bucket for the time elapsed since the last refill.  Caller must hold the lock.
+     */
+    private void refill() {
+        final long now = clock.getAsLong();
+        tokens = Math.min(burst, tokens + ((now - refillTime) * rate / NANOS_PER_SECOND));
+        refillTime = now;
+    }
+
+    /**
+     * @return the time (nanoseconds) until the next token becomes available, or zero if waiting on another condition
+     */
+    private long getWaitNanos() {
+        final boolean isWaitToken = (rate > 0.0) && (tokens < 1.0)
+                && ((concurrency == 0) || (inFlight < concurrency));
+        return isWaitToken ? Math.max(1L, (long) ((1.0 - tokens) * NANOS_PER_SECOND / rate)) : 0L;
+    }
+
+    /**
+     * A source of key server requests (for example, a connection, or a class of connections), which is given a
+     * share of key server capacity in proportion to its weight.
+     */
+    public static final class Flow {
+
+        /**
+         * The name of the flow.
+         */
+        private final String name;
+
+        /**
+         * The share of key server capacity of the flow, relative to other flows.
+         */
+        private final double weight;
+
+        /**
+         * The virtual finish time of the most recent request of the flow.  Guarded by the scheduler lock.
+         */
+        private double finish;
+
+        /**
+         * Constructor.
+         *
+         * @param name   the name of the flow
+         * @param weight the share of key server capacity of the flow, relative to other flows
+         */
+        public Flow(final String name, final double weight) {
+            this.name = name;
+            this.weight = (weight > 0.0) ? weight : 1.0;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public double getWeight() {
+            return weight;
+        }
+    }
+
+    /**
+     * A request waiting for admission.
+     */
+    private static final class Ticket implements Comparable<Ticket> {
+
+        /**
+         * The virtual start time of the request.
+         */
+        private final double start;
+
+        /**
+         * The virtual finish time of the request.
+         */
+        private final double finish;
+
+        /**
+         * Order of arrival of the request.
+         */
+        private final long sequence;
+
+        /**
+         * True once the request has been admitted.  Guarded by the scheduler lock.
+         */
+        private boolean admitted;
+
+        private Ticket(final double start, final double finish, final long sequence) {
+            this.start = start;
+            this.finish = finish;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(final Ticket ticket) {
+            final int compare = Double.compare(finish, ticket.finish);
+            return (compare == 0) ? Long.compare(sequence, ticket.sequence) : compare;
+        }
+    }
+}
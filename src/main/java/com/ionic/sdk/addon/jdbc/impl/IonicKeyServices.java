@@ -0,0 +1,113 @@
+package com.ionic.sdk.addon.jdbc.impl;
+
+import com.ionic.sdk.agent.key.KeyAttributesMap;
+import com.ionic.sdk.agent.request.createkey.CreateKeysRequest;
+import com.ionic.sdk.agent.request.createkey.CreateKeysResponse;
+import com.ionic.sdk.agent.request.getkey.GetKeysRequest;
+import com.ionic.sdk.agent.request.getkey.GetKeysResponse;
+import com.ionic.sdk.device.profile.DeviceProfile;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.key.KeyServices;
+
+/**
+ * Base class for {@link KeyServices} implementations that add behavior to the key requests made by the Ionic
+ * driver, before passing them on to a wrapped {@link KeyServices} (ultimately, the {@link com.ionic.sdk.agent.Agent}).
+ * <p>
+ * The single key convenience APIs are routed through {@link #createKeys(CreateKeysRequest)} and
+ * {@link #getKeys(GetKeysRequest)}, so subclasses need only override those two methods to see all key traffic.
+ */
+public abstract class IonicKeyServices implements KeyServices {
+
+    /**
+     * The reference identifier used in key creation requests made through the single key convenience APIs.
+     */
+    protected static final String REF_ID = "jdbc";
+
+    /**
+     * The wrapped object.
+     */
+    private final KeyServices wrapped;
+
+    /**
+     * Constructor.
+     *
+     * @param wrapped the {@link KeyServices} to which requests are passed
+     */
+    protected IonicKeyServices(final KeyServices wrapped) {
+        this.wrapped = wrapped;
+    }
+
+    /**
+     * @return the {@link KeyServices} to which requests are passed
+     */
+    public final KeyServices getWrapped() {
+        return wrapped;
+    }
+
+    /**
+     * @return an identifier for the Ionic identity making key requests, used to scope data shared across connections
+     */
+    protected final String getIdentity() {
+        final DeviceProfile deviceProfile = getActiveProfile();
+        return (deviceProfile == null) ? "" : deviceProfile.getDeviceId();
+    }
+
+    /**
+     * Start a key fetch request for a subset of the keys of another request.  The request metadata (such as the
+     * application name and version, used by Ionic policy and logging) is carried over, so that the key server sees
+     * the request as the caller made it.
+     *
+     * @param request the key fetch request of the caller
+     * @return a new key fetch request, with the metadata of the caller's request, and no keys
+     */
+    protected static GetKeysRequest createRequest(final GetKeysRequest request) {
+        final GetKeysRequest requestSubset = new GetKeysRequest();
+        requestSubset.setMetadata(request.getMetadata());
+        return requestSubset;
+    }
+
+    @Override
+    public CreateKeysResponse createKey(final KeyAttributesMap attributes,
+                                        final KeyAttributesMap mutableAttributes) throws IonicException {
+        final CreateKeysRequest request = new CreateKeysRequest();
+        request.add(new CreateKeysRequest.Key(REF_ID, 1, attributes, mutableAttributes));
+        return createKeys(request);
+    }
+
+    @Override
+    public CreateKeysResponse createKey(final KeyAttributesMap attributes) throws IonicException {
+        return createKey(attributes, new KeyAttributesMap());
+    }
+
+    @Override
+    public CreateKeysResponse createKey() throws IonicException {
+        return createKey(new KeyAttributesMap(), new KeyAttributesMap());
+    }
+
+    @Override
+    public CreateKeysResponse createKeys(final CreateKeysRequest request) throws IonicException {
+        return wrapped.createKeys(request);
+    }
+
+    @Override
+    public GetKeysResponse getKey(final String keyId) throws IonicException {
+        final GetKeysRequest request = new GetKeysRequest();
+        request.add(keyId);
+        return getKeys(request);
+    }
+
+    @Override
+    public GetKeysResponse getKeys(final GetKeysRequest request) throws IonicException {
+        return wrapped.getKeys(request);
+    }
+
+    @Override
+    public boolean hasActiveProfile() {
+        return wrapped.hasActiveProfile();
+    }
+
+    @Override
+    public DeviceProfile getActiveProfile() {
+        return wrapped.getActiveProfile();
+    }
+}
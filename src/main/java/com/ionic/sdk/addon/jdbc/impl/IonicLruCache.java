@@ -0,0 +1,107 @@
+package com.ionic.sdk.addon.jdbc.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded, thread-safe cache, which discards its least recently used entry when full.
+ *
+ * @param <K> the type of the keys of the cache
+ * @param <V> the type of the values of the cache
+ */
+public final class IonicLruCache<K, V> {
+
+    /**
+     * The cached entries, in order of use (least recently used first).
+     */
+    private final Map<K, V> entries;
+
+    /**
+     * Guards the entries (a lookup reorders them), without pinning the carrier of a virtual thread.
+     */
+    private final Lock lock;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity the maximum number of entries held by the cache
+     */
+    public IonicLruCache(final int capacity) {
+        final int maxEntries = Math.max(1, capacity);
+        this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.lock = new ReentrantLock();
+    }
+
+    /**
+     * @param key the key of an entry
+     * @return the cached value of the key, or null if the key is not cached
+     */
+    public V get(final K key) {
+        lock.lock();
+        try {
+            return entries.get(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Add an entry to the cache, discarding the least recently used entry if the cache is full.
+     *
+     * @param key   the key of the entry
+     * @param value the value of the entry
+     */
+    public void put(final K key, final V value) {
+        lock.lock();
+        try {
+            entries.put(key, value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param key the key of an entry to be discarded
+     */
+    public void remove(final K key) {
+        lock.lock();
+        try {
+            entries.remove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Discard all entries of the cache.
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of entries held by the cache
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
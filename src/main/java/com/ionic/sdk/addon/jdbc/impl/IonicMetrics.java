@@ -0,0 +1,213 @@
+package com.ionic.sdk.addon.jdbc.impl;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters and latency samples describing the operation of the Ionic driver, shared by the connections of this
+ * driver.  A separate set of metrics is kept for each key server in use, so that the health of each key server may be
+ * observed by monitoring software (for example, by periodic logging of {@link #getSnapshot()}).
+ */
+public class IonicMetrics {
+
+    /**
+     * The metrics in use in this process, keyed by scope (for example, a key server url).
+     */
+    private static final ConcurrentMap<String, IonicMetrics> METRICS = new ConcurrentHashMap<String, IonicMetrics>();
+
+    /**
+     * The number of recent samples retained for each latency metric.
+     */
+    private static final int WINDOW_SIZE = 256;
+
+    /**
+     * The scope of this set of metrics.
+     */
+    private final String scope;
+
+    /**
+     * The counters (and gauges) of this scope, keyed by name.
+     */
+    private final ConcurrentMap<String, AtomicLong> counters;
+
+    /**
+     * The latency samples of this scope, keyed by name.
+     */
+    private final ConcurrentMap<String, Window> windows;
+
+    /**
+     * Constructor.
+     *
+     * @param scope the scope of this set of metrics
+     */
+    public IonicMetrics(final String scope) {
+        this.scope = scope;
+        this.counters = new ConcurrentHashMap<String, AtomicLong>();
+        this.windows = new ConcurrentHashMap<String, Window>();
+    }
+
+    /**
+     * Get the process-wide metrics for a scope.
+     *
+     * @param scope the scope of the metrics (for example, a key server url)
+     * @return the metrics
+     */
+    public static IonicMetrics getInstance(final String scope) {
+        final String name = (scope == null) ? "" : scope;
+        final IonicMetrics metrics = new IonicMetrics(name);
+        final IonicMetrics metricsPrior = METRICS.putIfAbsent(name, metrics);
+        return (metricsPrior == null) ? metrics : metricsPrior;
+    }
+
+    /**
+     * @return the scopes for which metrics have been recorded in this process
+     */
+    public static String[] getScopes() {
+        final String[] scopes = METRICS.keySet().toArray(new String[METRICS.size()]);
+        Arrays.sort(scopes);
+        return scopes;
+    }
+
+    public String getScope() {
+        return scope;
+    }
+
+    /**
+     * Add one to a counter.
+     *
+     * @param name the name of the counter
+     * @return the updated value of the counter
+     */
+    public long increment(final String name) {
+        return getCounter(name).incrementAndGet();
+    }
+
+    /**
+     * Add to a counter.
+     *
+     * @param name  the name of the counter
+     * @param delta the amount to be added
+     * @return the updated value of the counter
+     */
+    public long add(final String name, final long delta) {
+        return getCounter(name).addAndGet(delta);
+    }
+
+    /**
+     * Set the value of a gauge.
+     *
+     * @param name  the name of the gauge
+     * @param value the current value of the gauge
+     */
+    public void set(final String name, final long value) {
+        getCounter(name).set(value);
+    }
+
+    /**
+     * @param name the name of the counter (or gauge)
+     * @return the current value of the counter (or gauge)
+     */
+    public long get(final String name) {
+        final AtomicLong counter = counters.get(name);
+        return (counter == null) ? 0L : counter.get();
+    }
+
+    /**
+     * Record a latency sample.  The sample is also counted.
+     *
+     * @param name  the name of the latency metric
+     * @param nanos the observed latency (nanoseconds)
+     */
+    public void record(final String name, final long nanos) {
+        Window window = windows.get(name);
+        if (window == null) {
+            final Window windowNew = new Window();
+            window = windows.putIfAbsent(name, windowNew);
+            window = (window == null) ? windowNew : window;
+        }
+        window.add(nanos);
+        increment(name);
+    }
+
+    /**
+     * Get a percentile of the recent samples of a latency metric.
+     *
+     * @param name     the name of the latency metric
+     * @param quantile the percentile to calculate, expressed as a fraction (for example, 0.95)
+     * @return the latency (nanoseconds) at the requested percentile, or -1 if no samples have been recorded
+     */
+    public long getPercentile(final String name, final double quantile) {
+        final Window window = windows.get(name);
+        return (window == null) ? -1L : window.getPercentile(quantile);
+    }
+
+    /**
+     * @return the current value of each counter and gauge, along with the median and 95th percentile of each latency
+     * metric (nanoseconds), ordered by name
+     */
+    public Map<String, Long> getSnapshot() {
+        final Map<String, Long> snapshot = new TreeMap<String, Long>();
+        for (final Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().get());
+        }
+        for (final Map.Entry<String, Window> entry : windows.entrySet()) {
+            snapshot.put(entry.getKey() + ".p50", entry.getValue().getPercentile(0.5));
+            snapshot.put(entry.getKey() + ".p95", entry.getValue().getPercentile(0.95));
+        }
+        return snapshot;
+    }
+
+    /**
+     * Get the named counter, creating it if needed.
+     *
+     * @param name the name of the counter
+     * @return the counter
+     */
+    private AtomicLong getCounter(final String name) {
+        AtomicLong counter = counters.get(name);
+        if (counter == null) {
+            final AtomicLong counterNew = new AtomicLong();
+            counter = counters.putIfAbsent(name, counterNew);
+            counter = (counter == null) ? counterNew : counter;
+        }
+        return counter;
+    }
+
+    /**
+     * The most recent samples of a latency metric.
+     */
+    private static final class Window {
+
+        /**
+         * Ring buffer of samples.
+         */
+        private final long[] samples = new long[WINDOW_SIZE];
+
+        /**
+         * The total number of samples added.
+         */
+        private long count;
+
+        private synchronized void add(final long nanos) {
+            samples[(int) (count % WINDOW_SIZE)] = nanos;
+            ++count;
+        }
+
+        private long getPercentile(final double quantile) {
+            final long[] sorted;
+            synchronized (this) {
+                sorted = Arrays.copyOf(samples, (int) Math.min(count, WINDOW_SIZE));
+            }
+            if (sorted.length == 0) {
+                return -1L;
+            }
+            Arrays.sort(sorted);
+            final int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        }
+    }
+}
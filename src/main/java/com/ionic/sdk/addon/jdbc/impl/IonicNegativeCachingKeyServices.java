@@ -0,0 +1,135 @@
+package com.ionic.sdk.addon.jdbc.impl;
+
+import com.ionic.sdk.agent.request.getkey.GetKeysRequest;
+import com.ionic.sdk.agent.request.getkey.GetKeysResponse;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.key.KeyServices;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Remember, for a short interval, the keys which the key server did not return (keys denied by policy, and unknown
+ * keys), so that they are not requested again.  Without this, a scan of a table to which the Ionic identity lacks
+ * access makes a failed key server request for every protected value; with it, the values under a denied key cost a
+ * single request per interval, and are then left protected as fast as unprotected values are read.
+ * <p>
+ * Denied keys are omitted from the responses of this object (as the key server omits them), and removed from the
+ * requests passed on, so that bulk requests (see {@link IonicPrefetchKeyServices}) fetch only the keys which may be
+ * available.  Failed key server requests are not remembered, as they say nothing about the availability of a key.
+ * The denied keys of each Ionic identity are shared by the connections of this driver.
+ */
+public class IonicNegativeCachingKeyServices extends IonicKeyServices {
+
+    /**
+     * The name of the counter of keys requested, and found in the cache of denied keys.
+     */
+    public static final String METRIC_HIT = "keyserver.denied.hit";
+
+    /**
+     * The name of the counter of keys added to the cache of denied keys.
+     */
+    public static final String METRIC_ADDED = "keyserver.denied.added";
+
+    /**
+     * The denied keys of each Ionic identity in use in this process (expiry time, by key id), keyed by Ionic identity.
+     */
+    private static final ConcurrentMap<String, IonicLruCache<String, Long>> DENIED =
+            new ConcurrentHashMap<String, IonicLruCache<String, Long>>();
+
+    /**
+     * The denied keys of the Ionic identity of the wrapped {@link KeyServices} (expiry time, by key id).
+     */
+    private final IonicLruCache<String, Long> denied;
+
+    /**
+     * The interval (milliseconds) for which a denied key is not requested again.
+     */
+    private final long ttl;
+
+    /**
+     * The metrics of the key server.
+     */
+    private final IonicMetrics metrics;
+
+    /**
+     * Constructor.
+     *
+     * @param wrapped the {@link KeyServices} to which requests are passed
+     * @param denied  the denied keys of the Ionic identity of the wrapped {@link KeyServices}
+     * @param ttl     the interval (milliseconds) for which a denied key is not requested again
+     * @param metrics the metrics of the key server
+     */
+    public IonicNegativeCachingKeyServices(final KeyServices wrapped, final IonicLruCache<String, Long> denied,
+                                           final long ttl, final IonicMetrics metrics) {
+        super(wrapped);
+        this.denied = denied;
+        this.ttl = ttl;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Get the process-wide cache of the denied keys of an Ionic identity.
+     *
+     * @param identity the Ionic device id
+     * @param capacity the maximum number of denied keys remembered
+     * @return the denied keys of the identity (expiry time, by key id)
+     */
+    public static IonicLruCache<String, Long> getDeniedKeys(final String identity, final int capacity) {
+        IonicLruCache<String, Long> deniedKeys = DENIED.get(identity);
+        if (deniedKeys == null) {
+            deniedKeys = new IonicLruCache<String, Long>(capacity);
+            final IonicLruCache<String, Long> deniedKeysRace = DENIED.putIfAbsent(identity, deniedKeys);
+            deniedKeys = (deniedKeysRace == null) ? deniedKeys : deniedKeysRace;
+        }
+        return deniedKeys;
+    }
+
+    /**
+     * Forget the denied keys of all Ionic identities (for example, after a change of Ionic policy granting access).
+     */
+    public static void invalidateAll() {
+        for (final IonicLruCache<String, Long> deniedKeys : DENIED.values()) {
+            deniedKeys.clear();
+        }
+    }
+
+    @Override
+    public GetKeysResponse getKeys(final GetKeysRequest request) throws IonicException {
+        final long now = System.currentTimeMillis();
+        final GetKeysRequest requestAllowed = createRequest(request);
+        int hits = 0;
+        for (final String keyId : request.getKeyIds()) {
+            final Long expiry = denied.get(keyId);
+            if ((expiry != null) && (expiry >= now)) {
+                ++hits;
+            } else {
+                if (expiry != null) {
+                    denied.remove(keyId);
+                }
+                requestAllowed.add(keyId);
+            }
+        }
+        if (hits > 0) {
+            metrics.add(METRIC_HIT, hits);
+        }
+        if (requestAllowed.getKeyIds().isEmpty()) {
+            return new GetKeysResponse();
+        }
+        final GetKeysResponse response = super.getKeys((hits == 0) ? request : requestAllowed);
+        final Set<String> received = new HashSet<String>();
+        for (final GetKeysResponse.Key key : response.getKeys()) {
+            received.add(key.getId());
+        }
+        final long expiry = System.currentTimeMillis() + ttl;
+        for (final String keyId : requestAllowed.getKeyIds()) {
+            if (!received.contains(keyId)) {
+                denied.put(keyId, expiry);
+                metrics.increment(METRIC_ADDED);
+            }
+        }
+        return response;
+    }
+}
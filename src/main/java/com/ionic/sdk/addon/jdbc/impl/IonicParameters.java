@@ -1,13 +1,21 @@
 package com.ionic.sdk.addon.jdbc.impl;
 
-import com.ionic.sdk.agent.Agent;
 import com.ionic.sdk.agent.cipher.chunk.ChunkCipherV2;
-import com.ionic.sdk.agent.cipher.chunk.data.ChunkCryptoEncryptAttributes;
 import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.key.KeyServices;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 /**
  * Cache of data associated with {@link PreparedStatement}, and Ionic protection business logic.
@@ -25,21 +33,66 @@ public class IonicParameters {
     private final Map<Integer, IonicColumnConfig> columnConfigs;
 
     /**
-     * Ionic agent, used to protect data on database insert, and unprotect data on database fetch.
+     * Ionic key services, used to protect data on database insert, and unprotect data on database fetch.
      */
-    private final Agent agent;
+    private final KeyServices keyServices;
 
     /**
-     * @return Ionic agent, used to protect data on insert into database, and unprotect data on fetch from database
+     * Protects parameter values as they are supplied, ahead of statement execution (null to protect values on
+     * statement execution).
      */
-    public Agent getAgent() {
-        return agent;
+    private final Executor executor;
+
+    /**
+     * The protection in progress of each parameter value (null where none is in progress).
+     */
+    private final List<Future<Protection>> pending;
+
+    /**
+     * The vault of the tokenized parameters (null to store tokenized parameters as Ionic-protected values).
+     */
+    private final IonicTokenVault tokenVault;
+
+    /**
+     * The vault entries of the tokens used since the last call to {@link #flushTokens(Connection)} (each a token and
+     * its protected value).  The entries of a row are added once the row is protected, so that the tokens of
+     * abandoned values (replaced, or of a failed row) are not written to the vault.
+     */
+    private final List<String[]> tokens;
+
+    /**
+     * @return Ionic key services, used to protect data on insert into database, and unprotect data on fetch from
+     * database
+     */
+    public KeyServices getKeyServices() {
+        return keyServices;
     }
 
-    public IonicParameters(final int count, final Map<Integer, IonicColumnConfig> columnConfigs, final Agent agent) {
+    public IonicParameters(final int count, final Map<Integer, IonicColumnConfig> columnConfigs, final KeyServices keyServices) {
+        this(count, columnConfigs, keyServices, null, IonicConnectionServices.NONE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param count         the number of parameters specified in the SQL of the associated {@link PreparedStatement}
+     * @param columnConfigs the Ionic config associated with the {@link PreparedStatement}
+     * @param keyServices   Ionic key services, used to protect data on database insert
+     * @param executor      protects parameter values as they are supplied, ahead of statement execution (null to
+     *                      protect values on statement execution)
+     * @param services      the optional services of the connection; its token vault holds the tokenized parameters
+     *                      (if none, tokenized parameters are stored as Ionic-protected values)
+     */
+    public IonicParameters(final int count, final Map<Integer, IonicColumnConfig> columnConfigs,
+                           final KeyServices keyServices, final Executor executor,
+                           final IonicConnectionServices services) {
         this.parameters = new Object[count];
         this.columnConfigs = columnConfigs;
-        this.agent = agent;
+        this.keyServices = keyServices;
+        this.executor = executor;
+        this.pending = new ArrayList<Future<Protection>>(Collections.<Future<Protection>>nCopies(count, null));
+        this.tokenVault = services.getTokenVault();
+        this.tokens = new ArrayList<String[]>();
     }
 
     /**
@@ -59,6 +112,14 @@ public class IonicParameters {
         return parameters[dbIndex - 1];
     }
 
+    /**
+     * @param dbIndex the ordinal of a parameter
+     * @return true, iff values of the parameter are Ionic-protected
+     */
+    public boolean isProtected(final int dbIndex) {
+        return columnConfigs.containsKey(dbIndex);
+    }
+
     /**
      * Set the {@link PreparedStatement} parameter associated with the specified database index.
      *
@@ -67,12 +128,37 @@ public class IonicParameters {
      */
     public void setParameter(final int dbIndex, final Object value) {
         parameters[dbIndex - 1] = value;
+        cancel(dbIndex);
+        final IonicColumnConfig columnConfig = columnConfigs.get(dbIndex);
+        if ((executor != null) && (columnConfig != null) && IonicValueCodec.isSupported(value)) {
+            final FutureTask<Protection> task = new FutureTask<Protection>(new Callable<Protection>() {
+                @Override
+                public Protection call() throws IonicException {
+                    return protect(value, columnConfig);
+                }
+            });
+            pending.set(dbIndex - 1, task);
+            executor.execute(task);
+        }
     }
 
 
     public void clearParameters() {
         for (int index = 0; (index < parameters.length); ++index) {
             parameters[index] = null;
+            cancel(index + 1);
+        }
+    }
+
+    /**
+     * Abandon the protection in progress of a parameter value, if any.
+     *
+     * @param dbIndex the ordinal of the parameter
+     */
+    private void cancel(final int dbIndex) {
+        final Future<Protection> future = pending.set(dbIndex - 1, null);
+        if (future != null) {
+            future.cancel(false);
         }
     }
 
@@ -83,20 +169,143 @@ public class IonicParameters {
      * @throws SQLException on Ionic cryptography errors
      */
     public void encrypt() throws SQLException {
-        final ChunkCipherV2 chunkCipher = new ChunkCipherV2(agent);
-        for (int index = 0; (index < parameters.length); ++index) {
-            final int dbIndex = index + 1;
-            final IonicColumnConfig columnConfig = columnConfigs.get(dbIndex);
-            final Object parameter = getParameter(dbIndex);
-            if ((columnConfig != null) && (parameter instanceof String)) {
-                try {
-                    final ChunkCryptoEncryptAttributes encryptAttributes =
-                            new ChunkCryptoEncryptAttributes(columnConfig.getCattrs());
-                    setParameter(dbIndex, chunkCipher.encrypt((String) parameter, encryptAttributes));
-                } catch (IonicException e) {
-                    throw new SQLException(e);
+        final Object[] encrypted = toEncrypted();
+        System.arraycopy(encrypted, 0, parameters, 0, parameters.length);
+    }
+
+    /**
+     * Ionic protect the values specified in the Ionic configuration, leaving the cached parameters unchanged (so that
+     * they may be reused by subsequent executions of the statement; the parameters of a batch row are cleared as the
+     * row is added).
+     *
+     * @return the parameters, with protected values replaced by their ciphertext
+     * @throws SQLException on Ionic cryptography errors
+     */
+    public Object[] toEncrypted() throws SQLException {
+        final Object[] encrypted = parameters.clone();
+        final List<String[]> entries = new ArrayList<String[]>();
+        try {
+            for (int index = 0; (index < parameters.length); ++index) {
+                final int dbIndex = index + 1;
+                final IonicColumnConfig columnConfig = columnConfigs.get(dbIndex);
+                final Object parameter = getParameter(dbIndex);
+                // a value protected ahead of execution is used once, so that each row of a batch gets its own key
+                final Future<Protection> future = pending.set(index, null);
+                if (future != null) {
+                    encrypted[index] = use(getEncrypted(future), entries);
+                } else if ((columnConfig != null) && IonicValueCodec.isSupported(parameter)) {
+                    try {
+                        encrypted[index] = use(protect(parameter, columnConfig), entries);
+                    } catch (IonicException e) {
+                        throw new SQLException(e);
+                    }
                 }
             }
+        } catch (SQLException e) {
+            // the protections in progress for the row are abandoned; the values are protected again on the next call
+            for (int index = 0; (index < parameters.length); ++index) {
+                cancel(index + 1);
+            }
+            throw e;
+        }
+        tokens.addAll(entries);
+        return encrypted;
+    }
+
+    /**
+     * Write the vault entries of the tokens created for the values protected since the last call, in a single batch.
+     * This should be called before the associated {@link PreparedStatement} is executed, so that the entries are
+     * written in the transaction of the statement.
+     *
+     * @param connection the connection of the associated {@link PreparedStatement}
+     * @throws SQLException on database errors
+     */
+    public void flushTokens(final Connection connection) throws SQLException {
+        if (tokens.isEmpty()) {
+            return;
+        }
+        final List<String[]> entries = new ArrayList<String[]>(tokens);
+        tokens.clear();
+        tokenVault.insert(connection, entries);
+    }
+
+    /**
+     * Discard the vault entries of the tokens created since the last call to {@link #flushTokens(Connection)} (for
+     * example, those of the rows of a discarded batch).
+     */
+    public void clearTokens() {
+        tokens.clear();
+    }
+
+    /**
+     * @param value        a parameter value (a String, or another type serialized by {@link IonicValueCodec})
+     * @param columnConfig the Ionic config of the parameter
+     * @return the protected value, or its token (for a tokenized parameter), or its reference (for a deduplicated
+     * parameter)
+     * @throws IonicException on Ionic cryptography errors, or on failure to write a reference
+     */
+    private Protection protect(final Object value, final IonicColumnConfig columnConfig) throws IonicException {
+        if ((tokenVault != null) && (columnConfig.getStorage() == IonicColumnConfig.Storage.DEDUP)) {
+            return new Protection(tokenVault.getReference(value, columnConfig, keyServices), null);
+        }
+        final String cipherText = IonicValueCodec.protect(new ChunkCipherV2(keyServices), value, columnConfig);
+        if ((tokenVault == null) || (columnConfig.getStorage() != IonicColumnConfig.Storage.TOKEN)) {
+            return new Protection(cipherText, null);
+        }
+        final String token = IonicTokenVault.createToken();
+        return new Protection(token, new String[]{token, cipherText});
+    }
+
+    /**
+     * Use a protected parameter value in the current row.
+     *
+     * @param protection the protected value
+     * @param entries    the vault entries of the tokens of the row, to which the entry of the value (if any) is added
+     * @return the value to be sent to the database
+     */
+    private static String use(final Protection protection, final List<String[]> entries) {
+        if (protection.entry != null) {
+            entries.add(protection.entry);
+        }
+        return protection.value;
+    }
+
+    /**
+     * Wait for the protection of a parameter value, started as the value was supplied.
+     *
+     * @param future the protection in progress
+     * @return the protected value
+     * @throws SQLException on Ionic cryptography errors, or if the calling thread is interrupted
+     */
+    private static Protection getEncrypted(final Future<Protection> future) throws SQLException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new SQLException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(e);
+        }
+    }
+
+    /**
+     * A protected parameter value.
+     */
+    private static final class Protection {
+
+        /**
+         * The value to be sent to the database: the protected value, its token, or its reference.
+         */
+        private final String value;
+
+        /**
+         * The vault entry of the token of the value (null if the value is not tokenized).
+         */
+        private final String[] entry;
+
+        private Protection(final String value, final String[] entry) {
+            this.value = value;
+            this.entry = entry;
         }
     }
 }
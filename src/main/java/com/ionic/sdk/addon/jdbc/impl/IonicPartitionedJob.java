@@ -0,0 +1,754 @@
+package com.ionic.sdk.addon.jdbc.impl;
+
+import com.ionic.sdk.addon.jdbc.Driver;
+import com.ionic.sdk.addon.jdbc.IonicConnection;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+import com.ionic.sdk.key.KeyServices;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Base class for jobs which rewrite the Ionic-protected columns of every row of a database table (for example, to
+ * protect a table of legacy plaintext data, or to re-protect data with new keys).
+ * <p>
+ * The table is partitioned into ranges of its (integer) primary key, which are processed in parallel.  Each worker
+ * reads its range in pages (keyset pagination), transforms each page, and writes the changed rows back in a batch.
+ * The progress of each partition is recorded in a control table in the same transaction as the page, so that an
+ * interrupted job resumes where it stopped when run again with the same job name.  On resumption, the remaining ranges
+ * are divided further if there are fewer unfinished partitions than threads.
+ * <p>
+ * Identifiers (of the table, its columns, and the control table) are quoted in the SQL of the job, with the letter
+ * case of unquoted identifiers of the database.
+ * <p>
+ * Settings are taken from the connection properties:
+ * <ul>
+ * <li>"ionic.job.name": the name of the job, used to record progress (default: set by the subclass)</li>
+ * <li>"ionic.job.key": the integer primary key column of the table (default "id")</li>
+ * <li>"ionic.job.threads": the number of partitions processed in parallel (default 4)</li>
+ * <li>"ionic.job.rows": the number of rows in each page (default 1000)</li>
+ * <li>"ionic.job.keys": the number of keys requested in each key server request (default 1000)</li>
+ * <li>"ionic.job.checkpoint": the name of the control table (default "ionic_job_checkpoint")</li>
+ * <li>"ionic.job.report": the interval (seconds) between progress reports (default 10)</li>
+ * </ul>
+ */
+public abstract class IonicPartitionedJob {
+
+    /**
+     * The name of the counter of rows read by the job.
+     */
+    public static final String METRIC_ROWS = "job.rows";
+
+    /**
+     * The name of the counter of rows written by the job.
+     */
+    public static final String METRIC_UPDATED = "job.updated";
+
+    /**
+     * The default number of partitions processed in parallel.
+     */
+    private static final long THREADS_DEFAULT = 4L;
+
+    /**
+     * The default number of rows in each page.
+     */
+    private static final long ROWS_DEFAULT = 1000L;
+
+    /**
+     * The default number of keys requested in each key server request.
+     */
+    private static final long KEYS_DEFAULT = 1000L;
+
+    /**
+     * The default interval (seconds) between progress reports.
+     */
+    private static final long REPORT_DEFAULT = 10L;
+
+    /**
+     * Class scoped logger.
+     */
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    /**
+     * The JDBC url of the database.
+     */
+    private final String url;
+
+    /**
+     * Database connection parameters, and Ionic wrapper configuration.
+     */
+    private final Properties info;
+
+    /**
+     * The name of the database table.
+     */
+    private final String table;
+
+    /**
+     * The names of the Ionic-protected columns of the table.
+     */
+    private final String[] columns;
+
+    /**
+     * The Ionic configuration of the Ionic-protected columns of the table.
+     */
+    private final IonicColumnConfig[] columnConfigs;
+
+    /**
+     * The name of the job, used to record progress.
+     */
+    private final String name;
+
+    /**
+     * The integer primary key column of the table.
+     */
+    private final String keyColumn;
+
+    /**
+     * The number of partitions processed in parallel.
+     */
+    private final int threads;
+
+    /**
+     * The number of rows in each page.
+     */
+    private final int rowsPerPage;
+
+    /**
+     * The number of keys requested in each key server request.
+     */
+    private final int keysPerRequest;
+
+    /**
+     * The name of the control table.
+     */
+    private final String checkpointTable;
+
+    /**
+     * The interval (seconds) between progress reports.
+     */
+    private final long reportInterval;
+
+    /**
+     * The progress counters of the job.
+     */
+    private final IonicMetrics metrics;
+
+    /**
+     * Constructor.
+     *
+     * @param url         the JDBC url of the database
+     * @param info        database connection parameters, and Ionic wrapper configuration
+     * @param table       the name of the database table
+     * @param nameDefault the name of the job, if not specified in the connection properties
+     * @throws SQLException on invalid settings, or if no columns of the table are configured for Ionic protection
+     */
+    protected IonicPartitionedJob(final String url, final Properties info, final String table,
+                                  final String nameDefault) throws SQLException {
+        this.url = url;
+        this.info = info;
+        this.table = table;
+        final Map<String, IonicColumnConfig> tableConfigs = IonicConfigReader.createTableConfigs(
+                info.getProperty("ionic.config.jdbc.json"), table);
+        if (tableConfigs.isEmpty()) {
+            throw new SQLException(new IonicException(SdkError.ISAGENT_MISSINGVALUE, table));
+        }
+        this.columns = tableConfigs.keySet().toArray(new String[tableConfigs.size()]);
+        this.columnConfigs = tableConfigs.values().toArray(new IonicColumnConfig[tableConfigs.size()]);
+        this.name = info.getProperty("ionic.job.name", nameDefault);
+        this.keyColumn = info.getProperty("ionic.job.key", "id");
+        this.checkpointTable = info.getProperty("ionic.job.checkpoint", "ionic_job_checkpoint");
+        try {
+            this.threads = Math.max(1, (int) IonicState.getLong(info, "ionic.job.threads", THREADS_DEFAULT));
+            this.rowsPerPage = Math.max(1, (int) IonicState.getLong(info, "ionic.job.rows", ROWS_DEFAULT));
+            this.keysPerRequest = (int) IonicState.getLong(info, "ionic.job.keys", KEYS_DEFAULT);
+            this.reportInterval = Math.max(1L, IonicState.getLong(info, "ionic.job.report", REPORT_DEFAULT));
+        } catch (IonicException e) {
+            throw new SQLException(e);
+        }
+        this.metrics = IonicMetrics.getInstance("job:" + name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * @return the names of the Ionic-protected columns of the table
+     */
+    public String[] getColumns() {
+        return columns.clone();
+    }
+
+    /**
+     * @param index the ordinal (zero-based) of a protected column
+     * @return the Ionic configuration of the column
+     */
+    protected IonicColumnConfig getColumnConfig(final int index) {
+        return columnConfigs[index];
+    }
+
+    /**
+     * @return the number of rows in each page
+     */
+    protected int getRowsPerPage() {
+        return rowsPerPage;
+    }
+
+    /**
+     * @return the number of keys requested in each key server request
+     */
+    protected int getKeysPerRequest() {
+        return keysPerRequest;
+    }
+
+    /**
+     * @return the progress counters of the job
+     */
+    public IonicMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Transform a page of rows.  Rows whose values are changed are written back to the table.
+     *
+     * @param rows        the rows of the page
+     * @param keyServices Ionic key services available to the worker processing the page
+     * @throws IonicException on Ionic cryptography errors
+     */
+    protected abstract void processPage(List<Row> rows, KeyServices keyServices) throws IonicException;
+
+    /**
+     * Called before each page is read, allowing a subclass to limit the rate of the job.
+     *
+     * @throws IonicException if the job should stop
+     */
+    protected void beforePage() throws IonicException {
+    }
+
+    /**
+     * Process the table.  If the job was interrupted on a previous run, the work done by that run is not repeated.
+     *
+     * @return the number of rows written by this run
+     * @throws SQLException on database errors, or Ionic cryptography errors
+     */
+    public long run() throws SQLException {
+        final Sql sql;
+        final List<Partition> partitions;
+        try (Connection connection = connect()) {
+            final Connection connectionDb = ((IonicConnection) connection).getWrapped();
+            sql = new Sql(connectionDb.getMetaData());
+            partitions = getPartitions(connectionDb, sql);
+        }
+        final long updatedStart = metrics.get(METRIC_UPDATED);
+        final long start = System.nanoTime();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        reporter.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                report(start);
+            }
+        }, reportInterval, reportInterval, TimeUnit.SECONDS);
+        try {
+            final List<Future<Long>> futures = new ArrayList<Future<Long>>();
+            for (final Partition partition : partitions) {
+                futures.add(executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws Exception {
+                        return runPartition(partition, sql);
+                    }
+                }));
+            }
+            for (final Future<Long> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw (e.getCause() instanceof SQLException) ? (SQLException) e.getCause() : new SQLException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(e);
+        } finally {
+            executor.shutdownNow();
+            reporter.shutdownNow();
+            report(start);
+        }
+        return metrics.get(METRIC_UPDATED) - updatedStart;
+    }
+
+    /**
+     * Log the progress of the job.
+     *
+     * @param start the time (nanoseconds) at which this run started
+     */
+    private void report(final long start) {
+        final double seconds = Math.max(1e-3, (System.nanoTime() - start) / 1e9);
+        final long rows = metrics.get(METRIC_ROWS);
+        logger.info(String.format(Locale.ROOT, "JOB %s: rows read = %d, rows written = %d, rate = %.1f rows/s",
+                name, rows, metrics.get(METRIC_UPDATED), rows / seconds));
+    }
+
+    /**
+     * Load the partitions of the job from the control table; on the first run, divide the key range of the table
+     * into partitions, and record them.
+     *
+     * @param connectionDb the underlying connection
+     * @param sql          the SQL of the job
+     * @return the partitions of the job
+     * @throws SQLException on database errors
+     */
+    private List<Partition> getPartitions(final Connection connectionDb, final Sql sql) throws SQLException {
+        final List<Partition> partitions = new ArrayList<Partition>();
+        try (Statement statement = connectionDb.createStatement()) {
+            statement.execute(sql.createCheckpoint);
+        }
+        int partCount = 0;
+        try (PreparedStatement select = connectionDb.prepareStatement(sql.selectCheckpoint)) {
+            select.setString(1, name);
+            try (ResultSet resultSet = select.executeQuery()) {
+                while (resultSet.next()) {
+                    partCount = Math.max(partCount, resultSet.getInt(1) + 1);
+                    if (!resultSet.getBoolean(4)) {
+                        partitions.add(new Partition(resultSet.getInt(1), resultSet.getLong(3),
+                                resultSet.getLong(2)));
+                    }
+                }
+            }
+        }
+        if (partCount > 0) {
+            split(connectionDb, sql, partitions, partCount);
+            logger.info(String.format("JOB %s: resuming %d partitions", name, partitions.size()));
+            return partitions;
+        }
+        try (Statement statement = connectionDb.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql.selectRange)) {
+            resultSet.next();
+            final long min = resultSet.getLong(1);
+            if (resultSet.wasNull()) {
+                return partitions;
+            }
+            final long max = resultSet.getLong(2);
+            final long span = ((max - min) / threads) + 1;
+            for (int part = 0; (part < threads); ++part) {
+                final long rangeStart = min + (part * span);
+                if (rangeStart <= max) {
+                    partitions.add(new Partition(part, rangeStart - 1, Math.min(max, rangeStart + span - 1)));
+                }
+            }
+        }
+        insertPartitions(connectionDb, sql, partitions);
+        return partitions;
+    }
+
+    /**
+     * On resumption of the job, divide the remaining ranges of the unfinished partitions, so that the partitions are
+     * processed by as many threads as the settings of this run allow.  The widest remaining range is halved until
+     * there are enough partitions, or no range can be divided.
+     *
+     * @param connectionDb the underlying connection
+     * @param sql          the SQL of the job
+     * @param partitions   the unfinished partitions of the job, to which the new partitions are added
+     * @param partCount    the number of partitions recorded (finished or not)
+     * @throws SQLException on database errors
+     */
+    private void split(final Connection connectionDb, final Sql sql, final List<Partition> partitions,
+                       final int partCount) throws SQLException {
+        final List<Partition> added = new ArrayList<Partition>();
+        int part = partCount;
+        while (partitions.size() < threads) {
+            Partition widest = null;
+            for (final Partition partition : partitions) {
+                if ((widest == null) || (partition.getRemaining() > widest.getRemaining())) {
+                    widest = partition;
+                }
+            }
+            if ((widest == null) || (widest.getRemaining() < 2L)) {
+                break;
+            }
+            final long middle = widest.lastKey + (widest.getRemaining() / 2L);
+            final Partition partition = new Partition(part++, middle, widest.rangeEnd);
+            widest.rangeEnd = middle;
+            partitions.add(partition);
+            added.add(partition);
+        }
+        if (added.isEmpty()) {
+            return;
+        }
+        // the ranges are recorded in a single transaction, so that the partitions always cover the table
+        final boolean autoCommit = connectionDb.getAutoCommit();
+        connectionDb.setAutoCommit(false);
+        try {
+            try (PreparedStatement update = connectionDb.prepareStatement(sql.splitCheckpoint)) {
+                for (final Partition partition : partitions) {
+                    if (!added.contains(partition)) {
+                        update.setLong(1, partition.rangeEnd);
+                        update.setString(2, name);
+                        update.setInt(3, partition.part);
+                        update.addBatch();
+                    }
+                }
+                update.executeBatch();
+            }
+            insertPartitions(connectionDb, sql, added);
+            connectionDb.commit();
+        } catch (SQLException e) {
+            connectionDb.rollback();
+            throw e;
+        } finally {
+            connectionDb.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Record new partitions of the job in the control table.
+     *
+     * @param connectionDb the underlying connection
+     * @param sql          the SQL of the job
+     * @param partitions   the new partitions
+     * @throws SQLException on database errors
+     */
+    private void insertPartitions(final Connection connectionDb, final Sql sql,
+                                  final List<Partition> partitions) throws SQLException {
+        try (PreparedStatement insert = connectionDb.prepareStatement(sql.insertCheckpoint)) {
+            for (final Partition partition : partitions) {
+                insert.setString(1, name);
+                insert.setInt(2, partition.part);
+                insert.setLong(3, partition.lastKey + 1);
+                insert.setLong(4, partition.rangeEnd);
+                insert.setLong(5, partition.lastKey);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+    }
+
+    /**
+     * Process one partition of the table.
+     *
+     * @param partition the partition
+     * @param sql       the SQL of the job
+     * @return the number of rows written
+     * @throws SQLException on database errors, or Ionic cryptography errors
+     */
+    private long runPartition(final Partition partition, final Sql sql) throws SQLException {
+        long updated = 0L;
+        try (Connection connection = connect()) {
+            final IonicConnection ionicConnection = (IonicConnection) connection;
+            final Connection connectionDb = ionicConnection.getWrapped();
+            // keys created by a job are not cached, as they would displace the working set of the cache
+            final KeyServices keyServicesConnection = ionicConnection.getKeyServices();
+            final KeyServices keyServices = new IonicKeyPoolKeyServices((keyServicesConnection
+                    instanceof IonicCachingKeyServices) ? ((IonicCachingKeyServices) keyServicesConnection)
+                    .getWrapped() : keyServicesConnection, keysPerRequest);
+            connectionDb.setAutoCommit(false);
+            try (PreparedStatement select = connectionDb.prepareStatement(sql.selectPage);
+                 PreparedStatement update = connectionDb.prepareStatement(sql.updateRow);
+                 PreparedStatement checkpoint = connectionDb.prepareStatement(sql.updateCheckpoint)) {
+                boolean isDone = false;
+                while (!isDone) {
+                    beforePage();
+                    final List<Row> rows = readPage(select, partition);
+                    processPage(Collections.unmodifiableList(rows), keyServices);
+                    int count = 0;
+                    for (final Row row : rows) {
+                        if (row.isChanged()) {
+                            for (int i = 0; (i < columns.length); ++i) {
+                                update.setString(i + 1, row.getValue(i));
+                            }
+                            update.setLong(columns.length + 1, row.getKey());
+                            update.addBatch();
+                            ++count;
+                        }
+                    }
+                    if (count > 0) {
+                        update.executeBatch();
+                    }
+                    isDone = (rows.size() < rowsPerPage);
+                    partition.lastKey = rows.isEmpty() ? partition.lastKey : rows.get(rows.size() - 1).getKey();
+                    checkpoint.setLong(1, partition.lastKey);
+                    checkpoint.setLong(2, rows.size());
+                    checkpoint.setBoolean(3, isDone);
+                    checkpoint.setString(4, name);
+                    checkpoint.setInt(5, partition.part);
+                    checkpoint.executeUpdate();
+                    connectionDb.commit();
+                    metrics.add(METRIC_ROWS, rows.size());
+                    metrics.add(METRIC_UPDATED, count);
+                    updated += count;
+                }
+            } catch (IonicException e) {
+                connectionDb.rollback();
+                throw new SQLException(e);
+            } catch (SQLException e) {
+                connectionDb.rollback();
+                throw e;
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * Read the next page of a partition.
+     *
+     * @param select    the page query
+     * @param partition the partition
+     * @return the rows of the page
+     * @throws SQLException on database errors
+     */
+    private List<Row> readPage(final PreparedStatement select, final Partition partition) throws SQLException {
+        final List<Row> rows = new ArrayList<Row>();
+        select.setLong(1, partition.lastKey);
+        select.setLong(2, partition.rangeEnd);
+        try (ResultSet resultSet = select.executeQuery()) {
+            while (resultSet.next()) {
+                final String[] values = new String[columns.length];
+                for (int i = 0; (i < columns.length); ++i) {
+                    values[i] = resultSet.getString(i + 2);
+                }
+                rows.add(new Row(resultSet.getLong(1), values));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @return a new Ionic connection to the database
+     * @throws SQLException on failure to connect
+     */
+    protected Connection connect() throws SQLException {
+        return new Driver().connect(url, info);
+    }
+
+    /**
+     * Quote an identifier (which may be qualified by a schema) for use in SQL.  Each part of the identifier is
+     * converted to the letter case in which the database stores unquoted identifiers, so that the quoted identifier
+     * names the same object as the unquoted identifier would.
+     *
+     * @param metaData   the metadata of the database
+     * @param identifier the identifier
+     * @return the quoted identifier (the identifier, if the database does not support quoted identifiers)
+     * @throws SQLException on database errors
+     */
+    private static String quote(final DatabaseMetaData metaData, final String identifier) throws SQLException {
+        final String quote = metaData.getIdentifierQuoteString();
+        if ((quote == null) || quote.trim().isEmpty()) {
+            return identifier;
+        }
+        final StringBuilder buffer = new StringBuilder();
+        for (final String part : identifier.split("\\.")) {
+            String name = part;
+            if (metaData.storesUpperCaseIdentifiers()) {
+                name = part.toUpperCase(Locale.ROOT);
+            } else if (metaData.storesLowerCaseIdentifiers()) {
+                name = part.toLowerCase(Locale.ROOT);
+            }
+            buffer.append((buffer.length() == 0) ? "" : ".");
+            buffer.append(quote).append(name.replace(quote, quote + quote)).append(quote);
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * A row of the table, as seen by a job.
+     */
+    public static final class Row {
+
+        /**
+         * The primary key of the row.
+         */
+        private final long key;
+
+        /**
+         * The values of the Ionic-protected columns of the row.
+         */
+        private final String[] values;
+
+        /**
+         * True iff the values of the row have been changed by the job.
+         */
+        private boolean changed;
+
+        /**
+         * Constructor.
+         *
+         * @param key    the primary key of the row
+         * @param values the values of the Ionic-protected columns of the row
+         */
+        public Row(final long key, final String[] values) {
+            this.key = key;
+            this.values = values;
+        }
+
+        public long getKey() {
+            return key;
+        }
+
+        /**
+         * @return the number of Ionic-protected columns of the row
+         */
+        public int getCount() {
+            return values.length;
+        }
+
+        /**
+         * @param index the ordinal (zero-based) of a protected column
+         * @return the value of the column
+         */
+        public String getValue(final int index) {
+            return values[index];
+        }
+
+        /**
+         * Replace the value of a column.  The row is written back to the table.
+         *
+         * @param index the ordinal (zero-based) of a protected column
+         * @param value the new value of the column
+         */
+        public void setValue(final int index, final String value) {
+            values[index] = value;
+            changed = true;
+        }
+
+        public boolean isChanged() {
+            return changed;
+        }
+    }
+
+    /**
+     * A range of primary keys of the table, processed by a single worker.
+     */
+    private static final class Partition {
+
+        /**
+         * The ordinal of the partition.
+         */
+        private final int part;
+
+        /**
+         * The last key processed (the keys of unprocessed rows are greater).
+         */
+        private long lastKey;
+
+        /**
+         * The last key of the range (reduced if the partition is divided on resumption of the job).
+         */
+        private long rangeEnd;
+
+        private Partition(final int part, final long lastKey, final long rangeEnd) {
+            this.part = part;
+            this.lastKey = lastKey;
+            this.rangeEnd = rangeEnd;
+        }
+
+        /**
+         * @return the number of keys of the range remaining to be processed
+         */
+        private long getRemaining() {
+            return rangeEnd - lastKey;
+        }
+    }
+
+    /**
+     * The SQL of the job, with the identifiers quoted for the database.
+     */
+    private final class Sql {
+
+        /**
+         * Create the control table.
+         */
+        private final String createCheckpoint;
+
+        /**
+         * Select the partitions of the job from the control table.
+         */
+        private final String selectCheckpoint;
+
+        /**
+         * Record a partition of the job in the control table.
+         */
+        private final String insertCheckpoint;
+
+        /**
+         * Change the range of a partition of the job in the control table.
+         */
+        private final String splitCheckpoint;
+
+        /**
+         * Record the progress of a partition of the job in the control table.
+         */
+        private final String updateCheckpoint;
+
+        /**
+         * Select the range of the primary key of the table.
+         */
+        private final String selectRange;
+
+        /**
+         * Select a page of rows of a partition.
+         */
+        private final String selectPage;
+
+        /**
+         * Write the Ionic-protected columns of a row.
+         */
+        private final String updateRow;
+
+        /**
+         * Constructor.
+         *
+         * @param metaData the metadata of the database
+         * @throws SQLException on database errors
+         */
+        private Sql(final DatabaseMetaData metaData) throws SQLException {
+            final String checkpoint = quote(metaData, checkpointTable);
+            final String tableQuoted = quote(metaData, table);
+            final String key = quote(metaData, keyColumn);
+            final StringBuilder columnList = new StringBuilder();
+            final StringBuilder setList = new StringBuilder();
+            for (int i = 0; (i < columns.length); ++i) {
+                final String column = quote(metaData, columns[i]);
+                columnList.append(", ").append(column);
+                setList.append((i == 0) ? "" : ", ").append(column).append(" = ?");
+            }
+            this.createCheckpoint = String.format("CREATE TABLE IF NOT EXISTS %s (job VARCHAR(128) NOT NULL,"
+                    + " part INTEGER NOT NULL, range_start BIGINT NOT NULL, range_end BIGINT NOT NULL,"
+                    + " last_key BIGINT NOT NULL, rows_done BIGINT NOT NULL, done BOOLEAN NOT NULL,"
+                    + " PRIMARY KEY (job, part))", checkpoint);
+            this.selectCheckpoint = String.format("SELECT part, range_end, last_key, done FROM %s WHERE job = ?"
+                    + " ORDER BY part", checkpoint);
+            this.insertCheckpoint = String.format("INSERT INTO %s (job, part, range_start, range_end, last_key,"
+                    + " rows_done, done) VALUES (?, ?, ?, ?, ?, 0, FALSE)", checkpoint);
+            this.splitCheckpoint = String.format("UPDATE %s SET range_end = ? WHERE job = ? AND part = ?",
+                    checkpoint);
+            this.updateCheckpoint = String.format("UPDATE %s SET last_key = ?, rows_done = rows_done + ?,"
+                    + " done = ? WHERE job = ? AND part = ?", checkpoint);
+            this.selectRange = String.format("SELECT MIN(%s), MAX(%s) FROM %s", key, key, tableQuoted);
+            this.selectPage = String.format("SELECT %s%s FROM %s WHERE %s > ? AND %s <= ? ORDER BY %s"
+                    + " LIMIT %d FOR UPDATE", key, columnList, tableQuoted, key, key, key, rowsPerPage);
+            this.updateRow = String.format("UPDATE %s SET %s WHERE %s = ?", tableQuoted, setList, key);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.ionic.sdk.addon.jdbc.impl;
+
+import com.ionic.sdk.agent.request.getkey.GetKeysRequest;
+import com.ionic.sdk.agent.request.getkey.GetKeysResponse;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.key.KeyServices;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Satisfy key fetch requests from a set of keys fetched in advance.  When many protected values are to be read at
+ * once (for example, a page of rows being re-protected), the keys of all the values are fetched with a few bulk
+ * requests, rather than one request per value.
+ * <p>
+ * Requests for keys which were not fetched in advance are passed to the wrapped {@link KeyServices}.
+ */
+public class IonicPrefetchKeyServices extends IonicKeyServices {
+
+    /**
+     * The maximum number of keys requested in a single key server request.
+     */
+    private final int quantity;
+
+    /**
+     * The keys fetched in advance, keyed by key id.
+     */
+    private final Map<String, GetKeysResponse.Key> keys;
+
+    /**
+     * Constructor.
+     *
+     * @param wrapped  the {@link KeyServices} to which requests are passed
+     * @param quantity the maximum number of keys requested in a single key server request
+     */
+    public IonicPrefetchKeyServices(final KeyServices wrapped, final int quantity) {
+        super(wrapped);
+        this.quantity = Math.max(1, quantity);
+        this.keys = new ConcurrentHashMap<String, GetKeysResponse.Key>();
+    }
+
+    /**
+     * Fetch the specified keys, in as few key server requests as allowed.  Keys which are not available to the Ionic
+     * identity (for example, keys denied by policy) are omitted from the result, rather than failing the request.
+     *
+     * @param keyIds the ids of the keys to fetch
+     * @throws IonicException on failure of a key server request
+     */
+    public void prefetch(final Collection<String> keyIds) throws IonicException {
+        GetKeysRequest request = new GetKeysRequest();
+        for (final String keyId : keyIds) {
+            if (!keys.containsKey(keyId)) {
+                request.add(keyId);
+            }
+            if (request.getKeyIds().size() >= quantity) {
+                fetch(request);
+                request = new GetKeysRequest();
+            }
+        }
+        if (!request.getKeyIds().isEmpty()) {
+            fetch(request);
+        }
+    }
+
+    /**
+     * @param keyId the id of a key
+     * @return the key, if it has been fetched; otherwise null
+     */
+    public GetKeysResponse.Key getPrefetched(final String keyId) {
+        return keys.get(keyId);
+    }
+
+    @Override
+    public GetKeysResponse getKeys(final GetKeysRequest request) throws IonicException {
+        final GetKeysResponse response = new GetKeysResponse();
+        for (final String keyId : request.getKeyIds()) {
+            final GetKeysResponse.Key key = keys.get(keyId);
+            if (key == null) {
+                return fetch(request);
+            }
+            response.add(key);
+        }
+        return response;
+    }
+
+    /**
+     * Fetch keys from the wrapped {@link KeyServices}, retaining them for later requests.
+     *
+     * @param request the key fetch request
+     * @return the response of the wrapped {@link KeyServices}
+     * @throws IonicException on failure of the key server request
+     */
+    private GetKeysResponse fetch(final GetKeysRequest request) throws IonicException {
+        final GetKeysResponse response = super.getKeys(request);
+        for (final GetKeysResponse.Key key : response.getKeys()) {
+            keys.put(key.getId(), key);
+        }
+        return response;
+    }
+}
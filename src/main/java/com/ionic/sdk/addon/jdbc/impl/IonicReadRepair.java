@@ -0,0 +1,450 @@
+package com.ionic.sdk.addon.jdbc.impl;
+
+import com.ionic.sdk.agent.cipher.chunk.ChunkCipherV2;
+import com.ionic.sdk.agent.cipher.chunk.data.ChunkCryptoEncryptAttributes;
+import com.ionic.sdk.device.profile.DeviceProfile;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.key.KeyServices;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Re-protect stale Ionic-protected values (values protected by keys in a retired keyspace) as they are read by
+ * applications.  Each stale value read from a configured table column is re-protected with a new key in the
+ * background, and written back to its row, provided the row has not been changed in the meantime.  Over time, the
+ * frequently read data of a table migrates to new keys, without the cost of a full table rewrite.
+ * <p>
+ * Settings are taken from the connection properties:
+ * <ul>
+ * <li>"ionic.rotation.repair": if "true", read-repair is enabled (default "false")</li>
+ * <li>"ionic.rotation.keyspaces": the retired keyspaces (see {@link IonicRotationPolicy}); required</li>
+ * <li>"ionic.rotation.key": the integer primary key column of repaired tables, which must be included in the
+ * queries of the application (default "id")</li>
+ * <li>"ionic.rotation.queue": the maximum number of repairs waiting to be written (default 1000)</li>
+ * <li>"ionic.rotation.rate": (optional) the maximum number of values re-protected per second, shared with the
+ * {@link com.ionic.sdk.addon.jdbc.IonicRotationJob}s of the database (see
+ * {@link IonicRotationPolicy#getScheduler(String, Properties)})</li>
+ * </ul>
+ * Each Ionic identity has its own worker for a database, so that a value is re-protected by the identity which read
+ * it.  Repairs are written using a dedicated database connection (of the wrapped driver), one at a time, with the
+ * table and column names quoted in their SQL.  Repairs exceeding the capacity of the queue are dropped; the values
+ * are repaired when read again.
+ */
+public final class IonicReadRepair {
+
+    /**
+     * The name of the counter of repairs queued.
+     */
+    public static final String METRIC_QUEUED = "repair.queued";
+
+    /**
+     * The name of the counter of values repaired.
+     */
+    public static final String METRIC_REPAIRED = "repair.repaired";
+
+    /**
+     * The name of the counter of repairs abandoned, as the row had changed since it was read.
+     */
+    public static final String METRIC_CONFLICT = "repair.conflict";
+
+    /**
+     * The name of the counter of repairs dropped, as the queue was full.
+     */
+    public static final String METRIC_DROPPED = "repair.dropped";
+
+    /**
+     * The name of the counter of repairs which failed.
+     */
+    public static final String METRIC_FAILED = "repair.failed";
+
+    /**
+     * The read-repair workers in use in this process, keyed by Ionic identity and database url.
+     */
+    private static final ConcurrentMap<String, IonicReadRepair> REPAIRS =
+            new ConcurrentHashMap<String, IonicReadRepair>();
+
+    /**
+     * The default maximum number of repairs waiting to be written.
+     */
+    private static final long QUEUE_DEFAULT = 1000L;
+
+    /**
+     * Class scoped logger.
+     */
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    /**
+     * The JDBC url of the database.
+     */
+    private final String url;
+
+    /**
+     * Database connection parameters, and Ionic wrapper configuration (for the connection writing repairs).
+     */
+    private final Properties info;
+
+    /**
+     * The Ionic key services of the identity, used to re-protect values.
+     */
+    private final KeyServices keyServices;
+
+    /**
+     * The choice of values to be repaired.
+     */
+    private final IonicRotationPolicy policy;
+
+    /**
+     * Limits the rate of repairs (null for no limit).
+     */
+    private final IonicKeyScheduler scheduler;
+
+    /**
+     * The flow of the repairs in the scheduler.
+     */
+    private final IonicKeyScheduler.Flow flow;
+
+    /**
+     * The integer primary key column of repaired tables.
+     */
+    private final String keyColumn;
+
+    /**
+     * The Ionic configuration of the columns of each table, keyed by lowercase table name.
+     */
+    private final ConcurrentMap<String, Map<String, IonicColumnConfig>> tableConfigs;
+
+    /**
+     * The repairs waiting to be written (identified by table, key, and column), used to avoid duplicate repairs of a
+     * value read repeatedly.
+     */
+    private final Set<String> pending;
+
+    /**
+     * Writes repairs, one at a time.
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * The counters of the repairs.
+     */
+    private final IonicMetrics metrics;
+
+    /**
+     * The connection used to write repairs; accessed only by the thread of {@link #executor}.
+     */
+    private Connection connection;
+
+    /**
+     * Constructor.
+     *
+     * @param url         the JDBC url of the database
+     * @param info        database connection parameters, and Ionic wrapper configuration
+     * @param keyServices the Ionic key services of the identity, used to re-protect values
+     * @param policy      the choice of values to be repaired
+     * @throws IonicException on invalid settings
+     */
+    private IonicReadRepair(final String url, final Properties info, final KeyServices keyServices,
+                            final IonicRotationPolicy policy) throws IonicException {
+        this.url = url;
+        this.info = new Properties();
+        this.info.putAll(info);
+        this.keyServices = keyServices;
+        this.policy = policy;
+        this.scheduler = IonicRotationPolicy.getScheduler(url, info);
+        this.flow = (scheduler == null) ? null : scheduler.getFlow("repair", 1.0);
+        this.keyColumn = info.getProperty("ionic.rotation.key", "id");
+        this.tableConfigs = new ConcurrentHashMap<String, Map<String, IonicColumnConfig>>();
+        this.pending = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        final int capacity = Math.max(1, (int) IonicState.getLong(info, "ionic.rotation.queue", QUEUE_DEFAULT));
+        this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(capacity), new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "ionic-jdbc-repair");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.metrics = IonicMetrics.getInstance("repair:" + url);
+    }
+
+    /**
+     * Get the process-wide read-repair worker for a database and the Ionic identity of a connection.
+     *
+     * @param url         the JDBC url of the database
+     * @param info        database connection parameters, and Ionic wrapper configuration
+     * @param keyServices the Ionic key services of the connection
+     * @return the read-repair worker, or null if read-repair is not enabled
+     * @throws IonicException on invalid settings
+     */
+    public static IonicReadRepair getInstance(final String url, final Properties info,
+                                              final KeyServices keyServices) throws IonicException {
+        if (!Boolean.parseBoolean(info.getProperty("ionic.rotation.repair"))) {
+            return null;
+        }
+        final DeviceProfile deviceProfile = (keyServices == null) ? null : keyServices.getActiveProfile();
+        final String identity = (deviceProfile == null) ? "" : deviceProfile.getDeviceId();
+        final String name = identity + "/" + url;
+        final IonicReadRepair readRepairPrior = REPAIRS.get(name);
+        if (readRepairPrior != null) {
+            return readRepairPrior;
+        }
+        final IonicRotationPolicy policy = new IonicRotationPolicy(info);
+        if (policy.getKeyspaces().isEmpty()) {
+            Logger.getLogger(IonicReadRepair.class.getName()).warning(
+                    "read-repair requires setting 'ionic.rotation.keyspaces'; disabled");
+            return null;
+        }
+        final IonicReadRepair readRepair = new IonicReadRepair(url, info, keyServices, policy);
+        final IonicReadRepair readRepairRace = REPAIRS.putIfAbsent(name, readRepair);
+        if (readRepairRace != null) {
+            readRepair.executor.shutdown();
+            return readRepairRace;
+        }
+        return readRepair;
+    }
+
+    /**
+     * @return the counters of the repairs
+     */
+    public IonicMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @param keyId the id of the key protecting a value
+     * @return true, iff a value protected by the key should be repaired
+     */
+    public boolean isStale(final String keyId) {
+        return policy.isRetired(keyId);
+    }
+
+    /**
+     * Find the table column of a result set column, and the column holding the primary key of its row.
+     *
+     * @param metaData the description of the result set
+     * @param column   the ordinal of the result set column
+     * @return the target of repairs of values of the column, or null if its values cannot be repaired (for example,
+     * if the column is not configured for Ionic protection, if the column is tokenized (its values are held in the
+     * token vault), or if the primary key is not included in the result set)
+     * @throws SQLException on database errors
+     */
+    public Target getTarget(final ResultSetMetaData metaData, final int column) throws SQLException {
+        final String table = metaData.getTableName(column);
+        if ((table == null) || (table.isEmpty())) {
+            return null;
+        }
+        final String columnName = metaData.getColumnName(column);
+        final IonicColumnConfig columnConfig = getTableConfigs(table).get(columnName.toLowerCase(Locale.ROOT));
+        if ((columnConfig == null) || (columnConfig.getStorage() != IonicColumnConfig.Storage.CIPHERTEXT)) {
+            return null;
+        }
+        for (int i = 1; (i <= metaData.getColumnCount()); ++i) {
+            if (keyColumn.equalsIgnoreCase(metaData.getColumnName(i)) && table.equals(metaData.getTableName(i))) {
+                return new Target(table, columnName, metaData.getColumnName(i), i, columnConfig);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Queue the repair of a stale value.
+     *
+     * @param target     the target of the repair
+     * @param key        the primary key of the row
+     * @param cipherText the stale value, as read from the database
+     * @param plainText  the plaintext of the value (as serialized for protection)
+     */
+    public void submit(final Target target, final Object key, final String cipherText, final byte[] plainText) {
+        final String id = target.table + "/" + key + "/" + target.column;
+        if (!pending.add(id)) {
+            return;
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        repair(target, key, cipherText, plainText);
+                    } finally {
+                        pending.remove(id);
+                    }
+                }
+            });
+            metrics.increment(METRIC_QUEUED);
+        } catch (RejectedExecutionException e) {
+            pending.remove(id);
+            metrics.increment(METRIC_DROPPED);
+        }
+    }
+
+    /**
+     * Re-protect a value, and write it back to its row, if the row still holds the stale value.
+     *
+     * @param target     the target of the repair
+     * @param key        the primary key of the row
+     * @param cipherText the stale value, as read from the database
+     * @param plainText  the plaintext of the value (as serialized for protection)
+     */
+    private void repair(final Target target, final Object key, final String cipherText, final byte[] plainText) {
+        try {
+            if (scheduler != null) {
+                scheduler.acquire(flow);
+                scheduler.release();
+            }
+            if ((connection == null) || connection.isClosed()) {
+                connection = connect();
+            }
+            final ChunkCipherV2 chunkCipher = new ChunkCipherV2(keyServices);
+            final String cipherTextNew = chunkCipher.encrypt(plainText,
+                    new ChunkCryptoEncryptAttributes(target.columnConfig.getCattrs()));
+            final DatabaseMetaData databaseMetaData = connection.getMetaData();
+            final String column = quote(databaseMetaData, target.column);
+            final String sql = String.format("UPDATE %s SET %s = ? WHERE %s = ? AND %s = ?",
+                    quote(databaseMetaData, target.table), column, quote(databaseMetaData, target.keyColumn), column);
+            // autocommit connection; compare-and-set, so that a concurrent change of the row is not overwritten
+            try (PreparedStatement update = connection.prepareStatement(sql)) {
+                update.setString(1, cipherTextNew);
+                update.setObject(2, key);
+                update.setString(3, cipherText);
+                metrics.increment((update.executeUpdate() > 0) ? METRIC_REPAIRED : METRIC_CONFLICT);
+            }
+        } catch (IonicException e) {
+            metrics.increment(METRIC_FAILED);
+            logger.fine(e.getMessage());
+        } catch (SQLException e) {
+            metrics.increment(METRIC_FAILED);
+            logger.fine(e.getMessage());
+            close();
+        }
+    }
+
+    /**
+     * Quote an identifier for use in SQL.  The identifiers of a repair are the names reported by the metadata of the
+     * result set, in the letter case in which the database stores them, so they are quoted as is.
+     *
+     * @param metaData   the metadata of the database
+     * @param identifier the identifier
+     * @return the quoted identifier (the identifier, if the database does not support quoted identifiers)
+     * @throws SQLException on database errors
+     */
+    private static String quote(final DatabaseMetaData metaData, final String identifier) throws SQLException {
+        final String quote = metaData.getIdentifierQuoteString();
+        if ((quote == null) || quote.trim().isEmpty()) {
+            return identifier;
+        }
+        return quote + identifier.replace(quote, quote + quote) + quote;
+    }
+
+    /**
+     * @return a new connection of the wrapped driver to the database (the repairs are protected by this object)
+     * @throws SQLException on failure to connect
+     */
+    private Connection connect() throws SQLException {
+        try {
+            final Class<?> driverClass = Class.forName(info.getProperty("driverClassName"));
+            final java.sql.Driver driver = (java.sql.Driver) driverClass.getDeclaredConstructor().newInstance();
+            final Connection connectionNew = driver.connect(url, info);
+            if (connectionNew == null) {
+                throw new SQLException("no driver for url: " + url);
+            }
+            return connectionNew;
+        } catch (ReflectiveOperationException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    /**
+     * Close the connection used to write repairs (it is reopened on the next repair).
+     */
+    private void close() {
+        try {
+            if (connection != null) {
+                connection.close();
+            }
+        } catch (SQLException e) {
+            logger.finest(e.getMessage());
+        } finally {
+            connection = null;
+        }
+    }
+
+    /**
+     * @param table the name of a database table
+     * @return the Ionic configuration of the columns of the table, keyed by lowercase column name
+     * @throws SQLException on invalid Ionic configuration
+     */
+    private Map<String, IonicColumnConfig> getTableConfigs(final String table) throws SQLException {
+        final String name = table.toLowerCase(Locale.ROOT);
+        Map<String, IonicColumnConfig> configs = tableConfigs.get(name);
+        if (configs == null) {
+            configs = IonicConfigReader.createTableConfigs(info.getProperty("ionic.config.jdbc.json"), table);
+            tableConfigs.putIfAbsent(name, configs);
+        }
+        return configs;
+    }
+
+    /**
+     * The table column of a result set column, and the column holding the primary key of its row.
+     */
+    public static final class Target {
+
+        /**
+         * The name of the database table.
+         */
+        private final String table;
+
+        /**
+         * The name of the table column.
+         */
+        private final String column;
+
+        /**
+         * The name of the table column holding the primary key of the row.
+         */
+        private final String keyColumn;
+
+        /**
+         * The ordinal of the result set column holding the primary key of the row.
+         */
+        private final int keyIndex;
+
+        /**
+         * The Ionic configuration of the table column.
+         */
+        private final IonicColumnConfig columnConfig;
+
+        private Target(final String table, final String column, final String keyColumn, final int keyIndex,
+                       final IonicColumnConfig columnConfig) {
+            this.table = table;
+            this.column = column;
+            this.keyColumn = keyColumn;
+            this.keyIndex = keyIndex;
+            this.columnConfig = columnConfig;
+        }
+
+        /**
+         * @return the ordinal of the result set column holding the primary key of the row
+         */
+        public int getKeyIndex() {
+            return keyIndex;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.ionic.sdk.addon.jdbc.impl;
+
+import com.ionic.sdk.agent.key.KeyAttributesMap;
+import com.ionic.sdk.agent.request.getkey.GetKeysResponse;
+import com.ionic.sdk.error.IonicException;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Decide which Ionic-protected values should be re-protected with new keys.
+ * <p>
+ * Settings are taken from the connection properties:
+ * <ul>
+ * <li>"ionic.rotation.keyspaces": (optional) comma-separated list of retired keyspaces; values protected by keys in
+ * these keyspaces are re-protected</li>
+ * <li>"ionic.rotation.attributes": (optional) if "true", values protected by keys whose attributes differ from the
+ * column configuration are re-protected</li>
+ * </ul>
+ * If neither setting is specified, every protected value is re-protected.
+ */
+public class IonicRotationPolicy {
+
+    /**
+     * The length of the keyspace prefix of an Ionic key id.
+     */
+    private static final int KEYSPACE_LENGTH = 4;
+
+    /**
+     * The prefix of the names of key attributes managed by the key server, which are ignored in comparisons.
+     */
+    private static final String PREFIX_SERVER_ATTRIBUTE = "ionic-";
+
+    /**
+     * The retired keyspaces.
+     */
+    private final Set<String> keyspaces;
+
+    /**
+     * True iff values protected by keys with out of date attributes are to be re-protected.
+     */
+    private final boolean attributes;
+
+    /**
+     * Constructor.
+     *
+     * @param info database connection parameters, and Ionic wrapper configuration
+     */
+    public IonicRotationPolicy(final Properties info) {
+        final Set<String> keyspacesRetired = new TreeSet<String>();
+        final String keyspacesProperty = info.getProperty("ionic.rotation.keyspaces", "");
+        for (final String keyspace : keyspacesProperty.split(",")) {
+            if (keyspace.trim().length() > 0) {
+                keyspacesRetired.add(keyspace.trim());
+            }
+        }
+        this.keyspaces = Collections.unmodifiableSet(keyspacesRetired);
+        this.attributes = Boolean.parseBoolean(info.getProperty("ionic.rotation.attributes"));
+    }
+
+    /**
+     * Get the limit of the rate of key rotation work on a database, specified by the connection properties:
+     * <ul>
+     * <li>"ionic.rotation.rate": (optional) the maximum number of values re-protected per second</li>
+     * </ul>
+     * The limit is applied by a process-wide {@link IonicKeyScheduler}, shared by the
+     * {@link com.ionic.sdk.addon.jdbc.IonicRotationJob}s and the {@link IonicReadRepair} workers of the database,
+     * each admission allowing one value to be re-protected.  Each job, and read-repair, is a flow of the scheduler,
+     * so that the rate is shared fairly among them.
+     *
+     * @param url  the JDBC url of the database
+     * @param info database connection parameters, and Ionic wrapper configuration
+     * @return the scheduler, or null if the rate of key rotation work is not limited
+     * @throws IonicException on invalid settings
+     */
+    public static IonicKeyScheduler getScheduler(final String url, final Properties info) throws IonicException {
+        final double rate = IonicState.getDouble(info, "ionic.rotation.rate", 0.0);
+        return (rate > 0.0) ? IonicKeyScheduler.getInstance("rotation:" + url, rate, 1.0, 0) : null;
+    }
+
+    /**
+     * @return the retired keyspaces
+     */
+    public Set<String> getKeyspaces() {
+        return keyspaces;
+    }
+
+    /**
+     * @param keyId the id of the key protecting a value
+     * @return true, iff the key belongs to a retired keyspace
+     */
+    public boolean isRetired(final String keyId) {
+        return (keyId != null) && (keyId.length() >= KEYSPACE_LENGTH)
+                && keyspaces.contains(keyId.substring(0, KEYSPACE_LENGTH));
+    }
+
+    /**
+     * @param keyId  the id of the key protecting a value
+     * @param key    the key protecting the value
+     * @param cattrs the key attributes configured for the column of the value
+     * @return true, iff the value should be re-protected with a new key
+     */
+    public boolean isStale(final String keyId, final GetKeysResponse.Key key, final KeyAttributesMap cattrs) {
+        if (keyspaces.isEmpty() && (!attributes)) {
+            return true;
+        } else if (isRetired(keyId)) {
+            return true;
+        } else {
+            return attributes && (key != null)
+                    && (!toComparable(key.getAttributesMap()).equals(toComparable(cattrs)));
+        }
+    }
+
+    /**
+     * @param attributesMap key attributes
+     * @return the attributes set by clients, in a canonical order
+     */
+    private static Map<String, List<String>> toComparable(final KeyAttributesMap attributesMap) {
+        final Map<String, List<String>> comparable = new TreeMap<String, List<String>>();
+        if (attributesMap != null) {
+            for (final Map.Entry<String, List<String>> entry : attributesMap.entrySet()) {
+                if (!entry.getKey().startsWith(PREFIX_SERVER_ATTRIBUTE)) {
+                    comparable.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        return comparable;
+    }
+}
@@ -0,0 +1,353 @@
+package com.ionic.sdk.addon.jdbc.impl;
+
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cache of the unprotected values of a scrollable result set, so that rows revisited by
+ * {@link java.sql.ResultSet#previous()}, {@link java.sql.ResultSet#absolute(int)} and
+ * {@link java.sql.ResultSet#relative(int)} are not unprotected again (and their keys not fetched again).
+ * <p>
+ * Values are held on the heap up to a budget (bytes).  Further values are spilled to a memory-mapped temporary file,
+ * indexed by row and column.  Each spilled record is encrypted (AES-GCM) using a random key held only by this
+ * object, so that unprotected values are never written to disk in the clear; the file is deleted on
+ * {@link #close()}.  An instance may be used concurrently (the rows of a parallel stream are unprotected on several
+ * threads).
+ * <p>
+ * File layout: records (iv, ciphertext), located by the index of this object.  The file is mapped in fixed-size
+ * segments, each mapped once as the file grows, so that no mapping is ever replaced (a mapping is released only when
+ * it is garbage collected); a record never spans two segments.
+ */
+public final class IonicRowCache {
+
+    /**
+     * The default heap budget (bytes) of a cache.
+     */
+    public static final long HEAP_DEFAULT = 16L * 1024 * 1024;
+
+    /**
+     * The estimated heap cost of a cache entry, in addition to the bytes of its value.
+     */
+    private static final int ENTRY_OVERHEAD = 64;
+
+    /**
+     * The size of the AES-GCM initialization vector.
+     */
+    private static final int IV_SIZE = 12;
+
+    /**
+     * The size of the AES-GCM authentication tag (bits).
+     */
+    private static final int TAG_BITS = 128;
+
+    /**
+     * The size of the AES key protecting the spilled records.
+     */
+    private static final int KEY_SIZE = 32;
+
+    /**
+     * The size of a segment of the file mapping (larger for a record which does not fit in a segment).
+     */
+    private static final int SEGMENT_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * The maximum number of bytes held on the heap.
+     */
+    private final long heapBudget;
+
+    /**
+     * The values held on the heap, keyed by row and column.
+     */
+    private final Map<Long, byte[]> heap;
+
+    /**
+     * The location (segment, offset in segment, length) of the records spilled to the file, keyed by row and column.
+     */
+    private final Map<Long, int[]> index;
+
+    /**
+     * The mapped segments of the spill file, in file order.
+     */
+    private final List<MappedByteBuffer> segments;
+
+    /**
+     * Guards the content of the cache, without pinning the carrier of a virtual thread.
+     */
+    private final Lock lock;
+
+    /**
+     * Source of the record key and initialization vectors.
+     */
+    private final SecureRandom random;
+
+    /**
+     * The key used to protect the spilled records (created with the file).
+     */
+    private SecretKeySpec recordKey;
+
+    /**
+     * The number of bytes held on the heap.
+     */
+    private long heapBytes;
+
+    /**
+     * The spill file (null until the heap budget is first exceeded).
+     */
+    private File file;
+
+    /**
+     * The open spill file.
+     */
+    private RandomAccessFile randomAccessFile;
+
+    /**
+     * The segment to which the next record will be written (the last segment of the file).
+     */
+    private MappedByteBuffer buffer;
+
+    /**
+     * The number of bytes of the file mapped by its segments.
+     */
+    private long fileSize;
+
+    /**
+     * Constructor.
+     *
+     * @param heapBudget the maximum number of bytes held on the heap; further values are spilled to a file
+     */
+    public IonicRowCache(final long heapBudget) {
+        this.heapBudget = heapBudget;
+        this.heap = new HashMap<Long, byte[]>();
+        this.index = new HashMap<Long, int[]>();
+        this.segments = new ArrayList<MappedByteBuffer>();
+        this.lock = new ReentrantLock();
+        this.random = new SecureRandom();
+    }
+
+    /**
+     * @return the number of bytes held on the heap (including the estimated cost of the entries)
+     */
+    public long getHeapBytes() {
+        lock.lock();
+        try {
+            return heapBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of values spilled to the file
+     */
+    public int getSpilledCount() {
+        lock.lock();
+        try {
+            return index.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the spill file (null if no values have been spilled)
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Look up a value.
+     *
+     * @param row    the row number of the value
+     * @param column the ordinal of the column of the value
+     * @return the unprotected bytes of the value, or null if the value is not in the cache
+     * @throws IonicException on failure to read a spilled value
+     */
+    public byte[] get(final int row, final int column) throws IonicException {
+        final Long key = toKey(row, column);
+        final byte[] record;
+        lock.lock();
+        try {
+            final byte[] plainText = heap.get(key);
+            if (plainText != null) {
+                return plainText;
+            }
+            final int[] location = index.get(key);
+            if (location == null) {
+                return null;
+            }
+            record = new byte[location[2]];
+            final ByteBuffer view = segments.get(location[0]).duplicate();
+            view.position(location[1]);
+            view.get(record);
+        } finally {
+            lock.unlock();
+        }
+        try {
+            final Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, recordKey, new GCMParameterSpec(TAG_BITS, record, 0, IV_SIZE));
+            cipher.updateAAD(toAad(key));
+            return cipher.doFinal(record, IV_SIZE, record.length - IV_SIZE);
+        } catch (GeneralSecurityException e) {
+            throw new IonicException(SdkError.ISAGENT_ERROR, e);
+        }
+    }
+
+    /**
+     * Add a value.  The value is held on the heap while the heap budget allows, and is otherwise spilled to the file.
+     *
+     * @param row       the row number of the value
+     * @param column    the ordinal of the column of the value
+     * @param plainText the unprotected bytes of the value
+     * @throws IonicException on failure to spill the value
+     */
+    public void put(final int row, final int column, final byte[] plainText) throws IonicException {
+        final Long key = toKey(row, column);
+        lock.lock();
+        try {
+            if (heap.containsKey(key) || index.containsKey(key)) {
+                return;
+            }
+            final long cost = plainText.length + ENTRY_OVERHEAD;
+            if (heapBytes + cost <= heapBudget) {
+                heap.put(key, plainText);
+                heapBytes += cost;
+            } else {
+                index.put(key, spill(key, plainText));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Release the values of this cache, and delete the spill file.
+     *
+     * @throws IonicException on failure to close the file
+     */
+    public void close() throws IonicException {
+        lock.lock();
+        try {
+            heap.clear();
+            index.clear();
+            heapBytes = 0L;
+            if (randomAccessFile != null) {
+                try {
+                    randomAccessFile.close();
+                } catch (IOException e) {
+                    throw new IonicException(SdkError.ISAGENT_ERROR, e);
+                } finally {
+                    randomAccessFile = null;
+                    segments.clear();
+                    buffer = null;
+                    fileSize = 0L;
+                    recordKey = null;
+                    if (!file.delete()) {
+                        file.deleteOnExit();
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Encrypt a value, and add it to the end of the file.
+     *
+     * @param key       the row and column of the value
+     * @param plainText the unprotected bytes of the value
+     * @return the location (segment, offset in segment, length) of the record in the file
+     * @throws IonicException on failure to write the record
+     */
+    private int[] spill(final Long key, final byte[] plainText) throws IonicException {
+        try {
+            if (randomAccessFile == null) {
+                open();
+            }
+            final byte[] iv = new byte[IV_SIZE];
+            random.nextBytes(iv);
+            final Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, recordKey, new GCMParameterSpec(TAG_BITS, iv));
+            cipher.updateAAD(toAad(key));
+            final byte[] ciphertext = cipher.doFinal(plainText);
+            final int length = IV_SIZE + ciphertext.length;
+            if ((buffer == null) || (buffer.remaining() < length)) {
+                buffer = map(Math.max(SEGMENT_SIZE, length));
+            }
+            final int[] location = new int[]{segments.size() - 1, buffer.position(), length};
+            buffer.put(iv);
+            buffer.put(ciphertext);
+            return location;
+        } catch (IOException e) {
+            throw new IonicException(SdkError.ISAGENT_ERROR, e);
+        } catch (GeneralSecurityException e) {
+            throw new IonicException(SdkError.ISAGENT_ERROR, e);
+        }
+    }
+
+    /**
+     * Create the spill file, and the key protecting its records.
+     *
+     * @throws IOException on failure to create the file
+     */
+    private void open() throws IOException {
+        final byte[] keyBytes = new byte[KEY_SIZE];
+        random.nextBytes(keyBytes);
+        recordKey = new SecretKeySpec(keyBytes, "AES");
+        file = File.createTempFile("ionic-rows", ".tmp");
+        file.deleteOnExit();
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        fileSize = 0L;
+    }
+
+    /**
+     * Extend the file by a segment, mapped after the existing segments.
+     *
+     * @param size the size of the segment
+     * @return the mapping of the new segment
+     * @throws IOException on failure to map the file
+     */
+    private MappedByteBuffer map(final int size) throws IOException {
+        final MappedByteBuffer segment = randomAccessFile.getChannel().map(
+                FileChannel.MapMode.READ_WRITE, fileSize, size);
+        segments.add(segment);
+        fileSize += size;
+        return segment;
+    }
+
+    /**
+     * @param row    the row number of a value
+     * @param column the ordinal of the column of the value
+     * @return the key of the value in this cache
+     */
+    private static Long toKey(final int row, final int column) {
+        return (((long) row) << 32) | (column & 0xffffffffL);
+    }
+
+    /**
+     * @param key the row and column of a value
+     * @return the additional authenticated data of the record of the value, binding the record to its location
+     */
+    private static byte[] toAad(final Long key) {
+        return ByteBuffer.allocate(8).putLong(key).array();
+    }
+}
@@ -0,0 +1,59 @@
+package com.ionic.sdk.addon.jdbc.impl;
+
+import com.ionic.sdk.agent.request.createkey.CreateKeysRequest;
+import com.ionic.sdk.agent.request.createkey.CreateKeysResponse;
+import com.ionic.sdk.agent.request.getkey.GetKeysRequest;
+import com.ionic.sdk.agent.request.getkey.GetKeysResponse;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.key.KeyServices;
+
+/**
+ * Submit key server requests to an {@link IonicKeyScheduler} for admission, before passing them to the wrapped
+ * {@link KeyServices}.
+ */
+public class IonicScheduledKeyServices extends IonicKeyServices {
+
+    /**
+     * The admission control for requests to the key server.
+     */
+    private final IonicKeyScheduler scheduler;
+
+    /**
+     * The source of requests made through this object.
+     */
+    private final IonicKeyScheduler.Flow flow;
+
+    /**
+     * Constructor.
+     *
+     * @param wrapped   the {@link KeyServices} to which requests are passed
+     * @param scheduler the admission control for requests to the key server
+     * @param flow      the source of requests made through this object
+     */
+    public IonicScheduledKeyServices(final KeyServices wrapped, final IonicKeyScheduler scheduler,
+                                     final IonicKeyScheduler.Flow flow) {
+        super(wrapped);
+        this.scheduler = scheduler;
+        this.flow = flow;
+    }
+
+    @Override
+    public CreateKeysResponse createKeys(final CreateKeysRequest request) throws IonicException {
+        scheduler.acquire(flow);
+        try {
+            return super.createKeys(request);
+        } finally {
+            scheduler.release();
+        }
+    }
+
+    @Override
+    public GetKeysResponse getKeys(final GetKeysRequest request) throws IonicException {
+        scheduler.acquire(flow);
+        try {
+            return super.getKeys(request);
+        } finally {
+            scheduler.release();
+        }
+    }
+}
@@ -2,77 +2,354 @@ package com.ionic.sdk.addon.jdbc.impl;
 
 import com.ionic.sdk.agent.Agent;
 import com.ionic.sdk.agent.AgentSdk;
-import com.ionic.sdk.core.res.Resource;
-import com.ionic.sdk.device.profile.persistor.DeviceProfilePersistorPlainText;
-import com.ionic.sdk.device.profile.persistor.ProfilePersistor;
+import com.ionic.sdk.device.profile.DeviceProfile;
 import com.ionic.sdk.error.IonicException;
 import com.ionic.sdk.error.SdkError;
+import com.ionic.sdk.key.KeyServices;
 
-import java.io.File;
-import java.net.URL;
 import java.security.Security;
 import java.util.Properties;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
 
 /**
- * Cache an initialized {@link Agent} loaded on the first call to {@link #getAgent(Properties)}.
+ * Cache the initialized {@link Agent} objects used by connections of this driver.  A template {@link Agent} is
+ * loaded on the first call to {@link #getAgent(Properties)} for each distinct Ionic Secure Enrollment Profile.
+ * <p>
+ * The other process-wide objects of the driver (such as the {@link IonicKeyScheduler} and
+ * {@link IonicCircuitBreaker} of a key server, and the {@link IonicTokenVault} of a database) are shared in the same
+ * way: the first connection to need an object creates it with its own settings, and later connections share it as
+ * it is, whatever their settings.  The objects which allow it are reconfigured explicitly.
  */
 public class IonicState {
 
     /**
-     * Cache an initialized {@link Agent} loaded on the first call to {@link #getAgent(Properties)}.
+     * The default interval (seconds) for which a key in a persistent key cache may be used.
+     */
+    private static final long TTL_KEYCACHE_DEFAULT = 3600L;
+
+    /**
+     * Conversion factor for settings expressed in seconds.
+     */
+    private static final long MILLIS_PER_SECOND = 1000L;
+
+    /**
+     * Conversion factor for settings expressed in milliseconds.
+     */
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    /**
+     * Conversion factor for settings expressed as a percentage.
+     */
+    private static final double PERCENT = 100.0;
+
+    /**
+     * The default minimum interval (milliseconds) after which a hedged key fetch request is issued.
+     */
+    private static final long DELAY_HEDGE_DEFAULT = 20L;
+
+    /**
+     * The default interval (milliseconds) for which an open circuit refuses key server requests.
+     */
+    private static final long OPEN_BREAKER_DEFAULT = 10000L;
+
+    /**
+     * The default maximum number of denied keys remembered for each Ionic identity.
+     */
+    private static final long SIZE_DENIED_DEFAULT = 10000L;
+
+    /**
+     * Serializes the cloning of the template {@link Agent}s of {@link IonicAgentRegistry}, which are shared by all
+     * connections (an {@link Agent} is not safe for concurrent use).
+     */
+    private static final ReentrantLock AGENT_CLONE_LOCK = new ReentrantLock();
+
+    /**
+     * Threads preparing keys and ciphertexts ahead of their use by pipelined statements.
+     */
+    private static final ExecutorService PIPELINE = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "ionic-jdbc-pipeline");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * Get an {@link Agent} for the Ionic Secure Enrollment Profile specified by the connection properties.
+     * <ul>
+     * <li>"ionic.sep": the location of the profile (classpath resource or filesystem file)</li>
+     * <li>"ionic.sep.deviceid": (optional) the device identity within the profile to be used</li>
+     * </ul>
+     *
+     * @param properties database connection parameters, and Ionic wrapper configuration
+     * @return a clone of the cached template {@link Agent} associated with the profile
+     * @throws IonicException on failure to initialize {@link Agent}
      */
     public static Agent getAgent(final Properties properties) throws IonicException {
         AgentSdk.initialize(Security.getProvider("SunJCE"));
-        return Agent.clone(SingletonHelper.getInstance(properties.getProperty("ionic.sep")));
+        final Agent agent = IonicAgentRegistry.getInstance().getAgent(
+                properties.getProperty("ionic.sep"), properties.getProperty("ionic.sep.deviceid"));
+        AGENT_CLONE_LOCK.lock();
+        try {
+            return Agent.clone(agent);
+        } finally {
+            AGENT_CLONE_LOCK.unlock();
+        }
     }
 
     /**
-     * Helper to guard against double init.
-     * <p>
-     * http://www.cs.umd.edu/~pugh/java/memoryModel/DoubleCheckedLocking.html
-     */
-    private static class SingletonHelper {
-
-        /**
-         * The per-process singleton of this object.  The first fetch of this object should trigger its implicit
-         * initialization.  Subsequent fetches will return the cached value.
-         */
-        private static volatile Agent instance;
-
-        /**
-         * @return the per-process singleton of this object
-         */
-        private static Agent getInstance(final String location) throws IonicException {
-            if (instance == null) {
-                synchronized (SingletonHelper.class) {
-                    if (instance == null) {
-                        instance = getIonicAgent(location);
-                    }
-                }
-            }
-            return instance;
+     * Get the {@link KeyServices} to be used by a connection for the Ionic Secure Enrollment Profile specified by the
+     * connection properties.  Key requests made through this object pass through the driver-wide handling of key
+     * requests before being sent to the {@link Agent}.  The object is safe for concurrent use: requests made at once
+     * (from the threads of a connection, or hedged duplicates) are sent through separate clones of the
+     * {@link Agent} (see {@link IonicAgentPoolKeyServices}).
+     *
+     * @param properties database connection parameters, and Ionic wrapper configuration
+     * @return the {@link KeyServices} to be used to protect and unprotect data
+     * @throws IonicException on failure to initialize {@link Agent}
+     */
+    public static KeyServices getKeyServices(final Properties properties) throws IonicException {
+        final Agent agent = getAgent(properties);
+        // an Agent is not safe for concurrent use; each key server request borrows a clone of its own
+        KeyServices keyServices = getScheduledKeyServices(properties, new IonicAgentPoolKeyServices(agent));
+        keyServices = getResilientKeyServices(properties, keyServices);
+        keyServices = new IonicCoalescingKeyServices(keyServices);
+        keyServices = getNegativeCachingKeyServices(properties, keyServices);
+        final IonicKeyCache keyCache = getKeyCache(properties, agent);
+        if (keyCache != null) {
+            keyServices = new IonicCachingKeyServices(
+                    keyServices, keyCache, IonicMetrics.getInstance(getServer(agent)));
         }
+        return keyServices;
+    }
 
-        /**
-         * Template {@link Agent} is initialized from {@link ProfilePersistor}.
-         *
-         * @param location path of {@link ProfilePersistor} information
-         * @return initialized {@link Agent}
-         * @throws IonicException on failure to initialize {@link Agent}
-         */
-        private static Agent getIonicAgent(final String location) throws IonicException {
-            // interpret setting as a classpath resource
-            final URL url = Resource.resolve(location);
-            // interpret setting as a filesystem file
-            final File file = new File(location);
-            // load the profile from the indicated location
-            if (url != null) {
-                return new Agent(new DeviceProfilePersistorPlainText(url));
-            } else if (file.exists()) {
-                return new Agent(new DeviceProfilePersistorPlainText(file.getPath()));
-            } else {
-                throw new IonicException(SdkError.ISAGENT_RESOURCE_NOT_FOUND, location);
+    /**
+     * @return the threads preparing keys and ciphertexts ahead of their use by pipelined statements
+     */
+    public static Executor getPipelineExecutor() {
+        return PIPELINE;
+    }
+
+    /**
+     * Apply the key server fault handling specified by the connection properties.
+     * <ul>
+     * <li>"ionic.keyserver.hedge.percentile": the percentile of recent key fetch latencies after which a duplicate
+     * (hedged) request is issued (default 0, no hedging)</li>
+     * <li>"ionic.keyserver.hedge.delay": the minimum interval (milliseconds) after which a hedged request is issued
+     * (default 20)</li>
+     * <li>"ionic.keyserver.breaker.failures": the number of consecutive key server failures after which requests are
+     * refused without being sent (default 0, no circuit breaker)</li>
+     * <li>"ionic.keyserver.breaker.open": the interval (milliseconds) for which requests are refused, before a probe
+     * request is allowed (default 10000)</li>
+     * <li>"ionic.keyserver.breaker.slow": the latency (milliseconds) beyond which a request is counted as a failure
+     * (default 0, no limit)</li>
+     * </ul>
+     *
+     * @param properties  database connection parameters, and Ionic wrapper configuration
+     * @param keyServices the {@link KeyServices} used to make key server requests
+     * @return the {@link KeyServices} to be used to make key server requests
+     * @throws IonicException on invalid settings
+     */
+    private static KeyServices getResilientKeyServices(
+            final Properties properties, final KeyServices keyServices) throws IonicException {
+        final String server = getServer(keyServices);
+        KeyServices keyServicesResilient = keyServices;
+        final double percentile = getDouble(properties, "ionic.keyserver.hedge.percentile", 0.0);
+        if (percentile > 0.0) {
+            final long delay = getLong(properties, "ionic.keyserver.hedge.delay", DELAY_HEDGE_DEFAULT);
+            keyServicesResilient = new IonicHedgingKeyServices(keyServicesResilient,
+                    IonicMetrics.getInstance(server), Math.min(1.0, percentile / PERCENT), delay * NANOS_PER_MILLI);
+        }
+        final int failures = (int) getLong(properties, "ionic.keyserver.breaker.failures", 0L);
+        if (failures > 0) {
+            final long open = getLong(properties, "ionic.keyserver.breaker.open", OPEN_BREAKER_DEFAULT);
+            final long slow = getLong(properties, "ionic.keyserver.breaker.slow", 0L);
+            keyServicesResilient = new IonicCircuitBreakerKeyServices(keyServicesResilient, IonicCircuitBreaker
+                    .getInstance(server, failures, open * NANOS_PER_MILLI, slow * NANOS_PER_MILLI));
+        }
+        return keyServicesResilient;
+    }
+
+    /**
+     * Apply the handling of denied keys specified by the connection properties.
+     * <ul>
+     * <li>"ionic.keyserver.denied.ttl": the interval (milliseconds) for which a key not returned by the key server
+     * (denied by policy, or unknown) is not requested again (default 0, denied keys are requested each time)</li>
+     * <li>"ionic.keyserver.denied.size": the maximum number of denied keys remembered for each Ionic identity
+     * (default 10000)</li>
+     * </ul>
+     *
+     * @param properties  database connection parameters, and Ionic wrapper configuration
+     * @param keyServices the {@link KeyServices} used to make key server requests
+     * @return the {@link KeyServices} to be used to make key server requests
+     * @throws IonicException on invalid settings
+     */
+    private static KeyServices getNegativeCachingKeyServices(
+            final Properties properties, final KeyServices keyServices) throws IonicException {
+        final long ttl = getLong(properties, "ionic.keyserver.denied.ttl", 0L);
+        if (ttl <= 0L) {
+            return keyServices;
+        }
+        final int size = (int) getLong(properties, "ionic.keyserver.denied.size", SIZE_DENIED_DEFAULT);
+        final DeviceProfile deviceProfile = keyServices.getActiveProfile();
+        final String identity = (deviceProfile == null) ? "" : deviceProfile.getDeviceId();
+        return new IonicNegativeCachingKeyServices(keyServices,
+                IonicNegativeCachingKeyServices.getDeniedKeys(identity, size), ttl,
+                IonicMetrics.getInstance(getServer(keyServices)));
+    }
+
+    /**
+     * @param keyServices the {@link KeyServices} used to make key server requests
+     * @return the url of the key server of the active Ionic identity, used to scope data shared across connections
+     */
+    private static String getServer(final KeyServices keyServices) {
+        final DeviceProfile deviceProfile = keyServices.getActiveProfile();
+        return (deviceProfile == null) ? "" : deviceProfile.getServer();
+    }
+
+    /**
+     * Apply the key server admission control specified by the connection properties.
+     * <ul>
+     * <li>"ionic.keyserver.rate": the maximum number of key server requests per second, across all connections to
+     * the key server (default 0, no limit)</li>
+     * <li>"ionic.keyserver.burst": the maximum number of requests that may be made at once after an idle period
+     * (default: the rate)</li>
+     * <li>"ionic.keyserver.concurrency": the maximum number of concurrent key server requests, across all connections
+     * to the key server (default 0, no limit)</li>
+     * <li>"ionic.keyserver.class": (optional) the name of a class of connections sharing a fair share of key server
+     * capacity; by default each connection has its own share</li>
+     * <li>"ionic.keyserver.weight": the size of the share of the connection (or class), relative to others
+     * (default 1)</li>
+     * </ul>
+     *
+     * @param properties database connection parameters, and Ionic wrapper configuration
+     * @param agent      the {@link KeyServices} of the Ionic agent, used to make key server requests
+     * @return the {@link KeyServices} to be used to make key server requests
+     * @throws IonicException on invalid settings
+     */
+    private static KeyServices getScheduledKeyServices(
+            final Properties properties, final KeyServices agent) throws IonicException {
+        final double rate = getDouble(properties, "ionic.keyserver.rate", 0.0);
+        final double burst = getDouble(properties, "ionic.keyserver.burst", rate);
+        final int concurrency = (int) getLong(properties, "ionic.keyserver.concurrency", 0L);
+        if ((rate <= 0.0) && (concurrency <= 0)) {
+            return agent;
+        }
+        final IonicKeyScheduler scheduler = IonicKeyScheduler.getInstance(getServer(agent), rate, burst, concurrency);
+        final String flowName = properties.getProperty("ionic.keyserver.class");
+        final double weight = getDouble(properties, "ionic.keyserver.weight", 1.0);
+        final IonicKeyScheduler.Flow flow = (flowName == null)
+                ? new IonicKeyScheduler.Flow("", weight) : scheduler.getFlow(flowName, weight);
+        return new IonicScheduledKeyServices(agent, scheduler, flow);
+    }
+
+    /**
+     * Get the key cache to be used by a connection, as specified by the connection properties.
+     * <ul>
+     * <li>"ionic.keycache.ttl": the interval (seconds) for which a cached key may be used; zero to disable the cache
+     * (default 0, or 3600 if "ionic.keycache.file" is specified)</li>
+     * <li>"ionic.keycache.file": (optional) the filesystem location of a persistent key cache, protected by a key
+     * derived from the Ionic Secure Enrollment Profile</li>
+     * <li>"ionic.keycache.stale": the interval (seconds) after expiry for which a cached key is retained, for use
+     * when the key server is unavailable (default 0)</li>
+     * </ul>
+     *
+     * @param properties database connection parameters, and Ionic wrapper configuration
+     * @param agent      the Ionic identity for which keys are to be cached
+     * @return the key cache, or null if no key cache is configured
+     * @throws IonicException on failure to open the persistent key cache
+     */
+    private static IonicKeyCache getKeyCache(final Properties properties, final Agent agent) throws IonicException {
+        String location = properties.getProperty("ionic.keycache.file");
+        final long ttl = getKeyCacheTtl(properties);
+        if (ttl <= 0L) {
+            return null;
+        }
+        byte[] wrappingKey = null;
+        if (location != null) {
+            try {
+                wrappingKey = IonicKeyCacheFile.deriveWrappingKey(agent.getActiveProfile());
+            } catch (IonicException e) {
+                Logger.getLogger(IonicState.class.getName()).warning(e.getMessage());
+                location = null;
             }
         }
+        final DeviceProfile deviceProfile = agent.getActiveProfile();
+        final String identity = (deviceProfile == null) ? "" : deviceProfile.getDeviceId();
+        final long stale = getLong(properties, "ionic.keycache.stale", 0L);
+        return IonicKeyCache.getInstance(identity, location, wrappingKey,
+                ttl * MILLIS_PER_SECOND, stale * MILLIS_PER_SECOND);
+    }
+
+    /**
+     * Get the interval for which a key may be cached, as specified by the connection properties (see
+     * {@link #getKeyCache(Properties, Agent)}).  Values unprotected by the driver are not cached for longer, so that
+     * a change of Ionic policy takes effect for cached values as it does for cached keys.
+     *
+     * @param properties database connection parameters, and Ionic wrapper configuration
+     * @return the interval (seconds) for which a cached key may be used; zero if keys are not cached
+     * @throws IonicException if the setting is not numeric
+     */
+    public static long getKeyCacheTtl(final Properties properties) throws IonicException {
+        final String location = properties.getProperty("ionic.keycache.file");
+        return Math.max(0L, getLong(properties, "ionic.keycache.ttl",
+                (location == null) ? 0L : TTL_KEYCACHE_DEFAULT));
+    }
+
+    /**
+     * Read a numeric Ionic driver setting.
+     *
+     * @param properties   database connection parameters, and Ionic wrapper configuration
+     * @param name         the name of the setting
+     * @param defaultValue the value to use if the setting is not specified
+     * @return the value of the setting
+     * @throws IonicException if the setting is not numeric
+     */
+    public static double getDouble(final Properties properties, final String name,
+                                   final double defaultValue) throws IonicException {
+        final String value = properties.getProperty(name);
+        try {
+            return (value == null) ? defaultValue : Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IonicException(SdkError.ISAGENT_INVALIDVALUE, name, e);
+        }
+    }
+
+    /**
+     * Read a numeric Ionic driver setting.
+     *
+     * @param properties   database connection parameters, and Ionic wrapper configuration
+     * @param name         the name of the setting
+     * @param defaultValue the value to use if the setting is not specified
+     * @return the value of the setting
+     * @throws IonicException if the setting is not numeric
+     */
+    public static long getLong(final Properties properties, final String name,
+                               final long defaultValue) throws IonicException {
+        final String value = properties.getProperty(name);
+        try {
+            return (value == null) ? defaultValue : Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IonicException(SdkError.ISAGENT_INVALIDVALUE, name, e);
+        }
+    }
+
+    /**
+     * Discard the cached template {@link Agent} for the Ionic Secure Enrollment Profile specified by the connection
+     * properties.  The next connection using the profile will reload it.
+     *
+     * @param properties database connection parameters, and Ionic wrapper configuration
+     * @return true, iff a template was cached for the profile
+     */
+    public static boolean evictAgent(final Properties properties) {
+        final String location = properties.getProperty("ionic.sep");
+        return (location != null) && IonicAgentRegistry.getInstance().evict(
+                location, properties.getProperty("ionic.sep.deviceid"));
     }
 }
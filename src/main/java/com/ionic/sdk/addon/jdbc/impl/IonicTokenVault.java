@@ -0,0 +1,608 @@
+package com.ionic.sdk.addon.jdbc.impl;
+
+import com.ionic.sdk.agent.cipher.chunk.ChunkCipherV2;
+import com.ionic.sdk.agent.cipher.chunk.data.ChunkCrypto;
+import com.ionic.sdk.agent.cipher.chunk.data.ChunkCryptoChunkInfo;
+import com.ionic.sdk.device.profile.DeviceProfile;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+import com.ionic.sdk.key.KeyServices;
+
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * The vault of tokenized and deduplicated columns: a database table, managed by this driver, which maps the tokens
+ * stored in place of protected values to the Ionic-protected values.  A token is short (see {@link #TOKEN_LENGTH})
+ * and random, so that a tokenized column stays narrow, and can be indexed and joined cheaply; it reveals nothing
+ * about its value.
+ * <p>
+ * A tokenized column (see {@link IonicColumnConfig.Storage#TOKEN}) gets a new token for each value written.  Vault
+ * rows are written in the transaction of the statement which stores their tokens, in a single batch for each
+ * statement execution.
+ * <p>
+ * A deduplicated column (see {@link IonicColumnConfig.Storage#DEDUP}) gets a shared token (a reference) for each
+ * distinct value: a value is protected once, and the rows holding the value store its reference.  The references of
+ * recently written values are held in a process-wide cache, consulted before a value is protected; new references
+ * are written to the vault at once, on a dedicated connection (so that a cached reference is never lost to the
+ * rollback of a statement).  The cache is scoped to the Ionic identity which wrote each reference, so that an
+ * identity never reuses a reference without a key request of its own, and the cache reveals nothing about the values
+ * written by other identities.  Rows holding the same value hold the same reference, so the reference reveals which
+ * rows hold equal values; the mode is intended for low-cardinality columns.  References written by other processes
+ * (or identities) are not known to this process, so a value may have a few references.
+ * <p>
+ * On read, the tokens of a block of rows are looked up with a single vault query, and recently used vault entries
+ * are held in a process-wide cache.  The values of references are unprotected once, and held in a cache scoped to the
+ * Ionic identity which unprotected them, for no longer than the keys of the identity may be cached (so that a change
+ * of Ionic policy takes effect for cached values as it does for cached keys; without a key cache, values are not
+ * cached).  Settings are taken from the connection properties:
+ * <ul>
+ * <li>"ionic.token.vault": the name of the vault table (default "ionic_token_vault"); it is created on first use,
+ * with an unbounded (TEXT) column for the protected values, so that values of any size may be held</li>
+ * <li>"ionic.token.cache": the number of vault entries cached in memory (default 10000)</li>
+ * <li>"ionic.dedup.cache": the number of distinct values of deduplicated columns cached in memory, for write and for
+ * read (default 10000)</li>
+ * <li>"ionic.keycache.ttl": the interval (seconds) for which an unprotected value of a deduplicated column may be
+ * used (see {@link IonicState#getKeyCacheTtl(Properties)})</li>
+ * </ul>
+ */
+public final class IonicTokenVault {
+
+    /**
+     * The length (characters) of a token.
+     */
+    public static final int TOKEN_LENGTH = 19;
+
+    /**
+     * The prefix identifying a token of a tokenized column.
+     */
+    private static final String TOKEN_PREFIX = "~T~";
+
+    /**
+     * The prefix identifying a reference (the shared token of a value of a deduplicated column).
+     */
+    private static final String REFERENCE_PREFIX = "~D~";
+
+    /**
+     * The number of random bytes in a token (encoded in the characters following the prefix).
+     */
+    private static final int TOKEN_BYTES = 12;
+
+    /**
+     * The default number of vault entries cached in memory.
+     */
+    private static final long CACHE_DEFAULT = 10000L;
+
+    /**
+     * The default number of distinct values of deduplicated columns cached in memory.
+     */
+    private static final long DEDUP_CACHE_DEFAULT = 10000L;
+
+    /**
+     * The maximum number of tokens looked up in a single vault query.
+     */
+    private static final int TOKENS_PER_QUERY = 500;
+
+    /**
+     * Conversion factor for settings expressed in seconds.
+     */
+    private static final long MILLIS_PER_SECOND = 1000L;
+
+    /**
+     * The vaults in use in this process, keyed by database url and table name.
+     */
+    private static final ConcurrentMap<String, IonicTokenVault> VAULTS =
+            new ConcurrentHashMap<String, IonicTokenVault>();
+
+    /**
+     * The source of the tokens.
+     */
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * Class scoped logger.
+     */
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    /**
+     * The JDBC url of the database.
+     */
+    private final String url;
+
+    /**
+     * Database connection parameters (for the connection writing references).
+     */
+    private final Properties info;
+
+    /**
+     * The name of the vault table.
+     */
+    private final String table;
+
+    /**
+     * The recently used vault entries (protected value, by token).
+     */
+    private final IonicLruCache<String, String> cache;
+
+    /**
+     * The references of recently written values of deduplicated columns, keyed by Ionic identity, key attributes and
+     * serialized value.
+     */
+    private final IonicLruCache<List<Object>, String> references;
+
+    /**
+     * The unprotected values of recently used references, keyed by Ionic identity and reference.
+     */
+    private final IonicLruCache<String, CachedValue> values;
+
+    /**
+     * The interval (milliseconds) for which an unprotected value may be used (zero to not cache values).
+     */
+    private final long valueTtl;
+
+    /**
+     * Guards the connection used to write references, without pinning the carrier of a virtual thread.
+     */
+    private final Lock lock;
+
+    /**
+     * The connection used to write references (opened on first use).
+     */
+    private Connection connection;
+
+    /**
+     * True once the vault table is known to exist.
+     */
+    private volatile boolean created;
+
+    /**
+     * Constructor.
+     *
+     * @param url           the JDBC url of the database
+     * @param info          database connection parameters
+     * @param table         the name of the vault table
+     * @param capacity      the number of vault entries cached in memory
+     * @param dedupCapacity the number of distinct values of deduplicated columns cached in memory
+     * @param valueTtl      the interval (milliseconds) for which an unprotected value may be used (zero to not cache
+     *                      values)
+     */
+    private IonicTokenVault(final String url, final Properties info, final String table, final int capacity,
+                            final int dedupCapacity, final long valueTtl) {
+        this.url = url;
+        this.info = new Properties();
+        this.info.putAll(info);
+        this.table = table;
+        this.cache = new IonicLruCache<String, String>(capacity);
+        this.references = new IonicLruCache<List<Object>, String>(dedupCapacity);
+        this.values = new IonicLruCache<String, CachedValue>(dedupCapacity);
+        this.valueTtl = valueTtl;
+        this.lock = new ReentrantLock();
+    }
+
+    /**
+     * Get the process-wide vault specified by the connection properties.
+     *
+     * @param url  the JDBC url of the database
+     * @param info database connection parameters, and Ionic wrapper configuration
+     * @return the vault
+     * @throws IonicException on invalid settings
+     */
+    public static IonicTokenVault getInstance(final String url, final Properties info) throws IonicException {
+        final String table = info.getProperty("ionic.token.vault", "ionic_token_vault");
+        final String name = url + "#" + table;
+        IonicTokenVault vault = VAULTS.get(name);
+        if (vault == null) {
+            final int capacity = (int) IonicState.getLong(info, "ionic.token.cache", CACHE_DEFAULT);
+            final int dedupCapacity = (int) IonicState.getLong(info, "ionic.dedup.cache", DEDUP_CACHE_DEFAULT);
+            final long valueTtl = IonicState.getKeyCacheTtl(info) * MILLIS_PER_SECOND;
+            vault = new IonicTokenVault(url, info, table, capacity, dedupCapacity, valueTtl);
+            final IonicTokenVault vaultRace = VAULTS.putIfAbsent(name, vault);
+            vault = (vaultRace == null) ? vault : vaultRace;
+        }
+        return vault;
+    }
+
+    /**
+     * @return a new random token
+     */
+    public static String createToken() {
+        return createToken(TOKEN_PREFIX);
+    }
+
+    /**
+     * @param prefix the prefix of the token
+     * @return a new random token
+     */
+    private static String createToken(final String prefix) {
+        final byte[] bytes = new byte[TOKEN_BYTES];
+        RANDOM.nextBytes(bytes);
+        return prefix + Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * @param value a value read from the database
+     * @return true, iff the value is a token (of a tokenized column), or a reference (of a deduplicated column)
+     */
+    public static boolean isToken(final Object value) {
+        return (value instanceof String) && (((String) value).length() == TOKEN_LENGTH)
+                && (((String) value).startsWith(TOKEN_PREFIX) || ((String) value).startsWith(REFERENCE_PREFIX));
+    }
+
+    /**
+     * @param value a value read from the database
+     * @return true, iff the value is a reference (of a deduplicated column)
+     */
+    public static boolean isReference(final Object value) {
+        return isToken(value) && ((String) value).startsWith(REFERENCE_PREFIX);
+    }
+
+    /**
+     * @return the number of vault entries cached in memory
+     */
+    public int getCacheSize() {
+        return cache.size();
+    }
+
+    /**
+     * Write vault entries, in a single batch.
+     *
+     * @param connection the (underlying) connection of the statement storing the tokens
+     * @param entries    the vault entries (each a token and its protected value)
+     * @throws SQLException on database errors
+     */
+    public void insert(final Connection connection, final List<String[]> entries) throws SQLException {
+        if (entries.isEmpty()) {
+            return;
+        }
+        createTable(connection);
+        final String sql = String.format("INSERT INTO %s (token, ciphertext) VALUES (?, ?)", table);
+        try (PreparedStatement insert = connection.prepareStatement(sql)) {
+            for (final String[] entry : entries) {
+                insert.setString(1, entry[0]);
+                insert.setString(2, entry[1]);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        } catch (SQLException e) {
+            // the table may have been created in a transaction which was rolled back
+            created = false;
+            throw e;
+        }
+        for (final String[] entry : entries) {
+            cache.put(entry[0], entry[1]);
+        }
+    }
+
+    /**
+     * Write vault entries at once, in a single batch, on the dedicated connection of the vault (in autocommit mode,
+     * independently of the transaction of any statement).  This is used where the statement storing the tokens
+     * cannot share its connection with the write (as for a COPY operation); the entries of a statement which then
+     * fails are left unreferenced in the vault.
+     *
+     * @param entries the vault entries (each a token and its protected value)
+     * @throws IonicException on failure to write the entries
+     */
+    public void insertDetached(final List<String[]> entries) throws IonicException {
+        lock.lock();
+        try {
+            if (connection == null) {
+                connection = connect();
+            }
+            insert(connection, entries);
+        } catch (SQLException e) {
+            close();
+            throw new IonicException(SdkError.ISAGENT_ERROR, e);
+        } catch (ReflectiveOperationException e) {
+            throw new IonicException(SdkError.ISAGENT_ERROR, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the reference of a value of a deduplicated column.  A value not written recently by this process is
+     * protected, and its new reference is written to the vault (and committed) before this method returns.
+     *
+     * @param value        a value, for which {@link IonicValueCodec#isSupported(Object)} is true
+     * @param columnConfig the Ionic config of the column
+     * @param keyServices  Ionic key services, used to protect the value
+     * @return the reference of the value
+     * @throws IonicException on Ionic cryptography errors, or on failure to write the reference
+     */
+    public String getReference(final Object value, final IonicColumnConfig columnConfig,
+                               final KeyServices keyServices) throws IonicException {
+        final List<Object> key = Arrays.<Object>asList(getIdentity(keyServices),
+                columnConfig.getCattrs(), ByteBuffer.wrap(IonicValueCodec.encode(value)));
+        final String referenceCached = references.get(key);
+        if (referenceCached != null) {
+            return referenceCached;
+        }
+        final String cipherText = IonicValueCodec.protect(new ChunkCipherV2(keyServices), value, columnConfig);
+        final String reference = createToken(REFERENCE_PREFIX);
+        insertDetached(Arrays.asList(new String[][]{{reference, cipherText}}));
+        references.put(key, reference);
+        putValue(getIdentity(keyServices) + "/" + reference, value);
+        return reference;
+    }
+
+    /**
+     * Look up the protected values of tokens, from the cache, or else from the vault table (in as few queries as
+     * possible).
+     *
+     * @param connection the (underlying) connection used to query the vault table
+     * @param tokens     the tokens
+     * @return the protected values found, by token (tokens not found in the vault are absent)
+     * @throws SQLException on database errors
+     */
+    public Map<String, String> lookup(final Connection connection,
+                                      final Collection<String> tokens) throws SQLException {
+        final Map<String, String> cipherTexts = new HashMap<String, String>();
+        final Set<String> missingSet = new LinkedHashSet<String>();
+        for (final String token : tokens) {
+            final String cipherText = cache.get(token);
+            if (cipherText != null) {
+                cipherTexts.put(token, cipherText);
+            } else {
+                missingSet.add(token);
+            }
+        }
+        final List<String> missing = new ArrayList<String>(missingSet);
+        for (int from = 0; (from < missing.size()); from += TOKENS_PER_QUERY) {
+            final List<String> page = missing.subList(from, Math.min(missing.size(), from + TOKENS_PER_QUERY));
+            final StringBuilder sql = new StringBuilder(String.format(
+                    "SELECT token, ciphertext FROM %s WHERE token IN (", table));
+            for (int i = 0; (i < page.size()); ++i) {
+                sql.append((i == 0) ? "?" : ", ?");
+            }
+            try (PreparedStatement select = connection.prepareStatement(sql.append(")").toString())) {
+                for (int i = 0; (i < page.size()); ++i) {
+                    select.setString(i + 1, page.get(i));
+                }
+                try (ResultSet resultSet = select.executeQuery()) {
+                    while (resultSet.next()) {
+                        final String token = resultSet.getString(1);
+                        final String cipherText = resultSet.getString(2);
+                        cipherTexts.put(token, cipherText);
+                        cache.put(token, cipherText);
+                    }
+                }
+            }
+        }
+        return cipherTexts;
+    }
+
+    /**
+     * Look up the protected values of tokens (or references), from the cache, or else from the vault table, on the
+     * dedicated connection of the vault.  This is used where no connection of a statement is at hand (as for a
+     * migration job, which tells the tokens already stored in a column from plaintext values).
+     *
+     * @param tokens the tokens
+     * @return the protected values found, by token (tokens not found in the vault are absent)
+     * @throws IonicException on failure to query the vault table
+     */
+    public Map<String, String> lookupDetached(final Collection<String> tokens) throws IonicException {
+        if (tokens.isEmpty()) {
+            return new HashMap<String, String>();
+        }
+        lock.lock();
+        try {
+            if (connection == null) {
+                connection = connect();
+            }
+            createTable(connection);
+            return lookup(connection, tokens);
+        } catch (SQLException e) {
+            close();
+            throw new IonicException(SdkError.ISAGENT_ERROR, e);
+        } catch (ReflectiveOperationException e) {
+            throw new IonicException(SdkError.ISAGENT_ERROR, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Look up the unprotected values of references.  Each distinct value is unprotected once (with the keys of the
+     * values not yet cached fetched in bulk), and then served for as long as its key may be cached, from a cache
+     * scoped to the Ionic identity.
+     *
+     * @param connection  the (underlying) connection used to query the vault table
+     * @param tokens      the references
+     * @param keyServices Ionic key services, used to unprotect the values
+     * @return the unprotected values found, by reference (references which cannot be resolved are absent)
+     * @throws SQLException on database errors
+     */
+    public Map<String, Object> lookupValues(final Connection connection, final Collection<String> tokens,
+                                            final KeyServices keyServices) throws SQLException {
+        return lookupValues(connection, tokens, keyServices, null);
+    }
+
+    /**
+     * Look up the unprotected values of references.  Each distinct value is unprotected once (with the keys of the
+     * values not yet cached fetched in bulk), and then served for as long as its key may be cached, from a cache
+     * scoped to the Ionic identity.
+     *
+     * @param connection   the (underlying) connection used to query the vault table
+     * @param tokens       the references
+     * @param keyServices  Ionic key services, used to unprotect the values
+     * @param dictionaries the compression dictionaries of the Ionic configuration in use (null for the process-wide
+     *                     dictionaries only)
+     * @return the unprotected values found, by reference (references which cannot be resolved are absent)
+     * @throws SQLException on database errors
+     */
+    public Map<String, Object> lookupValues(final Connection connection, final Collection<String> tokens,
+                                            final KeyServices keyServices,
+                                            final IonicDictionaries dictionaries) throws SQLException {
+        final String identity = getIdentity(keyServices);
+        final Map<String, Object> valuesFound = new HashMap<String, Object>();
+        final Set<String> missing = new HashSet<String>();
+        for (final String token : tokens) {
+            final Object value = getValue(identity + "/" + token);
+            if (value != null) {
+                valuesFound.put(token, value);
+            } else {
+                missing.add(token);
+            }
+        }
+        if (missing.isEmpty()) {
+            return valuesFound;
+        }
+        final Map<String, String> cipherTexts = lookup(connection, missing);
+        if (cipherTexts.isEmpty()) {
+            return valuesFound;
+        }
+        final Set<String> keyIds = new HashSet<String>();
+        for (final String cipherText : cipherTexts.values()) {
+            final ChunkCryptoChunkInfo chunkInfo = ChunkCrypto.getChunkInfo(cipherText);
+            if (chunkInfo.isEncrypted()) {
+                keyIds.add(chunkInfo.getKeyId());
+            }
+        }
+        final IonicPrefetchKeyServices keyServicesPrefetch =
+                new IonicPrefetchKeyServices(keyServices, TOKENS_PER_QUERY);
+        try {
+            keyServicesPrefetch.prefetch(keyIds);
+        } catch (IonicException e) {
+            // keys not fetched in bulk are requested one value at a time
+            logger.finest(e.getMessage());
+        }
+        final ChunkCipherV2 chunkCipher = new ChunkCipherV2(keyServicesPrefetch);
+        for (final Map.Entry<String, String> entry : cipherTexts.entrySet()) {
+            try {
+                final Object value = IonicValueCodec.decode(
+                        chunkCipher.decryptToBytes(entry.getValue()), dictionaries);
+                putValue(identity + "/" + entry.getKey(), value);
+                valuesFound.put(entry.getKey(), value);
+            } catch (IonicException e) {
+                logger.finest(e.getMessage());
+            }
+        }
+        return valuesFound;
+    }
+
+    /**
+     * @param key the Ionic identity and reference of a value
+     * @return the cached unprotected value, or null if the value is not cached (or its entry has expired)
+     */
+    private Object getValue(final String key) {
+        final CachedValue cachedValue = values.get(key);
+        if ((cachedValue != null) && (cachedValue.expiry < System.currentTimeMillis())) {
+            values.remove(key);
+            return null;
+        }
+        return (cachedValue == null) ? null : cachedValue.value;
+    }
+
+    /**
+     * Cache an unprotected value, if values are cached.
+     *
+     * @param key   the Ionic identity and reference of the value
+     * @param value the unprotected value
+     */
+    private void putValue(final String key, final Object value) {
+        if (valueTtl > 0L) {
+            values.put(key, new CachedValue(value, System.currentTimeMillis() + valueTtl));
+        }
+    }
+
+    /**
+     * Create the vault table, if it does not already exist.
+     *
+     * @param connection the connection used to create the table
+     * @throws SQLException on database errors
+     */
+    private void createTable(final Connection connection) throws SQLException {
+        if (!created) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(String.format("CREATE TABLE IF NOT EXISTS %s (token VARCHAR(%d) NOT NULL,"
+                        + " ciphertext TEXT NOT NULL, PRIMARY KEY (token))", table, TOKEN_LENGTH));
+            }
+            created = true;
+        }
+    }
+
+    /**
+     * Open a connection to the database with the underlying driver, used (in autocommit mode) to write references.
+     *
+     * @return the connection
+     * @throws ReflectiveOperationException on failure to load the underlying driver
+     * @throws SQLException                 on failure to connect
+     */
+    private Connection connect() throws ReflectiveOperationException, SQLException {
+        final Class<?> driverClass = Class.forName(info.getProperty("driverClassName"));
+        final java.sql.Driver driverWrapped = (java.sql.Driver) driverClass.getDeclaredConstructor().newInstance();
+        return driverWrapped.connect(url, info);
+    }
+
+    /**
+     * Close the connection used to write references (it is reopened on the next write).
+     */
+    private void close() {
+        try {
+            if (connection != null) {
+                connection.close();
+            }
+        } catch (SQLException e) {
+            logger.finest(e.getMessage());
+        } finally {
+            connection = null;
+        }
+    }
+
+    /**
+     * @param keyServices Ionic key services
+     * @return the Ionic device id of the key services, used to scope cached references and unprotected values
+     */
+    private static String getIdentity(final KeyServices keyServices) {
+        final DeviceProfile deviceProfile = (keyServices == null) ? null : keyServices.getActiveProfile();
+        return (deviceProfile == null) ? "" : deviceProfile.getDeviceId();
+    }
+
+    /**
+     * An unprotected value, and the time after which it should no longer be used.
+     */
+    private static final class CachedValue {
+
+        /**
+         * The unprotected value.
+         */
+        private final Object value;
+
+        /**
+         * The time (milliseconds since the epoch) after which this entry should no longer be used.
+         */
+        private final long expiry;
+
+        /**
+         * Constructor.
+         *
+         * @param value  the unprotected value
+         * @param expiry the time (milliseconds since the epoch) after which the entry should not be used
+         */
+        private CachedValue(final Object value, final long expiry) {
+            this.value = value;
+            this.expiry = expiry;
+        }
+    }
+}
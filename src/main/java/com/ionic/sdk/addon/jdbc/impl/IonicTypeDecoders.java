@@ -0,0 +1,177 @@
+package com.ionic.sdk.addon.jdbc.impl;
+
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Registry of converters from unprotected values (as decoded by {@link IonicValueCodec}) to the Java types requested
+ * by {@link java.sql.ResultSet#getObject(int, Class)}.
+ */
+public final class IonicTypeDecoders {
+
+    /**
+     * Converts an unprotected value to a requested type.
+     *
+     * @param <T> the requested type
+     */
+    public interface Decoder<T> {
+
+        /**
+         * @param value an unprotected value (not null)
+         * @return the value, as the requested type
+         * @throws IonicException if the value cannot be converted to the requested type
+         */
+        T decode(Object value) throws IonicException;
+    }
+
+    /**
+     * The decoders, by requested type.
+     */
+    private static final Map<Class<?>, Decoder<?>> DECODERS = createDecoders();
+
+    /**
+     * Constructor.
+     */
+    private IonicTypeDecoders() {
+    }
+
+    /**
+     * @param type the requested type
+     * @param <T>  the requested type
+     * @return the decoder of the type; for other types, a decoder which accepts only values of the type
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Decoder<T> getDecoder(final Class<T> type) {
+        final Decoder<T> decoder = (Decoder<T>) DECODERS.get(type);
+        return (decoder == null) ? new Decoder<T>() {
+            @Override
+            public T decode(final Object value) throws IonicException {
+                if (type.isInstance(value)) {
+                    return type.cast(value);
+                }
+                throw new IonicException(SdkError.ISAGENT_NOTIMPLEMENTED,
+                        value.getClass().getName() + " to " + type.getName());
+            }
+        } : decoder;
+    }
+
+    /**
+     * @return the decoders, by requested type
+     */
+    private static Map<Class<?>, Decoder<?>> createDecoders() {
+        final Map<Class<?>, Decoder<?>> decoders = new HashMap<Class<?>, Decoder<?>>();
+        decoders.put(Object.class, new Decoder<Object>() {
+            @Override
+            public Object decode(final Object value) {
+                return value;
+            }
+        });
+        decoders.put(String.class, new Decoder<String>() {
+            @Override
+            public String decode(final Object value) {
+                return IonicValueCodec.toString(value);
+            }
+        });
+        decoders.put(Integer.class, new Decoder<Integer>() {
+            @Override
+            public Integer decode(final Object value) throws IonicException {
+                return (value instanceof Integer) ? (Integer) value
+                        : (int) IonicValueCodec.toLong(value, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            }
+        });
+        decoders.put(Long.class, new Decoder<Long>() {
+            @Override
+            public Long decode(final Object value) throws IonicException {
+                return (value instanceof Long) ? (Long) value
+                        : IonicValueCodec.toLong(value, Long.MIN_VALUE, Long.MAX_VALUE);
+            }
+        });
+        decoders.put(Short.class, new Decoder<Short>() {
+            @Override
+            public Short decode(final Object value) throws IonicException {
+                return (short) IonicValueCodec.toLong(value, Short.MIN_VALUE, Short.MAX_VALUE);
+            }
+        });
+        decoders.put(Double.class, new Decoder<Double>() {
+            @Override
+            public Double decode(final Object value) throws IonicException {
+                return IonicValueCodec.toDouble(value);
+            }
+        });
+        decoders.put(Float.class, new Decoder<Float>() {
+            @Override
+            public Float decode(final Object value) throws IonicException {
+                return (float) IonicValueCodec.toDouble(value);
+            }
+        });
+        decoders.put(BigDecimal.class, new Decoder<BigDecimal>() {
+            @Override
+            public BigDecimal decode(final Object value) throws IonicException {
+                return IonicValueCodec.toBigDecimal(value);
+            }
+        });
+        decoders.put(byte[].class, new Decoder<byte[]>() {
+            @Override
+            public byte[] decode(final Object value) {
+                return IonicValueCodec.toBytes(value);
+            }
+        });
+        decoders.put(Date.class, new Decoder<Date>() {
+            @Override
+            public Date decode(final Object value) throws IonicException {
+                return IonicValueCodec.toDate(value);
+            }
+        });
+        decoders.put(Timestamp.class, new Decoder<Timestamp>() {
+            @Override
+            public Timestamp decode(final Object value) throws IonicException {
+                return IonicValueCodec.toTimestamp(value);
+            }
+        });
+        decoders.put(LocalDate.class, new Decoder<LocalDate>() {
+            @Override
+            public LocalDate decode(final Object value) throws IonicException {
+                return IonicValueCodec.toDate(value).toLocalDate();
+            }
+        });
+        decoders.put(LocalDateTime.class, new Decoder<LocalDateTime>() {
+            @Override
+            public LocalDateTime decode(final Object value) throws IonicException {
+                return IonicValueCodec.toTimestamp(value).toLocalDateTime();
+            }
+        });
+        decoders.put(Instant.class, new Decoder<Instant>() {
+            @Override
+            public Instant decode(final Object value) throws IonicException {
+                return IonicValueCodec.toTimestamp(value).toInstant();
+            }
+        });
+        decoders.put(UUID.class, new Decoder<UUID>() {
+            @Override
+            public UUID decode(final Object value) throws IonicException {
+                try {
+                    if ((value instanceof byte[]) && (((byte[]) value).length == 16)) {
+                        final ByteBuffer buffer = ByteBuffer.wrap((byte[]) value);
+                        return new UUID(buffer.getLong(), buffer.getLong());
+                    }
+                    return UUID.fromString(IonicValueCodec.toString(value).trim());
+                } catch (IllegalArgumentException e) {
+                    throw new IonicException(SdkError.ISAGENT_INVALIDVALUE, e);
+                }
+            }
+        });
+        return Collections.unmodifiableMap(decoders);
+    }
+}
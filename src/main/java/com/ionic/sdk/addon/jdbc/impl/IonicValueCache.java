@@ -0,0 +1,255 @@
+package com.ionic.sdk.addon.jdbc.impl;
+
+import com.ionic.sdk.device.profile.DeviceProfile;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+import com.ionic.sdk.key.KeyServices;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cache of unprotected values for a single Ionic identity, shared by the connections of this driver.  Values read
+ * repeatedly (such as the rows of small, frequently joined reference tables) are unprotected once, and then served by
+ * a hash lookup of the digest of their protected form, with no key request and no decryption.
+ * <p>
+ * Entries are keyed by the SHA-256 digest of the protected value, so that the cache does not hold the (larger)
+ * protected values.  The cache is bounded in size (least recently used entries are discarded first), and each entry
+ * is used only for a limited interval after it was unprotected, so that a change in Ionic policy denying access to a
+ * key takes effect within that interval.  As each Ionic identity has its own cache, a value unprotected by one
+ * identity is never served to another.  Entries may also be discarded explicitly (see {@link #invalidate(String)} and
+ * {@link #invalidateAll()}).
+ * <p>
+ * The cache is disabled by default.  Settings are taken from the connection properties:
+ * <ul>
+ * <li>"ionic.valuecache.size": the number of unprotected values cached in memory (default 0, no cache)</li>
+ * <li>"ionic.valuecache.ttl": the interval (seconds) for which a cached value may be used (default 60), but no
+ * longer than keys may be cached ("ionic.keycache.ttl", see {@link IonicState#getKeyCacheTtl(Properties)}), so that
+ * a change of Ionic policy takes effect for cached values as it does for cached keys; without a key cache, values are
+ * not cached</li>
+ * </ul>
+ */
+public final class IonicValueCache {
+
+    /**
+     * The name of the counter of values served from the cache.
+     */
+    public static final String METRIC_HIT = "valuecache.hit";
+
+    /**
+     * The name of the counter of values not found in the cache (including expired entries).
+     */
+    public static final String METRIC_MISS = "valuecache.miss";
+
+    /**
+     * The name of the counter of entries found in the cache after their expiry.
+     */
+    public static final String METRIC_EXPIRED = "valuecache.expired";
+
+    /**
+     * The name of the counter of entries discarded explicitly.
+     */
+    public static final String METRIC_INVALIDATED = "valuecache.invalidated";
+
+    /**
+     * The default interval (seconds) for which a cached value may be used.
+     */
+    private static final long TTL_DEFAULT = 60L;
+
+    /**
+     * Conversion factor for settings expressed in seconds.
+     */
+    private static final long MILLIS_PER_SECOND = 1000L;
+
+    /**
+     * The caches in use in this process, keyed by Ionic identity.
+     */
+    private static final ConcurrentMap<String, IonicValueCache> CACHES =
+            new ConcurrentHashMap<String, IonicValueCache>();
+
+    /**
+     * Digests the protected values (a digest is not thread-safe, and is costly to look up for each value).
+     */
+    private static final ThreadLocal<MessageDigest> DIGEST = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
+    /**
+     * The cached entries, keyed by digest of protected value.
+     */
+    private final IonicLruCache<ByteBuffer, Entry> entries;
+
+    /**
+     * The interval (milliseconds) for which a cached value may be used.
+     */
+    private final long ttl;
+
+    /**
+     * The counters of the cache.
+     */
+    private final IonicMetrics metrics;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity the number of unprotected values cached in memory
+     * @param ttl      the interval (milliseconds) for which a cached value may be used
+     * @param metrics  the counters of the cache
+     */
+    public IonicValueCache(final int capacity, final long ttl, final IonicMetrics metrics) {
+        this.entries = new IonicLruCache<ByteBuffer, Entry>(capacity);
+        this.ttl = ttl;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Get the process-wide value cache for the Ionic identity of a connection, as specified by the connection
+     * properties.
+     *
+     * @param info        database connection parameters, and Ionic wrapper configuration
+     * @param keyServices Ionic key services of the connection
+     * @return the value cache, or null if no value cache (or no key cache) is configured
+     * @throws IonicException on invalid settings
+     */
+    public static IonicValueCache getInstance(final Properties info,
+                                              final KeyServices keyServices) throws IonicException {
+        final long capacity = IonicState.getLong(info, "ionic.valuecache.size", 0L);
+        final long ttl = Math.min(IonicState.getLong(info, "ionic.valuecache.ttl", TTL_DEFAULT),
+                IonicState.getKeyCacheTtl(info));
+        if ((capacity <= 0L) || (ttl <= 0L)) {
+            return null;
+        }
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IonicException(SdkError.ISAGENT_INVALIDVALUE, "ionic.valuecache.size");
+        }
+        final DeviceProfile deviceProfile = (keyServices == null) ? null : keyServices.getActiveProfile();
+        final String identity = (deviceProfile == null) ? "" : deviceProfile.getDeviceId();
+        IonicValueCache valueCache = CACHES.get(identity);
+        if (valueCache == null) {
+            valueCache = new IonicValueCache((int) capacity, ttl * MILLIS_PER_SECOND,
+                    IonicMetrics.getInstance("valuecache:" + identity));
+            final IonicValueCache valueCacheRace = CACHES.putIfAbsent(identity, valueCache);
+            valueCache = (valueCacheRace == null) ? valueCache : valueCacheRace;
+        }
+        return valueCache;
+    }
+
+    /**
+     * Discard the cached values of all Ionic identities (for example, on a change of Ionic policy which should take
+     * effect at once).
+     */
+    public static void invalidateAllInstances() {
+        for (final IonicValueCache valueCache : CACHES.values()) {
+            valueCache.invalidateAll();
+        }
+    }
+
+    /**
+     * @return the counters of the cache
+     */
+    public IonicMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the number of values currently held in memory (including expired entries not yet discarded)
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Look up the unprotected form of a protected value.
+     *
+     * @param cipherText the protected value
+     * @return the unprotected bytes of the value (which must not be modified), or null if the value is not cached
+     */
+    public byte[] get(final String cipherText) {
+        final ByteBuffer digest = digest(cipherText);
+        final Entry entry = entries.get(digest);
+        if ((entry != null) && (entry.expiry < System.currentTimeMillis())) {
+            entries.remove(digest);
+            metrics.increment(METRIC_EXPIRED);
+        } else if (entry != null) {
+            metrics.increment(METRIC_HIT);
+            return entry.plainText;
+        }
+        metrics.increment(METRIC_MISS);
+        return null;
+    }
+
+    /**
+     * Cache the unprotected form of a protected value.
+     *
+     * @param cipherText the protected value
+     * @param plainText  the unprotected bytes of the value (which must not be modified once cached)
+     */
+    public void put(final String cipherText, final byte[] plainText) {
+        entries.put(digest(cipherText), new Entry(plainText, System.currentTimeMillis() + ttl));
+    }
+
+    /**
+     * Discard the cached form of a protected value (for example, after the value is overwritten).
+     *
+     * @param cipherText the protected value
+     */
+    public void invalidate(final String cipherText) {
+        entries.remove(digest(cipherText));
+        metrics.increment(METRIC_INVALIDATED);
+    }
+
+    /**
+     * Discard all cached values.
+     */
+    public void invalidateAll() {
+        metrics.add(METRIC_INVALIDATED, entries.size());
+        entries.clear();
+    }
+
+    /**
+     * @param cipherText a protected value
+     * @return the digest of the protected value, used as the key of its cache entry
+     */
+    private static ByteBuffer digest(final String cipherText) {
+        return ByteBuffer.wrap(DIGEST.get().digest(cipherText.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * An unprotected value, and the time after which it should no longer be used.
+     */
+    private static final class Entry {
+
+        /**
+         * The unprotected bytes of the value.
+         */
+        private final byte[] plainText;
+
+        /**
+         * The time (milliseconds since the epoch) after which this entry should no longer be used.
+         */
+        private final long expiry;
+
+        /**
+         * Constructor.
+         *
+         * @param plainText the unprotected bytes of the value
+         * @param expiry    the time (milliseconds since the epoch) after which the entry should not be used
+         */
+        private Entry(final byte[] plainText, final long expiry) {
+            this.plainText = plainText;
+            this.expiry = expiry;
+        }
+    }
+}
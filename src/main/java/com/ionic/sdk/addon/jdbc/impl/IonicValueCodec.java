@@ -0,0 +1,548 @@
+package com.ionic.sdk.addon.jdbc.impl;
+
+import com.ionic.sdk.agent.cipher.chunk.ChunkCipherV2;
+import com.ionic.sdk.agent.cipher.chunk.data.ChunkCryptoEncryptAttributes;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Serialization of typed (non-String) values for Ionic protection.
+ * <p>
+ * String values are protected as their UTF-8 bytes, as before.  Other values are serialized to a compact envelope:
+ * a marker byte (0xFF, which never begins UTF-8 text), a type tag, and a payload (zigzag varints for integers, epoch
+ * days for dates, epoch microseconds for timestamps, the unscaled bytes of decimals, and the raw bytes of binary
+ * values).  On unprotect, a plaintext that does not begin with the marker is decoded as a String, so that values
+ * protected before typed protection existed continue to be read.
+ * <p>
+ * Values of columns configured for compression are deflated before protection, when large enough, and held in an
+ * envelope with their own type tag; they are inflated transparently on unprotect.  Short values may be compressed
+ * with a trained preset dictionary (see {@link IonicDictionaries}), whose id is recorded in the envelope.
+ */
+public final class IonicValueCodec {
+
+    /**
+     * The first byte of a typed envelope.
+     */
+    private static final byte MARKER = (byte) 0xFF;
+
+    /**
+     * Type tag: Integer, Short or Byte (zigzag varint).
+     */
+    private static final byte TYPE_INT = 1;
+
+    /**
+     * Type tag: Long (zigzag varint).
+     */
+    private static final byte TYPE_LONG = 2;
+
+    /**
+     * Type tag: Double or Float (IEEE 754 bits, big-endian).
+     */
+    private static final byte TYPE_DOUBLE = 3;
+
+    /**
+     * Type tag: BigDecimal (zigzag varint scale, then the big-endian two's complement unscaled value).
+     */
+    private static final byte TYPE_DECIMAL = 4;
+
+    /**
+     * Type tag: java.sql.Date or LocalDate (zigzag varint epoch day).
+     */
+    private static final byte TYPE_DATE = 5;
+
+    /**
+     * Type tag: java.sql.Timestamp or Instant (zigzag varint epoch microseconds, then a varint of the remaining
+     * nanoseconds, if not zero).
+     */
+    private static final byte TYPE_TIMESTAMP = 6;
+
+    /**
+     * Type tag: byte[] (raw bytes).
+     */
+    private static final byte TYPE_BYTES = 7;
+
+    /**
+     * Type tag: a value compressed before protection (raw deflate of the serialized value).
+     */
+    private static final byte TYPE_DEFLATE = 8;
+
+    /**
+     * Type tag: a value compressed before protection with a preset dictionary (varint dictionary id, then raw
+     * deflate of the serialized value).
+     */
+    private static final byte TYPE_DEFLATE_DICTIONARY = 9;
+
+    /**
+     * The default minimum size (bytes) of values compressed before protection, for columns configured with
+     * "compress": true.  Chosen from the value size sweep in CompressionBenchmarkTest: below it, savings on typical
+     * text are too small to repay the compression time.
+     */
+    public static final int COMPRESS_THRESHOLD_DEFAULT = 256;
+
+    /**
+     * Digits used to render binary values as text.
+     */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Constructor.
+     */
+    private IonicValueCodec() {
+    }
+
+    /**
+     * @param value a parameter value
+     * @return true, iff the value may be Ionic-protected
+     */
+    public static boolean isSupported(final Object value) {
+        return (value instanceof String) || (value instanceof Integer) || (value instanceof Short)
+                || (value instanceof Byte) || (value instanceof Long) || (value instanceof Double)
+                || (value instanceof Float) || (value instanceof BigDecimal) || (value instanceof Date)
+                || (value instanceof LocalDate) || (value instanceof Timestamp) || (value instanceof Instant)
+                || (value instanceof byte[]);
+    }
+
+    /**
+     * Serialize a value for protection.
+     *
+     * @param value a value, for which {@link #isSupported(Object)} is true
+     * @return the UTF-8 bytes of a String value; otherwise, the typed envelope of the value
+     * @throws IonicException if the type of the value is not supported
+     */
+    public static byte[] encode(final Object value) throws IonicException {
+        if (value instanceof String) {
+            return ((String) value).getBytes(StandardCharsets.UTF_8);
+        }
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        os.write(MARKER);
+        if ((value instanceof Integer) || (value instanceof Short) || (value instanceof Byte)) {
+            os.write(TYPE_INT);
+            writeVarint(os, zigzag(((Number) value).longValue()));
+        } else if (value instanceof Long) {
+            os.write(TYPE_LONG);
+            writeVarint(os, zigzag((Long) value));
+        } else if ((value instanceof Double) || (value instanceof Float)) {
+            os.write(TYPE_DOUBLE);
+            final long bits = Double.doubleToLongBits(((Number) value).doubleValue());
+            for (int shift = 56; (shift >= 0); shift -= 8) {
+                os.write((int) (bits >>> shift));
+            }
+        } else if (value instanceof BigDecimal) {
+            os.write(TYPE_DECIMAL);
+            writeVarint(os, zigzag(((BigDecimal) value).scale()));
+            final byte[] unscaled = ((BigDecimal) value).unscaledValue().toByteArray();
+            os.write(unscaled, 0, unscaled.length);
+        } else if ((value instanceof Date) || (value instanceof LocalDate)) {
+            os.write(TYPE_DATE);
+            final LocalDate date = (value instanceof Date) ? ((Date) value).toLocalDate() : (LocalDate) value;
+            writeVarint(os, zigzag(date.toEpochDay()));
+        } else if ((value instanceof Timestamp) || (value instanceof Instant)) {
+            os.write(TYPE_TIMESTAMP);
+            final Instant instant = (value instanceof Timestamp) ? ((Timestamp) value).toInstant() : (Instant) value;
+            writeVarint(os, zigzag((instant.getEpochSecond() * 1000000L) + (instant.getNano() / 1000)));
+            if ((instant.getNano() % 1000) != 0) {
+                writeVarint(os, instant.getNano() % 1000);
+            }
+        } else if (value instanceof byte[]) {
+            os.write(TYPE_BYTES);
+            os.write((byte[]) value, 0, ((byte[]) value).length);
+        } else {
+            throw new IonicException(SdkError.ISAGENT_INVALIDVALUE,
+                    (value == null) ? "null" : value.getClass().getName());
+        }
+        return os.toByteArray();
+    }
+
+    /**
+     * Serialize a value for protection, compressing it if it is large enough, and if compression makes it smaller.
+     *
+     * @param value             a value, for which {@link #isSupported(Object)} is true
+     * @param compressThreshold the minimum size (bytes) of serialized values to be compressed (negative to disable
+     *                          compression)
+     * @return the serialized value, or the compressed envelope of the serialized value
+     * @throws IonicException if the type of the value is not supported
+     */
+    public static byte[] encode(final Object value, final int compressThreshold) throws IonicException {
+        return encode(value, compressThreshold, 0);
+    }
+
+    /**
+     * Serialize a value for protection, compressing it if it is large enough, and if compression makes it smaller.
+     *
+     * @param value             a value, for which {@link #isSupported(Object)} is true
+     * @param compressThreshold the minimum size (bytes) of serialized values to be compressed (negative to disable
+     *                          compression)
+     * @param dictionaryId      the id of the preset dictionary used to compress the value (0 if none)
+     * @return the serialized value, or the compressed envelope of the serialized value
+     * @throws IonicException if the type of the value is not supported, or if the dictionary is not registered
+     */
+    public static byte[] encode(final Object value, final int compressThreshold,
+                                final int dictionaryId) throws IonicException {
+        return encode(value, compressThreshold, dictionaryId, null);
+    }
+
+    /**
+     * Serialize a value for protection, compressing it if it is large enough, and if compression makes it smaller.
+     *
+     * @param value             a value, for which {@link #isSupported(Object)} is true
+     * @param compressThreshold the minimum size (bytes) of serialized values to be compressed (negative to disable
+     *                          compression)
+     * @param dictionaryId      the id of the preset dictionary used to compress the value (0 if none)
+     * @param dictionary        the content of the preset dictionary (null to use the process-wide dictionary with the
+     *                          id)
+     * @return the serialized value, or the compressed envelope of the serialized value
+     * @throws IonicException if the type of the value is not supported, or if the dictionary is not known
+     */
+    public static byte[] encode(final Object value, final int compressThreshold, final int dictionaryId,
+                                final byte[] dictionary) throws IonicException {
+        final byte[] serialized = encode(value);
+        if ((compressThreshold < 0) || (serialized.length < Math.max(compressThreshold, 3))) {
+            return serialized;
+        }
+        final ByteArrayOutputStream header = new ByteArrayOutputStream();
+        header.write(MARKER);
+        header.write((dictionaryId > 0) ? TYPE_DEFLATE_DICTIONARY : TYPE_DEFLATE);
+        if (dictionaryId > 0) {
+            writeVarint(header, dictionaryId);
+        }
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            if (dictionaryId > 0) {
+                deflater.setDictionary((dictionary == null) ? IonicDictionaries.get(dictionaryId) : dictionary);
+            }
+            deflater.setInput(serialized);
+            deflater.finish();
+            final byte[] compressed = Arrays.copyOf(header.toByteArray(), serialized.length);
+            int length = header.size();
+            while ((!deflater.finished()) && (length < compressed.length)) {
+                length += deflater.deflate(compressed, length, compressed.length - length);
+            }
+            // not worthwhile unless the compressed envelope is smaller than the serialized value
+            return deflater.finished() ? Arrays.copyOf(compressed, length) : serialized;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Serialize and protect a value of a protected column.
+     *
+     * @param chunkCipher  the cipher
+     * @param value        a value, for which {@link #isSupported(Object)} is true
+     * @param columnConfig the Ionic config of the column
+     * @return the protected value
+     * @throws IonicException on Ionic cryptography errors, or if the type of the value is not supported
+     */
+    public static String protect(final ChunkCipherV2 chunkCipher, final Object value,
+                                 final IonicColumnConfig columnConfig) throws IonicException {
+        final ChunkCryptoEncryptAttributes encryptAttributes =
+                new ChunkCryptoEncryptAttributes(columnConfig.getCattrs());
+        if ((value instanceof String) && (columnConfig.getCompressThreshold() < 0)) {
+            return chunkCipher.encrypt((String) value, encryptAttributes);
+        }
+        return chunkCipher.encrypt(encode(value, columnConfig.getCompressThreshold(), columnConfig.getDictionaryId(),
+                columnConfig.getDictionary()), encryptAttributes);
+    }
+
+    /**
+     * Deserialize an unprotected value, using the process-wide compression dictionaries.
+     *
+     * @param plainText the unprotected bytes of a value
+     * @return the value: a String, unless the bytes hold a typed envelope
+     * @throws IonicException if a typed envelope is malformed
+     */
+    public static Object decode(final byte[] plainText) throws IonicException {
+        return decode(plainText, null);
+    }
+
+    /**
+     * Deserialize an unprotected value.
+     *
+     * @param plainText    the unprotected bytes of a value
+     * @param dictionaries the compression dictionaries of the Ionic configuration in use (null for the process-wide
+     *                     dictionaries only)
+     * @return the value: a String, unless the bytes hold a typed envelope
+     * @throws IonicException if a typed envelope is malformed
+     */
+    public static Object decode(final byte[] plainText, final IonicDictionaries dictionaries) throws IonicException {
+        if ((plainText.length == 0) || (plainText[0] != MARKER)) {
+            return new String(plainText, StandardCharsets.UTF_8);
+        }
+        try {
+            final int[] position = {2};
+            switch (plainText[1]) {
+                case TYPE_INT:
+                    return (int) unzigzag(readVarint(plainText, position));
+                case TYPE_LONG:
+                    return unzigzag(readVarint(plainText, position));
+                case TYPE_DOUBLE:
+                    long bits = 0L;
+                    for (int i = 2; (i < 10); ++i) {
+                        bits = (bits << 8) | (plainText[i] & 0xFFL);
+                    }
+                    return Double.longBitsToDouble(bits);
+                case TYPE_DECIMAL:
+                    final int scale = (int) unzigzag(readVarint(plainText, position));
+                    return new BigDecimal(new BigInteger(
+                            Arrays.copyOfRange(plainText, position[0], plainText.length)), scale);
+                case TYPE_DATE:
+                    return Date.valueOf(LocalDate.ofEpochDay(unzigzag(readVarint(plainText, position))));
+                case TYPE_TIMESTAMP:
+                    final long micros = unzigzag(readVarint(plainText, position));
+                    final long nanos = (position[0] < plainText.length) ? readVarint(plainText, position) : 0L;
+                    return Timestamp.from(Instant.ofEpochSecond(Math.floorDiv(micros, 1000000L),
+                            (Math.floorMod(micros, 1000000L) * 1000L) + nanos));
+                case TYPE_BYTES:
+                    return Arrays.copyOfRange(plainText, 2, plainText.length);
+                case TYPE_DEFLATE:
+                    return decode(inflate(plainText, 2, null), dictionaries);
+                case TYPE_DEFLATE_DICTIONARY:
+                    final int dictionaryId = (int) readVarint(plainText, position);
+                    return decode(inflate(plainText, position[0], (dictionaries == null)
+                            ? IonicDictionaries.get(dictionaryId) : dictionaries.getDictionary(dictionaryId)),
+                            dictionaries);
+                default:
+                    throw new IonicException(SdkError.ISAGENT_INVALIDVALUE, "type " + plainText[1]);
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IonicException(SdkError.ISAGENT_INVALIDVALUE, e);
+        } catch (NumberFormatException e) {
+            throw new IonicException(SdkError.ISAGENT_INVALIDVALUE, e);
+        }
+    }
+
+    /**
+     * @param envelope   a compressed envelope
+     * @param offset     the offset of the compressed data in the envelope
+     * @param dictionary the preset dictionary of the compressed data (null if none)
+     * @return the serialized value held by the envelope
+     * @throws IonicException if the envelope is malformed
+     */
+    private static byte[] inflate(final byte[] envelope, final int offset,
+                                  final byte[] dictionary) throws IonicException {
+        final Inflater inflater = new Inflater(true);
+        try {
+            if (dictionary != null) {
+                inflater.setDictionary(dictionary);
+            }
+            // a raw inflater may need an extra (dummy) byte of input
+            inflater.setInput(Arrays.copyOfRange(envelope, offset, envelope.length + 1));
+            final ByteArrayOutputStream os = new ByteArrayOutputStream(envelope.length * 4);
+            final byte[] buffer = new byte[Math.max(64, envelope.length * 4)];
+            while (!inflater.finished()) {
+                final int count = inflater.inflate(buffer);
+                if ((count == 0) && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IonicException(SdkError.ISAGENT_INVALIDVALUE, "truncated");
+                }
+                os.write(buffer, 0, count);
+            }
+            return os.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IonicException(SdkError.ISAGENT_INVALIDVALUE, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * @param value a decoded value
+     * @return the value as text (binary values as hexadecimal)
+     */
+    public static String toString(final Object value) {
+        if (value instanceof byte[]) {
+            final byte[] bytes = (byte[]) value;
+            final char[] chars = new char[bytes.length * 2];
+            for (int i = 0; (i < bytes.length); ++i) {
+                chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+                chars[(i * 2) + 1] = HEX[bytes[i] & 0xF];
+            }
+            return new String(chars);
+        }
+        return (value == null) ? null : value.toString();
+    }
+
+    /**
+     * @param value a decoded value (a Number, or numeric text)
+     * @return the value as a long (0 if the value is null)
+     * @throws IonicException if the value is not numeric
+     */
+    public static long toLong(final Object value) throws IonicException {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        return (value == null) ? 0L : toBigDecimal(value).longValue();
+    }
+
+    /**
+     * Convert a value to an integral type, as for the JDBC getters of the type.  A fractional part is discarded.
+     *
+     * @param value a decoded value (a Number, or numeric text)
+     * @param min   the minimum value of the integral type (for example, {@link Integer#MIN_VALUE})
+     * @param max   the maximum value of the integral type (for example, {@link Integer#MAX_VALUE})
+     * @return the value as a long (0 if the value is null)
+     * @throws IonicException if the value is not numeric, or is outside the range of the type
+     */
+    public static long toLong(final Object value, final long min, final long max) throws IonicException {
+        final BigDecimal integral;
+        if ((value instanceof Long) || (value instanceof Integer) || (value instanceof Short)
+                || (value instanceof Byte)) {
+            integral = BigDecimal.valueOf(((Number) value).longValue());
+        } else {
+            integral = (value == null) ? BigDecimal.ZERO : toBigDecimal(value).setScale(0, RoundingMode.DOWN);
+        }
+        if ((integral.compareTo(BigDecimal.valueOf(min)) < 0) || (integral.compareTo(BigDecimal.valueOf(max)) > 0)) {
+            throw new IonicException(SdkError.ISAGENT_INVALIDVALUE, "value out of range: " + integral);
+        }
+        return integral.longValue();
+    }
+
+    /**
+     * @param value a decoded value (a Number, or numeric text)
+     * @return the value as a double (0 if the value is null)
+     * @throws IonicException if the value is not numeric
+     */
+    public static double toDouble(final Object value) throws IonicException {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        return (value == null) ? 0.0 : toBigDecimal(value).doubleValue();
+    }
+
+    /**
+     * @param value a decoded value (a Number, or numeric text)
+     * @return the value as a BigDecimal
+     * @throws IonicException if the value is not numeric
+     */
+    public static BigDecimal toBigDecimal(final Object value) throws IonicException {
+        try {
+            if ((value == null) || (value instanceof BigDecimal)) {
+                return (BigDecimal) value;
+            } else if ((value instanceof Double) || (value instanceof Float)) {
+                return BigDecimal.valueOf(((Number) value).doubleValue());
+            } else if (value instanceof Number) {
+                return BigDecimal.valueOf(((Number) value).longValue());
+            } else if (value instanceof String) {
+                return new BigDecimal(((String) value).trim());
+            }
+        } catch (NumberFormatException e) {
+            throw new IonicException(SdkError.ISAGENT_INVALIDVALUE, e);
+        }
+        throw new IonicException(SdkError.ISAGENT_INVALIDVALUE, value.getClass().getName());
+    }
+
+    /**
+     * @param value a decoded value (a Date, Timestamp, or date text)
+     * @return the value as a Date
+     * @throws IonicException if the value is not a date
+     */
+    public static Date toDate(final Object value) throws IonicException {
+        try {
+            if ((value == null) || (value instanceof Date)) {
+                return (Date) value;
+            } else if (value instanceof Timestamp) {
+                return Date.valueOf(((Timestamp) value).toLocalDateTime().toLocalDate());
+            } else if (value instanceof String) {
+                return Date.valueOf(((String) value).trim());
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IonicException(SdkError.ISAGENT_INVALIDVALUE, e);
+        }
+        throw new IonicException(SdkError.ISAGENT_INVALIDVALUE, value.getClass().getName());
+    }
+
+    /**
+     * @param value a decoded value (a Timestamp, Date, or timestamp text)
+     * @return the value as a Timestamp
+     * @throws IonicException if the value is not a timestamp
+     */
+    public static Timestamp toTimestamp(final Object value) throws IonicException {
+        try {
+            if ((value == null) || (value instanceof Timestamp)) {
+                return (Timestamp) value;
+            } else if (value instanceof Date) {
+                return Timestamp.valueOf(((Date) value).toLocalDate().atStartOfDay());
+            } else if (value instanceof String) {
+                return Timestamp.valueOf(((String) value).trim());
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IonicException(SdkError.ISAGENT_INVALIDVALUE, e);
+        }
+        throw new IonicException(SdkError.ISAGENT_INVALIDVALUE, value.getClass().getName());
+    }
+
+    /**
+     * @param value a decoded value
+     * @return the value as bytes (the UTF-8 bytes of text)
+     */
+    public static byte[] toBytes(final Object value) {
+        if ((value == null) || (value instanceof byte[])) {
+            return (byte[]) value;
+        }
+        return toString(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param value a signed integer
+     * @return the zigzag encoding of the integer (small magnitudes map to small unsigned values)
+     */
+    private static long zigzag(final long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * @param value the zigzag encoding of a signed integer
+     * @return the signed integer
+     */
+    private static long unzigzag(final long value) {
+        return (value >>> 1) ^ -(value & 1L);
+    }
+
+    /**
+     * Write an unsigned varint (seven bits per byte, least significant first).
+     *
+     * @param os    the destination
+     * @param value the value (treated as unsigned)
+     */
+    private static void writeVarint(final ByteArrayOutputStream os, final long value) {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0L) {
+            os.write((int) ((remaining & 0x7FL) | 0x80L));
+            remaining >>>= 7;
+        }
+        os.write((int) remaining);
+    }
+
+    /**
+     * Read an unsigned varint.
+     *
+     * @param bytes    the source
+     * @param position the position of the varint in the source (updated to follow the varint)
+     * @return the value
+     * @throws IonicException if the varint is malformed
+     */
+    private static long readVarint(final byte[] bytes, final int[] position) throws IonicException {
+        long value = 0L;
+        for (int shift = 0; (shift < 64); shift += 7) {
+            final byte b = bytes[position[0]++];
+            value |= (b & 0x7FL) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IonicException(SdkError.ISAGENT_INVALIDVALUE, "varint");
+    }
+}
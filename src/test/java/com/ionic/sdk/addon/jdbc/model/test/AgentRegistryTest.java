@@ -0,0 +1,68 @@
+package com.ionic.sdk.addon.jdbc.model.test;
+
+import com.ionic.sdk.addon.jdbc.impl.IonicAgentRegistry;
+import com.ionic.sdk.agent.Agent;
+import com.ionic.sdk.error.IonicException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.logging.Logger;
+
+/**
+ * Test behavior of the per-process registry of Ionic template agents.
+ */
+public class AgentRegistryTest {
+
+    /**
+     * Class scoped logger.
+     */
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    @Test
+    public final void test_MissingProfileIsNotCached() {
+        final IonicAgentRegistry registry = IonicAgentRegistry.getInstance();
+        final String location = "ionic.sep.missing.json";
+        for (int i = 0; (i < 2); ++i) {
+            try {
+                registry.getAgent(location, null);
+                Assert.fail("IonicException expected");
+            } catch (IonicException e) {
+                logger.info("[EXCEPTION EXPECTED] message: " + e.getMessage());
+            }
+            Assert.assertFalse(registry.evict(location, null));
+        }
+    }
+
+    @Test
+    public final void test_MissingLocation() {
+        try {
+            IonicAgentRegistry.getInstance().getAgent(null, null);
+            Assert.fail("IonicException expected");
+        } catch (IonicException e) {
+            logger.info("[EXCEPTION EXPECTED] message: " + e.getMessage());
+        }
+    }
+
+    @Test
+    public final void test_EquivalentLocationsShareTemplate() throws IOException, IonicException {
+        final File folder = Files.createTempDirectory("ionic.sep.").toFile();
+        final File file = new File(folder, "ionic.sep.json");
+        Files.write(file.toPath(), "{\"activeDeviceId\": \"\", \"profiles\": []}".getBytes(Charset.forName("UTF-8")));
+        final String location = file.getPath();
+        final String locationEquivalent = folder.getPath() + File.separator + "." + File.separator + file.getName();
+        try {
+            final IonicAgentRegistry registry = IonicAgentRegistry.getInstance();
+            final Agent agent = registry.getAgent(location, null);
+            Assert.assertSame(agent, registry.getAgent(locationEquivalent, null));
+            Assert.assertTrue(registry.evict(locationEquivalent, null));
+            Assert.assertFalse(registry.evict(location, null));
+        } finally {
+            Assert.assertTrue(file.delete());
+            Assert.assertTrue(folder.delete());
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.ionic.sdk.addon.jdbc.model.test;
+
+import com.ionic.sdk.addon.jdbc.IonicPreparedStatement;
+import com.ionic.sdk.addon.jdbc.IonicResultSet;
+import com.ionic.sdk.addon.jdbc.IonicStatement;
+import com.ionic.sdk.addon.jdbc.impl.IonicAsync;
+import com.ionic.sdk.addon.jdbc.impl.IonicConnectionServices;
+import com.ionic.sdk.addon.jdbc.impl.IonicTokenVault;
+import com.ionic.sdk.agent.cipher.chunk.ChunkCipherV2;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Logger;
+
+/**
+ * Test the asynchronous execution of statements.
+ */
+public class AsyncTest {
+
+    /**
+     * Class scoped logger.
+     */
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    /**
+     * The nominal url of the database of the statement tests.
+     */
+    private static final String URL = "jdbc:test:async";
+
+    /**
+     * The query of the statement tests; its parameter is tokenized.
+     */
+    private static final String SQL_QUERY = "SELECT first FROM personnel WHERE last = ?";
+
+    /**
+     * The update of the statement tests; its first parameter is protected.
+     */
+    private static final String SQL_UPDATE = "INSERT INTO personnel (first, last) VALUES (?, ?)";
+
+    /**
+     * The Ionic JDBC configuration of the statement tests.
+     */
+    private static final String CONFIG = "{\"PreparedStatement\": {"
+            + "\"" + SQL_QUERY + "\": {\"IonicColumns\": {"
+            + "\"1\": {\"cattrs\": {\"classification\": [\"pii\"]}, \"storage\": \"token\"}}}, "
+            + "\"" + SQL_UPDATE + "\": {\"IonicColumns\": {"
+            + "\"1\": {\"cattrs\": {\"classification\": [\"pii\"]}}}}}}";
+
+    @Test
+    public final void test_SupplyResult() throws InterruptedException, ExecutionException {
+        logger.info("virtual threads: " + IonicAsync.isVirtual());
+        final CompletableFuture<Integer> future = IonicAsync.supply(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return 42;
+            }
+        }, IonicAsync.getDefaultExecutor());
+        Assert.assertEquals(Integer.valueOf(42), future.get());
+    }
+
+    @Test
+    public final void test_SupplyException() throws InterruptedException {
+        final CompletableFuture<Integer> future = IonicAsync.supply(new Callable<Integer>() {
+            @Override
+            public Integer call() throws SQLException {
+                throw new SQLException("expected");
+            }
+        }, IonicAsync.getDefaultExecutor());
+        try {
+            future.get();
+            Assert.fail("exception expected");
+        } catch (ExecutionException e) {
+            // the exception of the work is not wrapped
+            Assert.assertTrue(e.getCause() instanceof SQLException);
+        }
+    }
+
+    @Test
+    public final void test_StatementQueryAsync() throws Exception {
+        final InMemoryFixture.KeyServer keyServer = new InMemoryFixture.KeyServer();
+        final String ciphertext = new ChunkCipherV2(keyServer.getKeyServices()).encrypt("Jane");
+        final InMemoryFixture.Database database = createDatabase(ciphertext);
+        final IonicStatement statement = new IonicStatement(
+                database.connect().createStatement(), keyServer.getKeyServices());
+        final ResultSet resultSet = statement.executeQueryAsync("SELECT first FROM personnel").get();
+        // the result of the query is unprotected, as that of executeQuery()
+        Assert.assertTrue(resultSet instanceof IonicResultSet);
+        Assert.assertTrue(resultSet.next());
+        Assert.assertEquals("Jane", resultSet.getString(1));
+        Assert.assertTrue(statement.executeQuery("SELECT first FROM personnel") instanceof IonicResultSet);
+    }
+
+    @Test
+    public final void test_PreparedQueryAsync() throws Exception {
+        final InMemoryFixture.KeyServer keyServer = new InMemoryFixture.KeyServer();
+        final String ciphertext = new ChunkCipherV2(keyServer.getKeyServices()).encrypt("Jane");
+        final int createRequests = keyServer.getCreateRequests();
+        final InMemoryFixture.Database database = createDatabase(ciphertext);
+        final Properties info = new Properties();
+        info.setProperty("ionic.token.vault", "test_async_vault");
+        final IonicConnectionServices services = new IonicConnectionServices(
+                null, IonicTokenVault.getInstance(URL, info), null);
+        final Connection connection = database.connect();
+        final IonicPreparedStatement statement = new IonicPreparedStatement(connection.prepareStatement(SQL_QUERY),
+                SQL_QUERY, CONFIG, keyServer.getKeyServices(), 0, 0, services);
+        statement.setNull(1, Types.VARCHAR);
+        final ResultSet resultSet = statement.executeQueryAsync(IonicAsync.getDefaultExecutor()).get();
+        Assert.assertTrue(resultSet.next());
+        Assert.assertEquals("Jane", resultSet.getString(1));
+        // a query protects no parameters; a value of the tokenized parameter is refused
+        statement.setString(1, "Doe");
+        try {
+            statement.executeQueryAsync(IonicAsync.getDefaultExecutor()).get();
+            Assert.fail("ExecutionException expected");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof SQLException);
+            logger.info("[EXCEPTION EXPECTED] message: " + e.getCause().getMessage());
+        }
+        // no keys were created, and no vault rows written on behalf of the queries
+        Assert.assertEquals(createRequests, keyServer.getCreateRequests());
+        for (final InMemoryFixture.Execution execution : database.getExecutions()) {
+            Assert.assertEquals(SQL_QUERY, execution.getSql());
+        }
+        Assert.assertEquals(0, database.getCommits());
+    }
+
+    @Test
+    public final void test_PreparedUpdateAsync() throws Exception {
+        final InMemoryFixture.KeyServer keyServer = new InMemoryFixture.KeyServer();
+        final InMemoryFixture.Database database = createDatabase(null);
+        final IonicPreparedStatement statement = new IonicPreparedStatement(
+                database.connect().prepareStatement(SQL_UPDATE), SQL_UPDATE, CONFIG, keyServer.getKeyServices());
+        statement.setString(1, "Jane");
+        statement.setString(2, "Doe");
+        Assert.assertEquals(Integer.valueOf(1), statement.executeUpdateAsync(IonicAsync.getDefaultExecutor()).get());
+        // the protected parameter is encrypted, as by executeUpdate()
+        final List<Object> parameters = database.getExecutions().get(0).getParameters();
+        Assert.assertEquals("Jane", new ChunkCipherV2(keyServer.getKeyServices()).decrypt((String) parameters.get(0)));
+        Assert.assertEquals("Doe", parameters.get(1));
+    }
+
+    /**
+     * Create the database of the statement tests.
+     *
+     * @param ciphertext the protected value answering the queries
+     * @return the database
+     */
+    private static InMemoryFixture.Database createDatabase(final String ciphertext) {
+        return new InMemoryFixture.Database(URL, new InMemoryFixture.Responder() {
+            @Override
+            public Object respond(final String sql, final List<Object> values) {
+                if (sql.startsWith("SELECT")) {
+                    final List<Object[]> rows = new ArrayList<Object[]>();
+                    rows.add(new Object[]{ciphertext});
+                    return InMemoryFixture.createResultSet(new String[]{"first"}, new int[]{Types.VARCHAR}, rows);
+                }
+                return (sql.startsWith("INSERT INTO personnel")) ? 1 : null;
+            }
+        });
+    }
+}
@@ -0,0 +1,161 @@
+package com.ionic.sdk.addon.jdbc.model.test;
+
+import com.ionic.sdk.addon.jdbc.IonicBulkWriter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Test the bulk writer of single rows.
+ */
+public class BulkWriterTest {
+
+    /**
+     * Class scoped logger.
+     */
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    /**
+     * The insert statement of the tests; the first column is protected.
+     */
+    private static final String SQL = "INSERT INTO personnel (first, last, zip) VALUES (?, ?, ?)";
+
+    /**
+     * The Ionic JDBC configuration of the tests.
+     */
+    private static final String CONFIG = "{\"PreparedStatement\": {\"" + SQL + "\": {\"IonicColumns\": {"
+            + "\"1\": {\"cattrs\": {\"classification\": [\"pii\"]}}}}}}";
+
+    @Test
+    public final void test_RowsWrittenInOrder() throws Exception {
+        final InMemoryFixture.Database database = createDatabase();
+        final Connection connection = database.connect();
+        connection.setAutoCommit(false);
+        final List<CompletableFuture<Integer>> futures = new ArrayList<CompletableFuture<Integer>>();
+        final IonicBulkWriter writer = new IonicBulkWriter(createInfo("4"), connection,
+                new InMemoryFixture.KeyServer().getKeyServices(), SQL);
+        for (int i = 0; (i < 10); ++i) {
+            futures.add(writer.write("first-" + i, "last-" + i, i));
+        }
+        writer.close();
+        for (final CompletableFuture<Integer> future : futures) {
+            Assert.assertEquals(1, future.get(10L, TimeUnit.SECONDS).intValue());
+        }
+        // the rows are written in the order in which they were accepted, in batches of at most four rows
+        final List<InMemoryFixture.Execution> executions = database.getExecutions();
+        Assert.assertEquals(10, executions.size());
+        for (int i = 0; (i < executions.size()); ++i) {
+            final List<Object> parameters = executions.get(i).getParameters();
+            Assert.assertTrue(((String) parameters.get(0)).startsWith("~!2!"));
+            Assert.assertEquals(Arrays.<Object>asList("last-" + i, i), parameters.subList(1, 3));
+        }
+        Assert.assertTrue(database.getBatches() >= 3);
+        Assert.assertEquals(database.getBatches(), database.getCommits());
+        Assert.assertEquals(0, database.getRollbacks());
+    }
+
+    @Test
+    public final void test_Nulls() throws Exception {
+        final InMemoryFixture.Database database = createDatabase();
+        final Properties info = createInfo("4");
+        info.setProperty("ionic.batch.rows", "4");
+        final IonicBulkWriter writer = new IonicBulkWriter(info, database.connect(),
+                new InMemoryFixture.KeyServer().getKeyServices(), SQL);
+        final CompletableFuture<Integer> futureA = writer.write("Jane", null, null);
+        final CompletableFuture<Integer> futureB = writer.write(null, "Doe", 12345);
+        writer.close();
+        Assert.assertEquals(1, futureA.get(10L, TimeUnit.SECONDS).intValue());
+        Assert.assertEquals(1, futureB.get(10L, TimeUnit.SECONDS).intValue());
+        // SQL NULL, in protected and unprotected columns, is written as NULL
+        final List<Object> parameters = new ArrayList<Object>();
+        for (final InMemoryFixture.Execution execution : database.getExecutions()) {
+            parameters.addAll(execution.getParameters());
+        }
+        Assert.assertEquals(6, parameters.size());
+        Assert.assertTrue(((String) parameters.get(0)).startsWith("~!2!"));
+        Assert.assertEquals(Arrays.asList(null, null, null, "Doe", 12345), parameters.subList(1, 6));
+    }
+
+    @Test
+    public final void test_BatchFailure() throws Exception {
+        final InMemoryFixture.Database database = createDatabase();
+        final Connection connection = database.connect();
+        connection.setAutoCommit(false);
+        final IonicBulkWriter writer = new IonicBulkWriter(createInfo("4"), connection,
+                new InMemoryFixture.KeyServer().getKeyServices(), SQL);
+        // the rows of a failed batch fail, and are rolled back; the writer remains usable
+        try {
+            writer.write("Jane", "fail", 12345).get(10L, TimeUnit.SECONDS);
+            Assert.fail("SQLException expected");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof SQLException);
+            logger.info("[EXCEPTION EXPECTED] message: " + e.getCause().getMessage());
+        }
+        Assert.assertEquals(1, database.getRollbacks());
+        Assert.assertEquals(1, writer.write("John", "Doe", 12345).get(10L, TimeUnit.SECONDS).intValue());
+        writer.close();
+        Assert.assertEquals(1, database.getCommits());
+    }
+
+    @Test
+    public final void test_WriterFailure() throws Exception {
+        final InMemoryFixture.Database database = createDatabase();
+        final IonicBulkWriter writer = new IonicBulkWriter(createInfo("4"), database.connect(),
+                new InMemoryFixture.KeyServer().getKeyServices(), SQL);
+        // an error ending the writer thread fails the rows not yet written, and the writer stops accepting rows
+        try {
+            writer.write("Jane", "error", 12345).get(10L, TimeUnit.SECONDS);
+            Assert.fail("AssertionError expected");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof AssertionError);
+            logger.info("[EXCEPTION EXPECTED] message: " + e.getCause().getMessage());
+        }
+        try {
+            writer.write("John", "Doe", 12345);
+            Assert.fail("SQLException expected");
+        } catch (SQLException e) {
+            logger.info("[EXCEPTION EXPECTED] message: " + e.getMessage());
+        }
+        writer.close();
+    }
+
+    /**
+     * @param rows the maximum number of rows in each batch
+     * @return the connection properties of a writer
+     */
+    private static Properties createInfo(final String rows) {
+        final Properties info = new Properties();
+        info.setProperty("ionic.config.jdbc.json", CONFIG);
+        info.setProperty("ionic.writer.rows", rows);
+        info.setProperty("ionic.writer.linger", "50");
+        return info;
+    }
+
+    /**
+     * @return an in-memory database, which inserts the rows of the tests; a row with the value "fail" fails its
+     * statement, and a row with the value "error" raises an {@link Error}
+     */
+    private static InMemoryFixture.Database createDatabase() {
+        return new InMemoryFixture.Database("jdbc:test:writer", new InMemoryFixture.Responder() {
+            @Override
+            public Object respond(final String sql, final List<Object> parameters) throws SQLException {
+                if (parameters.contains("error")) {
+                    throw new AssertionError("database driver failure");
+                } else if (parameters.contains("fail")) {
+                    throw new SQLException("row rejected");
+                }
+                return parameters.size() / 3;
+            }
+        });
+    }
+}
@@ -0,0 +1,85 @@
+package com.ionic.sdk.addon.jdbc.model.test;
+
+import com.ionic.sdk.addon.jdbc.impl.IonicCircuitBreaker;
+import com.ionic.sdk.addon.jdbc.impl.IonicMetrics;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Test the state transitions of the key server circuit breaker.
+ */
+public class CircuitBreakerTest {
+
+    /**
+     * Class scoped logger.
+     */
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    @Test
+    public final void test_OpenProbeClose() throws InterruptedException {
+        final IonicMetrics metrics = new IonicMetrics("test");
+        final IonicCircuitBreaker breaker = new IonicCircuitBreaker(metrics, 3, 50000000L, 0L);
+        for (int i = 0; (i < 2); ++i) {
+            Assert.assertTrue(breaker.allowRequest());
+            breaker.onFailure();
+        }
+        Assert.assertEquals(IonicCircuitBreaker.State.CLOSED, breaker.getState());
+        Assert.assertTrue(breaker.allowRequest());
+        breaker.onFailure();
+        Assert.assertEquals(IonicCircuitBreaker.State.OPEN, breaker.getState());
+        Assert.assertFalse(breaker.allowRequest());
+        Thread.sleep(60L);
+        // a single probe is allowed once the open interval elapses
+        Assert.assertTrue(breaker.allowRequest());
+        Assert.assertFalse(breaker.allowRequest());
+        breaker.onFailure();
+        Assert.assertEquals(IonicCircuitBreaker.State.OPEN, breaker.getState());
+        Thread.sleep(60L);
+        Assert.assertTrue(breaker.allowRequest());
+        breaker.onSuccess(1000L);
+        Assert.assertEquals(IonicCircuitBreaker.State.CLOSED, breaker.getState());
+        final Map<String, Long> snapshot = metrics.getSnapshot();
+        logger.info(snapshot.toString());
+        Assert.assertEquals(Long.valueOf(2L), snapshot.get(IonicCircuitBreaker.METRIC_OPENED));
+        Assert.assertEquals(Long.valueOf(2L), snapshot.get(IonicCircuitBreaker.METRIC_REJECTED));
+        Assert.assertEquals(Long.valueOf(0L), snapshot.get(IonicCircuitBreaker.METRIC_STATE));
+    }
+
+    @Test
+    public final void test_SlowRequestIsFailure() {
+        final IonicMetrics metrics = new IonicMetrics("test");
+        final IonicCircuitBreaker breaker = new IonicCircuitBreaker(metrics, 1, 1000000000L, 300000000L);
+        Assert.assertTrue(breaker.allowRequest());
+        breaker.onSuccess(100000000L);
+        Assert.assertEquals(IonicCircuitBreaker.State.CLOSED, breaker.getState());
+        Assert.assertTrue(breaker.allowRequest());
+        breaker.onSuccess(400000000L);
+        Assert.assertEquals(IonicCircuitBreaker.State.OPEN, breaker.getState());
+        Assert.assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public final void test_InstanceSharedAsConfigured() {
+        final IonicCircuitBreaker breaker = IonicCircuitBreaker.getInstance("https://breaker.test", 1, 0L, 0L);
+        // a later request shares the breaker with the settings of the first request
+        Assert.assertSame(breaker, IonicCircuitBreaker.getInstance("https://breaker.test", 5, 0L, 0L));
+        Assert.assertTrue(breaker.allowRequest());
+        breaker.onFailure();
+        Assert.assertEquals(IonicCircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public final void test_Percentile() {
+        final IonicMetrics metrics = new IonicMetrics("test");
+        Assert.assertEquals(-1L, metrics.getPercentile("latency", 0.95));
+        for (int i = 1; (i <= 100); ++i) {
+            metrics.record("latency", i);
+        }
+        Assert.assertEquals(95L, metrics.getPercentile("latency", 0.95));
+        Assert.assertEquals(50L, metrics.getPercentile("latency", 0.5));
+        Assert.assertEquals(100L, metrics.get("latency"));
+    }
+}
@@ -0,0 +1,131 @@
+package com.ionic.sdk.addon.jdbc.model.test;
+
+import com.ionic.sdk.addon.jdbc.impl.IonicCoalescingKeyServices;
+import com.ionic.sdk.agent.request.getkey.GetKeysRequest;
+import com.ionic.sdk.agent.request.getkey.GetKeysResponse;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+import com.ionic.sdk.key.KeyServices;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * Test the coalescing of concurrent requests for the same key.
+ */
+public class CoalescingKeyServicesTest {
+
+    /**
+     * Class scoped logger.
+     */
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    /**
+     * Runs the concurrent requests of a test.
+     */
+    private ExecutorService executor;
+
+    @Before
+    public final void setUp() {
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public final void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public final void test_ConcurrentRequestsShareFetch() throws Exception {
+        final InMemoryFixture.KeyServer keyServer = new InMemoryFixture.KeyServer("coalesce-share");
+        final KeyServices keyServices = new IonicCoalescingKeyServices(keyServer.getKeyServices());
+        keyServer.hold();
+        final Future<GetKeysResponse> responseA = executor.submit(createTask(keyServices, "key-0000001"));
+        keyServer.awaitRequests(1);
+        // the second request joins the fetch of the first key, and fetches only the key not yet in flight
+        final Future<GetKeysResponse> responseB = executor.submit(
+                createTask(keyServices, "key-0000001", "key-0000002"));
+        keyServer.awaitRequests(1);
+        keyServer.release();
+        Assert.assertEquals(1, responseA.get().getKeys().size());
+        Assert.assertEquals(2, responseB.get().getKeys().size());
+        Assert.assertNotNull(responseB.get().getKey("key-0000001"));
+        Assert.assertEquals(Arrays.asList(Collections.singletonList("key-0000001"),
+                Collections.singletonList("key-0000002")), keyServer.getRequests());
+        // once the fetch is complete, a later request for the key is made to the key server
+        keyServices.getKey("key-0000001");
+        Assert.assertEquals(3, keyServer.getRequests().size());
+    }
+
+    @Test
+    public final void test_FailureShared() throws Exception {
+        final InMemoryFixture.KeyServer keyServer = new InMemoryFixture.KeyServer("coalesce-fail");
+        final KeyServices keyServices = new IonicCoalescingKeyServices(keyServer.getKeyServices());
+        keyServer.hold();
+        final Future<GetKeysResponse> responseA = executor.submit(createTask(keyServices, "key-0000001"));
+        keyServer.awaitRequests(1);
+        final Future<GetKeysResponse> responseB = executor.submit(
+                createTask(keyServices, "key-0000002", "key-0000001"));
+        keyServer.awaitRequests(1);
+        keyServer.setFailure(new IonicException(SdkError.ISAGENT_ERROR, "key server unavailable"));
+        keyServer.release();
+        // the failure of a fetch is seen by every request that joined it
+        for (final Future<GetKeysResponse> response : Arrays.asList(responseA, responseB)) {
+            try {
+                response.get();
+                Assert.fail("IonicException expected");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof IonicException);
+                logger.info("[EXCEPTION EXPECTED] message: " + e.getCause().getMessage());
+            }
+        }
+        Assert.assertEquals(2, keyServer.getRequests().size());
+        // a failed fetch is not remembered
+        keyServer.setFailure(null);
+        Assert.assertEquals(1, keyServices.getKey("key-0000001").getKeys().size());
+    }
+
+    @Test
+    public final void test_IdentitiesNotCoalesced() throws Exception {
+        final InMemoryFixture.KeyServer keyServerA = new InMemoryFixture.KeyServer("coalesce-a");
+        final InMemoryFixture.KeyServer keyServerB = new InMemoryFixture.KeyServer("coalesce-b");
+        keyServerA.hold();
+        final Future<GetKeysResponse> responseA = executor.submit(
+                createTask(new IonicCoalescingKeyServices(keyServerA.getKeyServices()), "key-0000001"));
+        keyServerA.awaitRequests(1);
+        // the same key id, requested using another Ionic identity, is fetched separately
+        Assert.assertEquals(1, new IonicCoalescingKeyServices(keyServerB.getKeyServices())
+                .getKey("key-0000001").getKeys().size());
+        Assert.assertEquals(1, keyServerB.getRequests().size());
+        keyServerA.release();
+        Assert.assertEquals(1, responseA.get().getKeys().size());
+    }
+
+    /**
+     * @param keyServices the key services to which the request is made
+     * @param keyIds      the ids of the keys to request
+     * @return a task making a key fetch request
+     */
+    private static Callable<GetKeysResponse> createTask(final KeyServices keyServices, final String... keyIds) {
+        return new Callable<GetKeysResponse>() {
+            @Override
+            public GetKeysResponse call() throws IonicException {
+                final GetKeysRequest request = new GetKeysRequest();
+                for (final String keyId : keyIds) {
+                    request.add(keyId);
+                }
+                return keyServices.getKeys(request);
+            }
+        };
+    }
+}
@@ -0,0 +1,93 @@
+package com.ionic.sdk.addon.jdbc.model.test;
+
+import com.ionic.sdk.addon.jdbc.IonicColumns;
+import com.ionic.sdk.addon.jdbc.IonicResultSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test the columnar bulk read API of {@link IonicResultSet}.
+ */
+public class ColumnsTest {
+
+    /**
+     * The column labels of the test result set.
+     */
+    private static final String[] LABELS = {"id", "name", "score"};
+
+    /**
+     * The column types of the test result set.
+     */
+    private static final int[] TYPES = {Types.INTEGER, Types.VARCHAR, Types.DOUBLE};
+
+    @Test
+    public final void testFetchColumns_VectorsAndNulls() throws Exception {
+        final IonicResultSet resultSet = new IonicResultSet(createResultSet(2500), null);
+        final IonicColumns columns = resultSet.fetchColumns(2000);
+        Assert.assertEquals(2000, columns.getRowCount());
+        Assert.assertEquals(IonicColumns.Type.INT, columns.getColumnType(1));
+        Assert.assertEquals(IonicColumns.Type.STRING, columns.getColumnType(2));
+        Assert.assertEquals(IonicColumns.Type.DOUBLE, columns.getColumnType(3));
+        Assert.assertEquals(1999, columns.getInts(1)[1999]);
+        Assert.assertEquals("name-7", columns.getStrings(columns.findColumn("NAME"))[7]);
+        Assert.assertTrue(columns.isNull(2, 10));
+        Assert.assertFalse(columns.isNull(2, 11));
+        Assert.assertNull(columns.getObject(2, 10));
+        Assert.assertEquals(1.5, columns.getDoubles(3)[3], 0.0);
+        final IonicColumns remaining = resultSet.fetchColumns(2000);
+        Assert.assertEquals(500, remaining.getRowCount());
+        Assert.assertEquals(2000, remaining.getInts(1)[0]);
+    }
+
+    @Test
+    public final void testFetchColumns_WrongType() throws Exception {
+        final IonicColumns columns = new IonicResultSet(createResultSet(10), null).fetchColumns(10);
+        try {
+            columns.getLongs(1);
+            Assert.fail("SQLException expected");
+        } catch (SQLException e) {
+            Assert.assertNotNull(e.getMessage());
+        }
+    }
+
+    @Test
+    public final void testExport_ArrowLayout() throws Exception {
+        final IonicColumns columns = new IonicResultSet(createResultSet(12), null).fetchColumns(100);
+        final ByteBuffer[] ints = columns.export(1);
+        Assert.assertEquals(2, ints.length);
+        Assert.assertTrue(ints[1].isDirect());
+        Assert.assertEquals(11, ints[1].getInt(11 * 4));
+        final ByteBuffer[] strings = columns.export(2);
+        Assert.assertEquals(3, strings.length);
+        // row 10 is null: validity bit clear, empty value
+        Assert.assertEquals(0, strings[0].get(1) & (1 << 2));
+        Assert.assertEquals(strings[1].getInt(10 * 4), strings[1].getInt(11 * 4));
+        final int start = strings[1].getInt(11 * 4);
+        final byte[] bytes = new byte[strings[1].getInt(12 * 4) - start];
+        strings[2].position(start);
+        strings[2].get(bytes);
+        Assert.assertEquals("name-11", new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Create an in-memory result set; every tenth "name" is null.
+     *
+     * @param count the number of rows of the result set
+     * @return the result set
+     */
+    private static ResultSet createResultSet(final int count) {
+        final List<Object[]> rows = new ArrayList<Object[]>();
+        for (int row = 0; (row < count); ++row) {
+            rows.add(new Object[]{row, ((row % 10) == 0) ? null : ("name-" + row), row / 2.0});
+        }
+        return InMemoryFixture.createResultSet(LABELS, TYPES, rows);
+    }
+}
@@ -0,0 +1,109 @@
+package com.ionic.sdk.addon.jdbc.model.test;
+
+import com.ionic.sdk.addon.jdbc.impl.IonicValueCodec;
+import com.ionic.sdk.error.IonicException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.logging.Logger;
+
+/**
+ * Sweep value sizes, measuring the size reduction and the time cost of compression before protection, as used to
+ * choose {@link IonicValueCodec#COMPRESS_THRESHOLD_DEFAULT}.
+ */
+public class CompressionBenchmarkTest {
+
+    /**
+     * Class scoped logger.
+     */
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    /**
+     * Words used to compose sample free-text values.
+     */
+    private static final String[] WORDS = {
+            "the", "customer", "requested", "a", "callback", "regarding", "their", "account", "balance", "and",
+            "address", "change", "street", "avenue", "apartment", "north", "payment", "was", "received", "on",
+            "\"status\":", "\"id\":", "\"notes\":", "pending", "approved", "{", "}", ",", "please", "review"};
+
+    /**
+     * The value sizes (bytes) swept.
+     */
+    private static final int[] SIZES = {16, 32, 64, 128, 192, 256, 384, 512, 1024, 4096, 16384};
+
+    /**
+     * The number of sample values of each size.
+     */
+    private static final int SAMPLES = 200;
+
+    @Test
+    public final void test_SweepValueSizes() throws IonicException {
+        final Random random = new Random(0L);
+        logger.info(String.format("%8s %10s %10s %8s %12s", "size", "plain", "deflated", "saved", "ns/value"));
+        double savedAtDefault = 0.0;
+        for (final int size : SIZES) {
+            final String[] values = new String[SAMPLES];
+            for (int i = 0; (i < SAMPLES); ++i) {
+                values[i] = createValue(random, size);
+            }
+            // warm up, then measure
+            long plainBytes = 0L;
+            long compressedBytes = 0L;
+            for (int pass = 0; (pass < 2); ++pass) {
+                plainBytes = 0L;
+                compressedBytes = 0L;
+                final long start = System.nanoTime();
+                for (final String value : values) {
+                    final byte[] encoded = IonicValueCodec.encode(value, 0);
+                    Assert.assertEquals(value, IonicValueCodec.decode(encoded));
+                    plainBytes += value.getBytes(StandardCharsets.UTF_8).length;
+                    compressedBytes += encoded.length;
+                }
+                final long nanos = (System.nanoTime() - start) / SAMPLES;
+                if (pass == 1) {
+                    final double saved = 1.0 - ((double) compressedBytes / plainBytes);
+                    logger.info(String.format("%8d %10d %10d %7.1f%% %12d",
+                            size, plainBytes / SAMPLES, compressedBytes / SAMPLES, saved * 100.0, nanos));
+                    if (size == IonicValueCodec.COMPRESS_THRESHOLD_DEFAULT) {
+                        savedAtDefault = saved;
+                    }
+                }
+            }
+        }
+        // at the default threshold, compression should already pay for itself in storage
+        Assert.assertTrue(savedAtDefault > 0.2);
+    }
+
+    @Test
+    public final void test_ThresholdAndIncompressible() throws IonicException {
+        final String small = "123 North Avenue";
+        Assert.assertArrayEquals(small.getBytes(StandardCharsets.UTF_8),
+                IonicValueCodec.encode(small, IonicValueCodec.COMPRESS_THRESHOLD_DEFAULT));
+        // random bytes do not compress; the value is left as serialized
+        final byte[] random = new byte[1024];
+        new Random(0L).nextBytes(random);
+        Assert.assertArrayEquals(IonicValueCodec.encode(random), IonicValueCodec.encode(random, 0));
+        // disabled compression
+        final String large = createValue(new Random(0L), 4096);
+        Assert.assertArrayEquals(large.getBytes(StandardCharsets.UTF_8), IonicValueCodec.encode(large, -1));
+    }
+
+    /**
+     * @param random the source of randomness
+     * @param size   the approximate size of the value
+     * @return a sample free-text value
+     */
+    private static String createValue(final Random random, final int size) {
+        final StringBuilder buffer = new StringBuilder();
+        while (buffer.length() < size) {
+            buffer.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            if (random.nextInt(8) == 0) {
+                buffer.append(random.nextInt(100000)).append(' ');
+            }
+        }
+        buffer.setLength(size);
+        return buffer.toString();
+    }
+}
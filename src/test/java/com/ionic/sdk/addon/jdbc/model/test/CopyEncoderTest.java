@@ -0,0 +1,143 @@
+package com.ionic.sdk.addon.jdbc.model.test;
+
+import com.ionic.sdk.addon.jdbc.IonicCopyLoader;
+import com.ionic.sdk.addon.jdbc.impl.IonicColumnConfig;
+import com.ionic.sdk.addon.jdbc.impl.IonicCopyEncoder;
+import com.ionic.sdk.addon.jdbc.impl.IonicTokenVault;
+import com.ionic.sdk.addon.jdbc.impl.IonicValueCodec;
+import com.ionic.sdk.agent.cipher.chunk.ChunkCipherV2;
+import com.ionic.sdk.agent.key.KeyAttributesMap;
+import com.ionic.sdk.error.IonicException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Test rendering of PostgreSQL COPY input, and the bulk load of rows with COPY.
+ */
+public class CopyEncoderTest {
+
+    /**
+     * Class scoped logger.
+     */
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    @Test
+    public final void test_EncodeCsv() throws IonicException, UnsupportedEncodingException {
+        final IonicCopyEncoder encoder = new IonicCopyEncoder(null, new IonicColumnConfig[3]);
+        final List<Object[]> rows = new ArrayList<Object[]>();
+        rows.add(new Object[] {"Bob", 12345, null});
+        rows.add(new Object[] {"say \"hi\", then\nleave", "", new byte[] {0x01, (byte) 0xfe}});
+        final String csv = new String(encoder.encode(rows), "UTF-8");
+        Assert.assertEquals("\"Bob\",\"12345\",\n\"say \"\"hi\"\", then\nleave\",\"\",\"\\x01fe\"\n", csv);
+    }
+
+    @Test(expected = IonicException.class)
+    public final void test_EncodeWrongWidth() throws IonicException {
+        final IonicCopyEncoder encoder = new IonicCopyEncoder(null, new IonicColumnConfig[2]);
+        final List<Object[]> rows = new ArrayList<Object[]>();
+        rows.add(new Object[] {"Bob"});
+        encoder.encode(rows);
+    }
+
+    @Test
+    public final void test_EncodeProtected() throws IonicException {
+        final Map<String, String> table = new ConcurrentHashMap<String, String>();
+        new InMemoryFixture.Database("jdbc:test:copy", new InMemoryFixture.Responder() {
+            @Override
+            public Object respond(final String sql, final List<Object> parameters) {
+                if (sql.startsWith("INSERT INTO test_copy_vault")) {
+                    table.put((String) parameters.get(0), (String) parameters.get(1));
+                    return 1;
+                }
+                return null;
+            }
+        });
+        final Properties info = new Properties();
+        info.setProperty("ionic.token.vault", "test_copy_vault");
+        info.setProperty("driverClassName", InMemoryFixture.TestDriver.class.getName());
+        final InMemoryFixture.KeyServer keyServer = new InMemoryFixture.KeyServer();
+        final IonicColumnConfig[] columnConfigs = new IonicColumnConfig[] {
+            new IonicColumnConfig(new KeyAttributesMap()),
+            new IonicColumnConfig(new KeyAttributesMap(), -1, 0, IonicColumnConfig.Storage.TOKEN), null};
+        final IonicCopyEncoder encoder = new IonicCopyEncoder(keyServer.getKeyServices(), columnConfigs,
+                IonicTokenVault.getInstance("jdbc:test:copy", info));
+        final List<Object[]> rows = new ArrayList<Object[]>();
+        rows.add(new Object[] {42, "Jane", 1});
+        rows.add(new Object[] {Date.valueOf("2026-10-19"), "John", 2});
+        rows.add(new Object[] {new byte[] {0x01, (byte) 0xfe}, null, null});
+        final List<String[]> fields = parse(new String(encoder.encode(rows), StandardCharsets.UTF_8));
+        // typed values of protected columns are protected, as Strings are
+        final ChunkCipherV2 chunkCipher = new ChunkCipherV2(keyServer.getKeyServices());
+        Assert.assertEquals(42, IonicValueCodec.decode(chunkCipher.decryptToBytes(fields.get(0)[0])));
+        Assert.assertEquals(Date.valueOf("2026-10-19"),
+                IonicValueCodec.decode(chunkCipher.decryptToBytes(fields.get(1)[0])));
+        Assert.assertArrayEquals(new byte[] {0x01, (byte) 0xfe},
+                (byte[]) IonicValueCodec.decode(chunkCipher.decryptToBytes(fields.get(2)[0])));
+        // the values of a tokenized column are stored in the vault, in place of which their tokens are written
+        Assert.assertEquals(2, table.size());
+        Assert.assertTrue(IonicTokenVault.isToken(fields.get(0)[1]));
+        Assert.assertEquals("Jane", IonicValueCodec.decode(chunkCipher.decryptToBytes(table.get(fields.get(0)[1]))));
+        Assert.assertEquals("John", IonicValueCodec.decode(chunkCipher.decryptToBytes(table.get(fields.get(1)[1]))));
+        Assert.assertEquals("", fields.get(2)[1]);
+        // a value which cannot be protected is refused, rather than written in the clear
+        rows.clear();
+        rows.add(new Object[] {new Object(), "Jack", 3});
+        try {
+            encoder.encode(rows);
+            Assert.fail("IonicException expected");
+        } catch (IonicException e) {
+            logger.info("[EXCEPTION EXPECTED] message: " + e.getMessage());
+        }
+    }
+
+    @Test
+    public final void test_Load() throws Exception {
+        final Properties info = new Properties();
+        info.setProperty("ionic.config.jdbc.json", "{\"Tables\": {\"personnel\": {\"IonicColumns\": {"
+                + "\"first\": {\"cattrs\": {\"classification\": [\"pii\"]}}}}}}");
+        info.setProperty("ionic.copy.threads", "2");
+        info.setProperty("ionic.copy.rows", "2");
+        final InMemoryFixture.KeyServer keyServer = new InMemoryFixture.KeyServer();
+        final ByteArrayOutputStream copied = new ByteArrayOutputStream();
+        final IonicCopyLoader loader = new IonicCopyLoader(info, InMemoryFixture.createCopyConnection(copied),
+                keyServer.getKeyServices(), "personnel", "first", "zip");
+        final List<Object[]> rows = new ArrayList<Object[]>();
+        for (int i = 0; (i < 5); ++i) {
+            rows.add(new Object[] {"first-" + i, i});
+        }
+        Assert.assertEquals(5L, loader.load(rows.iterator()));
+        // the chunks, protected in parallel, are written in input order
+        final String[] lines = new String(copied.toByteArray(), StandardCharsets.UTF_8).split("\n", 2);
+        Assert.assertEquals(loader.getSql(), lines[0]);
+        final List<String[]> fields = parse(lines[1]);
+        Assert.assertEquals(5, fields.size());
+        final ChunkCipherV2 chunkCipher = new ChunkCipherV2(keyServer.getKeyServices());
+        for (int i = 0; (i < 5); ++i) {
+            Assert.assertEquals("first-" + i, IonicValueCodec.decode(chunkCipher.decryptToBytes(fields.get(i)[0])));
+            Assert.assertEquals(Integer.toString(i), fields.get(i)[1]);
+        }
+    }
+
+    /**
+     * @param csv COPY input, of which no field contains a comma, quote or line break
+     * @return the fields of each row of the input (empty for SQL NULL)
+     */
+    private static List<String[]> parse(final String csv) {
+        final List<String[]> rows = new ArrayList<String[]>();
+        for (final String line : csv.split("\n")) {
+            rows.add(line.replace("\"", "").split(",", -1));
+        }
+        return rows;
+    }
+}
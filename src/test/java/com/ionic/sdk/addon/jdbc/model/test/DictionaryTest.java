@@ -0,0 +1,178 @@
+package com.ionic.sdk.addon.jdbc.model.test;
+
+import com.ionic.sdk.addon.jdbc.IonicDictionaryTrainer;
+import com.ionic.sdk.addon.jdbc.impl.IonicColumnConfig;
+import com.ionic.sdk.addon.jdbc.impl.IonicConfigReader;
+import com.ionic.sdk.addon.jdbc.impl.IonicDictionaries;
+import com.ionic.sdk.addon.jdbc.impl.IonicValueCodec;
+import com.ionic.sdk.error.IonicException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Logger;
+
+/**
+ * Train a compression dictionary on sample names and addresses, and measure the size reduction of the serialized
+ * values of a held out sample.
+ */
+public class DictionaryTest {
+
+    /**
+     * Class scoped logger.
+     */
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    /**
+     * The id of the dictionary registered by this test.
+     */
+    private static final int DICTIONARY_ID = 1044;
+
+    /**
+     * Sample first names.
+     */
+    private static final String[] FIRST = {
+            "James", "Mary", "Robert", "Patricia", "John", "Jennifer", "Michael", "Linda", "David", "Elizabeth",
+            "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas", "Sarah", "Christopher", "Karen"};
+
+    /**
+     * Sample last names.
+     */
+    private static final String[] LAST = {
+            "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis", "Rodriguez", "Martinez",
+            "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson", "Thomas", "Taylor", "Moore", "Jackson", "Martin"};
+
+    /**
+     * Sample street names.
+     */
+    private static final String[] STREET = {
+            "Oak", "Maple", "Cedar", "Pine", "Elm", "Washington", "Lake", "Hill", "Park", "Main", "Sunset", "Highland"};
+
+    /**
+     * Sample street types.
+     */
+    private static final String[] STREET_TYPE = {"Street", "Avenue", "Boulevard", "Drive", "Court", "Lane", "Road"};
+
+    /**
+     * Sample cities.
+     */
+    private static final String[] CITY = {
+            "Springfield, IL", "Riverside, CA", "Franklin, TN", "Greenville, SC", "Madison, WI", "Georgetown, TX",
+            "Salem, OR", "Clinton, MA", "Arlington, VA", "Fairview, NJ"};
+
+    @Test
+    public final void test_TrainedDictionary() throws IonicException, SQLException {
+        final Random random = new Random(0L);
+        final List<String> training = createValues(random, 2000);
+        final List<String> values = createValues(random, 1000);
+        final int maxSize = IonicDictionaryTrainer.DICTIONARY_SIZE_DEFAULT;
+        final byte[] dictionary = IonicDictionaryTrainer.train(training, maxSize);
+        Assert.assertTrue(dictionary.length <= maxSize);
+        IonicDictionaryTrainer.register(DICTIONARY_ID, dictionary);
+        long plainBytes = 0L;
+        long deflatedBytes = 0L;
+        long dictionaryBytes = 0L;
+        for (final String value : values) {
+            final byte[] deflated = IonicValueCodec.encode(value, 0);
+            final byte[] encoded = IonicValueCodec.encode(value, 0, DICTIONARY_ID);
+            Assert.assertEquals(value, IonicValueCodec.decode(encoded));
+            plainBytes += value.getBytes(StandardCharsets.UTF_8).length;
+            deflatedBytes += deflated.length;
+            dictionaryBytes += encoded.length;
+        }
+        final double savedDeflate = 1.0 - ((double) deflatedBytes / plainBytes);
+        final double savedDictionary = 1.0 - ((double) dictionaryBytes / plainBytes);
+        logger.info(String.format("DICTIONARY=%d, PLAIN=%d, DEFLATE=%d (%.1f%%), DICTIONARY=%d (%.1f%%)",
+                dictionary.length, plainBytes, deflatedBytes, savedDeflate * 100.0,
+                dictionaryBytes, savedDictionary * 100.0));
+        // generic compression does little for short values; a trained dictionary should save a third or more
+        Assert.assertTrue(savedDeflate < 0.1);
+        Assert.assertTrue(savedDictionary > 0.3);
+    }
+
+    @Test
+    public final void test_Registry() throws IonicException {
+        final byte[] dictionary = "Street Avenue ".getBytes(StandardCharsets.UTF_8);
+        IonicDictionaries.register(DICTIONARY_ID + 1, dictionary);
+        IonicDictionaries.register(DICTIONARY_ID + 1, dictionary.clone());
+        try {
+            IonicDictionaries.register(DICTIONARY_ID + 1, "Road ".getBytes(StandardCharsets.UTF_8));
+            Assert.fail("IonicException expected");
+        } catch (IonicException e) {
+            logger.info("[EXCEPTION EXPECTED] message: " + e.getMessage());
+        }
+        // a value compressed with an unknown dictionary cannot be decoded
+        final byte[] encoded = IonicValueCodec.encode("12 Main Street Avenue", 0, DICTIONARY_ID + 1);
+        encoded[2] = 0x7f;
+        try {
+            IonicValueCodec.decode(encoded);
+            Assert.fail("IonicException expected");
+        } catch (IonicException e) {
+            logger.info("[EXCEPTION EXPECTED] message: " + e.getMessage());
+        }
+    }
+
+    @Test
+    public final void test_ConfigScope() throws IonicException, SQLException {
+        final int id = DICTIONARY_ID + 2;
+        final String value = "12 Main Street Avenue, Springfield";
+        final String jsonA = createConfig(id, "Main Street Avenue");
+        final String jsonB = createConfig(id, "Springfield, IL");
+        // each config is parsed once; its dictionaries are scoped to it, and not registered for the process
+        Assert.assertSame(IonicConfigReader.getDictionaries(jsonA), IonicConfigReader.getDictionaries(jsonA));
+        final IonicColumnConfig columnConfigA = IonicConfigReader.createConfigs(jsonA, "SELECT 1").get(1);
+        final IonicColumnConfig columnConfigB = IonicConfigReader.createConfigs(jsonB, "SELECT 1").get(1);
+        Assert.assertArrayEquals("Main Street Avenue".getBytes(StandardCharsets.UTF_8), columnConfigA.getDictionary());
+        Assert.assertArrayEquals("Springfield, IL".getBytes(StandardCharsets.UTF_8), columnConfigB.getDictionary());
+        final byte[] encodedA = IonicValueCodec.encode(value, 0, id, columnConfigA.getDictionary());
+        final byte[] encodedB = IonicValueCodec.encode(value, 0, id, columnConfigB.getDictionary());
+        Assert.assertEquals(value, IonicValueCodec.decode(encodedA, IonicConfigReader.getDictionaries(jsonA)));
+        Assert.assertEquals(value, IonicValueCodec.decode(encodedB, IonicConfigReader.getDictionaries(jsonB)));
+        try {
+            IonicDictionaries.get(id);
+            Assert.fail("IonicException expected");
+        } catch (IonicException e) {
+            logger.info("[EXCEPTION EXPECTED] message: " + e.getMessage());
+        }
+        // the dictionaries of a config are not protected; a config must opt in to declare them
+        try {
+            IonicConfigReader.getDictionaries(jsonA.replace("\"AllowPlaintextDictionaries\": true, ", ""));
+            Assert.fail("IonicException expected");
+        } catch (IonicException e) {
+            logger.info("[EXCEPTION EXPECTED] message: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @param id         the id of the dictionary of the config
+     * @param dictionary the content of the dictionary
+     * @return an Ionic JDBC config json declaring the dictionary, and a statement with a column compressed with it
+     */
+    private static String createConfig(final int id, final String dictionary) {
+        return "{\"AllowPlaintextDictionaries\": true, \"Dictionaries\": {\"" + id + "\": \""
+                + IonicDictionaryTrainer.toConfigValue(dictionary.getBytes(StandardCharsets.UTF_8)) + "\"}, "
+                + "\"PreparedStatement\": {\"SELECT 1\": {\"IonicColumns\": {\"1\": {"
+                + "\"cattrs\": {}, \"dictionary\": " + id + "}}}}}";
+    }
+
+    /**
+     * @param random the source of randomness
+     * @param count  the number of values
+     * @return sample name and address values
+     */
+    private static List<String> createValues(final Random random, final int count) {
+        final List<String> values = new ArrayList<String>();
+        for (int i = 0; (i < count); ++i) {
+            values.add(String.format("%s %s, %d %s %s, %s %05d",
+                    FIRST[random.nextInt(FIRST.length)], LAST[random.nextInt(LAST.length)],
+                    1 + random.nextInt(9999), STREET[random.nextInt(STREET.length)],
+                    STREET_TYPE[random.nextInt(STREET_TYPE.length)], CITY[random.nextInt(CITY.length)],
+                    random.nextInt(100000)));
+        }
+        return values;
+    }
+}
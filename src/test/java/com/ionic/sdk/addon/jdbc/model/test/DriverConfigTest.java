@@ -47,4 +47,16 @@ public class DriverConfigTest {
         final IonicColumnConfig columnConfigNull = configs.get(4);
         Assert.assertNull(columnConfigNull);
     }
+
+    @Test
+    public final void test_ParseTableConfig() throws IonicException, SQLException {
+        final byte[] resourceConfigJson = DeviceUtils.read(Resource.resolve("ionic.config.jdbc.json"));
+        final String jsonString = Transcoder.utf8().encode(resourceConfigJson);
+        final Map<String, IonicColumnConfig> configs = IonicConfigReader.createTableConfigs(jsonString, "Personnel");
+        Assert.assertEquals(3, configs.size());
+        Assert.assertTrue(configs.get("first").getCattrs().get("classification").contains("pii"));
+        Assert.assertFalse(configs.get("zip").getCattrs().get("classification").contains("pii"));
+        Assert.assertNull(configs.get("department"));
+        Assert.assertTrue(IonicConfigReader.createTableConfigs(jsonString, "personnelinsecure").isEmpty());
+    }
 }
@@ -0,0 +1,96 @@
+package com.ionic.sdk.addon.jdbc.model.test;
+
+import com.ionic.sdk.addon.jdbc.impl.IonicHedgingKeyServices;
+import com.ionic.sdk.addon.jdbc.impl.IonicMetrics;
+import com.ionic.sdk.agent.request.getkey.GetKeysRequest;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+import com.ionic.sdk.key.KeyServices;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Test the hedging of key fetch requests.
+ */
+public class HedgingTest {
+
+    /**
+     * Class scoped logger.
+     */
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    @Test
+    public final void test_LoserNotInterrupted() throws Exception {
+        final InMemoryFixture.KeyServer keyServer = new InMemoryFixture.KeyServer();
+        final CountDownLatch hedgeArrived = new CountDownLatch(1);
+        final CountDownLatch loserRelease = new CountDownLatch(1);
+        final CountDownLatch loserDone = new CountDownLatch(1);
+        final AtomicBoolean loserInterrupted = new AtomicBoolean();
+        final AtomicInteger calls = new AtomicInteger();
+        // the original request completes once the hedged request arrives; the hedged request then loses
+        final KeyServices keyServices = (KeyServices) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{KeyServices.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(final Object proxy, final Method method, final Object[] args)
+                            throws Throwable {
+                        if ("getKeys".equals(method.getName())) {
+                            if (calls.incrementAndGet() == 1) {
+                                hedgeArrived.await();
+                            } else {
+                                hedgeArrived.countDown();
+                                try {
+                                    loserRelease.await();
+                                } catch (InterruptedException e) {
+                                    loserInterrupted.set(true);
+                                } finally {
+                                    loserDone.countDown();
+                                }
+                            }
+                        }
+                        try {
+                            return method.invoke(keyServer.getKeyServices(), args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    }
+                });
+        final IonicMetrics metrics = new IonicMetrics("hedge-loser");
+        final IonicHedgingKeyServices hedging = new IonicHedgingKeyServices(keyServices, metrics, 0.95, 0L);
+        final GetKeysRequest request = new GetKeysRequest();
+        request.add("key-0000001");
+        Assert.assertEquals(1, hedging.getKeys(request).getKeys().size());
+        Assert.assertEquals(1L, metrics.get(IonicHedgingKeyServices.METRIC_HEDGED));
+        loserRelease.countDown();
+        Assert.assertTrue(loserDone.await(10L, TimeUnit.SECONDS));
+        Assert.assertFalse(loserInterrupted.get());
+    }
+
+    @Test
+    public final void test_FailureLatencyRecorded() {
+        final InMemoryFixture.KeyServer keyServer = new InMemoryFixture.KeyServer();
+        keyServer.setFailure(new IonicException(SdkError.ISAGENT_ERROR, "key server unavailable"));
+        final IonicMetrics metrics = new IonicMetrics("hedge-failure");
+        final IonicHedgingKeyServices hedging = new IonicHedgingKeyServices(
+                keyServer.getKeyServices(), metrics, 0.95, TimeUnit.SECONDS.toNanos(10L));
+        final GetKeysRequest request = new GetKeysRequest();
+        request.add("key-0000001");
+        try {
+            hedging.getKeys(request);
+            Assert.fail("IonicException expected");
+        } catch (IonicException e) {
+            logger.info("[EXCEPTION EXPECTED] message: " + e.getMessage());
+        }
+        // the latency of the failed request counts towards the hedge delay
+        Assert.assertEquals(1L, metrics.get(IonicHedgingKeyServices.METRIC_LATENCY));
+    }
+}
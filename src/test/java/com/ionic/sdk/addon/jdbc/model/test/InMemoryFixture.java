@@ -0,0 +1,1014 @@
+package com.ionic.sdk.addon.jdbc.model.test;
+
+import com.ionic.sdk.agent.key.KeyAttributesMap;
+import com.ionic.sdk.agent.request.createkey.CreateKeysRequest;
+import com.ionic.sdk.agent.request.createkey.CreateKeysResponse;
+import com.ionic.sdk.agent.request.getkey.GetKeysRequest;
+import com.ionic.sdk.agent.request.getkey.GetKeysResponse;
+import com.ionic.sdk.device.profile.DeviceProfile;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.key.KeyServices;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverPropertyInfo;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory fakes of the JDBC objects of a database, and of an Ionic key server, shared by the tests which need
+ * neither.  The fakes implement the methods used by the driver; other methods throw
+ * {@link UnsupportedOperationException}, so that a test notices when the driver begins to rely on them.
+ */
+public final class InMemoryFixture {
+
+    /**
+     * The databases connected by {@link TestDriver}, by url.
+     */
+    private static final Map<String, Database> DATABASES = new ConcurrentHashMap<String, Database>();
+
+    /**
+     * Constructor.
+     */
+    private InMemoryFixture() {
+    }
+
+    /**
+     * Create an in-memory, forward-only result set.
+     *
+     * @param labels the labels of the columns
+     * @param types  the SQL types (from {@link Types}) of the columns
+     * @param rows   the values of the rows
+     * @return the result set
+     */
+    public static ResultSet createResultSet(final String[] labels, final int[] types, final List<Object[]> rows) {
+        return createResultSet(labels, types, rows, ResultSet.TYPE_FORWARD_ONLY);
+    }
+
+    /**
+     * Create an in-memory result set of a single character column.
+     *
+     * @param label  the label of the column
+     * @param values the values of the column
+     * @return the result set
+     */
+    public static ResultSet createResultSet(final String label, final List<String> values) {
+        final List<Object[]> rows = new ArrayList<Object[]>();
+        for (final String value : values) {
+            rows.add(new Object[]{value});
+        }
+        return createResultSet(new String[]{label}, new int[]{Types.VARCHAR}, rows);
+    }
+
+    /**
+     * Create an in-memory result set.
+     *
+     * @param labels the labels of the columns
+     * @param types  the SQL types (from {@link Types}) of the columns
+     * @param rows   the values of the rows
+     * @param type   the type of the result set (for example, {@link ResultSet#TYPE_SCROLL_INSENSITIVE})
+     * @return the result set
+     */
+    public static ResultSet createResultSet(final String[] labels, final int[] types, final List<Object[]> rows,
+                                            final int type) {
+        return createResultSet(labels, types, rows, type, null);
+    }
+
+    /**
+     * Create an in-memory result set, produced by a statement.
+     *
+     * @param labels    the labels of the columns
+     * @param types     the SQL types (from {@link Types}) of the columns
+     * @param rows      the values of the rows
+     * @param type      the type of the result set (for example, {@link ResultSet#TYPE_SCROLL_INSENSITIVE})
+     * @param statement the statement producing the result set (null if none)
+     * @return the result set
+     */
+    public static ResultSet createResultSet(final String[] labels, final int[] types, final List<Object[]> rows,
+                                            final int type, final Statement statement) {
+        final ResultSetMetaData metaData = (ResultSetMetaData) createProxy(ResultSetMetaData.class, new Handler() {
+            @Override
+            public Object invoke(final String name, final Object[] args) {
+                if ("getColumnCount".equals(name)) {
+                    return labels.length;
+                } else if ("getColumnLabel".equals(name) || "getColumnName".equals(name)) {
+                    return labels[((Integer) args[0]) - 1];
+                } else if ("getColumnType".equals(name)) {
+                    return types[((Integer) args[0]) - 1];
+                }
+                throw new UnsupportedOperationException(name);
+            }
+        });
+        return (ResultSet) createProxy(ResultSet.class, new Handler() {
+            private int row = 0;
+            private int fetchSize = 0;
+            private boolean wasNull = false;
+            private boolean closed = false;
+
+            @Override
+            public Object invoke(final String name, final Object[] args) throws SQLException {
+                if ("isClosed".equals(name)) {
+                    return closed;
+                } else if ("close".equals(name)) {
+                    closed = true;
+                    return null;
+                } else if (closed) {
+                    throw new SQLException("result set is closed: " + name);
+                } else if ("getMetaData".equals(name)) {
+                    return metaData;
+                } else if ("getType".equals(name)) {
+                    return type;
+                } else if ("getStatement".equals(name)) {
+                    return statement;
+                } else if ("getConcurrency".equals(name)) {
+                    return ResultSet.CONCUR_READ_ONLY;
+                } else if ("getFetchSize".equals(name)) {
+                    return fetchSize;
+                } else if ("setFetchSize".equals(name)) {
+                    fetchSize = (Integer) args[0];
+                    return null;
+                } else if ("getRow".equals(name)) {
+                    return ((row >= 1) && (row <= rows.size())) ? row : 0;
+                } else if ("findColumn".equals(name)) {
+                    return findColumn(labels, (String) args[0]);
+                } else if ("wasNull".equals(name)) {
+                    return wasNull;
+                } else if ("next".equals(name)) {
+                    return move(row + 1);
+                } else if ("previous".equals(name)) {
+                    return move(row - 1);
+                } else if ("relative".equals(name)) {
+                    return move(row + (Integer) args[0]);
+                } else if ("absolute".equals(name)) {
+                    final int rowTo = (Integer) args[0];
+                    return move((rowTo >= 0) ? rowTo : (rows.size() + 1 + rowTo));
+                } else if ("first".equals(name)) {
+                    return move(1);
+                } else if ("last".equals(name)) {
+                    return move(rows.size());
+                } else if ("beforeFirst".equals(name)) {
+                    move(0);
+                    return null;
+                } else if ("afterLast".equals(name)) {
+                    move(rows.size() + 1);
+                    return null;
+                } else if (name.startsWith("get") && (args != null) && (args.length >= 1)) {
+                    final int column = (args[0] instanceof String)
+                            ? findColumn(labels, (String) args[0]) : (Integer) args[0];
+                    if ((row < 1) || (row > rows.size())) {
+                        throw new SQLException("no current row");
+                    }
+                    final Object value = rows.get(row - 1)[column - 1];
+                    wasNull = (value == null);
+                    return toType(name, value);
+                }
+                throw new UnsupportedOperationException(name);
+            }
+
+            private boolean move(final int rowTo) throws SQLException {
+                if ((type == ResultSet.TYPE_FORWARD_ONLY) && (rowTo < row)) {
+                    throw new SQLException("result set is forward-only");
+                }
+                row = Math.max(0, Math.min(rows.size() + 1, rowTo));
+                return (row >= 1) && (row <= rows.size());
+            }
+        });
+    }
+
+    /**
+     * @param labels the labels of the columns of a result set
+     * @param label  a column label (case-insensitive)
+     * @return the ordinal of the column
+     * @throws SQLException if the result set has no such column
+     */
+    private static int findColumn(final String[] labels, final String label) throws SQLException {
+        for (int i = 0; (i < labels.length); ++i) {
+            if (labels[i].equalsIgnoreCase(label)) {
+                return i + 1;
+            }
+        }
+        throw new SQLException("no such column: " + label);
+    }
+
+    /**
+     * Convert a value of a result set to the type of a getter.
+     *
+     * @param getter the name of the getter ("getString", "getInt", ...)
+     * @param value  the value
+     * @return the value, converted to the type returned by the getter
+     */
+    private static Object toType(final String getter, final Object value) {
+        final Number number = (value instanceof Number) ? (Number) value : null;
+        if ("getString".equals(getter) || "getNString".equals(getter)) {
+            return (value == null) ? null : value.toString();
+        } else if ("getInt".equals(getter)) {
+            return (number == null) ? 0 : number.intValue();
+        } else if ("getLong".equals(getter)) {
+            return (number == null) ? 0L : number.longValue();
+        } else if ("getShort".equals(getter)) {
+            return (number == null) ? (short) 0 : number.shortValue();
+        } else if ("getByte".equals(getter)) {
+            return (number == null) ? (byte) 0 : number.byteValue();
+        } else if ("getDouble".equals(getter)) {
+            return (number == null) ? 0.0 : number.doubleValue();
+        } else if ("getFloat".equals(getter)) {
+            return (number == null) ? 0.0f : number.floatValue();
+        } else if ("getBoolean".equals(getter)) {
+            return Boolean.TRUE.equals(value);
+        }
+        return value;
+    }
+
+    /**
+     * An in-memory Ionic key server.  Keys are created on request; a request for a key not created by this server
+     * returns a key of zeros, unless the key id starts with "denied", in which case the key is withheld (as the key
+     * server withholds keys denied by policy).
+     */
+    public static final class KeyServer {
+
+        /**
+         * The prefix of the ids of keys withheld by this server.
+         */
+        public static final String DENIED = "denied";
+
+        /**
+         * The ids of the keys of each key fetch request, in order.
+         */
+        private final List<List<String>> requests;
+
+        /**
+         * The keys created by this server, by key id.
+         */
+        private final Map<String, byte[]> keys;
+
+        /**
+         * The number of key creation requests.
+         */
+        private final AtomicInteger createRequests;
+
+        /**
+         * Counts the key requests (fetch and creation) received (see {@link #awaitRequests(int)}).
+         */
+        private final Semaphore arrivals;
+
+        /**
+         * The identity of the key services of this server.
+         */
+        private final DeviceProfile deviceProfile;
+
+        /**
+         * The key services of this server.
+         */
+        private final KeyServices keyServices;
+
+        /**
+         * When set, key requests (fetch and creation) wait until it is released.
+         */
+        private volatile CountDownLatch gate;
+
+        /**
+         * When set, the failure of all requests.
+         */
+        private volatile IonicException failure;
+
+        /**
+         * Constructor.
+         */
+        public KeyServer() {
+            this("test-device");
+        }
+
+        /**
+         * Constructor.
+         *
+         * @param deviceId the Ionic identity of the key services of this server
+         */
+        public KeyServer(final String deviceId) {
+            this.requests = Collections.synchronizedList(new ArrayList<List<String>>());
+            this.keys = new ConcurrentHashMap<String, byte[]>();
+            this.createRequests = new AtomicInteger();
+            this.arrivals = new Semaphore(0);
+            this.deviceProfile = new DeviceProfile(deviceId, 0L, deviceId, "https://" + deviceId, new byte[32],
+                    new byte[32]);
+            this.keyServices = (KeyServices) createProxy(KeyServices.class, new Handler() {
+                @Override
+                public Object invoke(final String name, final Object[] args) throws IonicException {
+                    if ("createKey".equals(name)) {
+                        final KeyAttributesMap attributes = ((args != null) && (args.length > 0))
+                                ? (KeyAttributesMap) args[0] : new KeyAttributesMap();
+                        final CreateKeysRequest request = new CreateKeysRequest();
+                        request.add(new CreateKeysRequest.Key("jdbc", 1, attributes));
+                        return createKeys(request);
+                    } else if ("createKeys".equals(name)) {
+                        return createKeys((CreateKeysRequest) args[0]);
+                    } else if ("getKey".equals(name)) {
+                        final GetKeysRequest request = new GetKeysRequest();
+                        request.add((String) args[0]);
+                        return getKeys(request);
+                    } else if ("getKeys".equals(name)) {
+                        return getKeys((GetKeysRequest) args[0]);
+                    } else if ("getActiveProfile".equals(name)) {
+                        return deviceProfile;
+                    } else if ("hasActiveProfile".equals(name)) {
+                        return true;
+                    }
+                    throw new UnsupportedOperationException(name);
+                }
+            });
+        }
+
+        /**
+         * @return the key services of this server
+         */
+        public KeyServices getKeyServices() {
+            return keyServices;
+        }
+
+        /**
+         * @return the ids of the keys of each key fetch request, in order
+         */
+        public List<List<String>> getRequests() {
+            synchronized (requests) {
+                return new ArrayList<List<String>>(requests);
+            }
+        }
+
+        /**
+         * @return the number of key creation requests
+         */
+        public int getCreateRequests() {
+            return createRequests.get();
+        }
+
+        /**
+         * @return the number of keys created
+         */
+        public int getKeyCount() {
+            return keys.size();
+        }
+
+        /**
+         * Hold subsequent key requests (fetch and creation) until {@link #release()}.
+         */
+        public void hold() {
+            gate = new CountDownLatch(1);
+        }
+
+        /**
+         * Let held key fetch requests proceed.
+         */
+        public void release() {
+            final CountDownLatch gateRelease = gate;
+            gate = null;
+            if (gateRelease != null) {
+                gateRelease.countDown();
+            }
+        }
+
+        /**
+         * Wait for the arrival of key requests, fetch or creation (counted from the previous call).
+         *
+         * @param count the number of requests
+         * @throws InterruptedException if the calling thread is interrupted
+         */
+        public void awaitRequests(final int count) throws InterruptedException {
+            arrivals.acquire(count);
+        }
+
+        /**
+         * @param exception the failure of subsequent requests (null to succeed)
+         */
+        public void setFailure(final IonicException exception) {
+            this.failure = exception;
+        }
+
+        private CreateKeysResponse createKeys(final CreateKeysRequest request) throws IonicException {
+            createRequests.incrementAndGet();
+            arrive();
+            if (failure != null) {
+                throw failure;
+            }
+            final CreateKeysResponse response = new CreateKeysResponse();
+            for (final CreateKeysRequest.Key requestKey : request.getKeys()) {
+                for (int i = 0; (i < requestKey.getQuantity()); ++i) {
+                    final String keyId = String.format("test%07d", keys.size());
+                    final byte[] key = new byte[32];
+                    Arrays.fill(key, (byte) keyId.hashCode());
+                    keys.put(keyId, key);
+                    final CreateKeysResponse.Key responseKey = new CreateKeysResponse.Key();
+                    responseKey.setId(keyId);
+                    responseKey.setKey(key);
+                    responseKey.setAttributesMap(requestKey.getAttributesMap());
+                    responseKey.setMutableAttributesMap(requestKey.getMutableAttributesMap());
+                    responseKey.setRefId(requestKey.getRefId());
+                    responseKey.setDeviceId(deviceProfile.getDeviceId());
+                    response.add(responseKey);
+                }
+            }
+            return response;
+        }
+
+        /**
+         * Count the arrival of a key request, and hold it while the server is held.
+         */
+        private void arrive() {
+            arrivals.release();
+            final CountDownLatch gateRequest = gate;
+            if (gateRequest != null) {
+                try {
+                    gateRequest.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        private GetKeysResponse getKeys(final GetKeysRequest request) throws IonicException {
+            requests.add(new ArrayList<String>(request.getKeyIds()));
+            arrive();
+            if (failure != null) {
+                throw failure;
+            }
+            final GetKeysResponse response = new GetKeysResponse();
+            for (final String keyId : request.getKeyIds()) {
+                if (!keyId.startsWith(DENIED)) {
+                    final byte[] key = keys.get(keyId);
+                    final GetKeysResponse.Key responseKey = new GetKeysResponse.Key();
+                    responseKey.setId(keyId);
+                    responseKey.setKey((key == null) ? new byte[32] : key);
+                    responseKey.setAttributesMap(new KeyAttributesMap());
+                    responseKey.setMutableAttributesMap(new KeyAttributesMap());
+                    responseKey.setDeviceId(deviceProfile.getDeviceId());
+                    response.add(responseKey);
+                }
+            }
+            return response;
+        }
+    }
+
+    /**
+     * An in-memory database.  The statements of its connections are answered by a {@link Responder}; each statement
+     * execution is recorded.  As with a real database, a statement with unbound parameters fails.
+     */
+    public static final class Database {
+
+        /**
+         * The nominal url of the database.
+         */
+        private final String url;
+
+        /**
+         * Answers the statements executed against the database.
+         */
+        private final Responder responder;
+
+        /**
+         * The statements executed against the database, in order.
+         */
+        private final List<Execution> executions;
+
+        /**
+         * The number of connections opened.
+         */
+        private final AtomicInteger connections;
+
+        /**
+         * The number of statement batches executed.
+         */
+        private final AtomicInteger batches;
+
+        /**
+         * The number of commits (of all connections).
+         */
+        private final AtomicInteger commits;
+
+        /**
+         * The number of rollbacks, including rollbacks to a savepoint (of all connections).
+         */
+        private final AtomicInteger rollbacks;
+
+        /**
+         * Constructor.
+         *
+         * @param url       the nominal url of the database
+         * @param responder answers the statements executed against the database
+         */
+        public Database(final String url, final Responder responder) {
+            this.url = url;
+            this.responder = responder;
+            this.executions = Collections.synchronizedList(new ArrayList<Execution>());
+            this.connections = new AtomicInteger();
+            this.batches = new AtomicInteger();
+            this.commits = new AtomicInteger();
+            this.rollbacks = new AtomicInteger();
+            DATABASES.put(url, this);
+        }
+
+        /**
+         * @return the statements executed against the database, in order
+         */
+        public List<Execution> getExecutions() {
+            synchronized (executions) {
+                return new ArrayList<Execution>(executions);
+            }
+        }
+
+        /**
+         * @return the number of statement batches executed
+         */
+        public int getBatches() {
+            return batches.get();
+        }
+
+        /**
+         * @return the number of commits (of all connections)
+         */
+        public int getCommits() {
+            return commits.get();
+        }
+
+        /**
+         * @return the number of rollbacks, including rollbacks to a savepoint (of all connections)
+         */
+        public int getRollbacks() {
+            return rollbacks.get();
+        }
+
+        /**
+         * @return the number of connections opened
+         */
+        public int getConnections() {
+            return connections.get();
+        }
+
+        /**
+         * @return a new connection to the database
+         */
+        public Connection connect() {
+            connections.incrementAndGet();
+            final Connection[] connection = new Connection[1];
+            final DatabaseMetaData metaData = (DatabaseMetaData) createProxy(DatabaseMetaData.class, new Handler() {
+                @Override
+                public Object invoke(final String name, final Object[] args) {
+                    if ("getURL".equals(name)) {
+                        return url;
+                    } else if ("getIdentifierQuoteString".equals(name)) {
+                        return "\"";
+                    } else if ("storesLowerCaseIdentifiers".equals(name)) {
+                        return true;
+                    } else if ("storesUpperCaseIdentifiers".equals(name)) {
+                        return false;
+                    } else if ("getDatabaseProductName".equals(name)) {
+                        return "InMemory";
+                    } else if ("getConnection".equals(name)) {
+                        return connection[0];
+                    }
+                    throw new UnsupportedOperationException(name);
+                }
+            });
+            connection[0] = (Connection) createProxy(Connection.class, new Handler() {
+                private boolean autoCommit = true;
+                private boolean closed = false;
+
+                @Override
+                public Object invoke(final String name, final Object[] args) throws SQLException {
+                    if ("isClosed".equals(name)) {
+                        return closed;
+                    } else if ("close".equals(name)) {
+                        closed = true;
+                        return null;
+                    } else if (closed) {
+                        throw new SQLException("connection is closed: " + name);
+                    } else if ("createStatement".equals(name)) {
+                        return createStatement(Statement.class, connection[0], null);
+                    } else if ("prepareStatement".equals(name)) {
+                        return createStatement(PreparedStatement.class, connection[0], (String) args[0]);
+                    } else if ("getMetaData".equals(name)) {
+                        return metaData;
+                    } else if ("getAutoCommit".equals(name)) {
+                        return autoCommit;
+                    } else if ("setAutoCommit".equals(name)) {
+                        autoCommit = (Boolean) args[0];
+                        return null;
+                    } else if ("commit".equals(name)) {
+                        commits.incrementAndGet();
+                        return null;
+                    } else if ("rollback".equals(name)) {
+                        rollbacks.incrementAndGet();
+                        return null;
+                    } else if ("setSavepoint".equals(name)) {
+                        return createProxy(Savepoint.class, new Handler() {
+                            @Override
+                            public Object invoke(final String name, final Object[] args) {
+                                throw new UnsupportedOperationException(name);
+                            }
+                        });
+                    } else if ("releaseSavepoint".equals(name)) {
+                        return null;
+                    } else if ("nativeSQL".equals(name)) {
+                        return args[0];
+                    } else if ("isValid".equals(name)) {
+                        return true;
+                    }
+                    throw new UnsupportedOperationException(name);
+                }
+            });
+            return connection[0];
+        }
+
+        /**
+         * Create a statement of a connection.
+         *
+         * @param type       the type of the statement
+         * @param connection the connection of the statement
+         * @param sql        the SQL of a prepared statement (null for a statement)
+         * @return the statement
+         */
+        private Statement createStatement(final Class<? extends Statement> type, final Connection connection,
+                                          final String sql) {
+            final int parameterCount = (sql == null) ? 0 : countParameters(sql);
+            final ParameterMetaData parameterMetaData = (ParameterMetaData) createProxy(ParameterMetaData.class,
+                    new Handler() {
+                        @Override
+                        public Object invoke(final String name, final Object[] args) {
+                            if ("getParameterCount".equals(name)) {
+                                return parameterCount;
+                            }
+                            throw new UnsupportedOperationException(name);
+                        }
+                    });
+            return (Statement) createProxy(type, new Handler() {
+                private final Map<Integer, Object> parameters = new HashMap<Integer, Object>();
+                private final List<Map<Integer, Object>> batch = new ArrayList<Map<Integer, Object>>();
+                private final List<String> batchSql = new ArrayList<String>();
+                private Object result;
+                private int fetchSize;
+                private boolean closed;
+
+                @Override
+                public Object invoke(final String name, final Object[] args) throws SQLException {
+                    final int countArgs = (args == null) ? 0 : args.length;
+                    if ("isClosed".equals(name)) {
+                        return closed;
+                    } else if ("close".equals(name)) {
+                        closed = true;
+                        return null;
+                    } else if (closed) {
+                        throw new SQLException("statement is closed: " + name);
+                    } else if ("getConnection".equals(name)) {
+                        return connection;
+                    } else if ("getParameterMetaData".equals(name)) {
+                        return parameterMetaData;
+                    } else if ("setFetchSize".equals(name)) {
+                        fetchSize = (Integer) args[0];
+                        return null;
+                    } else if ("getFetchSize".equals(name)) {
+                        return fetchSize;
+                    } else if ("setNull".equals(name)) {
+                        parameters.put((Integer) args[0], NULL);
+                        return null;
+                    } else if (name.startsWith("set") && (countArgs >= 2) && (args[0] instanceof Integer)
+                            && !"setQueryTimeout".equals(name) && !"setMaxRows".equals(name)) {
+                        parameters.put((Integer) args[0], (args[1] == null) ? NULL : args[1]);
+                        return null;
+                    } else if (name.startsWith("set") || "closeOnCompletion".equals(name)
+                            || "clearWarnings".equals(name)) {
+                        return null;
+                    } else if ("clearParameters".equals(name)) {
+                        parameters.clear();
+                        return null;
+                    } else if ("addBatch".equals(name)) {
+                        if (countArgs == 0) {
+                            batch.add(new HashMap<Integer, Object>(parameters));
+                        } else {
+                            batchSql.add((String) args[0]);
+                        }
+                        return null;
+                    } else if ("clearBatch".equals(name)) {
+                        batch.clear();
+                        batchSql.clear();
+                        return null;
+                    } else if ("executeBatch".equals(name)) {
+                        return executeBatch();
+                    } else if (name.startsWith("execute")) {
+                        result = respond((countArgs == 0) ? sql : (String) args[0],
+                                (countArgs == 0) ? parameters : new HashMap<Integer, Object>(), fetchSize);
+                        if ("executeQuery".equals(name)) {
+                            if (!(result instanceof ResultSet)) {
+                                throw new SQLException("not a query: " + sql);
+                            }
+                            return result;
+                        } else if ("execute".equals(name)) {
+                            return (result instanceof ResultSet);
+                        }
+                        return (result instanceof Integer) ? result : 0;
+                    } else if ("getResultSet".equals(name)) {
+                        return (result instanceof ResultSet) ? result : null;
+                    } else if ("getUpdateCount".equals(name)) {
+                        return (result instanceof Integer) ? result : -1;
+                    } else if ("getMoreResults".equals(name)) {
+                        return false;
+                    } else if ("getWarnings".equals(name)) {
+                        return null;
+                    }
+                    throw new UnsupportedOperationException(name);
+                }
+
+                private int[] executeBatch() throws SQLException {
+                    final List<Integer> counts = new ArrayList<Integer>();
+                    batches.incrementAndGet();
+                    try {
+                        for (final Map<Integer, Object> row : batch) {
+                            counts.add((Integer) respond(sql, row, fetchSize));
+                        }
+                        for (final String sqlBatch : batchSql) {
+                            counts.add((Integer) respond(sqlBatch, new HashMap<Integer, Object>(), fetchSize));
+                        }
+                    } catch (SQLException e) {
+                        throw new BatchUpdateException(e.getMessage(), toArray(counts), e);
+                    } finally {
+                        batch.clear();
+                        batchSql.clear();
+                    }
+                    return toArray(counts);
+                }
+
+                private Object respond(final String sqlExecute, final Map<Integer, Object> values,
+                                       final int fetchSizeExecute) throws SQLException {
+                    final int count = (sqlExecute == sql) ? parameterCount : 0;
+                    final List<Object> valuesExecute = new ArrayList<Object>();
+                    for (int i = 1; (i <= count); ++i) {
+                        if (!values.containsKey(i)) {
+                            throw new SQLException("No value specified for parameter " + i + ": " + sqlExecute);
+                        }
+                        final Object value = values.get(i);
+                        valuesExecute.add((value == NULL) ? null : value);
+                    }
+                    executions.add(new Execution(sqlExecute, valuesExecute, fetchSizeExecute));
+                    final Object response = responder.respond(sqlExecute, valuesExecute);
+                    return (response == null) ? 0 : response;
+                }
+            });
+        }
+
+        /**
+         * @param sql the SQL of a statement
+         * @return the number of parameter markers in the statement (outside of quoted text)
+         */
+        private static int countParameters(final String sql) {
+            int count = 0;
+            boolean quoted = false;
+            for (int i = 0; (i < sql.length()); ++i) {
+                final char c = sql.charAt(i);
+                quoted = (c == '\'') != quoted;
+                count += ((c == '?') && !quoted) ? 1 : 0;
+            }
+            return count;
+        }
+
+        private static int[] toArray(final List<Integer> values) {
+            final int[] array = new int[values.size()];
+            for (int i = 0; (i < array.length); ++i) {
+                array[i] = values.get(i);
+            }
+            return array;
+        }
+    }
+
+    /**
+     * A JDBC driver connecting to the {@link Database} most recently created with the requested url; used where the
+     * driver under test opens connections of the wrapped driver itself (property "driverClassName").
+     */
+    public static final class TestDriver implements java.sql.Driver {
+
+        @Override
+        public Connection connect(final String url, final Properties info) {
+            final Database database = DATABASES.get(url);
+            return (database == null) ? null : database.connect();
+        }
+
+        @Override
+        public boolean acceptsURL(final String url) {
+            return DATABASES.containsKey(url);
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(final String url, final Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 0;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+    }
+
+    /**
+     * Create a connection of the PostgreSQL driver, which accepts "COPY ... FROM STDIN" operations (only).
+     *
+     * @param copied receives the SQL of each COPY operation, followed by the input of the operation
+     * @return the connection
+     */
+    public static Connection createCopyConnection(final ByteArrayOutputStream copied) {
+        final Handler handlerCopyIn = new Handler() {
+            private boolean active = true;
+
+            @Override
+            public Object invoke(final String name, final Object[] args) {
+                if ("writeToCopy".equals(name)) {
+                    copied.write((byte[]) args[0], (Integer) args[1], (Integer) args[2]);
+                    return null;
+                } else if ("endCopy".equals(name) || "cancelCopy".equals(name)) {
+                    active = false;
+                    final String text = new String(copied.toByteArray(), StandardCharsets.UTF_8);
+                    return "endCopy".equals(name) ? (long) (text.split("\n", -1).length - 2) : null;
+                } else if ("isActive".equals(name)) {
+                    return active;
+                }
+                throw new UnsupportedOperationException(name);
+            }
+        };
+        final BaseConnection baseConnection = (BaseConnection) createProxy(BaseConnection.class, new Handler() {
+            @Override
+            public Object invoke(final String name, final Object[] args) {
+                if ("getEncoding".equals(name) || "getQueryExecutor".equals(name)) {
+                    return null;
+                }
+                throw new UnsupportedOperationException(name);
+            }
+        });
+        final PGConnection pgConnection = (PGConnection) createProxy(PGConnection.class, new Handler() {
+            @Override
+            public Object invoke(final String name, final Object[] args) throws SQLException {
+                if ("getCopyAPI".equals(name)) {
+                    return new CopyManager(baseConnection) {
+                        @Override
+                        public CopyIn copyIn(final String sql) {
+                            final byte[] bytes = (sql + "\n").getBytes(StandardCharsets.UTF_8);
+                            copied.write(bytes, 0, bytes.length);
+                            return (CopyIn) createProxy(CopyIn.class, handlerCopyIn);
+                        }
+                    };
+                }
+                throw new UnsupportedOperationException(name);
+            }
+        });
+        return (Connection) createProxy(Connection.class, new Handler() {
+            @Override
+            public Object invoke(final String name, final Object[] args) {
+                if ("unwrap".equals(name) && (args[0] == PGConnection.class)) {
+                    return pgConnection;
+                }
+                throw new UnsupportedOperationException(name);
+            }
+        });
+    }
+
+    /**
+     * Answers the statements executed against a {@link Database}.
+     */
+    public interface Responder {
+
+        /**
+         * Execute a statement.
+         *
+         * @param sql        the SQL of the statement
+         * @param parameters the values of the parameters of the statement (null for SQL NULL)
+         * @return the result of a query ({@link ResultSet}), or the update count of an update (Integer; null for 0)
+         * @throws SQLException to fail the statement
+         */
+        Object respond(String sql, List<Object> parameters) throws SQLException;
+    }
+
+    /**
+     * A statement executed against a {@link Database}.
+     */
+    public static final class Execution {
+
+        /**
+         * The SQL of the statement.
+         */
+        private final String sql;
+
+        /**
+         * The values of the parameters of the statement.
+         */
+        private final List<Object> parameters;
+
+        /**
+         * The fetch size of the statement.
+         */
+        private final int fetchSize;
+
+        private Execution(final String sql, final List<Object> parameters, final int fetchSize) {
+            this.sql = sql;
+            this.parameters = parameters;
+            this.fetchSize = fetchSize;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public List<Object> getParameters() {
+            return parameters;
+        }
+
+        public int getFetchSize() {
+            return fetchSize;
+        }
+    }
+
+    /**
+     * Marks a parameter bound to SQL NULL.
+     */
+    private static final Object NULL = new Object();
+
+    /**
+     * Answers the calls of a fake object, by method name.
+     */
+    private interface Handler {
+
+        /**
+         * @param name the name of the method called
+         * @param args the arguments of the call (null if none)
+         * @return the result of the call
+         * @throws Exception as thrown by the method
+         */
+        Object invoke(String name, Object[] args) throws Exception;
+    }
+
+    /**
+     * Create a fake object.  The methods of {@link Object} are answered with identity semantics.
+     *
+     * @param type    the interface implemented by the fake
+     * @param handler answers the calls of the other methods of the interface
+     * @return the fake object
+     */
+    private static Object createProxy(final Class<?> type, final Handler handler) {
+        return Proxy.newProxyInstance(InMemoryFixture.class.getClassLoader(), new Class<?>[]{type},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(final Object proxy, final Method method, final Object[] args)
+                            throws Throwable {
+                        final String name = method.getName();
+                        if ("equals".equals(name) && (method.getParameterCount() == 1)) {
+                            return proxy == args[0];
+                        } else if ("hashCode".equals(name) && (method.getParameterCount() == 0)) {
+                            return System.identityHashCode(proxy);
+                        } else if ("toString".equals(name) && (method.getParameterCount() == 0)) {
+                            return type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+                        }
+                        try {
+                            return handler.invoke(name, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    }
+                });
+    }
+}
@@ -0,0 +1,169 @@
+package com.ionic.sdk.addon.jdbc.model.test;
+
+import com.ionic.sdk.addon.jdbc.IonicPreparedStatement;
+import com.ionic.sdk.addon.jdbc.impl.IonicInsertRewriter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Test rewriting of single row insert statements into multi-row insert statements.
+ */
+public class InsertRewriterTest {
+
+    /**
+     * Class scoped logger.
+     */
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    /**
+     * The insert statement of the batch tests; the first column is protected.
+     */
+    private static final String SQL = "INSERT INTO personnel (first, last, zip) VALUES (?, ?, ?)";
+
+    /**
+     * The Ionic JDBC configuration of the batch tests.
+     */
+    private static final String CONFIG = "{\"PreparedStatement\": {\"" + SQL + "\": {\"IonicColumns\": {"
+            + "\"1\": {\"cattrs\": {\"classification\": [\"pii\"]}}}}}}";
+
+    @Test
+    public final void test_Rewrite() {
+        final String sql = "INSERT INTO personnel (first, last, zip, department) VALUES (?, ?, ?, ?)";
+        final IonicInsertRewriter rewriter = IonicInsertRewriter.create(sql, 4);
+        Assert.assertNotNull(rewriter);
+        Assert.assertEquals(sql, rewriter.getSql(1));
+        Assert.assertEquals("INSERT INTO personnel (first, last, zip, department) VALUES (?, ?, ?, ?), (?, ?, ?, ?)",
+                rewriter.getSql(2));
+        Assert.assertEquals(8191, rewriter.getMaxRows(100000));
+        final IonicInsertRewriter rewriterExpression = IonicInsertRewriter.create(
+                "insert into t (a, b) values (?, lower(?));", 2);
+        Assert.assertNotNull(rewriterExpression);
+        Assert.assertEquals("insert into t (a, b) VALUES (?, lower(?)), (?, lower(?))", rewriterExpression.getSql(2));
+    }
+
+    @Test
+    public final void test_NotRewritable() {
+        Assert.assertNull(IonicInsertRewriter.create(
+                "INSERT INTO personnel (first, last, zip, department) VALUES (?, ?, ?, ?) RETURNING id", 4));
+        Assert.assertNull(IonicInsertRewriter.create("UPDATE personnel SET last = ? WHERE ID = ?", 2));
+        Assert.assertNull(IonicInsertRewriter.create("INSERT INTO t (a, b) VALUES (?, '?')", 1));
+        Assert.assertNull(IonicInsertRewriter.create("INSERT INTO t (a) VALUES (?), (?)", 2));
+        Assert.assertNull(IonicInsertRewriter.create("INSERT INTO t (a) VALUES (?) ON CONFLICT (a) DO NOTHING", 1));
+        Assert.assertNull(IonicInsertRewriter.create("INSERT INTO t (a) SELECT ? FROM u", 1));
+        Assert.assertNull(IonicInsertRewriter.create("INSERT INTO t (a, b) VALUES (?, ?)", 3));
+    }
+
+    @Test
+    public final void test_BatchNulls() throws SQLException {
+        final InMemoryFixture.Database database = createDatabase();
+        final Connection connection = database.connect();
+        final PreparedStatement statement = new IonicPreparedStatement(connection.prepareStatement(SQL), SQL,
+                CONFIG, new InMemoryFixture.KeyServer().getKeyServices(), 2);
+        addRow(statement, "Jane", "Doe", 12345);
+        // SQL NULL, in protected and unprotected columns, is sent as NULL (and not left unbound)
+        statement.setString(1, null);
+        statement.setString(2, null);
+        statement.setObject(3, null);
+        statement.addBatch();
+        statement.setNull(1, Types.VARCHAR);
+        statement.setBytes(2, null);
+        statement.setInt(3, 67890);
+        statement.addBatch();
+        Assert.assertArrayEquals(new int[]{1, 1, 1}, statement.executeBatch());
+        final List<InMemoryFixture.Execution> executions = database.getExecutions();
+        Assert.assertEquals(2, executions.size());
+        final List<Object> parameters = executions.get(0).getParameters();
+        Assert.assertTrue(((String) parameters.get(0)).startsWith("~!2!"));
+        Assert.assertEquals(Arrays.asList("Doe", 12345, null, null, null), parameters.subList(1, 6));
+        Assert.assertEquals(Arrays.asList(null, null, 67890), executions.get(1).getParameters());
+        statement.close();
+    }
+
+    @Test
+    public final void test_BatchFailure() throws SQLException {
+        final InMemoryFixture.Database database = createDatabase();
+        final Connection connection = database.connect();
+        final PreparedStatement statement = new IonicPreparedStatement(connection.prepareStatement(SQL), SQL,
+                CONFIG, new InMemoryFixture.KeyServer().getKeyServices(), 2);
+        addRow(statement, "Jane", "Doe", 12345);
+        addRow(statement, "John", "Doe", 12345);
+        addRow(statement, "Jack", "fail", 12345);
+        // the update counts of the rows sent before the failure are reported
+        try {
+            statement.executeBatch();
+            Assert.fail("BatchUpdateException expected");
+        } catch (BatchUpdateException e) {
+            Assert.assertArrayEquals(new int[]{1, 1}, e.getUpdateCounts());
+            logger.info("[EXCEPTION EXPECTED] message: " + e.getMessage());
+        }
+        // the batch is cleared by its execution
+        Assert.assertArrayEquals(new int[0], statement.executeBatch());
+        statement.close();
+    }
+
+    @Test
+    public final void test_BatchRowsIndependent() throws SQLException {
+        // with and without multi-row insert, a parameter not set for a row is not carried over from the previous row
+        for (final int batchRows : new int[]{0, 2}) {
+            final InMemoryFixture.Database database = createDatabase();
+            final PreparedStatement statement = new IonicPreparedStatement(database.connect().prepareStatement(SQL),
+                    SQL, CONFIG, new InMemoryFixture.KeyServer().getKeyServices(), batchRows);
+            addRow(statement, "Jane", "Doe", 12345);
+            statement.setString(2, "Roe");
+            statement.setInt(3, 67890);
+            statement.addBatch();
+            try {
+                statement.executeBatch();
+                Assert.fail("BatchUpdateException expected");
+            } catch (BatchUpdateException e) {
+                logger.info("[EXCEPTION EXPECTED] message: " + e.getMessage());
+            }
+            for (final InMemoryFixture.Execution execution : database.getExecutions()) {
+                Assert.assertFalse(execution.getParameters().contains("Roe"));
+            }
+            statement.close();
+        }
+    }
+
+    /**
+     * Add a row to the batch of a statement.
+     *
+     * @param statement the statement
+     * @param first     the value of the first (protected) column
+     * @param last      the value of the second column
+     * @param zip       the value of the third column
+     * @throws SQLException on database errors
+     */
+    private static void addRow(final PreparedStatement statement, final String first, final String last,
+                               final int zip) throws SQLException {
+        statement.setString(1, first);
+        statement.setString(2, last);
+        statement.setInt(3, zip);
+        statement.addBatch();
+    }
+
+    /**
+     * @return an in-memory database, which inserts the rows of the batch tests, and fails rows with a column value
+     * of "fail"
+     */
+    private static InMemoryFixture.Database createDatabase() {
+        return new InMemoryFixture.Database("jdbc:test:rewrite", new InMemoryFixture.Responder() {
+            @Override
+            public Object respond(final String sql, final List<Object> parameters) throws SQLException {
+                if (parameters.contains("fail")) {
+                    throw new SQLException("row rejected");
+                }
+                return parameters.size() / 3;
+            }
+        });
+    }
+}
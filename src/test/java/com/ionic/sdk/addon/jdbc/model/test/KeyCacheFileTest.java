@@ -0,0 +1,182 @@
+package com.ionic.sdk.addon.jdbc.model.test;
+
+import com.ionic.sdk.addon.jdbc.impl.IonicCachedKey;
+import com.ionic.sdk.addon.jdbc.impl.IonicKeyCache;
+import com.ionic.sdk.addon.jdbc.impl.IonicKeyCacheFile;
+import com.ionic.sdk.agent.key.KeyAttributesMap;
+import com.ionic.sdk.error.IonicException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Test persistence of Ionic keys in the driver's on-disk key cache.
+ */
+public class KeyCacheFileTest {
+
+    /**
+     * Class scoped logger.
+     */
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    /**
+     * The filesystem location of the key cache used by the test.
+     */
+    private File file;
+
+    /**
+     * Set up for each test case to be run.
+     *
+     * @throws IOException on failure to create temporary file
+     */
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("ionic.keycache.", ".bin");
+        Assert.assertTrue(file.delete());
+    }
+
+    /**
+     * Clean up after each test case.
+     */
+    @After
+    public void tearDown() {
+        Assert.assertTrue(file.delete());
+    }
+
+    @Test
+    public final void test_PersistAcrossReopen() throws IonicException {
+        final byte[] wrappingKey = new byte[32];
+        final long now = System.currentTimeMillis();
+        final IonicKeyCacheFile cacheFile = new IonicKeyCacheFile(file, wrappingKey);
+        cacheFile.append(toCachedKey("ABCDEFG1", now + 60000L));
+        cacheFile.append(toCachedKey("ABCDEFG2", now - 1L));
+        cacheFile.append(toCachedKey("ABCDEFG3", now + 60000L));
+        cacheFile.close();
+
+        final IonicKeyCacheFile cacheFileReopen = new IonicKeyCacheFile(file, wrappingKey);
+        final Map<String, IonicCachedKey> keys = cacheFileReopen.load(now);
+        Assert.assertEquals(3, cacheFileReopen.getRecordCount());
+        Assert.assertEquals(2, keys.size());
+        final IonicCachedKey cachedKey = keys.get("ABCDEFG1");
+        Assert.assertNotNull(cachedKey);
+        Assert.assertArrayEquals(toKeyBytes("ABCDEFG1"), cachedKey.getKey());
+        Assert.assertEquals(Arrays.asList("pii"), cachedKey.getAttributes().get("classification"));
+        Assert.assertNull(keys.get("ABCDEFG2"));
+
+        // compaction drops expired records; appends continue after the compacted content
+        cacheFileReopen.rewrite(new ArrayList<IonicCachedKey>(keys.values()));
+        Assert.assertEquals(2, cacheFileReopen.getRecordCount());
+        cacheFileReopen.append(toCachedKey("ABCDEFG4", now + 60000L));
+        cacheFileReopen.close();
+
+        final IonicKeyCacheFile cacheFileCompact = new IonicKeyCacheFile(file, wrappingKey);
+        Assert.assertEquals(3, cacheFileCompact.load(now).size());
+        cacheFileCompact.close();
+    }
+
+    @Test
+    public final void test_WrongWrappingKey() throws IonicException {
+        final long now = System.currentTimeMillis();
+        final IonicKeyCacheFile cacheFile = new IonicKeyCacheFile(file, new byte[32]);
+        cacheFile.append(toCachedKey("ABCDEFG1", now + 60000L));
+        cacheFile.close();
+
+        final byte[] wrappingKeyOther = new byte[32];
+        wrappingKeyOther[0] = 1;
+        final IonicKeyCacheFile cacheFileOther = new IonicKeyCacheFile(file, wrappingKeyOther);
+        Assert.assertTrue(cacheFileOther.load(now).isEmpty());
+        cacheFileOther.close();
+    }
+
+    @Test
+    public final void test_LockedWhileOpen() throws IonicException {
+        final IonicKeyCacheFile cacheFile = new IonicKeyCacheFile(file, new byte[32]);
+        try {
+            new IonicKeyCacheFile(file, new byte[32]);
+            Assert.fail("IonicException expected");
+        } catch (IonicException e) {
+            logger.info("[EXCEPTION EXPECTED] message: " + e.getMessage());
+        }
+        // the lock is held across compaction, and released on close
+        cacheFile.rewrite(new ArrayList<IonicCachedKey>());
+        try {
+            new IonicKeyCacheFile(file, new byte[32]);
+            Assert.fail("IonicException expected");
+        } catch (IonicException e) {
+            logger.info("[EXCEPTION EXPECTED] message: " + e.getMessage());
+        }
+        cacheFile.close();
+        new IonicKeyCacheFile(file, new byte[32]).close();
+    }
+
+    @Test
+    public final void test_RewriteFailure() throws IonicException {
+        final long now = System.currentTimeMillis();
+        final IonicKeyCacheFile cacheFile = new IonicKeyCacheFile(file, new byte[32]);
+        cacheFile.append(toCachedKey("ABCDEFG1", now + 60000L));
+        // the replacement file cannot be written; the file remains open, with its content
+        final File fileCompact = new File(file.getPath() + ".compact");
+        Assert.assertTrue(fileCompact.mkdir());
+        try {
+            cacheFile.rewrite(new ArrayList<IonicCachedKey>());
+            Assert.fail("IonicException expected");
+        } catch (IonicException e) {
+            logger.info("[EXCEPTION EXPECTED] message: " + e.getMessage());
+        } finally {
+            Assert.assertTrue(fileCompact.delete());
+        }
+        cacheFile.append(toCachedKey("ABCDEFG2", now + 60000L));
+        Assert.assertEquals(2, cacheFile.getRecordCount());
+        cacheFile.close();
+        // once released, the file is not written
+        try {
+            cacheFile.append(toCachedKey("ABCDEFG3", now + 60000L));
+            Assert.fail("IonicException expected");
+        } catch (IonicException e) {
+            logger.info("[EXCEPTION EXPECTED] message: " + e.getMessage());
+        }
+        Assert.assertTrue(cacheFile.load(now).isEmpty());
+    }
+
+    @Test
+    public final void test_InstanceBySettings() throws IonicException {
+        final String identity = "keycache-settings";
+        final IonicKeyCache keyCache = IonicKeyCache.getInstance(identity, null, null, 1000L, 0L);
+        Assert.assertSame(keyCache, IonicKeyCache.getInstance(identity, null, null, 1000L, 0L));
+        final IonicKeyCache keyCacheOther = IonicKeyCache.getInstance(identity, null, null, 2000L, 0L);
+        Assert.assertNotSame(keyCache, keyCacheOther);
+        Assert.assertEquals(2000L, keyCacheOther.getTtl());
+        // a file backs a single cache; a request for the file with other settings is rejected
+        final String location = file.getPath();
+        IonicKeyCache.getInstance(identity, location, new byte[32], 1000L, 0L);
+        Assert.assertSame(IonicKeyCache.getInstance(identity, location, new byte[32], 1000L, 0L),
+                IonicKeyCache.getInstance(identity, location, new byte[32], 1000L, 0L));
+        try {
+            IonicKeyCache.getInstance(identity, location, new byte[32], 2000L, 0L);
+            Assert.fail("IonicException expected");
+        } catch (IonicException e) {
+            logger.info("[EXCEPTION EXPECTED] message: " + e.getMessage());
+        }
+    }
+
+    private static IonicCachedKey toCachedKey(final String keyId, final long expiry) {
+        final KeyAttributesMap attributes = new KeyAttributesMap();
+        attributes.put("classification", new ArrayList<String>(Arrays.asList("pii")));
+        return new IonicCachedKey(keyId, toKeyBytes(keyId), attributes, new KeyAttributesMap(), expiry);
+    }
+
+    private static byte[] toKeyBytes(final String keyId) {
+        final byte[] key = new byte[32];
+        final byte[] id = keyId.getBytes();
+        System.arraycopy(id, 0, key, 0, id.length);
+        return key;
+    }
+}
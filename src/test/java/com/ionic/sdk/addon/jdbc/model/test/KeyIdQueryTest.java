@@ -0,0 +1,144 @@
+package com.ionic.sdk.addon.jdbc.model.test;
+
+import com.ionic.sdk.addon.jdbc.IonicConnection;
+import com.ionic.sdk.addon.jdbc.impl.IonicKeyIdQuery;
+import com.ionic.sdk.addon.jdbc.impl.IonicPrefetchKeyServices;
+import com.ionic.sdk.error.IonicException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * Test the fetch of the keys of a query result ahead of the query.
+ */
+public class KeyIdQueryTest {
+
+    /**
+     * Class scoped logger.
+     */
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    /**
+     * The Ionic JDBC config json of the test, which protects two columns of the table "personnel".
+     */
+    private static final String CONFIG_JSON = "{\"Tables\": {\"personnel\": {\"IonicColumns\": {"
+            + "\"first\": {\"cattrs\": {\"classification\": [\"pii\"]}},"
+            + " \"zip\": {\"cattrs\": {\"classification\": [\"zip\"]}}}}}}";
+
+    @Test
+    public final void test_ToSql() {
+        final String sql = IonicKeyIdQuery.toSql("SELECT * FROM personnel WHERE id < 10",
+                Arrays.asList("first", "zip"), IonicKeyIdQuery.KEYID_DEFAULT);
+        Assert.assertEquals("SELECT SUBSTRING(first, 5, 11) AS key_id FROM (SELECT * FROM personnel WHERE id < 10)"
+                + " ionic_query WHERE first LIKE '~!2!%' UNION SELECT SUBSTRING(zip, 5, 11) AS key_id FROM"
+                + " (SELECT * FROM personnel WHERE id < 10) ionic_query WHERE zip LIKE '~!2!%'", sql);
+    }
+
+    @Test
+    public final void test_Prefetch() throws IonicException, SQLException {
+        final Properties info = new Properties();
+        info.setProperty("ionic.config.jdbc.json", CONFIG_JSON);
+        info.setProperty("ionic.prefetch.keys", "2");
+        final InMemoryFixture.Database database = new InMemoryFixture.Database("jdbc:test:keyid",
+                new InMemoryFixture.Responder() {
+                    @Override
+                    public Object respond(final String sql, final List<Object> parameters) {
+                        return InMemoryFixture.createResultSet("key_id",
+                                Arrays.asList("key-0000001", "key-0000002", "key-0000003"));
+                    }
+                });
+        final Connection connection = database.connect();
+        final InMemoryFixture.KeyServer keyServer = new InMemoryFixture.KeyServer();
+        final IonicPrefetchKeyServices keyServices = IonicKeyIdQuery.prefetch(
+                info, connection, keyServer.getKeyServices(), "SELECT * FROM personnel", "personnel");
+        final List<InMemoryFixture.Execution> queries = database.getExecutions();
+        final List<List<String>> requests = keyServer.getRequests();
+        Assert.assertEquals(1, queries.size());
+        Assert.assertTrue(queries.get(0).getSql().contains("SUBSTRING(first, 5, 11)"));
+        // the keys are fetched in batches of the requested size, and are then served without key server requests
+        Assert.assertEquals(2, requests.size());
+        Assert.assertEquals(Arrays.asList("key-0000001", "key-0000002"), requests.get(0));
+        Assert.assertNotNull(keyServices.getPrefetched("key-0000003"));
+        Assert.assertEquals(1, keyServices.getKey("key-0000002").getKeys().size());
+        Assert.assertEquals(2, keyServer.getRequests().size());
+        // a table with no protected columns cannot be prefetched
+        try {
+            IonicKeyIdQuery.prefetch(info, connection, keyServer.getKeyServices(), "SELECT * FROM dept", "dept");
+            Assert.fail("SQLException expected");
+        } catch (SQLException e) {
+            logger.info("[EXCEPTION EXPECTED] message: " + e.getMessage());
+        }
+    }
+
+    @Test
+    public final void test_QueryFailureInTransaction() throws SQLException {
+        final Properties info = new Properties();
+        info.setProperty("ionic.config.jdbc.json", CONFIG_JSON);
+        final InMemoryFixture.Database database = new InMemoryFixture.Database("jdbc:test:keyid:failure",
+                new InMemoryFixture.Responder() {
+                    @Override
+                    public Object respond(final String sql, final List<Object> parameters) throws SQLException {
+                        throw new SQLException("function substring(integer, integer, integer) does not exist");
+                    }
+                });
+        final Connection connection = database.connect();
+        connection.setAutoCommit(false);
+        final InMemoryFixture.KeyServer keyServer = new InMemoryFixture.KeyServer();
+        final IonicPrefetchKeyServices keyServices = IonicKeyIdQuery.prefetch(
+                info, connection, keyServer.getKeyServices(), "SELECT * FROM personnel", "personnel");
+        Assert.assertNotNull(keyServices);
+        // the failed query is rolled back to its savepoint, leaving the transaction of the caller usable
+        Assert.assertEquals(1, database.getRollbacks());
+        Assert.assertFalse(connection.getAutoCommit());
+        Assert.assertEquals(0, keyServer.getRequests().size());
+    }
+
+    @Test
+    public final void test_FetchSize() throws Exception {
+        final Properties info = new Properties();
+        info.setProperty("ionic.config.jdbc.json", CONFIG_JSON);
+        info.setProperty("ionic.prefetch.fetchsize", "50");
+        final InMemoryFixture.Database database = new InMemoryFixture.Database("jdbc:test:keyid:fetch",
+                new InMemoryFixture.Responder() {
+                    @Override
+                    public Object respond(final String sql, final List<Object> parameters) {
+                        return sql.contains("key_id") ? InMemoryFixture.createResultSet("key_id",
+                                Arrays.asList("key-0000001")) : InMemoryFixture.createResultSet("first",
+                                Arrays.asList("Jane"));
+                    }
+                });
+        final Connection connection = database.connect();
+        final IonicConnection ionicConnection = new IonicConnection(
+                info, connection, new InMemoryFixture.KeyServer().getKeyServices());
+        // both queries fetch their rows in blocks, within a transaction, so that drivers may stream them
+        final ResultSet resultSet = ionicConnection.executePrefetchedQuery("SELECT first FROM personnel", "personnel");
+        final List<InMemoryFixture.Execution> queries = database.getExecutions();
+        Assert.assertEquals(2, queries.size());
+        Assert.assertEquals(50, queries.get(0).getFetchSize());
+        Assert.assertEquals(50, queries.get(1).getFetchSize());
+        Assert.assertFalse(connection.getAutoCommit());
+        Assert.assertTrue(resultSet.next());
+        Assert.assertEquals("Jane", resultSet.getString(1));
+        // autocommit is restored when the result is closed
+        resultSet.close();
+        Assert.assertTrue(connection.getAutoCommit());
+        // a connection not in autocommit mode is left as it is
+        connection.setAutoCommit(false);
+        ionicConnection.executePrefetchedQuery("SELECT first FROM personnel", "personnel").close();
+        Assert.assertFalse(connection.getAutoCommit());
+        info.setProperty("ionic.prefetch.fetchsize", "-1");
+        try {
+            ionicConnection.executePrefetchedQuery("SELECT first FROM personnel", "personnel");
+            Assert.fail("SQLException expected");
+        } catch (SQLException e) {
+            logger.info("[EXCEPTION EXPECTED] message: " + e.getMessage());
+        }
+    }
+}
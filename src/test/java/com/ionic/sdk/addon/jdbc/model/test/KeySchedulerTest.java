@@ -0,0 +1,237 @@
+package com.ionic.sdk.addon.jdbc.model.test;
+
+import com.ionic.sdk.addon.jdbc.impl.IonicKeyScheduler;
+import com.ionic.sdk.error.IonicException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.AbstractQueuedSynchronizer;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Test admission control of key server requests.  The token bucket is driven by a clock controlled by the test, and
+ * waiting requests are observed through the scheduler, so no sleeps are needed.
+ */
+public class KeySchedulerTest {
+
+    /**
+     * Conversion factor for the test clock.
+     */
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    /**
+     * Runs the requests which wait for admission.
+     */
+    private ExecutorService executor;
+
+    @Before
+    public final void setUp() {
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public final void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public final void test_RateLimit() throws Exception {
+        final AtomicLong now = new AtomicLong();
+        final IonicKeyScheduler scheduler = new IonicKeyScheduler(10.0, 2.0, 0, new LongSupplier() {
+            @Override
+            public long getAsLong() {
+                return now.get();
+            }
+        });
+        final IonicKeyScheduler.Flow flow = new IonicKeyScheduler.Flow("", 1.0);
+        // the burst is admitted at once
+        scheduler.acquire(flow);
+        scheduler.release();
+        scheduler.acquire(flow);
+        scheduler.release();
+        final Future<Void> future = executor.submit(createTask(scheduler, flow, null));
+        awaitWaiting(scheduler, 1);
+        // half a token does not admit the request; a whole token does
+        now.addAndGet(50L * NANOS_PER_MILLI);
+        Assert.assertEquals(1, scheduler.getWaiting());
+        Assert.assertFalse(future.isDone());
+        now.addAndGet(50L * NANOS_PER_MILLI);
+        future.get(10L, TimeUnit.SECONDS);
+        Assert.assertEquals(0, scheduler.getWaiting());
+    }
+
+    @Test
+    public final void test_ConcurrencyLimit() throws Exception {
+        final IonicKeyScheduler scheduler = new IonicKeyScheduler(0.0, 1.0, 2);
+        final IonicKeyScheduler.Flow flow = new IonicKeyScheduler.Flow("", 1.0);
+        scheduler.acquire(flow);
+        scheduler.acquire(flow);
+        final Future<Void> future = executor.submit(createTask(scheduler, flow, null));
+        awaitWaiting(scheduler, 1);
+        Assert.assertFalse(future.isDone());
+        // the request is admitted when an admitted request completes
+        scheduler.release();
+        future.get(10L, TimeUnit.SECONDS);
+        scheduler.release();
+        Assert.assertEquals(0, scheduler.getWaiting());
+    }
+
+    @Test
+    public final void test_Fairness() throws Exception {
+        final IonicKeyScheduler scheduler = new IonicKeyScheduler(0.0, 1.0, 1);
+        final IonicKeyScheduler.Flow flowHold = scheduler.getFlow("hold", 1.0);
+        final IonicKeyScheduler.Flow flowBatch = scheduler.getFlow("batch", 1.0);
+        final IonicKeyScheduler.Flow flowInteractive = scheduler.getFlow("interactive", 3.0);
+        Assert.assertSame(flowBatch, scheduler.getFlow("batch", 1.0));
+        // while the only slot is held, a batch flow queues its requests, and then an interactive flow queues its own
+        scheduler.acquire(flowHold);
+        final List<String> admitted = Collections.synchronizedList(new ArrayList<String>());
+        final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (int i = 0; (i < 8); ++i) {
+            final IonicKeyScheduler.Flow flow = (i < 4) ? flowBatch : flowInteractive;
+            futures.add(executor.submit(createTask(scheduler, flow, admitted)));
+            awaitWaiting(scheduler, i + 1);
+        }
+        scheduler.release();
+        for (final Future<Void> future : futures) {
+            future.get(10L, TimeUnit.SECONDS);
+        }
+        // the interactive flow (three times the weight) is admitted ahead of the earlier batch requests
+        Assert.assertEquals(Arrays.asList("interactive", "interactive", "batch", "interactive", "interactive",
+                "batch", "batch", "batch"), admitted);
+    }
+
+    @Test
+    public final void test_InterruptedRequestLeavesQueue() throws Exception {
+        final IonicKeyScheduler scheduler = new IonicKeyScheduler(0.0, 1.0, 1);
+        final IonicKeyScheduler.Flow flow = new IonicKeyScheduler.Flow("", 1.0);
+        scheduler.acquire(flow);
+        final Future<Void> future = executor.submit(createTask(scheduler, flow, null));
+        awaitWaiting(scheduler, 1);
+        // a request interrupted while waiting fails, and leaves the queue
+        future.cancel(true);
+        awaitWaiting(scheduler, 0);
+        scheduler.release();
+        scheduler.acquire(flow);
+        scheduler.release();
+    }
+
+    @Test
+    public final void test_InterruptedAfterAdmission() throws Exception {
+        final AtomicLong now = new AtomicLong();
+        final AtomicReference<Thread> interrupt = new AtomicReference<Thread>();
+        final IonicKeyScheduler scheduler = new IonicKeyScheduler(10.0, 1.0, 1, new LongSupplier() {
+            @Override
+            public long getAsLong() {
+                final Thread thread = interrupt.getAndSet(null);
+                if (thread != null) {
+                    // interrupt the waiting request as it is about to be admitted, and let it block on the
+                    // scheduler lock, so that it observes the interrupt only once admitted
+                    thread.interrupt();
+                    awaitBlocked(thread);
+                }
+                return now.get();
+            }
+        });
+        final IonicKeyScheduler.Flow flow = new IonicKeyScheduler.Flow("", 1.0);
+        scheduler.acquire(flow);
+        final AtomicReference<Thread> waiter = new AtomicReference<Thread>();
+        final Future<Void> future = executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws IonicException {
+                waiter.set(Thread.currentThread());
+                scheduler.acquire(flow);
+                scheduler.release();
+                return null;
+            }
+        });
+        awaitWaiting(scheduler, 1);
+        now.addAndGet(100L * NANOS_PER_MILLI);
+        interrupt.set(waiter.get());
+        scheduler.release();
+        try {
+            future.get(10L, TimeUnit.SECONDS);
+            Assert.fail("ExecutionException expected");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IonicException);
+        }
+        // the slot and token of the interrupted request are returned; the next request is admitted at once
+        executor.submit(createTask(scheduler, flow, null)).get(10L, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public final void test_InstanceSharedAsConfigured() {
+        final IonicKeyScheduler scheduler = IonicKeyScheduler.getInstance("https://scheduler.test", 10.0, 1.0, 4);
+        Assert.assertSame(scheduler, IonicKeyScheduler.getInstance("https://scheduler.test", 20.0, 1.0, 8));
+        Assert.assertEquals(10.0, scheduler.getRate(), 0.0);
+        Assert.assertEquals(4, scheduler.getConcurrency());
+        scheduler.configure(20.0, 1.0, 8);
+        Assert.assertEquals(8, scheduler.getConcurrency());
+    }
+
+    /**
+     * @param scheduler the scheduler admitting the request
+     * @param flow      the flow of the request
+     * @param admitted  records the flow of each admitted request (may be null)
+     * @return a task which acquires and releases admission of a request
+     */
+    private static Callable<Void> createTask(final IonicKeyScheduler scheduler, final IonicKeyScheduler.Flow flow,
+                                             final List<String> admitted) {
+        return new Callable<Void>() {
+            @Override
+            public Void call() throws IonicException {
+                scheduler.acquire(flow);
+                try {
+                    if (admitted != null) {
+                        admitted.add(flow.getName());
+                    }
+                } finally {
+                    scheduler.release();
+                }
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Wait until a thread is blocked on a lock (rather than waiting on a condition).
+     *
+     * @param thread the thread
+     */
+    private static void awaitBlocked(final Thread thread) {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+        while (!(LockSupport.getBlocker(thread) instanceof AbstractQueuedSynchronizer)) {
+            Assert.assertTrue(System.nanoTime() < deadline);
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Wait until the specified number of requests are waiting for admission.
+     *
+     * @param scheduler the scheduler admitting the requests
+     * @param count     the number of waiting requests
+     */
+    private static void awaitWaiting(final IonicKeyScheduler scheduler, final int count) {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+        while (scheduler.getWaiting() != count) {
+            Assert.assertTrue(System.nanoTime() < deadline);
+            Thread.yield();
+        }
+    }
+}
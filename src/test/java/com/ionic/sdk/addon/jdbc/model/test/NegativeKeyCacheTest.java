@@ -0,0 +1,102 @@
+package com.ionic.sdk.addon.jdbc.model.test;
+
+import com.ionic.sdk.addon.jdbc.impl.IonicKeyServices;
+import com.ionic.sdk.addon.jdbc.impl.IonicLruCache;
+import com.ionic.sdk.addon.jdbc.impl.IonicMetrics;
+import com.ionic.sdk.addon.jdbc.impl.IonicNegativeCachingKeyServices;
+import com.ionic.sdk.addon.jdbc.impl.IonicPrefetchKeyServices;
+import com.ionic.sdk.agent.request.getkey.GetKeysRequest;
+import com.ionic.sdk.agent.request.getkey.GetKeysResponse;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.key.KeyServices;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Test the handling of keys denied by the key server.
+ */
+public class NegativeKeyCacheTest {
+
+    @Test
+    public final void test_DeniedKeysNotRequested() throws IonicException {
+        final InMemoryFixture.KeyServer keyServer = new InMemoryFixture.KeyServer();
+        final IonicMetrics metrics = new IonicMetrics("test");
+        final KeyServices keyServices = new IonicNegativeCachingKeyServices(keyServer.getKeyServices(),
+                new IonicLruCache<String, Long>(100), 60000L, metrics);
+        Assert.assertEquals(1, keyServices.getKeys(createRequest("allowed-1", "denied-1")).getKeys().size());
+        Assert.assertEquals(1, keyServer.getRequests().size());
+        Assert.assertEquals(1L, metrics.get(IonicNegativeCachingKeyServices.METRIC_ADDED));
+        // a denied key is answered without a key server request
+        Assert.assertTrue(keyServices.getKey("denied-1").getKeys().isEmpty());
+        Assert.assertEquals(1, keyServer.getRequests().size());
+        // bulk requests omit denied keys
+        final IonicPrefetchKeyServices keyServicesPrefetch = new IonicPrefetchKeyServices(keyServices, 100);
+        keyServicesPrefetch.prefetch(Arrays.asList("denied-1", "denied-2", "allowed-2"));
+        Assert.assertEquals(2, keyServer.getRequests().size());
+        Assert.assertEquals(Arrays.asList("denied-2", "allowed-2"), keyServer.getRequests().get(1));
+        Assert.assertNotNull(keyServicesPrefetch.getPrefetched("allowed-2"));
+        Assert.assertTrue(keyServicesPrefetch.getKey("denied-2").getKeys().isEmpty());
+        Assert.assertEquals(2, keyServer.getRequests().size());
+        Assert.assertEquals(3L, metrics.get(IonicNegativeCachingKeyServices.METRIC_HIT));
+    }
+
+    @Test
+    public final void test_RequestMetadata() throws IonicException {
+        final InMemoryFixture.KeyServer keyServer = new InMemoryFixture.KeyServer();
+        final List<GetKeysRequest> requests = new ArrayList<GetKeysRequest>();
+        final KeyServices keyServicesRecording = new IonicKeyServices(keyServer.getKeyServices()) {
+            @Override
+            public GetKeysResponse getKeys(final GetKeysRequest request) throws IonicException {
+                requests.add(request);
+                return super.getKeys(request);
+            }
+        };
+        final KeyServices keyServices = new IonicNegativeCachingKeyServices(keyServicesRecording,
+                new IonicLruCache<String, Long>(100), 60000L, new IonicMetrics("test"));
+        keyServices.getKey("denied-1");
+        // a request from which denied keys are removed keeps the metadata of the caller's request
+        final GetKeysRequest request = createRequest("allowed-1", "denied-1");
+        request.addMetadata("ionic-application-name", "test");
+        Assert.assertEquals(1, keyServices.getKeys(request).getKeys().size());
+        Assert.assertEquals(2, requests.size());
+        Assert.assertNotSame(request, requests.get(1));
+        Assert.assertEquals(Arrays.asList("allowed-1"), requests.get(1).getKeyIds());
+        Assert.assertEquals("test", requests.get(1).getMetadata().get("ionic-application-name"));
+    }
+
+    @Test
+    public final void test_Expiry() throws IonicException {
+        final InMemoryFixture.KeyServer keyServer = new InMemoryFixture.KeyServer();
+        final IonicLruCache<String, Long> denied = new IonicLruCache<String, Long>(100);
+        final KeyServices keyServicesExpired = new IonicNegativeCachingKeyServices(keyServer.getKeyServices(),
+                denied, -1L, new IonicMetrics("test"));
+        keyServicesExpired.getKey("denied-1");
+        keyServicesExpired.getKey("denied-1");
+        Assert.assertEquals(2, keyServer.getRequests().size());
+        // denied keys are forgotten on request
+        final KeyServices keyServices = new IonicNegativeCachingKeyServices(keyServer.getKeyServices(),
+                IonicNegativeCachingKeyServices.getDeniedKeys("test-device", 100), 60000L, new IonicMetrics("test"));
+        keyServices.getKey("denied-1");
+        keyServices.getKey("denied-1");
+        Assert.assertEquals(3, keyServer.getRequests().size());
+        IonicNegativeCachingKeyServices.invalidateAll();
+        keyServices.getKey("denied-1");
+        Assert.assertEquals(4, keyServer.getRequests().size());
+    }
+
+    /**
+     * @param keyIds the ids of the keys to request
+     * @return a key fetch request
+     */
+    private static GetKeysRequest createRequest(final String... keyIds) {
+        final GetKeysRequest request = new GetKeysRequest();
+        for (final String keyId : keyIds) {
+            request.add(keyId);
+        }
+        return request;
+    }
+}
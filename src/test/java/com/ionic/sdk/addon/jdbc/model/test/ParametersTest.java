@@ -0,0 +1,162 @@
+package com.ionic.sdk.addon.jdbc.model.test;
+
+import com.ionic.sdk.addon.jdbc.impl.IonicColumnConfig;
+import com.ionic.sdk.addon.jdbc.impl.IonicConnectionServices;
+import com.ionic.sdk.addon.jdbc.impl.IonicParameters;
+import com.ionic.sdk.addon.jdbc.impl.IonicTokenVault;
+import com.ionic.sdk.addon.jdbc.impl.IonicValueCodec;
+import com.ionic.sdk.agent.cipher.chunk.ChunkCipherV2;
+import com.ionic.sdk.agent.key.KeyAttributesMap;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+/**
+ * Test the protection of tokenized statement parameters as they are supplied.
+ */
+public class ParametersTest {
+
+    /**
+     * Class scoped logger.
+     */
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    /**
+     * Protects the parameter values ahead of execution (a single thread, so that protections complete in order).
+     */
+    private ExecutorService executor;
+
+    /**
+     * The key server of the test.
+     */
+    private InMemoryFixture.KeyServer keyServer;
+
+    /**
+     * The content of the vault table, in order of insertion.
+     */
+    private Map<String, String> table;
+
+    /**
+     * The database holding the vault table.
+     */
+    private InMemoryFixture.Database database;
+
+    /**
+     * The parameters of a statement with two tokenized parameters.
+     */
+    private IonicParameters parameters;
+
+    @Before
+    public final void setUp() throws IonicException {
+        executor = Executors.newSingleThreadExecutor();
+        keyServer = new InMemoryFixture.KeyServer();
+        table = new LinkedHashMap<String, String>();
+        database = new InMemoryFixture.Database("jdbc:test:parameters", new InMemoryFixture.Responder() {
+            @Override
+            public Object respond(final String sql, final List<Object> values) {
+                if (sql.startsWith("INSERT INTO test_parameters_vault")) {
+                    table.put((String) values.get(0), (String) values.get(1));
+                    return 1;
+                }
+                return null;
+            }
+        });
+        final Properties info = new Properties();
+        info.setProperty("ionic.token.vault", "test_parameters_vault");
+        final IonicTokenVault tokenVault = IonicTokenVault.getInstance("jdbc:test:parameters", info);
+        final IonicColumnConfig columnConfig = new IonicColumnConfig(
+                new KeyAttributesMap(), -1, 0, IonicColumnConfig.Storage.TOKEN);
+        final Map<Integer, IonicColumnConfig> columnConfigs = new HashMap<Integer, IonicColumnConfig>();
+        columnConfigs.put(1, columnConfig);
+        columnConfigs.put(2, columnConfig);
+        parameters = new IonicParameters(2, columnConfigs, keyServer.getKeyServices(), executor,
+                new IonicConnectionServices(null, tokenVault, null));
+    }
+
+    @After
+    public final void tearDown() {
+        keyServer.release();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public final void test_TokensInRowOrder() throws Exception {
+        final List<Object> encrypted = new ArrayList<Object>();
+        for (final String row : Arrays.asList("1", "2")) {
+            parameters.setParameter(1, "first-" + row);
+            parameters.setParameter(2, "last-" + row);
+            encrypted.addAll(Arrays.asList(parameters.toEncrypted()));
+        }
+        parameters.flushTokens(database.connect());
+        // the vault entries of the batch are written in a single batch, in the order of the rows and parameters
+        Assert.assertEquals(1, database.getBatches());
+        Assert.assertEquals(encrypted, new ArrayList<Object>(table.keySet()));
+        Assert.assertEquals(Arrays.asList("first-1", "last-1", "first-2", "last-2"), unprotect(table.values()));
+    }
+
+    @Test
+    public final void test_ReplacedValueNotWritten() throws Exception {
+        keyServer.hold();
+        parameters.setParameter(1, "first-replaced");
+        keyServer.awaitRequests(1);
+        // the value is replaced while its protection is running; the protection is abandoned
+        parameters.setParameter(1, "first");
+        parameters.setParameter(2, "last");
+        keyServer.release();
+        final Object[] encrypted = parameters.toEncrypted();
+        parameters.flushTokens(database.connect());
+        // only the tokens of the values used are written to the vault
+        Assert.assertEquals(3, keyServer.getCreateRequests());
+        Assert.assertEquals(Arrays.asList(encrypted), new ArrayList<Object>(table.keySet()));
+        Assert.assertEquals(Arrays.asList("first", "last"), unprotect(table.values()));
+    }
+
+    @Test
+    public final void test_ProtectionFailure() throws Exception {
+        keyServer.setFailure(new IonicException(SdkError.ISAGENT_ERROR, "key server unavailable"));
+        parameters.setParameter(1, "first");
+        parameters.setParameter(2, "last");
+        try {
+            parameters.toEncrypted();
+            Assert.fail("SQLException expected");
+        } catch (SQLException e) {
+            Assert.assertTrue(e.getCause() instanceof IonicException);
+            logger.info("[EXCEPTION EXPECTED] message: " + e.getMessage());
+        }
+        // a failed protection is not reused; the values are protected again on the next attempt
+        keyServer.setFailure(null);
+        final Object[] encrypted = parameters.toEncrypted();
+        parameters.flushTokens(database.connect());
+        Assert.assertEquals(Arrays.asList(encrypted), new ArrayList<Object>(table.keySet()));
+        Assert.assertEquals(Arrays.asList("first", "last"), unprotect(table.values()));
+    }
+
+    /**
+     * @param cipherTexts protected values
+     * @return the unprotected values
+     * @throws IonicException on Ionic cryptography errors
+     */
+    private List<Object> unprotect(final Iterable<String> cipherTexts) throws IonicException {
+        final ChunkCipherV2 chunkCipher = new ChunkCipherV2(keyServer.getKeyServices());
+        final List<Object> values = new ArrayList<Object>();
+        for (final String cipherText : cipherTexts) {
+            values.add(IonicValueCodec.decode(chunkCipher.decryptToBytes(cipherText)));
+        }
+        return values;
+    }
+}
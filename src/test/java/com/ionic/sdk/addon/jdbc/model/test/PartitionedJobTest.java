@@ -0,0 +1,393 @@
+package com.ionic.sdk.addon.jdbc.model.test;
+
+import com.ionic.sdk.addon.jdbc.IonicConnection;
+import com.ionic.sdk.addon.jdbc.IonicMigrationJob;
+import com.ionic.sdk.addon.jdbc.IonicRotationJob;
+import com.ionic.sdk.addon.jdbc.impl.IonicRotationPolicy;
+import com.ionic.sdk.addon.jdbc.impl.IonicTokenVault;
+import com.ionic.sdk.addon.jdbc.impl.IonicValueCodec;
+import com.ionic.sdk.agent.cipher.chunk.ChunkCipherV2;
+import com.ionic.sdk.error.IonicException;
+import com.ionic.sdk.error.SdkError;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Test the checkpoints and the resumption of partitioned table jobs.
+ */
+public class PartitionedJobTest {
+
+    /**
+     * Class scoped logger.
+     */
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    /**
+     * The (nominal) url of the database.
+     */
+    private static final String URL = "jdbc:test:job";
+
+    /**
+     * The number of rows in each page of the jobs.
+     */
+    private static final int ROWS_PER_PAGE = 3;
+
+    /**
+     * The Ionic JDBC configuration of the tests; the column "first" of the table is protected.
+     */
+    private static final String CONFIG = "{\"Tables\": {\"personnel\": {\"IonicColumns\": {"
+            + "\"first\": {\"cattrs\": {\"classification\": [\"pii\"]}}}}}}";
+
+    /**
+     * The Ionic JDBC configuration of the tests of tokenized columns; the column "first" of the table is tokenized.
+     */
+    private static final String CONFIG_TOKEN = "{\"Tables\": {\"personnel\": {\"IonicColumns\": {"
+            + "\"first\": {\"cattrs\": {\"classification\": [\"pii\"]}, \"storage\": \"token\"}}}}}";
+
+    /**
+     * The key server of the test.
+     */
+    private InMemoryFixture.KeyServer keyServer;
+
+    /**
+     * The values of the protected column of the table, by primary key.
+     */
+    private TreeMap<Long, String> table;
+
+    /**
+     * The control table of the jobs (range_start, range_end, last_key, rows_done, done), by partition.
+     */
+    private Map<Integer, long[]> checkpoints;
+
+    /**
+     * The token vault table (token, ciphertext).
+     */
+    private Map<String, String> vault;
+
+    /**
+     * The number of rows written to the table.
+     */
+    private AtomicInteger updates;
+
+    /**
+     * The database holding the table.
+     */
+    private InMemoryFixture.Database database;
+
+    @Before
+    public final void setUp() {
+        keyServer = new InMemoryFixture.KeyServer();
+        table = new TreeMap<Long, String>();
+        for (long id = 1L; (id <= 20L); ++id) {
+            table.put(id, "first-" + id);
+        }
+        checkpoints = new TreeMap<Integer, long[]>();
+        vault = new TreeMap<String, String>();
+        updates = new AtomicInteger();
+        database = new InMemoryFixture.Database(URL, new InMemoryFixture.Responder() {
+            @Override
+            public Object respond(final String sql, final List<Object> parameters) {
+                return respondJob(sql, parameters);
+            }
+        });
+    }
+
+    @Test
+    public final void test_CheckpointAndResume() throws Exception {
+        final Properties info = createInfo("checkpoint", 1);
+        // the job is interrupted after two pages; the work of the completed pages is recorded
+        try {
+            new TestJob(info, 2).run();
+            Assert.fail("SQLException expected");
+        } catch (SQLException e) {
+            logger.info("[EXCEPTION EXPECTED] message: " + e.getMessage());
+        }
+        Assert.assertEquals(6, updates.get());
+        Assert.assertEquals(1, checkpoints.size());
+        Assert.assertArrayEquals(new long[]{1L, 20L, 6L, 6L, 0L}, checkpoints.get(0));
+        Assert.assertEquals(6, countProtected());
+        // the job resumes where it stopped; no row is written twice
+        Assert.assertEquals(14L, new TestJob(info, -1).run());
+        Assert.assertEquals(20, updates.get());
+        Assert.assertEquals(20, countProtected());
+        Assert.assertArrayEquals(new long[]{1L, 20L, 20L, 20L, 1L}, checkpoints.get(0));
+        // a finished job does nothing when run again
+        Assert.assertEquals(0L, new TestJob(info, -1).run());
+        Assert.assertEquals(20, updates.get());
+        // identifiers are quoted in the SQL of the job
+        final List<String> sqls = new ArrayList<String>();
+        for (final InMemoryFixture.Execution execution : database.getExecutions()) {
+            sqls.add(execution.getSql());
+        }
+        Assert.assertTrue(sqls.contains("SELECT MIN(\"id\"), MAX(\"id\") FROM \"personnel\""));
+    }
+
+    @Test
+    public final void test_ResumeUsesThreads() throws Exception {
+        try {
+            new TestJob(createInfo("threads", 1), 1).run();
+            Assert.fail("SQLException expected");
+        } catch (SQLException e) {
+            logger.info("[EXCEPTION EXPECTED] message: " + e.getMessage());
+        }
+        Assert.assertEquals(3, updates.get());
+        // the remaining range of the interrupted partition is divided among the threads of the resumed job
+        Assert.assertEquals(17L, new TestJob(createInfo("threads", 4), -1).run());
+        Assert.assertEquals(20, updates.get());
+        Assert.assertEquals(20, countProtected());
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3), new ArrayList<Integer>(checkpoints.keySet()));
+        Assert.assertArrayEquals(new long[]{1L, 7L, 7L, 7L, 1L}, checkpoints.get(0));
+        Assert.assertArrayEquals(new long[]{12L, 15L, 15L, 4L, 1L}, checkpoints.get(1));
+        Assert.assertArrayEquals(new long[]{16L, 20L, 20L, 5L, 1L}, checkpoints.get(2));
+        Assert.assertArrayEquals(new long[]{8L, 11L, 11L, 4L, 1L}, checkpoints.get(3));
+    }
+
+    @Test
+    public final void test_MigrationOfTokens() throws Exception {
+        final String token = IonicTokenVault.createToken();
+        vault.put(token, new ChunkCipherV2(keyServer.getKeyServices()).encrypt("first-1"));
+        table.put(1L, token);
+        final String plainText = IonicTokenVault.createToken();
+        table.put(2L, plainText);
+        final Properties info = createInfo("tokens", 2);
+        info.setProperty("ionic.config.jdbc.json", CONFIG_TOKEN);
+        info.setProperty("ionic.token.vault", "test_job_vault");
+        info.setProperty("driverClassName", InMemoryFixture.TestDriver.class.getName());
+        // the token already in the vault is left unchanged; a plaintext which looks like a token is protected
+        Assert.assertEquals(19L, new TestJob(info, -1).run());
+        Assert.assertEquals(token, table.get(1L));
+        Assert.assertEquals(20, vault.size());
+        final ChunkCipherV2 chunkCipher = new ChunkCipherV2(keyServer.getKeyServices());
+        for (final Map.Entry<Long, String> entry : table.entrySet()) {
+            final String value = entry.getValue();
+            Assert.assertTrue(IonicTokenVault.isToken(value));
+            final String expected = (entry.getKey() == 2L) ? plainText : ("first-" + entry.getKey());
+            Assert.assertEquals(expected, IonicValueCodec.toString(IonicValueCodec.decode(
+                    chunkCipher.decryptToBytes(vault.get(value)), null)));
+        }
+        // a finished job does nothing when run again
+        Assert.assertEquals(0L, new TestJob(info, -1).run());
+    }
+
+    @Test
+    public final void test_Rotation() throws Exception {
+        for (long id = 1L; (id <= 20L); ++id) {
+            final String keyId = ((id % 5L) == 0L) ? InMemoryFixture.KeyServer.DENIED + "00001"
+                    : (((id % 4L) == 0L) ? "EFGH0000001" : "ABCD0000001");
+            // unknown keys are all zeros, in the in-memory key server
+            table.put(id, "~!2!" + keyId + Base64.getEncoder().encodeToString(
+                    ("first-" + id).getBytes(StandardCharsets.UTF_8)));
+        }
+        final Properties info = createInfo("rotation", 1);
+        info.setProperty("ionic.rotation.keyspaces", "ABCD");
+        info.setProperty("ionic.rotation.rate", "1000");
+        final TestRotationJob job = new TestRotationJob(info);
+        Assert.assertEquals(12L, job.run());
+        // only the values in the retired keyspace are re-protected; values with withheld keys are skipped
+        Assert.assertEquals(12, updates.get());
+        Assert.assertEquals(4L, job.getMetrics().get(IonicRotationJob.METRIC_SKIPPED));
+        // the keys of each page are fetched in a single request
+        Assert.assertEquals(7, keyServer.getRequests().size());
+        final ChunkCipherV2 chunkCipher = new ChunkCipherV2(keyServer.getKeyServices());
+        for (final Map.Entry<Long, String> entry : table.entrySet()) {
+            final long id = entry.getKey();
+            final String value = entry.getValue();
+            if ((id % 5L) == 0L) {
+                Assert.assertTrue(value.startsWith("~!2!" + InMemoryFixture.KeyServer.DENIED));
+            } else if ((id % 4L) == 0L) {
+                Assert.assertTrue(value.startsWith("~!2!EFGH"));
+            } else {
+                Assert.assertTrue(value.startsWith("~!2!test"));
+                Assert.assertEquals("first-" + id, chunkCipher.decrypt(value));
+            }
+        }
+        // the rate limit is applied by the scheduler shared with the read-repair of the database
+        Assert.assertEquals(1000.0, IonicRotationPolicy.getScheduler(URL, info).getRate(), 0.0);
+    }
+
+    /**
+     * @param name    the name of the job
+     * @param threads the number of partitions processed in parallel
+     * @return the connection properties of a job
+     */
+    private static Properties createInfo(final String name, final int threads) {
+        final Properties info = new Properties();
+        info.setProperty("ionic.config.jdbc.json", CONFIG);
+        info.setProperty("ionic.job.name", "test:" + name);
+        info.setProperty("ionic.job.threads", Integer.toString(threads));
+        info.setProperty("ionic.job.rows", Integer.toString(ROWS_PER_PAGE));
+        return info;
+    }
+
+    /**
+     * @return the number of protected values in the table
+     */
+    private int countProtected() {
+        synchronized (database) {
+            int count = 0;
+            for (final String value : table.values()) {
+                count += value.startsWith("~!2!") ? 1 : 0;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Execute a statement of a job against the in-memory tables.
+     *
+     * @param sql        the SQL of the statement
+     * @param parameters the values of the parameters of the statement
+     * @return the result of the statement
+     */
+    private Object respondJob(final String sql, final List<Object> parameters) {
+        synchronized (database) {
+            if (sql.startsWith("CREATE TABLE IF NOT EXISTS \"ionic_job_checkpoint\"")
+                    || sql.startsWith("CREATE TABLE IF NOT EXISTS test_job_vault")) {
+                return null;
+            } else if (sql.startsWith("INSERT INTO test_job_vault")) {
+                vault.put((String) parameters.get(0), (String) parameters.get(1));
+                return 1;
+            } else if (sql.startsWith("SELECT token, ciphertext FROM test_job_vault")) {
+                final List<Object[]> rows = new ArrayList<Object[]>();
+                for (final Object token : parameters) {
+                    if (vault.containsKey(token)) {
+                        rows.add(new Object[]{token, vault.get(token)});
+                    }
+                }
+                return InMemoryFixture.createResultSet(new String[]{"token", "ciphertext"},
+                        new int[]{Types.VARCHAR, Types.VARCHAR}, rows);
+            } else if (sql.startsWith("SELECT part, range_end, last_key, done FROM \"ionic_job_checkpoint\"")) {
+                final List<Object[]> rows = new ArrayList<Object[]>();
+                for (final Map.Entry<Integer, long[]> entry : checkpoints.entrySet()) {
+                    final long[] checkpoint = entry.getValue();
+                    rows.add(new Object[]{entry.getKey(), checkpoint[1], checkpoint[2], checkpoint[4] == 1L});
+                }
+                return InMemoryFixture.createResultSet(new String[]{"part", "range_end", "last_key", "done"},
+                        new int[]{Types.INTEGER, Types.BIGINT, Types.BIGINT, Types.BOOLEAN}, rows);
+            } else if (sql.startsWith("INSERT INTO \"ionic_job_checkpoint\"")) {
+                checkpoints.put((Integer) parameters.get(1), new long[]{(Long) parameters.get(2),
+                        (Long) parameters.get(3), (Long) parameters.get(4), 0L, 0L});
+                return 1;
+            } else if (sql.startsWith("UPDATE \"ionic_job_checkpoint\" SET range_end = ?")) {
+                checkpoints.get((Integer) parameters.get(2))[1] = (Long) parameters.get(0);
+                return 1;
+            } else if (sql.startsWith("UPDATE \"ionic_job_checkpoint\" SET last_key = ?")) {
+                final long[] checkpoint = checkpoints.get((Integer) parameters.get(4));
+                checkpoint[2] = (Long) parameters.get(0);
+                checkpoint[3] += (Long) parameters.get(1);
+                checkpoint[4] = ((Boolean) parameters.get(2)) ? 1L : 0L;
+                return 1;
+            } else if (sql.equals("SELECT MIN(\"id\"), MAX(\"id\") FROM \"personnel\"")) {
+                final List<Object[]> rows = new ArrayList<Object[]>();
+                rows.add(new Object[]{table.firstKey(),
+                        table.lastKey()});
+                return InMemoryFixture.createResultSet(new String[]{"min", "max"},
+                        new int[]{Types.BIGINT, Types.BIGINT}, rows);
+            } else if (sql.startsWith("SELECT \"id\", \"first\" FROM \"personnel\" WHERE \"id\" > ?")) {
+                final List<Object[]> rows = new ArrayList<Object[]>();
+                for (final Map.Entry<Long, String> entry : table.subMap(
+                        (Long) parameters.get(0), false, (Long) parameters.get(1), true).entrySet()) {
+                    if (rows.size() < ROWS_PER_PAGE) {
+                        rows.add(new Object[]{entry.getKey(), entry.getValue()});
+                    }
+                }
+                return InMemoryFixture.createResultSet(new String[]{"id", "first"},
+                        new int[]{Types.BIGINT, Types.VARCHAR}, rows);
+            } else if (sql.equals("UPDATE \"personnel\" SET \"first\" = ? WHERE \"id\" = ?")) {
+                table.put((Long) parameters.get(1), (String) parameters.get(0));
+                updates.incrementAndGet();
+                return 1;
+            }
+            throw new UnsupportedOperationException(sql);
+        }
+    }
+
+    /**
+     * A rotation job over the in-memory database.
+     */
+    private final class TestRotationJob extends IonicRotationJob {
+
+        /**
+         * The connection properties of the job.
+         */
+        private final Properties info;
+
+        /**
+         * Constructor.
+         *
+         * @param info the connection properties of the job
+         * @throws SQLException on invalid settings
+         */
+        private TestRotationJob(final Properties info) throws SQLException {
+            super(URL, info, "personnel");
+            this.info = info;
+        }
+
+        @Override
+        protected Connection connect() {
+            return new IonicConnection(info, database.connect(), keyServer.getKeyServices());
+        }
+    }
+
+    /**
+     * A migration job over the in-memory database, interrupted after a number of pages.
+     */
+    private final class TestJob extends IonicMigrationJob {
+
+        /**
+         * The connection properties of the job.
+         */
+        private final Properties info;
+
+        /**
+         * The number of pages processed before the job is interrupted (-1 for no interruption).
+         */
+        private final int pages;
+
+        /**
+         * The number of pages started.
+         */
+        private final AtomicInteger started;
+
+        /**
+         * Constructor.
+         *
+         * @param info  the connection properties of the job
+         * @param pages the number of pages processed before the job is interrupted (-1 for no interruption)
+         * @throws SQLException on invalid settings
+         */
+        private TestJob(final Properties info, final int pages) throws SQLException {
+            super(URL, info, "personnel");
+            this.info = info;
+            this.pages = pages;
+            this.started = new AtomicInteger();
+        }
+
+        @Override
+        protected void beforePage() throws IonicException {
+            if ((pages >= 0) && (started.incrementAndGet() > pages)) {
+                throw new IonicException(SdkError.ISAGENT_ERROR, "job interrupted");
+            }
+        }
+
+        @Override
+        protected Connection connect() {
+            return new IonicConnection(info, database.connect(), keyServer.getKeyServices());
+        }
+    }
+}
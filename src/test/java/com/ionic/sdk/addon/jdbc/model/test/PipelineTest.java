@@ -0,0 +1,116 @@
+package com.ionic.sdk.addon.jdbc.model.test;
+
+import com.ionic.sdk.addon.jdbc.IonicConnection;
+import com.ionic.sdk.addon.jdbc.impl.IonicConnectionServices;
+import com.ionic.sdk.addon.jdbc.impl.IonicTokenVault;
+import com.ionic.sdk.error.IonicException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Test the preparation of keys and ciphertexts ahead of statement execution.
+ */
+public class PipelineTest {
+
+    /**
+     * The insert statement of the tests with a protected column.
+     */
+    private static final String SQL_PROTECTED = "INSERT INTO personnel (first, last) VALUES (?, ?)";
+
+    /**
+     * The insert statement of the tests with a tokenized column.
+     */
+    private static final String SQL_TOKEN = "INSERT INTO accounts (number, owner) VALUES (?, ?)";
+
+    /**
+     * The Ionic JDBC configuration of the tests.
+     */
+    private static final String CONFIG = "{\"PreparedStatement\": {"
+            + "\"" + SQL_PROTECTED + "\": {\"IonicColumns\": {\"1\": {\"cattrs\": {\"classification\": [\"pii\"]}}}}, "
+            + "\"" + SQL_TOKEN + "\": {\"IonicColumns\": {\"1\": {\"cattrs\": {\"classification\": [\"pii\"]}, "
+            + "\"storage\": \"token\"}}}}}";
+
+    @Test
+    public final void test_KeysCreatedAhead() throws IonicException, SQLException {
+        final InMemoryFixture.KeyServer keyServer = new InMemoryFixture.KeyServer();
+        final IonicConnection connection = createConnection("jdbc:test:pipeline:ahead", keyServer,
+                new ArrayList<String>());
+        final PreparedStatement statement = connection.prepareStatement(SQL_PROTECTED);
+        for (final String first : new String[]{"Jane", "John"}) {
+            statement.setObject(1, first);
+            statement.setObject(2, "Doe");
+            Assert.assertEquals(1, statement.executeUpdate());
+        }
+        statement.close();
+        // the second row uses a key created ahead of use for the first
+        Assert.assertEquals(1, keyServer.getCreateRequests());
+    }
+
+    @Test
+    public final void test_KeysSharedByStatements() throws IonicException, SQLException {
+        final InMemoryFixture.KeyServer keyServer = new InMemoryFixture.KeyServer();
+        final IonicConnection connection = createConnection("jdbc:test:pipeline:shared", keyServer,
+                new ArrayList<String>());
+        for (final String first : new String[]{"Jane", "John"}) {
+            final PreparedStatement statement = connection.prepareStatement(SQL_PROTECTED);
+            statement.setString(1, first);
+            statement.setString(2, "Doe");
+            Assert.assertEquals(1, statement.executeUpdate());
+            statement.close();
+        }
+        // the second statement uses a key created ahead of use for the first
+        Assert.assertEquals(1, keyServer.getCreateRequests());
+    }
+
+    @Test
+    public final void test_ClearBatchDiscardsTokens() throws IonicException, SQLException {
+        final List<String> vault = Collections.synchronizedList(new ArrayList<String>());
+        final IonicConnection connection = createConnection("jdbc:test:pipeline:batch",
+                new InMemoryFixture.KeyServer(), vault);
+        final PreparedStatement statement = connection.prepareStatement(SQL_TOKEN);
+        statement.setString(1, "4111111111111111");
+        statement.setString(2, "discarded");
+        statement.addBatch();
+        statement.clearBatch();
+        statement.setString(1, "4222222222222222");
+        statement.setString(2, "kept");
+        statement.addBatch();
+        statement.executeBatch();
+        // only the token of the row executed is written to the vault
+        Assert.assertEquals(1, vault.size());
+    }
+
+    /**
+     * @param url       the nominal url of the database
+     * @param keyServer the key server of the connection
+     * @param vault     receives the tokens written to the vault table
+     * @return a connection to an in-memory database, preparing up to eight keys ahead of use
+     * @throws IonicException on invalid settings
+     */
+    private static IonicConnection createConnection(final String url, final InMemoryFixture.KeyServer keyServer,
+                                                    final List<String> vault) throws IonicException {
+        final InMemoryFixture.Database database = new InMemoryFixture.Database(url, new InMemoryFixture.Responder() {
+            @Override
+            public Object respond(final String sql, final List<Object> values) {
+                if (sql.startsWith("INSERT INTO test_pipeline_vault")) {
+                    vault.add((String) values.get(0));
+                }
+                return 1;
+            }
+        });
+        final Properties info = new Properties();
+        info.setProperty("ionic.config.jdbc.json", CONFIG);
+        info.setProperty("ionic.pipeline.depth", "8");
+        info.setProperty("ionic.token.vault", "test_pipeline_vault");
+        final IonicConnectionServices services = new IonicConnectionServices(
+                null, IonicTokenVault.getInstance(url, info), null);
+        return new IonicConnection(info, database.connect(), keyServer.getKeyServices(), services);
+    }
+}
@@ -0,0 +1,159 @@
+package com.ionic.sdk.addon.jdbc.model.test;
+
+import com.ionic.sdk.addon.jdbc.impl.IonicReadRepair;
+import com.ionic.sdk.addon.jdbc.impl.IonicRotationPolicy;
+import com.ionic.sdk.agent.cipher.chunk.ChunkCipherV2;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSetMetaData;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Test the read-repair of stale values.
+ */
+public class ReadRepairTest {
+
+    /**
+     * The Ionic JDBC configuration of the tests; the column "first" of the table is protected.
+     */
+    private static final String CONFIG = "{\"Tables\": {\"personnel\": {\"IonicColumns\": {"
+            + "\"first\": {\"cattrs\": {\"classification\": [\"pii\"]}}}}}}";
+
+    /**
+     * The maximum time (milliseconds) to wait for the background repairs.
+     */
+    private static final long TIMEOUT = 10000L;
+
+    @Test
+    public final void test_InstancePerIdentity() throws Exception {
+        final String url = "jdbc:test:repair:identity";
+        final Properties info = createInfo();
+        final IonicReadRepair readRepairA = IonicReadRepair.getInstance(
+                url, info, new InMemoryFixture.KeyServer("device-a").getKeyServices());
+        Assert.assertNotNull(readRepairA);
+        Assert.assertSame(readRepairA, IonicReadRepair.getInstance(
+                url, info, new InMemoryFixture.KeyServer("device-a").getKeyServices()));
+        // a value read by one identity is never re-protected by another
+        final IonicReadRepair readRepairB = IonicReadRepair.getInstance(
+                url, info, new InMemoryFixture.KeyServer("device-b").getKeyServices());
+        Assert.assertNotNull(readRepairB);
+        Assert.assertNotSame(readRepairA, readRepairB);
+        Assert.assertNotSame(readRepairA, IonicReadRepair.getInstance(
+                url + ":other", info, new InMemoryFixture.KeyServer("device-a").getKeyServices()));
+        // read-repair is enabled only with retired keyspaces
+        info.remove("ionic.rotation.keyspaces");
+        Assert.assertNull(IonicReadRepair.getInstance(
+                url, info, new InMemoryFixture.KeyServer("device-c").getKeyServices()));
+        info.setProperty("ionic.rotation.repair", Boolean.FALSE.toString());
+        Assert.assertNull(IonicReadRepair.getInstance(
+                url, info, new InMemoryFixture.KeyServer("device-a").getKeyServices()));
+    }
+
+    @Test
+    public final void test_Repair() throws Exception {
+        final String url = "jdbc:test:repair:values";
+        final Map<Long, String> table = new ConcurrentHashMap<Long, String>();
+        table.put(1L, createStale("Jane"));
+        table.put(2L, "changed");
+        new InMemoryFixture.Database(url, new InMemoryFixture.Responder() {
+            @Override
+            public Object respond(final String sql, final List<Object> parameters) {
+                Assert.assertEquals("UPDATE \"personnel\" SET \"first\" = ? WHERE \"id\" = ? AND \"first\" = ?", sql);
+                final Long key = (Long) parameters.get(1);
+                return table.replace(key, (String) parameters.get(2), (String) parameters.get(0)) ? 1 : 0;
+            }
+        });
+        final Properties info = createInfo();
+        info.setProperty("ionic.rotation.rate", "1000");
+        final InMemoryFixture.KeyServer keyServer = new InMemoryFixture.KeyServer();
+        final IonicReadRepair readRepair = IonicReadRepair.getInstance(url, info, keyServer.getKeyServices());
+        Assert.assertTrue(readRepair.isStale("ABCD0000001"));
+        Assert.assertFalse(readRepair.isStale("test0000001"));
+        // the repairs are limited by the scheduler shared with the rotation jobs of the database
+        Assert.assertEquals(1000.0, IonicRotationPolicy.getScheduler(url, info).getRate(), 0.0);
+        final ResultSetMetaData metaData = createMetaData("personnel", "id", "first");
+        Assert.assertNull(readRepair.getTarget(metaData, 1));
+        final IonicReadRepair.Target target = readRepair.getTarget(metaData, 2);
+        Assert.assertNotNull(target);
+        Assert.assertEquals(1, target.getKeyIndex());
+        // the stale value is re-protected with a new key, by the identity which read it
+        readRepair.submit(target, 1L, createStale("Jane"), "Jane".getBytes(StandardCharsets.UTF_8));
+        awaitMetric(readRepair, IonicReadRepair.METRIC_REPAIRED, 1L);
+        Assert.assertTrue(table.get(1L).startsWith("~!2!test"));
+        Assert.assertEquals("Jane", new ChunkCipherV2(keyServer.getKeyServices()).decrypt(table.get(1L)));
+        // a row changed since it was read is not overwritten
+        readRepair.submit(target, 2L, createStale("John"), "John".getBytes(StandardCharsets.UTF_8));
+        awaitMetric(readRepair, IonicReadRepair.METRIC_CONFLICT, 1L);
+        Assert.assertEquals("changed", table.get(2L));
+        Assert.assertEquals(0L, readRepair.getMetrics().get(IonicReadRepair.METRIC_FAILED));
+    }
+
+    /**
+     * @return the connection properties of the tests, with read-repair of keyspace "ABCD" enabled
+     */
+    private static Properties createInfo() {
+        final Properties info = new Properties();
+        info.setProperty("ionic.config.jdbc.json", CONFIG);
+        info.setProperty("ionic.rotation.repair", Boolean.TRUE.toString());
+        info.setProperty("ionic.rotation.keyspaces", "ABCD");
+        info.setProperty("driverClassName", InMemoryFixture.TestDriver.class.getName());
+        return info;
+    }
+
+    /**
+     * @param plainText a value
+     * @return the value, as protected by a key of the retired keyspace (unknown keys are all zeros, in the
+     * in-memory key server)
+     */
+    private static String createStale(final String plainText) {
+        return "~!2!ABCD0000001" + Base64.getEncoder().encodeToString(plainText.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param table   the name of the table of the columns
+     * @param columns the names of the columns
+     * @return the description of a result set of the columns of a table
+     */
+    private static ResultSetMetaData createMetaData(final String table, final String... columns) {
+        return (ResultSetMetaData) Proxy.newProxyInstance(ReadRepairTest.class.getClassLoader(),
+                new Class<?>[]{ResultSetMetaData.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        if ("getColumnCount".equals(method.getName())) {
+                            return columns.length;
+                        } else if ("getColumnName".equals(method.getName())) {
+                            return columns[((Integer) args[0]) - 1];
+                        } else if ("getTableName".equals(method.getName())) {
+                            return table;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    /**
+     * Wait for a counter of the repairs to reach a value.
+     *
+     * @param readRepair the read-repair worker
+     * @param name       the name of the counter
+     * @param value      the expected value of the counter
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    private static void awaitMetric(final IonicReadRepair readRepair, final String name,
+                                    final long value) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT;
+        while ((readRepair.getMetrics().get(name) < value) && (System.currentTimeMillis() < deadline)) {
+            Thread.sleep(10L);
+        }
+        Assert.assertEquals(value, readRepair.getMetrics().get(name));
+    }
+}
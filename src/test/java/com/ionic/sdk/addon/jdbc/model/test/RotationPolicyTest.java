@@ -0,0 +1,59 @@
+package com.ionic.sdk.addon.jdbc.model.test;
+
+import com.ionic.sdk.addon.jdbc.impl.IonicRotationPolicy;
+import com.ionic.sdk.agent.key.KeyAttributesMap;
+import com.ionic.sdk.agent.request.getkey.GetKeysResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+
+/**
+ * Test the choice of values to be re-protected by key rotation.
+ */
+public class RotationPolicyTest {
+
+    @Test
+    public final void test_NoCriteria_AllStale() {
+        final IonicRotationPolicy policy = new IonicRotationPolicy(new Properties());
+        Assert.assertTrue(policy.getKeyspaces().isEmpty());
+        Assert.assertTrue(policy.isStale("ABCDefghijk", null, null));
+        Assert.assertFalse(policy.isRetired("ABCDefghijk"));
+    }
+
+    @Test
+    public final void test_RetiredKeyspaces() {
+        final Properties info = new Properties();
+        info.setProperty("ionic.rotation.keyspaces", " ABCD, WXYZ ,,");
+        final IonicRotationPolicy policy = new IonicRotationPolicy(info);
+        Assert.assertEquals(2, policy.getKeyspaces().size());
+        Assert.assertTrue(policy.isRetired("ABCDefghijk"));
+        Assert.assertTrue(policy.isRetired("WXYZefghijk"));
+        Assert.assertFalse(policy.isRetired("EFGHefghijk"));
+        Assert.assertFalse(policy.isRetired("ABC"));
+        Assert.assertFalse(policy.isRetired(null));
+        Assert.assertTrue(policy.isStale("ABCDefghijk", null, null));
+        Assert.assertFalse(policy.isStale("EFGHefghijk", null, null));
+    }
+
+    @Test
+    public final void test_ChangedAttributes() {
+        final Properties info = new Properties();
+        info.setProperty("ionic.rotation.keyspaces", "ABCD");
+        info.setProperty("ionic.rotation.attributes", Boolean.TRUE.toString());
+        final IonicRotationPolicy policy = new IonicRotationPolicy(info);
+        final KeyAttributesMap cattrs = new KeyAttributesMap();
+        cattrs.put("classification", Collections.singletonList("restricted"));
+        final KeyAttributesMap attributesKey = new KeyAttributesMap();
+        attributesKey.put("classification", Collections.singletonList("restricted"));
+        attributesKey.put("ionic-integrity-hash", Collections.singletonList("0123"));
+        final GetKeysResponse.Key key = new GetKeysResponse.Key();
+        key.setAttributesMap(attributesKey);
+        // attributes managed by the key server are ignored
+        Assert.assertFalse(policy.isStale("EFGHefghijk", key, cattrs));
+        cattrs.put("classification", Arrays.asList("restricted", "pii"));
+        Assert.assertTrue(policy.isStale("EFGHefghijk", key, cattrs));
+    }
+}
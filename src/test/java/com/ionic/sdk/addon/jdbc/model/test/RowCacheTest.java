@@ -0,0 +1,171 @@
+package com.ionic.sdk.addon.jdbc.model.test;
+
+import com.ionic.sdk.addon.jdbc.IonicColumns;
+import com.ionic.sdk.addon.jdbc.IonicResultSet;
+import com.ionic.sdk.addon.jdbc.IonicRow;
+import com.ionic.sdk.addon.jdbc.impl.IonicConnectionServices;
+import com.ionic.sdk.addon.jdbc.impl.IonicRowCache;
+import com.ionic.sdk.addon.jdbc.impl.IonicTokenVault;
+import com.ionic.sdk.addon.jdbc.impl.IonicValueCodec;
+import com.ionic.sdk.agent.cipher.chunk.ChunkCipherV2;
+import com.ionic.sdk.error.IonicException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test the cache of the unprotected values of a scrollable result set.
+ */
+public class RowCacheTest {
+
+    @Test
+    public final void test_HeapOnly() throws IonicException {
+        final IonicRowCache rowCache = new IonicRowCache(IonicRowCache.HEAP_DEFAULT);
+        rowCache.put(1, 2, toBytes("Alice"));
+        rowCache.put(2, 2, toBytes("Bob"));
+        Assert.assertEquals("Alice", toString(rowCache.get(1, 2)));
+        Assert.assertEquals("Bob", toString(rowCache.get(2, 2)));
+        Assert.assertNull(rowCache.get(1, 3));
+        Assert.assertNull(rowCache.get(3, 2));
+        Assert.assertEquals(0, rowCache.getSpilledCount());
+        Assert.assertNull(rowCache.getFile());
+        rowCache.close();
+        Assert.assertNull(rowCache.get(1, 2));
+    }
+
+    @Test
+    public final void test_Spill() throws IonicException, IOException {
+        final IonicRowCache rowCache = new IonicRowCache(100L);
+        final int rows = 1000;
+        for (int row = 1; (row <= rows); ++row) {
+            rowCache.put(row, 1, toBytes("secret-" + row));
+        }
+        // values beyond the heap budget are spilled to the file, and read back on request
+        Assert.assertTrue(rowCache.getHeapBytes() <= 100L);
+        Assert.assertTrue(rowCache.getSpilledCount() > 0);
+        Assert.assertEquals(rows - 1, rowCache.getSpilledCount());
+        for (int row = rows; (row >= 1); --row) {
+            Assert.assertEquals("secret-" + row, toString(rowCache.get(row, 1)));
+        }
+        // spilled values are not written in the clear
+        final File file = rowCache.getFile();
+        Assert.assertNotNull(file);
+        final String content = new String(Files.readAllBytes(file.toPath()), Charset.forName("ISO-8859-1"));
+        Assert.assertFalse(content.contains("secret-"));
+        rowCache.close();
+        Assert.assertFalse(file.exists());
+    }
+
+    @Test
+    public final void test_SpillSegments() throws IonicException {
+        final IonicRowCache rowCache = new IonicRowCache(0L);
+        // records fill fixed-size segments of the file; a record larger than a segment gets a segment of its own
+        final int[] sizes = {3 * 1024 * 1024, 3 * 1024 * 1024, 9 * 1024 * 1024, 100};
+        for (int i = 0; (i < sizes.length); ++i) {
+            rowCache.put(i + 1, 1, createValue(sizes[i], (byte) i));
+        }
+        Assert.assertEquals(sizes.length, rowCache.getSpilledCount());
+        Assert.assertTrue(rowCache.getFile().length() >= 3 * 1024 * 1024 + 9 * 1024 * 1024);
+        for (int i = sizes.length - 1; (i >= 0); --i) {
+            Assert.assertArrayEquals(createValue(sizes[i], (byte) i), rowCache.get(i + 1, 1));
+        }
+        rowCache.close();
+    }
+
+    @Test
+    public final void test_ResultSetRevisit() throws Exception {
+        final InMemoryFixture.KeyServer keyServer = new InMemoryFixture.KeyServer();
+        final ChunkCipherV2 chunkCipher = new ChunkCipherV2(keyServer.getKeyServices());
+        final Map<String, String> vault = new HashMap<String, String>();
+        final List<Object[]> rows = new ArrayList<Object[]>();
+        for (int i = 0; (i < 3); ++i) {
+            final String token = IonicTokenVault.createToken();
+            vault.put(token, chunkCipher.encrypt(IonicValueCodec.encode("ssn-" + i), null));
+            rows.add(new Object[]{i, chunkCipher.encrypt(IonicValueCodec.encode("first-" + i), null), token});
+        }
+        final AtomicInteger queries = new AtomicInteger();
+        final InMemoryFixture.Database database = new InMemoryFixture.Database("jdbc:test:rowcache",
+                new InMemoryFixture.Responder() {
+                    @Override
+                    public Object respond(final String sql, final List<Object> parameters) {
+                        queries.incrementAndGet();
+                        final List<Object[]> rowsVault = new ArrayList<Object[]>();
+                        for (final Object token : parameters) {
+                            rowsVault.add(new Object[]{token, vault.get(token)});
+                        }
+                        return InMemoryFixture.createResultSet(new String[]{"token", "ciphertext"},
+                                new int[]{Types.VARCHAR, Types.VARCHAR}, rowsVault);
+                    }
+                });
+        final Properties info = new Properties();
+        info.setProperty("ionic.token.vault", "test_rowcache_vault");
+        info.setProperty("ionic.token.cache", "1");
+        final IonicConnectionServices services = new IonicConnectionServices(null,
+                IonicTokenVault.getInstance("jdbc:test:rowcache", info), Collections.singleton("ssn"), null, null);
+        final Statement statement = database.connect().createStatement();
+        final String[] labels = {"id", "first", "ssn"};
+        final int[] types = {Types.INTEGER, Types.VARCHAR, Types.VARCHAR};
+        // the values unprotected by the bulk read APIs are served from the cache when their rows are revisited
+        final IonicResultSet resultSet = new IonicResultSet(InMemoryFixture.createResultSet(labels, types, rows,
+                ResultSet.TYPE_SCROLL_INSENSITIVE, statement), keyServer.getKeyServices(), services);
+        resultSet.setRowCacheBudget(0L);
+        Assert.assertEquals("ssn-2", resultSet.fetchRows(10).get(2).getString("ssn"));
+        final int requests = keyServer.getRequests().size();
+        final int queriesRead = queries.get();
+        Assert.assertTrue(resultSet.absolute(2));
+        Assert.assertEquals("first-1", resultSet.getString("first"));
+        Assert.assertEquals("ssn-1", resultSet.getString(3));
+        resultSet.beforeFirst();
+        final List<IonicRow> ionicRows = resultSet.fetchRows(10);
+        Assert.assertEquals("first-0", ionicRows.get(0).getString("first"));
+        Assert.assertEquals("ssn-1", ionicRows.get(1).getString("ssn"));
+        resultSet.beforeFirst();
+        final IonicColumns columns = resultSet.fetchColumns(10);
+        Assert.assertEquals(Arrays.asList("first-0", "first-1", "first-2"), Arrays.asList(columns.getStrings(2)));
+        Assert.assertEquals(Arrays.asList("ssn-0", "ssn-1", "ssn-2"), Arrays.asList(columns.getStrings(3)));
+        Assert.assertEquals(requests, keyServer.getRequests().size());
+        Assert.assertEquals(queriesRead, queries.get());
+        resultSet.close();
+        // the values unprotected a vector at a time are cached as well
+        final IonicResultSet resultSetColumns = new IonicResultSet(InMemoryFixture.createResultSet(labels, types,
+                rows, ResultSet.TYPE_SCROLL_INSENSITIVE, statement), keyServer.getKeyServices(), services);
+        Assert.assertEquals("ssn-0", resultSetColumns.fetchColumns(10).getStrings(3)[0]);
+        final int requestsColumns = keyServer.getRequests().size();
+        final int queriesColumns = queries.get();
+        Assert.assertTrue(resultSetColumns.first());
+        Assert.assertEquals("first-0", resultSetColumns.getString(2));
+        Assert.assertEquals("ssn-0", resultSetColumns.getString(3));
+        Assert.assertEquals(requestsColumns, keyServer.getRequests().size());
+        Assert.assertEquals(queriesColumns, queries.get());
+        resultSetColumns.close();
+    }
+
+    private static byte[] createValue(final int size, final byte fill) {
+        final byte[] value = new byte[size];
+        Arrays.fill(value, fill);
+        return value;
+    }
+
+    private static byte[] toBytes(final String value) {
+        return value.getBytes(Charset.forName("UTF-8"));
+    }
+
+    private static String toString(final byte[] value) {
+        return (value == null) ? null : new String(value, Charset.forName("UTF-8"));
+    }
+}
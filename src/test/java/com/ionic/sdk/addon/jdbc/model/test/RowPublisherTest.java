@@ -0,0 +1,226 @@
+package com.ionic.sdk.addon.jdbc.model.test;
+
+import com.ionic.sdk.addon.jdbc.IonicResultSet;
+import com.ionic.sdk.addon.jdbc.IonicRow;
+import com.ionic.sdk.addon.jdbc.IonicRowPublisher;
+import com.ionic.sdk.addon.jdbc.impl.IonicValueCodec;
+import com.ionic.sdk.agent.cipher.chunk.ChunkCipherV2;
+import com.ionic.sdk.error.IonicException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Test the publication of query results to reactive subscribers.
+ */
+public class RowPublisherTest {
+
+    /**
+     * Class scoped logger.
+     */
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    /**
+     * The number of rows of the query result.
+     */
+    private static final int ROWS = 10;
+
+    /**
+     * Delivers rows on the calling thread.
+     */
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(final Runnable command) {
+            command.run();
+        }
+    };
+
+    /**
+     * The key server of the test.
+     */
+    private InMemoryFixture.KeyServer keyServer;
+
+    /**
+     * The underlying result set of the query (null before the query is executed).
+     */
+    private ResultSet resultSet;
+
+    /**
+     * The number of executions of the query.
+     */
+    private AtomicInteger queries;
+
+    @Before
+    public final void setUp() {
+        keyServer = new InMemoryFixture.KeyServer();
+        resultSet = null;
+        queries = new AtomicInteger();
+    }
+
+    @Test
+    public final void test_Demand() throws Exception {
+        final IonicRowPublisher publisher = new IonicRowPublisher(createQuery(), DIRECT);
+        final TestSubscriber subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+        // the query is executed on the first request
+        Assert.assertEquals(0, queries.get());
+        subscriber.subscription.request(3L);
+        Assert.assertEquals(1, queries.get());
+        Assert.assertEquals(3, subscriber.rows.size());
+        // no more rows are delivered than requested
+        subscriber.subscription.request(4L);
+        Assert.assertEquals(7, subscriber.rows.size());
+        Assert.assertFalse(subscriber.complete);
+        Assert.assertFalse(resultSet.isClosed());
+        subscriber.subscription.request(Long.MAX_VALUE);
+        Assert.assertEquals(ROWS, subscriber.rows.size());
+        for (int i = 0; (i < ROWS); ++i) {
+            Assert.assertEquals(i, subscriber.rows.get(i).getObject("id"));
+            Assert.assertEquals("first-" + i, subscriber.rows.get(i).getString("first"));
+        }
+        Assert.assertTrue(subscriber.complete);
+        Assert.assertNull(subscriber.error);
+        Assert.assertTrue(resultSet.isClosed());
+        Assert.assertEquals(1, queries.get());
+        // the query result is published only once
+        final TestSubscriber subscriberSecond = new TestSubscriber();
+        publisher.subscribe(subscriberSecond);
+        Assert.assertTrue(subscriberSecond.error instanceof IllegalStateException);
+    }
+
+    @Test
+    public final void test_Cancel() throws Exception {
+        final TestSubscriber subscriber = new TestSubscriber();
+        subscriber.cancelAfter = 2;
+        new IonicRowPublisher(createQuery(), DIRECT).subscribe(subscriber);
+        subscriber.subscription.request(5L);
+        // the subscriber cancels from within the delivery of a row; the query result is released
+        Assert.assertEquals(2, subscriber.rows.size());
+        Assert.assertTrue(resultSet.isClosed());
+        subscriber.subscription.request(5L);
+        Assert.assertEquals(2, subscriber.rows.size());
+        Assert.assertFalse(subscriber.complete);
+        Assert.assertNull(subscriber.error);
+    }
+
+    @Test
+    public final void test_Error() throws Exception {
+        final TestSubscriber subscriber = new TestSubscriber();
+        new IonicRowPublisher(new Callable<IonicResultSet>() {
+            @Override
+            public IonicResultSet call() throws SQLException {
+                queries.incrementAndGet();
+                throw new SQLException("query failed");
+            }
+        }, DIRECT).subscribe(subscriber);
+        subscriber.subscription.request(1L);
+        Assert.assertTrue(subscriber.error instanceof SQLException);
+        logger.info("[EXCEPTION EXPECTED] message: " + subscriber.error.getMessage());
+        // the subscription has ended; no further signals are delivered
+        subscriber.subscription.request(1L);
+        Assert.assertEquals(1, queries.get());
+        Assert.assertEquals(1, subscriber.errors);
+        Assert.assertFalse(subscriber.complete);
+        // a non-positive request ends the subscription with an error, releasing the query result
+        final TestSubscriber subscriberInvalid = new TestSubscriber();
+        new IonicRowPublisher(createQuery(), DIRECT).subscribe(subscriberInvalid);
+        subscriberInvalid.subscription.request(1L);
+        subscriberInvalid.subscription.request(0L);
+        Assert.assertTrue(subscriberInvalid.error instanceof IllegalArgumentException);
+        logger.info("[EXCEPTION EXPECTED] message: " + subscriberInvalid.error.getMessage());
+        Assert.assertTrue(resultSet.isClosed());
+        Assert.assertEquals(1, subscriberInvalid.rows.size());
+    }
+
+    /**
+     * @return the query of the tests, with a protected column "first"
+     * @throws IonicException on Ionic cryptography errors
+     */
+    private Callable<IonicResultSet> createQuery() throws IonicException {
+        final ChunkCipherV2 chunkCipher = new ChunkCipherV2(keyServer.getKeyServices());
+        final List<Object[]> rows = new ArrayList<Object[]>();
+        for (int i = 0; (i < ROWS); ++i) {
+            rows.add(new Object[]{i, chunkCipher.encrypt(IonicValueCodec.encode("first-" + i), null)});
+        }
+        return new Callable<IonicResultSet>() {
+            @Override
+            public IonicResultSet call() {
+                queries.incrementAndGet();
+                resultSet = InMemoryFixture.createResultSet(new String[]{"id", "first"},
+                        new int[]{Types.INTEGER, Types.VARCHAR}, rows);
+                return new IonicResultSet(resultSet, keyServer.getKeyServices());
+            }
+        };
+    }
+
+    /**
+     * Records the signals of a subscription.
+     */
+    private static final class TestSubscriber implements Flow.Subscriber<IonicRow> {
+
+        /**
+         * The rows delivered.
+         */
+        private final List<IonicRow> rows = new ArrayList<IonicRow>();
+
+        /**
+         * The number of rows after which the subscription is cancelled (-1 to not cancel).
+         */
+        private int cancelAfter = -1;
+
+        /**
+         * The subscription.
+         */
+        private Flow.Subscription subscription;
+
+        /**
+         * True once the subscription has completed normally.
+         */
+        private boolean complete;
+
+        /**
+         * The error ending the subscription (null if none).
+         */
+        private Throwable error;
+
+        /**
+         * The number of errors signalled.
+         */
+        private int errors;
+
+        @Override
+        public void onSubscribe(final Flow.Subscription subscriptionIn) {
+            this.subscription = subscriptionIn;
+        }
+
+        @Override
+        public void onNext(final IonicRow row) {
+            rows.add(row);
+            if (rows.size() == cancelAfter) {
+                subscription.cancel();
+            }
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            error = throwable;
+            ++errors;
+        }
+
+        @Override
+        public void onComplete() {
+            complete = true;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.ionic.sdk.addon.jdbc.model.test;
+
+import com.ionic.sdk.addon.jdbc.IonicResultSet;
+import com.ionic.sdk.addon.jdbc.IonicRow;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Test the {@link java.util.stream.Stream} view of {@link IonicResultSet}.
+ */
+public class RowStreamTest {
+
+    @Test
+    public final void testStream_Sequential_ReadsAllAndCloses() throws Exception {
+        final ResultSet wrapped = createResultSet(1000, 64);
+        final IonicResultSet resultSet = new IonicResultSet(wrapped, null);
+        final List<String> values = resultSet.stream().map(new Function<IonicRow, String>() {
+            @Override
+            public String apply(final IonicRow row) {
+                return row.getString(2);
+            }
+        }).collect(Collectors.<String>toList());
+        Assert.assertEquals(1000, values.size());
+        Assert.assertEquals("value-0", values.get(0));
+        Assert.assertEquals("value-999", values.get(999));
+        Assert.assertTrue(wrapped.isClosed());
+    }
+
+    @Test
+    public final void testStream_Parallel_PreservesOrder() throws Exception {
+        final ResultSet wrapped = createResultSet(5000, 0);
+        final IonicResultSet resultSet = new IonicResultSet(wrapped, null);
+        final List<Integer> ids = resultSet.stream().parallel().map(new Function<IonicRow, Integer>() {
+            @Override
+            public Integer apply(final IonicRow row) {
+                return (Integer) row.getObject(1);
+            }
+        }).collect(Collectors.<Integer>toList());
+        Assert.assertEquals(5000, ids.size());
+        for (int i = 0; (i < ids.size()); ++i) {
+            Assert.assertEquals(i, ids.get(i).intValue());
+        }
+        Assert.assertTrue(wrapped.isClosed());
+    }
+
+    @Test
+    public final void testStream_ShortCircuit_ClosedByCaller() throws Exception {
+        final ResultSet wrapped = createResultSet(1000, 10);
+        final IonicResultSet resultSet = new IonicResultSet(wrapped, null);
+        try (Stream<IonicRow> stream = resultSet.stream()) {
+            Assert.assertEquals("value-0", stream.findFirst().get().getString("name"));
+            Assert.assertFalse(wrapped.isClosed());
+        }
+        Assert.assertTrue(wrapped.isClosed());
+    }
+
+    /**
+     * Create an in-memory result set with columns "id" (an integer) and "name" (a string).
+     *
+     * @param count     the number of rows of the result set
+     * @param fetchSize the fetch size of the result set
+     * @return the result set
+     * @throws SQLException on failure to set the fetch size
+     */
+    private static ResultSet createResultSet(final int count, final int fetchSize) throws SQLException {
+        final List<Object[]> rows = new ArrayList<Object[]>();
+        for (int id = 0; (id < count); ++id) {
+            rows.add(new Object[]{id, "value-" + id});
+        }
+        final ResultSet resultSet = InMemoryFixture.createResultSet(
+                new String[]{"id", "name"}, new int[]{Types.INTEGER, Types.VARCHAR}, rows);
+        resultSet.setFetchSize(fetchSize);
+        return resultSet;
+    }
+}
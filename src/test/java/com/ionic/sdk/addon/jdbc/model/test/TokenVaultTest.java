@@ -0,0 +1,272 @@
+package com.ionic.sdk.addon.jdbc.model.test;
+
+import com.ionic.sdk.addon.jdbc.IonicResultSet;
+import com.ionic.sdk.addon.jdbc.IonicRow;
+import com.ionic.sdk.addon.jdbc.impl.IonicColumnConfig;
+import com.ionic.sdk.addon.jdbc.impl.IonicConfigReader;
+import com.ionic.sdk.addon.jdbc.impl.IonicConnectionServices;
+import com.ionic.sdk.addon.jdbc.impl.IonicLruCache;
+import com.ionic.sdk.addon.jdbc.impl.IonicTokenVault;
+import com.ionic.sdk.addon.jdbc.impl.IonicValueCodec;
+import com.ionic.sdk.agent.cipher.chunk.ChunkCipherV2;
+import com.ionic.sdk.agent.key.KeyAttributesMap;
+import com.ionic.sdk.error.IonicException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test the token vault of tokenized columns.
+ */
+public class TokenVaultTest {
+
+    /**
+     * The (nominal) url of the database holding the vault.
+     */
+    private static final String URL = "jdbc:test:vault";
+
+    @Test
+    public final void test_Tokens() {
+        final Set<String> tokens = new HashSet<String>();
+        for (int i = 0; (i < 1000); ++i) {
+            final String token = IonicTokenVault.createToken();
+            Assert.assertEquals(IonicTokenVault.TOKEN_LENGTH, token.length());
+            Assert.assertTrue(IonicTokenVault.isToken(token));
+            tokens.add(token);
+        }
+        Assert.assertEquals(1000, tokens.size());
+        Assert.assertFalse(IonicTokenVault.isToken("4111111111111111"));
+        Assert.assertFalse(IonicTokenVault.isToken("~T~short"));
+        Assert.assertFalse(IonicTokenVault.isToken(null));
+        Assert.assertFalse(IonicTokenVault.isReference(IonicTokenVault.createToken()));
+    }
+
+    @Test
+    public final void test_References() throws IonicException, SQLException {
+        final Properties info = new Properties();
+        info.setProperty("ionic.token.vault", "test_token_vault");
+        final IonicTokenVault vault = IonicTokenVault.getInstance(URL + "/dedup", info);
+        final Map<String, String> table = new HashMap<String, String>();
+        final AtomicInteger queries = new AtomicInteger();
+        final InMemoryFixture.Database database = createDatabase(table, queries);
+        final Connection connection = database.connect();
+        // references share the vault table (and its cache) with tokens, and are told apart by their prefix
+        final String reference = "~D~" + IonicTokenVault.createToken().substring(3);
+        Assert.assertTrue(IonicTokenVault.isToken(reference));
+        Assert.assertTrue(IonicTokenVault.isReference(reference));
+        Assert.assertFalse(IonicTokenVault.isReference("~D~short"));
+        // references unknown to the vault are absent from the result, and are looked up in a single query
+        final List<String> references = Arrays.asList(reference, "~D~" + IonicTokenVault.createToken().substring(3));
+        Assert.assertTrue(vault.lookupValues(connection, references, null).isEmpty());
+        Assert.assertEquals(1, queries.get());
+        Assert.assertEquals(0, database.getBatches());
+    }
+
+    @Test
+    public final void test_ReferencesPerIdentity() throws IonicException {
+        createDatabase(URL + "/identity", new HashMap<String, String>(), new AtomicInteger());
+        final Properties info = new Properties();
+        info.setProperty("ionic.token.vault", "test_token_vault");
+        info.setProperty("driverClassName", InMemoryFixture.TestDriver.class.getName());
+        final IonicTokenVault vault = IonicTokenVault.getInstance(URL + "/identity", info);
+        final IonicColumnConfig columnConfig = new IonicColumnConfig(
+                new KeyAttributesMap(), -1, 0, IonicColumnConfig.Storage.DEDUP);
+        final InMemoryFixture.KeyServer keyServerA = new InMemoryFixture.KeyServer("device-dedup-a");
+        final String reference = vault.getReference("12345", columnConfig, keyServerA.getKeyServices());
+        Assert.assertEquals(reference, vault.getReference("12345", columnConfig, keyServerA.getKeyServices()));
+        Assert.assertEquals(1, keyServerA.getCreateRequests());
+        // another identity does not reuse the reference; the value is protected on its behalf
+        final InMemoryFixture.KeyServer keyServerB = new InMemoryFixture.KeyServer("device-dedup-b");
+        Assert.assertNotEquals(reference, vault.getReference("12345", columnConfig, keyServerB.getKeyServices()));
+        Assert.assertEquals(1, keyServerB.getCreateRequests());
+    }
+
+    @Test
+    public final void test_ReferenceValueExpiry() throws Exception {
+        final InMemoryFixture.KeyServer keyServer = new InMemoryFixture.KeyServer("device-expiry");
+        final String cipherText = new ChunkCipherV2(keyServer.getKeyServices()).encrypt(
+                IonicValueCodec.encode("12345"), null);
+        final Map<String, String> table = new HashMap<String, String>();
+        final InMemoryFixture.Database database = createDatabase(table, new AtomicInteger());
+        final Connection connection = database.connect();
+        final String reference = "~D~" + IonicTokenVault.createToken().substring(3);
+        table.put(reference, cipherText);
+        final List<String> references = Arrays.asList(reference);
+        // without a key cache, unprotected values are not cached; each read fetches the key of the value
+        final Properties info = new Properties();
+        info.setProperty("ionic.token.vault", "test_token_vault");
+        final IonicTokenVault vault = IonicTokenVault.getInstance(URL + "/expiry/nocache", info);
+        for (int i = 1; (i <= 2); ++i) {
+            Assert.assertEquals("12345", vault.lookupValues(connection, references, keyServer.getKeyServices())
+                    .get(reference));
+            Assert.assertEquals(i, keyServer.getRequests().size());
+        }
+        // values are cached for no longer than keys
+        info.setProperty("ionic.keycache.ttl", "1");
+        final IonicTokenVault vaultCached = IonicTokenVault.getInstance(URL + "/expiry/cache", info);
+        for (int i = 0; (i < 2); ++i) {
+            Assert.assertEquals("12345", vaultCached.lookupValues(connection, references,
+                    keyServer.getKeyServices()).get(reference));
+            Assert.assertEquals(3, keyServer.getRequests().size());
+        }
+        Thread.sleep(1100L);
+        Assert.assertEquals("12345", vaultCached.lookupValues(connection, references,
+                keyServer.getKeyServices()).get(reference));
+        Assert.assertEquals(4, keyServer.getRequests().size());
+    }
+
+    @Test
+    public final void test_InsertAndLookup() throws IonicException, SQLException {
+        final Properties info = new Properties();
+        info.setProperty("ionic.token.vault", "test_token_vault");
+        info.setProperty("ionic.token.cache", "2");
+        final IonicTokenVault vault = IonicTokenVault.getInstance(URL, info);
+        Assert.assertSame(vault, IonicTokenVault.getInstance(URL, info));
+        final Map<String, String> table = new HashMap<String, String>();
+        final AtomicInteger queries = new AtomicInteger();
+        final InMemoryFixture.Database database = createDatabase(table, queries);
+        final Connection connection = database.connect();
+        // the vault entries of a statement are written in a single batch
+        final List<String[]> entries = new ArrayList<String[]>();
+        for (int i = 0; (i < 3); ++i) {
+            entries.add(new String[]{IonicTokenVault.createToken(), "ciphertext-" + i});
+        }
+        vault.insert(connection, entries);
+        Assert.assertEquals(3, table.size());
+        Assert.assertEquals(1, database.getBatches());
+        Assert.assertEquals(2, vault.getCacheSize());
+        // the least recently used entry was evicted from the cache, and is read from the table
+        final List<String> tokens = Arrays.asList(entries.get(0)[0], entries.get(1)[0], entries.get(2)[0]);
+        final Map<String, String> cipherTexts = vault.lookup(connection, tokens);
+        Assert.assertEquals(1, queries.get());
+        for (final String[] entry : entries) {
+            Assert.assertEquals(entry[1], cipherTexts.get(entry[0]));
+        }
+        Assert.assertEquals("ciphertext-0",
+                vault.lookup(connection, Arrays.asList(entries.get(0)[0])).get(entries.get(0)[0]));
+        Assert.assertEquals(1, queries.get());
+        // a large block of tokens is looked up in a few queries; unknown tokens are absent from the result
+        final List<String> unknown = new ArrayList<String>();
+        for (int i = 0; (i < 1200); ++i) {
+            unknown.add(IonicTokenVault.createToken());
+        }
+        Assert.assertTrue(vault.lookup(connection, unknown).isEmpty());
+        Assert.assertEquals(4, queries.get());
+    }
+
+    @Test
+    public final void test_VaultColumns() throws IonicException, SQLException {
+        final String config = "{\"Tables\": {\"accounts\": {\"IonicColumns\": {"
+                + "\"zip\": {\"cattrs\": {}, \"storage\": \"dedup\"}, \"owner\": {\"cattrs\": {}}}}}, "
+                + "\"PreparedStatement\": {\"INSERT INTO accounts (number, note) VALUES (?, ?)\": {\"IonicColumns\": {"
+                + "\"1\": {\"cattrs\": {}, \"storage\": \"token\"}, \"2\": {\"cattrs\": {}}}}}}";
+        Assert.assertEquals(new TreeSet<String>(Arrays.asList("number", "zip")),
+                IonicConfigReader.getVaultColumns(config));
+        final InMemoryFixture.KeyServer keyServer = new InMemoryFixture.KeyServer("device-columns");
+        final Map<String, String> table = new HashMap<String, String>();
+        final AtomicInteger queries = new AtomicInteger();
+        final InMemoryFixture.Database database = createDatabase(URL + "/columns", table, queries);
+        final String token = IonicTokenVault.createToken();
+        table.put(token, new ChunkCipherV2(keyServer.getKeyServices()).encrypt(IonicValueCodec.encode("4111"), null));
+        final Properties info = new Properties();
+        info.setProperty("ionic.token.vault", "test_token_vault");
+        final IonicConnectionServices services = new IonicConnectionServices(null,
+                IonicTokenVault.getInstance(URL + "/columns", info), IonicConfigReader.getVaultColumns(config),
+                null, null);
+        // a plaintext value shaped like a token is read as is, unless its column is held in the vault
+        final String note = IonicTokenVault.createToken();
+        final String[] labels = {"number", "note"};
+        final int[] types = {Types.VARCHAR, Types.VARCHAR};
+        final List<Object[]> rows = Collections.singletonList(new Object[]{token, note});
+        final Statement statement = database.connect().createStatement();
+        final IonicResultSet resultSet = new IonicResultSet(InMemoryFixture.createResultSet(labels, types, rows,
+                ResultSet.TYPE_FORWARD_ONLY, statement), keyServer.getKeyServices(), services);
+        Assert.assertTrue(resultSet.next());
+        Assert.assertEquals("4111", resultSet.getString(1));
+        Assert.assertEquals(note, resultSet.getString("note"));
+        Assert.assertEquals(note, resultSet.getObject(2));
+        Assert.assertEquals(1, queries.get());
+        final IonicResultSet resultSetRows = new IonicResultSet(InMemoryFixture.createResultSet(labels, types, rows,
+                ResultSet.TYPE_FORWARD_ONLY, statement), keyServer.getKeyServices(), services);
+        final IonicRow row = resultSetRows.fetchRows(10).get(0);
+        Assert.assertEquals("4111", row.getString("number"));
+        Assert.assertEquals(note, row.getString("note"));
+        Assert.assertEquals(1, queries.get());
+    }
+
+    @Test
+    public final void test_LruCache() {
+        final IonicLruCache<String, Integer> cache = new IonicLruCache<String, Integer>(2);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        Assert.assertEquals(1, cache.get("a").intValue());
+        cache.put("c", 3);
+        Assert.assertNull(cache.get("b"));
+        Assert.assertEquals(1, cache.get("a").intValue());
+        Assert.assertEquals(3, cache.get("c").intValue());
+        cache.remove("a");
+        Assert.assertEquals(1, cache.size());
+    }
+
+    /**
+     * Create an in-memory database, which understands the statements of the token vault.
+     *
+     * @param table   the content of the vault table
+     * @param queries counts the queries of the vault table
+     * @return the database
+     */
+    private static InMemoryFixture.Database createDatabase(final Map<String, String> table,
+                                                           final AtomicInteger queries) {
+        return createDatabase(URL, table, queries);
+    }
+
+    /**
+     * Create an in-memory database, which understands the statements of the token vault.
+     *
+     * @param url     the (nominal) url of the database
+     * @param table   the content of the vault table
+     * @param queries counts the queries of the vault table
+     * @return the database
+     */
+    private static InMemoryFixture.Database createDatabase(final String url, final Map<String, String> table,
+                                                           final AtomicInteger queries) {
+        return new InMemoryFixture.Database(url, new InMemoryFixture.Responder() {
+            @Override
+            public Object respond(final String sql, final List<Object> parameters) {
+                if (sql.startsWith("CREATE TABLE IF NOT EXISTS")) {
+                    return null;
+                } else if (sql.startsWith("INSERT INTO test_token_vault")) {
+                    table.put((String) parameters.get(0), (String) parameters.get(1));
+                    return 1;
+                } else if (sql.startsWith("SELECT token, ciphertext FROM test_token_vault")) {
+                    queries.incrementAndGet();
+                    final List<Object[]> rows = new ArrayList<Object[]>();
+                    for (final Object token : parameters) {
+                        if (table.containsKey(token)) {
+                            rows.add(new Object[]{token, table.get(token)});
+                        }
+                    }
+                    return InMemoryFixture.createResultSet(new String[]{"token", "ciphertext"},
+                            new int[]{Types.VARCHAR, Types.VARCHAR}, rows);
+                }
+                throw new UnsupportedOperationException(sql);
+            }
+        });
+    }
+}
@@ -0,0 +1,99 @@
+package com.ionic.sdk.addon.jdbc.model.test;
+
+import com.ionic.sdk.addon.jdbc.impl.IonicMetrics;
+import com.ionic.sdk.addon.jdbc.impl.IonicValueCache;
+import com.ionic.sdk.error.IonicException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * Test the cache of unprotected values.
+ */
+public class ValueCacheTest {
+
+    /**
+     * Class scoped logger.
+     */
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    @Test
+    public final void test_HitsAndMisses() {
+        final IonicMetrics metrics = new IonicMetrics("test");
+        final IonicValueCache valueCache = new IonicValueCache(2, 60000L, metrics);
+        final byte[] plainText = "Springfield".getBytes(StandardCharsets.UTF_8);
+        Assert.assertNull(valueCache.get("~!2!key-1!ciphertext-1!"));
+        valueCache.put("~!2!key-1!ciphertext-1!", plainText);
+        Assert.assertSame(plainText, valueCache.get("~!2!key-1!ciphertext-1!"));
+        Assert.assertNull(valueCache.get("~!2!key-1!ciphertext-2!"));
+        Assert.assertEquals(1L, metrics.get(IonicValueCache.METRIC_HIT));
+        Assert.assertEquals(2L, metrics.get(IonicValueCache.METRIC_MISS));
+        // the cache is bounded; the least recently used entry is discarded first
+        valueCache.put("~!2!key-2!ciphertext-3!", plainText);
+        valueCache.get("~!2!key-1!ciphertext-1!");
+        valueCache.put("~!2!key-2!ciphertext-4!", plainText);
+        Assert.assertEquals(2, valueCache.size());
+        Assert.assertNull(valueCache.get("~!2!key-2!ciphertext-3!"));
+        Assert.assertNotNull(valueCache.get("~!2!key-1!ciphertext-1!"));
+    }
+
+    @Test
+    public final void test_ExpiryAndInvalidation() {
+        final IonicMetrics metrics = new IonicMetrics("test");
+        final byte[] plainText = "Riverside".getBytes(StandardCharsets.UTF_8);
+        // entries are not used after their expiry
+        final IonicValueCache valueCacheExpired = new IonicValueCache(10, -1L, metrics);
+        valueCacheExpired.put("~!2!key-1!ciphertext-1!", plainText);
+        Assert.assertNull(valueCacheExpired.get("~!2!key-1!ciphertext-1!"));
+        Assert.assertEquals(1L, metrics.get(IonicValueCache.METRIC_EXPIRED));
+        Assert.assertEquals(0, valueCacheExpired.size());
+        // entries may be discarded explicitly
+        final IonicValueCache valueCache = new IonicValueCache(10, 60000L, metrics);
+        valueCache.put("~!2!key-1!ciphertext-1!", plainText);
+        valueCache.put("~!2!key-1!ciphertext-2!", plainText);
+        valueCache.put("~!2!key-1!ciphertext-3!", plainText);
+        valueCache.invalidate("~!2!key-1!ciphertext-1!");
+        Assert.assertNull(valueCache.get("~!2!key-1!ciphertext-1!"));
+        Assert.assertEquals(2, valueCache.size());
+        valueCache.invalidateAll();
+        Assert.assertEquals(0, valueCache.size());
+        Assert.assertEquals(3L, metrics.get(IonicValueCache.METRIC_INVALIDATED));
+    }
+
+    @Test
+    public final void test_Settings() throws IonicException {
+        final Properties info = new Properties();
+        Assert.assertNull(IonicValueCache.getInstance(info, null));
+        info.setProperty("ionic.valuecache.size", "100");
+        // values are not cached for longer than keys; without a key cache, values are not cached
+        Assert.assertNull(IonicValueCache.getInstance(info, null));
+        info.setProperty("ionic.keycache.ttl", "60");
+        final IonicValueCache valueCache = IonicValueCache.getInstance(info, null);
+        Assert.assertNotNull(valueCache);
+        Assert.assertSame(valueCache, IonicValueCache.getInstance(info, null));
+        info.setProperty("ionic.valuecache.size", "many");
+        try {
+            IonicValueCache.getInstance(info, null);
+            Assert.fail("IonicException expected");
+        } catch (IonicException e) {
+            logger.info("[EXCEPTION EXPECTED] message: " + e.getMessage());
+        }
+    }
+
+    @Test
+    public final void test_KeyCacheTtl() throws Exception {
+        final Properties info = new Properties();
+        info.setProperty("ionic.valuecache.size", "100");
+        info.setProperty("ionic.keycache.ttl", "1");
+        final IonicValueCache valueCache = IonicValueCache.getInstance(
+                info, new InMemoryFixture.KeyServer("device-valuecache-ttl").getKeyServices());
+        // the interval of the value cache (default 60 seconds) is clamped to the interval of the key cache
+        valueCache.put("~!2!key-1!ciphertext-1!", "Lakeview".getBytes(StandardCharsets.UTF_8));
+        Assert.assertNotNull(valueCache.get("~!2!key-1!ciphertext-1!"));
+        Thread.sleep(1100L);
+        Assert.assertNull(valueCache.get("~!2!key-1!ciphertext-1!"));
+    }
+}
@@ -0,0 +1,218 @@
+package com.ionic.sdk.addon.jdbc.model.test;
+
+import com.ionic.sdk.addon.jdbc.IonicPreparedStatement;
+import com.ionic.sdk.addon.jdbc.IonicResultSet;
+import com.ionic.sdk.addon.jdbc.impl.IonicTypeDecoders;
+import com.ionic.sdk.addon.jdbc.impl.IonicValueCodec;
+import com.ionic.sdk.agent.cipher.chunk.ChunkCipherV2;
+import com.ionic.sdk.error.IonicException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Test the serialization of typed values for Ionic protection, and their conversion to requested types.
+ */
+public class ValueCodecTest {
+
+    /**
+     * Class scoped logger.
+     */
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    @Test
+    public final void test_RoundTrip() throws IonicException {
+        final Object[] values = {
+                0, -1, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MIN_VALUE, 1234567890123L, -2.5,
+                new BigDecimal("-12345.6789"), new BigDecimal("1E+10"), Date.valueOf("1969-07-20"),
+                Timestamp.valueOf("2026-10-19 09:14:27.123456789"), Timestamp.valueOf("1960-01-01 00:00:00.5"),
+                "plain text", ""};
+        for (final Object value : values) {
+            Assert.assertEquals(value, IonicValueCodec.decode(IonicValueCodec.encode(value)));
+        }
+        final byte[] bytes = {(byte) 0xFF, 0, 1, 2};
+        Assert.assertArrayEquals(bytes, (byte[]) IonicValueCodec.decode(IonicValueCodec.encode(bytes)));
+        Assert.assertEquals(Date.valueOf("2000-02-29"),
+                IonicValueCodec.decode(IonicValueCodec.encode(LocalDate.of(2000, 2, 29))));
+        Assert.assertEquals(7, IonicValueCodec.decode(IonicValueCodec.encode((short) 7)));
+    }
+
+    @Test
+    public final void test_CompactEncoding() throws IonicException {
+        Assert.assertEquals(3, IonicValueCodec.encode(42).length);
+        Assert.assertEquals(3, IonicValueCodec.encode(-42L).length);
+        Assert.assertEquals(5, IonicValueCodec.encode(Date.valueOf("2026-10-19")).length);
+        Assert.assertEquals(10, IonicValueCodec.encode(Timestamp.valueOf("2026-10-19 09:14:27.123456")).length);
+        Assert.assertTrue(IonicValueCodec.encode(1234567890123L).length
+                < Long.toString(1234567890123L).getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    @Test
+    public final void test_Conversions() throws IonicException {
+        Assert.assertEquals(42L, IonicValueCodec.toLong("42"));
+        Assert.assertEquals(42L, IonicValueCodec.toLong(42));
+        Assert.assertEquals(0L, IonicValueCodec.toLong(null));
+        Assert.assertEquals(2.5, IonicValueCodec.toDouble(new BigDecimal("2.5")), 0.0);
+        Assert.assertEquals(Date.valueOf("2026-10-19"), IonicValueCodec.toDate("2026-10-19"));
+        Assert.assertEquals("00ff", IonicValueCodec.toString(new byte[]{0, (byte) 0xFF}));
+        try {
+            IonicValueCodec.toLong("forty-two");
+            Assert.fail("IonicException expected");
+        } catch (IonicException e) {
+            logger.info("[EXCEPTION EXPECTED] message: " + e.getMessage());
+        }
+    }
+
+    @Test
+    public final void test_IntegralRange() throws Exception {
+        Assert.assertEquals(Integer.MAX_VALUE, IonicValueCodec.toLong("2147483647.9", Integer.MIN_VALUE,
+                Integer.MAX_VALUE));
+        Assert.assertEquals(-128L, IonicValueCodec.toLong(-128, Byte.MIN_VALUE, Byte.MAX_VALUE));
+        for (final Object value : new Object[]{2147483648L, "-2147483649", 1e10, new BigDecimal("1E+19")}) {
+            try {
+                IonicValueCodec.toLong(value, Integer.MIN_VALUE, Integer.MAX_VALUE);
+                Assert.fail("IonicException expected");
+            } catch (IonicException e) {
+                logger.info("[EXCEPTION EXPECTED] message: " + e.getMessage());
+            }
+        }
+        // the typed getters of a result set refuse protected values outside the range of the type
+        final InMemoryFixture.KeyServer keyServer = new InMemoryFixture.KeyServer();
+        final ChunkCipherV2 chunkCipher = new ChunkCipherV2(keyServer.getKeyServices());
+        final List<Object[]> rows = new ArrayList<Object[]>();
+        rows.add(new Object[]{chunkCipher.encrypt(IonicValueCodec.encode(3000000000L), null)});
+        final IonicResultSet resultSet = new IonicResultSet(InMemoryFixture.createResultSet(
+                new String[]{"value"}, new int[]{Types.VARCHAR}, rows), keyServer.getKeyServices());
+        Assert.assertTrue(resultSet.next());
+        Assert.assertEquals(3000000000L, resultSet.getLong(1));
+        try {
+            resultSet.getInt(1);
+            Assert.fail("SQLException expected");
+        } catch (SQLException e) {
+            logger.info("[EXCEPTION EXPECTED] message: " + e.getMessage());
+        }
+        try {
+            resultSet.getShort(1);
+            Assert.fail("SQLException expected");
+        } catch (SQLException e) {
+            logger.info("[EXCEPTION EXPECTED] message: " + e.getMessage());
+        }
+    }
+
+    @Test
+    public final void test_Decoders() throws IonicException {
+        final Instant instant = Instant.ofEpochSecond(1800000000L, 1000);
+        final Object timestamp = IonicValueCodec.decode(IonicValueCodec.encode(instant));
+        Assert.assertEquals(instant,
+                IonicTypeDecoders.getDecoder(Instant.class).decode(timestamp));
+        Assert.assertEquals(LocalDate.of(2026, 10, 19),
+                IonicTypeDecoders.getDecoder(LocalDate.class).decode(Date.valueOf("2026-10-19")));
+        Assert.assertEquals(42, IonicTypeDecoders.getDecoder(Integer.class).decode("42").intValue());
+        Assert.assertEquals(42L, IonicTypeDecoders.getDecoder(Long.class).decode(42).longValue());
+        Assert.assertEquals(new BigDecimal("1.50"), IonicTypeDecoders.getDecoder(BigDecimal.class).decode("1.50"));
+        final UUID uuid = UUID.randomUUID();
+        Assert.assertEquals(uuid, IonicTypeDecoders.getDecoder(UUID.class).decode(uuid.toString()));
+        Assert.assertEquals(uuid, IonicTypeDecoders.getDecoder(UUID.class).decode(ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).array()));
+        for (final Object value : new Object[]{3000000000L, "1E+10"}) {
+            try {
+                IonicTypeDecoders.getDecoder(Integer.class).decode(value);
+                Assert.fail("IonicException expected");
+            } catch (IonicException e) {
+                logger.info("[EXCEPTION EXPECTED] message: " + e.getMessage());
+            }
+        }
+        try {
+            IonicTypeDecoders.getDecoder(Short.class).decode(40000);
+            Assert.fail("IonicException expected");
+        } catch (IonicException e) {
+            logger.info("[EXCEPTION EXPECTED] message: " + e.getMessage());
+        }
+        try {
+            IonicTypeDecoders.getDecoder(Thread.class).decode("text");
+            Assert.fail("IonicException expected");
+        } catch (IonicException e) {
+            logger.info("[EXCEPTION EXPECTED] message: " + e.getMessage());
+        }
+    }
+
+    @Test
+    public final void test_TypedParameters() throws Exception {
+        final String sql = "INSERT INTO personnel (first, zip) VALUES (?, ?)";
+        final String config = "{\"PreparedStatement\": {\"" + sql + "\": {\"IonicColumns\": {"
+                + "\"1\": {\"cattrs\": {\"classification\": [\"pii\"]}}}}}}";
+        final InMemoryFixture.KeyServer keyServer = new InMemoryFixture.KeyServer();
+        final ChunkCipherV2 chunkCipher = new ChunkCipherV2(keyServer.getKeyServices());
+        final Date date = Date.valueOf("2026-10-19");
+        // with and without multi-row insert, a NULL replaces the protected value of the previous row
+        for (final int batchRows : new int[]{0, 2}) {
+            final InMemoryFixture.Database database = new InMemoryFixture.Database("jdbc:test:typed",
+                    new InMemoryFixture.Responder() {
+                        @Override
+                        public Object respond(final String sqlExecute, final List<Object> parameters) {
+                            return parameters.size() / 2;
+                        }
+                    });
+            final PreparedStatement statement = new IonicPreparedStatement(database.connect().prepareStatement(sql),
+                    sql, config, keyServer.getKeyServices(), batchRows);
+            statement.setDate(1, date, Calendar.getInstance());
+            statement.setInt(2, 12345);
+            statement.addBatch();
+            statement.setNull(1, Types.DATE);
+            statement.setInt(2, 67890);
+            statement.addBatch();
+            statement.setNString(1, "Jane");
+            statement.setInt(2, 13579);
+            statement.addBatch();
+            statement.setObject(1, null);
+            statement.setInt(2, 24680);
+            statement.addBatch();
+            statement.executeBatch();
+            final List<Object> parameters = new ArrayList<Object>();
+            for (final InMemoryFixture.Execution execution : database.getExecutions()) {
+                parameters.addAll(execution.getParameters());
+            }
+            Assert.assertEquals(8, parameters.size());
+            Assert.assertEquals(date, IonicValueCodec.decode(chunkCipher.decryptToBytes((String) parameters.get(0))));
+            Assert.assertEquals(Arrays.asList(12345, null, 67890), parameters.subList(1, 4));
+            Assert.assertEquals("Jane", IonicValueCodec.decode(chunkCipher.decryptToBytes((String) parameters.get(4))));
+            Assert.assertEquals(Arrays.asList(13579, null, 24680), parameters.subList(5, 8));
+            // a value which cannot be protected is refused, rather than sent in the clear
+            try {
+                statement.setTime(1, Time.valueOf("12:00:00"));
+                Assert.fail("SQLException expected");
+            } catch (SQLException e) {
+                Assert.assertTrue(e.getCause() instanceof IonicException);
+                logger.info("[EXCEPTION EXPECTED] message: " + e.getMessage());
+            }
+            statement.close();
+        }
+    }
+
+    @Test
+    public final void test_MalformedEnvelope() {
+        try {
+            IonicValueCodec.decode(new byte[]{(byte) 0xFF, 2, (byte) 0x80});
+            Assert.fail("IonicException expected");
+        } catch (IonicException e) {
+            logger.info("[EXCEPTION EXPECTED] message: " + e.getMessage());
+        }
+    }
+}